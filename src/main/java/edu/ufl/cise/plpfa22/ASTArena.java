@@ -0,0 +1,332 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.Arrays;
+
+import edu.ufl.cise.plpfa22.ast.Types.Type;
+
+/**
+ * An AST stored as a struct of primitive arrays instead of one object per node,
+ * like TokenBuffer does for the tokens. A node is identified by its index, and
+ * its tokens are indices in the TokenBuffer of the program, so the arena holds
+ * no object per node or per token.
+ *
+ * The children of a node are a contiguous range of the children array, in the
+ * order of the fields of the node class:
+ * <ul>
+ * <li>PROGRAM: the block</li>
+ * <li>BLOCK: the ConstDecs, the VarDecs, the ProcDecs and the statement</li>
+ * <li>PROC_DEC: the block</li>
+ * <li>STATEMENT_ASSIGN: the ident and the expression</li>
+ * <li>STATEMENT_CALL, STATEMENT_INPUT: the ident</li>
+ * <li>STATEMENT_OUTPUT: the expression</li>
+ * <li>STATEMENT_BLOCK: the statements</li>
+ * <li>STATEMENT_IF, STATEMENT_WHILE: the expression and the statement</li>
+ * <li>EXPRESSION_BINARY: the two operands</li>
+ * </ul>
+ * and the other nodes have no children. A node is added after its children, so
+ * the root is the last node.
+ *
+ * Node indices are the cursors of the API: kind(), firstToken() and child()
+ * read the columns of a node, and walk() visits a subtree without recursion.
+ */
+public class ASTArena {
+    public static enum NodeKind {
+        PROGRAM,
+        BLOCK,
+        CONST_DEC,
+        VAR_DEC,
+        PROC_DEC,
+        STATEMENT_ASSIGN,
+        STATEMENT_CALL,
+        STATEMENT_INPUT,
+        STATEMENT_OUTPUT,
+        STATEMENT_BLOCK,
+        STATEMENT_IF,
+        STATEMENT_WHILE,
+        STATEMENT_EMPTY,
+        STATEMENT_ERROR,
+        EXPRESSION_BINARY,
+        EXPRESSION_IDENT,
+        EXPRESSION_NUM_LIT,
+        EXPRESSION_STRING_LIT,
+        EXPRESSION_BOOLEAN_LIT,
+        EXPRESSION_ERROR,
+        IDENT,
+    }
+
+    /**
+     * visits the nodes of a subtree in preorder.
+     */
+    public interface Visitor {
+        /**
+         * @return false to skip the children of the node, and its exit().
+         */
+        boolean enter(ASTArena arena, int node);
+
+        /**
+         * called after the children of the node are visited.
+         */
+        default void exit(ASTArena arena, int node) {
+        }
+    }
+
+    /**
+     * the value of the index columns when there's no index.
+     */
+    public static final int NONE = -1;
+
+    private static final NodeKind[] KINDS = NodeKind.values();
+    private static final Type[] TYPES = Type.values();
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // the tokens of the program.
+    private final TokenBuffer tokens;
+
+    // kinds[i] is the ordinal of the kind of the i-th node.
+    private byte[] kinds;
+
+    // the index of the first token of the i-th node.
+    private int[] firstTokens;
+
+    // the index of the ident token of a declaration, or of the operator of an
+    // EXPRESSION_BINARY; the number of ConstDecs of a BLOCK.
+    private int[] aux0;
+
+    // the index of the value token of a CONST_DEC; the number of VarDecs of a
+    // BLOCK.
+    private int[] aux1;
+
+    // the children of the i-th node are children[childStarts[i], childStarts[i] +
+    // childCounts[i]).
+    private int[] childStarts;
+    private int[] childCounts;
+
+    // the ordinal of the type of a declaration or an expression, -1 before type
+    // inference.
+    private byte[] types;
+
+    // the index of the declaration of an IDENT or an EXPRESSION_IDENT, NONE before
+    // scope analysis.
+    private int[] decls;
+
+    // the nest of a declaration, an IDENT or an EXPRESSION_IDENT.
+    private int[] nests;
+
+    private int[] children;
+    private int childrenSize = 0;
+
+    private int size = 0;
+
+    ASTArena(TokenBuffer tokens) {
+        this(tokens, Math.max(INITIAL_CAPACITY, tokens.size()));
+    }
+
+    ASTArena(TokenBuffer tokens, int capacity) {
+        this.tokens = tokens;
+        this.kinds = new byte[capacity];
+        this.firstTokens = new int[capacity];
+        this.aux0 = new int[capacity];
+        this.aux1 = new int[capacity];
+        this.childStarts = new int[capacity];
+        this.childCounts = new int[capacity];
+        this.types = new byte[capacity];
+        this.decls = new int[capacity];
+        this.nests = new int[capacity];
+        this.children = new int[capacity];
+    }
+
+    /**
+     * append a node whose children are children[from, to).
+     *
+     * @return the index of the node
+     */
+    int add(NodeKind kind, int firstToken, int aux0, int aux1, int[] children, int from, int to) {
+        if (this.size == this.kinds.length) {
+            this.grow(this.size * 2);
+        }
+        int count = to - from;
+        if (this.childrenSize + count > this.children.length) {
+            this.children = Arrays.copyOf(this.children, Math.max(this.children.length * 2, this.childrenSize + count));
+        }
+        System.arraycopy(children, from, this.children, this.childrenSize, count);
+        int node = this.size++;
+        this.kinds[node] = (byte) kind.ordinal();
+        this.firstTokens[node] = firstToken;
+        this.aux0[node] = aux0;
+        this.aux1[node] = aux1;
+        this.childStarts[node] = this.childrenSize;
+        this.childCounts[node] = count;
+        this.types[node] = -1;
+        this.decls[node] = NONE;
+        this.nests[node] = 0;
+        this.childrenSize += count;
+        return node;
+    }
+
+    private void grow(int capacity) {
+        this.kinds = Arrays.copyOf(this.kinds, capacity);
+        this.firstTokens = Arrays.copyOf(this.firstTokens, capacity);
+        this.aux0 = Arrays.copyOf(this.aux0, capacity);
+        this.aux1 = Arrays.copyOf(this.aux1, capacity);
+        this.childStarts = Arrays.copyOf(this.childStarts, capacity);
+        this.childCounts = Arrays.copyOf(this.childCounts, capacity);
+        this.types = Arrays.copyOf(this.types, capacity);
+        this.decls = Arrays.copyOf(this.decls, capacity);
+        this.nests = Arrays.copyOf(this.nests, capacity);
+    }
+
+    public TokenBuffer getTokens() {
+        return this.tokens;
+    }
+
+    /**
+     * @return the number of nodes in the arena.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the index of the root, which is the last node added.
+     */
+    public int root() {
+        return this.size - 1;
+    }
+
+    public NodeKind kind(int node) {
+        return KINDS[this.kinds[node]];
+    }
+
+    /**
+     * @return the index of the first token of the node.
+     */
+    public int firstToken(int node) {
+        return this.firstTokens[node];
+    }
+
+    public int childCount(int node) {
+        return this.childCounts[node];
+    }
+
+    /**
+     * @return the index of the k-th child of the node.
+     */
+    public int child(int node, int k) {
+        assert k < this.childCounts[node];
+        return this.children[this.childStarts[node] + k];
+    }
+
+    /**
+     * @return the index of the ident token of a CONST_DEC, a VAR_DEC or a
+     *         PROC_DEC.
+     */
+    public int identToken(int node) {
+        return this.aux0[node];
+    }
+
+    /**
+     * @return the index of the token of the value of a CONST_DEC.
+     */
+    public int valueToken(int node) {
+        return this.aux1[node];
+    }
+
+    /**
+     * @return the index of the operator token of an EXPRESSION_BINARY.
+     */
+    public int opToken(int node) {
+        return this.aux0[node];
+    }
+
+    /**
+     * @return the number of ConstDecs of a BLOCK, which are its first children.
+     */
+    public int constDecCount(int block) {
+        return this.aux0[block];
+    }
+
+    /**
+     * @return the number of VarDecs of a BLOCK, which follow its ConstDecs.
+     */
+    public int varDecCount(int block) {
+        return this.aux1[block];
+    }
+
+    /**
+     * @return the number of ProcDecs of a BLOCK, which follow its VarDecs.
+     */
+    public int procDecCount(int block) {
+        return this.childCounts[block] - this.aux0[block] - this.aux1[block] - 1;
+    }
+
+    /**
+     * @return the type of a declaration or an expression, or null if it doesn't
+     *         have one.
+     */
+    public Type type(int node) {
+        byte type = this.types[node];
+        return type < 0 ? null : TYPES[type];
+    }
+
+    public void setType(int node, Type type) {
+        this.types[node] = (byte) (type == null ? -1 : type.ordinal());
+    }
+
+    /**
+     * @return the index of the declaration of an IDENT or an EXPRESSION_IDENT, or
+     *         NONE if it's not known.
+     */
+    public int declaration(int node) {
+        return this.decls[node];
+    }
+
+    public void setDeclaration(int node, int declaration) {
+        this.decls[node] = declaration;
+    }
+
+    public int nest(int node) {
+        return this.nests[node];
+    }
+
+    public void setNest(int node, int nest) {
+        this.nests[node] = nest;
+    }
+
+    /**
+     * visit the subtree of the node in preorder. The walk uses an explicit stack,
+     * so it doesn't overflow the call stack on deep trees.
+     */
+    public void walk(int node, Visitor visitor) {
+        // the nodes whose children are being visited, and the index of the next
+        // child of each of them.
+        int[] nodes = new int[16];
+        int[] nextChild = new int[16];
+        if (!visitor.enter(this, node)) {
+            return;
+        }
+        nodes[0] = node;
+        int depth = 1;
+        while (depth > 0) {
+            int parent = nodes[depth - 1];
+            int k = nextChild[depth - 1];
+            if (k == this.childCounts[parent]) {
+                visitor.exit(this, parent);
+                depth--;
+                continue;
+            }
+            nextChild[depth - 1] = k + 1;
+            int child = this.children[this.childStarts[parent] + k];
+            if (visitor.enter(this, child)) {
+                if (depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth * 2);
+                    nextChild = Arrays.copyOf(nextChild, depth * 2);
+                }
+                nodes[depth] = child;
+                nextChild[depth] = 0;
+                depth++;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,426 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.ufl.cise.plpfa22.ASTArena.NodeKind;
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.Attributes;
+import edu.ufl.cise.plpfa22.ast.Block;
+import edu.ufl.cise.plpfa22.ast.ConstDec;
+import edu.ufl.cise.plpfa22.ast.Declaration;
+import edu.ufl.cise.plpfa22.ast.Expression;
+import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
+import edu.ufl.cise.plpfa22.ast.ExpressionBooleanLit;
+import edu.ufl.cise.plpfa22.ast.ExpressionError;
+import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
+import edu.ufl.cise.plpfa22.ast.ExpressionNumLit;
+import edu.ufl.cise.plpfa22.ast.ExpressionStringLit;
+import edu.ufl.cise.plpfa22.ast.Ident;
+import edu.ufl.cise.plpfa22.ast.IntASTVisitor;
+import edu.ufl.cise.plpfa22.ast.ProcDec;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.Statement;
+import edu.ufl.cise.plpfa22.ast.StatementAssign;
+import edu.ufl.cise.plpfa22.ast.StatementBlock;
+import edu.ufl.cise.plpfa22.ast.StatementCall;
+import edu.ufl.cise.plpfa22.ast.StatementEmpty;
+import edu.ufl.cise.plpfa22.ast.StatementError;
+import edu.ufl.cise.plpfa22.ast.StatementIf;
+import edu.ufl.cise.plpfa22.ast.StatementInput;
+import edu.ufl.cise.plpfa22.ast.StatementOutput;
+import edu.ufl.cise.plpfa22.ast.StatementWhile;
+import edu.ufl.cise.plpfa22.ast.VarDec;
+
+/**
+ * Converts between the AST classes and an ASTArena, so the passes written as
+ * ASTVisitors keep working on an arena. The types, the nests and the
+ * declarations of the idents are converted too, but not the JVM names of the
+ * procedures, which the code generation computes again.
+ */
+public class ASTArenaAdapter {
+
+    private ASTArenaAdapter() {
+    }
+
+    /**
+     * store a tree in an arena, with the decorations in its nodes.
+     *
+     * @param program the root of the tree
+     * @param tokens  the tokens of the program the tree was parsed from, which
+     *                are found by their offsets
+     * @return the arena, whose root is the program
+     * @throws PLPException
+     */
+    public static ASTArena fromTree(Program program, TokenBuffer tokens) throws PLPException {
+        return fromTree(program, tokens, Attributes.TREE);
+    }
+
+    /**
+     * store a tree in an arena, with the decorations in attributes, e.g. an
+     * AttributeTable.
+     *
+     * @param program    the root of the tree
+     * @param tokens     the tokens of the program the tree was parsed from, which
+     *                   are found by their offsets
+     * @param attributes the decorations of the tree
+     * @return the arena, whose root is the program
+     * @throws PLPException
+     * @throws IllegalArgumentException if an ident of the tree isn't bound to a
+     *                                  declaration in attributes, i.e. the tree
+     *                                  isn't decorated
+     */
+    public static ASTArena fromTree(Program program, TokenBuffer tokens, Attributes attributes)
+            throws PLPException {
+        ToArena visitor = new ToArena(new ASTArena(tokens), attributes);
+        program.visitInt(visitor, null);
+        // a declaration can be used before it's converted, e.g. when a procedure
+        // calls the ones declared after it.
+        for (int i = 0; i < visitor.uses.size(); i++) {
+            Integer declaration = visitor.declarations.get(visitor.useDeclarations.get(i));
+            if (declaration == null) {
+                throw new IllegalArgumentException("a declaration isn't in the tree");
+            }
+            visitor.arena.setDeclaration(visitor.uses.get(i), declaration);
+        }
+        return visitor.arena;
+    }
+
+    /**
+     * create the tree of an arena.
+     *
+     * @return the root of the arena, as a Program
+     * @throws LexicalException
+     */
+    public static Program toTree(ASTArena arena) throws LexicalException {
+        TokenBuffer tokens = arena.getTokens();
+        IToken[] tokenCache = new IToken[tokens.size()];
+        ASTNode[] nodes = new ASTNode[arena.size()];
+        // the children of a node are before it, so the nodes are created in the
+        // order of their indices.
+        for (int node = 0; node < arena.size(); node++) {
+            IToken firstToken = token(tokens, tokenCache, arena.firstToken(node));
+            nodes[node] = switch (arena.kind(node)) {
+                case PROGRAM -> new Program(firstToken, (Block) nodes[arena.child(node, 0)]);
+                case BLOCK -> {
+                    int constCount = arena.constDecCount(node);
+                    int varCount = arena.varDecCount(node);
+                    int procCount = arena.procDecCount(node);
+                    List<ConstDec> constDecs = new ArrayList<>(constCount);
+                    List<VarDec> varDecs = new ArrayList<>(varCount);
+                    List<ProcDec> procDecs = new ArrayList<>(procCount);
+                    int k = 0;
+                    for (int i = 0; i < constCount; i++) {
+                        constDecs.add((ConstDec) nodes[arena.child(node, k++)]);
+                    }
+                    for (int i = 0; i < varCount; i++) {
+                        varDecs.add((VarDec) nodes[arena.child(node, k++)]);
+                    }
+                    for (int i = 0; i < procCount; i++) {
+                        procDecs.add((ProcDec) nodes[arena.child(node, k++)]);
+                    }
+                    yield new Block(firstToken, constDecs, varDecs, procDecs,
+                            (Statement) nodes[arena.child(node, k)]);
+                }
+                case CONST_DEC -> new ConstDec(firstToken, token(tokens, tokenCache, arena.identToken(node)),
+                        value(token(tokens, tokenCache, arena.valueToken(node))));
+                case VAR_DEC -> new VarDec(firstToken, token(tokens, tokenCache, arena.identToken(node)));
+                case PROC_DEC -> new ProcDec(firstToken, token(tokens, tokenCache, arena.identToken(node)),
+                        (Block) nodes[arena.child(node, 0)]);
+                case STATEMENT_ASSIGN -> new StatementAssign(firstToken, (Ident) nodes[arena.child(node, 0)],
+                        (Expression) nodes[arena.child(node, 1)]);
+                case STATEMENT_CALL -> new StatementCall(firstToken, (Ident) nodes[arena.child(node, 0)]);
+                case STATEMENT_INPUT -> new StatementInput(firstToken, (Ident) nodes[arena.child(node, 0)]);
+                case STATEMENT_OUTPUT -> new StatementOutput(firstToken, (Expression) nodes[arena.child(node, 0)]);
+                case STATEMENT_BLOCK -> {
+                    List<Statement> statements = new ArrayList<>(arena.childCount(node));
+                    for (int k = 0; k < arena.childCount(node); k++) {
+                        statements.add((Statement) nodes[arena.child(node, k)]);
+                    }
+                    yield new StatementBlock(firstToken, statements);
+                }
+                case STATEMENT_IF -> new StatementIf(firstToken, (Expression) nodes[arena.child(node, 0)],
+                        (Statement) nodes[arena.child(node, 1)]);
+                case STATEMENT_WHILE -> new StatementWhile(firstToken, (Expression) nodes[arena.child(node, 0)],
+                        (Statement) nodes[arena.child(node, 1)]);
+                case STATEMENT_EMPTY -> new StatementEmpty(firstToken);
+                case STATEMENT_ERROR -> new StatementError(firstToken);
+                case EXPRESSION_BINARY -> new ExpressionBinary(firstToken, (Expression) nodes[arena.child(node, 0)],
+                        token(tokens, tokenCache, arena.opToken(node)), (Expression) nodes[arena.child(node, 1)]);
+                case EXPRESSION_IDENT -> new ExpressionIdent(firstToken);
+                case EXPRESSION_NUM_LIT -> new ExpressionNumLit(firstToken);
+                case EXPRESSION_STRING_LIT -> new ExpressionStringLit(firstToken);
+                case EXPRESSION_BOOLEAN_LIT -> new ExpressionBooleanLit(firstToken);
+                case EXPRESSION_ERROR -> new ExpressionError(firstToken);
+                case IDENT -> new Ident(firstToken);
+            };
+        }
+        // the decorations, once all the declarations exist.
+        for (int node = 0; node < arena.size(); node++) {
+            ASTNode astNode = nodes[node];
+            int declaration = arena.declaration(node);
+            if (astNode instanceof Declaration dec) {
+                dec.setType(arena.type(node));
+                dec.setNest(arena.nest(node));
+            } else if (astNode instanceof ExpressionIdent ident) {
+                ident.setType(arena.type(node));
+                ident.setNest(arena.nest(node));
+                if (declaration != ASTArena.NONE) {
+                    ident.setDec((Declaration) nodes[declaration]);
+                }
+            } else if (astNode instanceof Expression expression) {
+                expression.setType(arena.type(node));
+            } else if (astNode instanceof Ident ident) {
+                ident.setNest(arena.nest(node));
+                if (declaration != ASTArena.NONE) {
+                    ident.setDec((Declaration) nodes[declaration]);
+                }
+            }
+        }
+        return (Program) nodes[arena.root()];
+    }
+
+    private static IToken token(TokenBuffer tokens, IToken[] cache, int index) throws LexicalException {
+        if (cache[index] == null) {
+            cache[index] = tokens.token(index);
+        }
+        return cache[index];
+    }
+
+    /**
+     * @return the value of a ConstDec, as the parser computes it.
+     */
+    private static Object value(IToken literal) {
+        return switch (literal.getKind()) {
+            case NUM_LIT -> literal.getIntValue();
+            case STRING_LIT -> literal.getStringValue();
+            case BOOLEAN_LIT -> literal.getBooleanValue();
+            default -> throw new IllegalStateException("the value of a ConstDec isn't a literal");
+        };
+    }
+
+    /**
+     * adds the nodes of a tree to an arena in postorder, and returns the index of
+     * each node.
+     */
+    private static class ToArena implements IntASTVisitor<Void> {
+        private static final int[] NO_CHILDREN = new int[0];
+
+        private final ASTArena arena;
+        private final TokenBuffer tokens;
+        private final Attributes attributes;
+        private final StackGuard stackGuard = new StackGuard();
+
+        // the index of each declaration in the arena.
+        private final Map<Declaration, Integer> declarations = new IdentityHashMap<>();
+
+        // the idents, and the declarations they refer to.
+        private final List<Integer> uses = new ArrayList<>();
+        private final List<Declaration> useDeclarations = new ArrayList<>();
+
+        ToArena(ASTArena arena, Attributes attributes) {
+            this.arena = arena;
+            this.tokens = arena.getTokens();
+            this.attributes = attributes;
+        }
+
+        /**
+         * @return the index of the token in the buffer. The token of a folded
+         *         literal starts where a token of the buffer does, but it's only
+         *         that token if it has the same text.
+         */
+        private int index(IToken token) {
+            int start = token.getOffset();
+            int index = this.tokens.indexOfStart(start);
+            if (index < 0 || this.tokens.kind(index) != token.getKind() || !token.getTextView()
+                    .contentEquals(this.tokens.getInput().subSequence(start, start + this.tokens.length(index)))) {
+                throw new IllegalArgumentException(
+                        "the token at " + token.getSourceLocation() + " isn't in the token buffer");
+            }
+            return index;
+        }
+
+        private int add(NodeKind kind, ASTNode node, int aux0, int aux1, int[] children) {
+            return this.arena.add(kind, this.index(node.getFirstToken()), aux0, aux1, children, 0, children.length);
+        }
+
+        private int add(NodeKind kind, ASTNode node, int... children) {
+            return this.add(kind, node, ASTArena.NONE, ASTArena.NONE, children);
+        }
+
+        private int addExpression(NodeKind kind, Expression expression, int aux0, int... children) {
+            int node = this.add(kind, expression, aux0, ASTArena.NONE, children);
+            this.arena.setType(node, this.attributes.getType(expression));
+            return node;
+        }
+
+        private int addDeclaration(NodeKind kind, Declaration declaration, IToken ident, int aux1,
+                int... children) {
+            int node = this.add(kind, declaration, this.index(ident), aux1, children);
+            this.arena.setType(node, this.attributes.getType(declaration));
+            this.arena.setNest(node, this.attributes.getNest(declaration));
+            this.declarations.put(declaration, node);
+            return node;
+        }
+
+        /**
+         * add the nest and the declaration of an Ident or an ExpressionIdent,
+         * which the scope visitor binds every ident to.
+         */
+        private void addUse(int node, ASTNode ident) {
+            Declaration declaration = this.attributes.getDec(ident);
+            if (declaration == null) {
+                throw new IllegalArgumentException("the ident at " + ident.getSourceLocation()
+                        + " isn't bound to a declaration, the tree isn't decorated");
+            }
+            this.arena.setNest(node, this.attributes.getNest(ident));
+            this.uses.add(node);
+            this.useDeclarations.add(declaration);
+        }
+
+        private int visit(ASTNode node) throws PLPException {
+            return this.stackGuard.visit(node, this, null);
+        }
+
+        /**
+         * visit the nodes, and store their indexes in children from k.
+         *
+         * @return the index in children after the last one stored.
+         */
+        private int visitAll(List<? extends ASTNode> nodes, int[] children, int k) throws PLPException {
+            int[] next = { k };
+            this.stackGuard.forEach(nodes, node -> children[next[0]++] = node.visitInt(this, null));
+            return next[0];
+        }
+
+        @Override
+        public int visitBlock(Block block, Void arg) throws PLPException {
+            int[] children = new int[block.constDecs.size() + block.varDecs.size() + block.procedureDecs.size() + 1];
+            int k = this.visitAll(block.constDecs, children, 0);
+            k = this.visitAll(block.varDecs, children, k);
+            k = this.visitAll(block.procedureDecs, children, k);
+            children[k] = this.visit(block.statement);
+            return this.add(NodeKind.BLOCK, block, block.constDecs.size(), block.varDecs.size(), children);
+        }
+
+        @Override
+        public int visitProgram(Program program, Void arg) throws PLPException {
+            return this.add(NodeKind.PROGRAM, program, this.visit(program.block));
+        }
+
+        @Override
+        public int visitStatementAssign(StatementAssign statementAssign, Void arg) throws PLPException {
+            return this.add(NodeKind.STATEMENT_ASSIGN, statementAssign, this.visit(statementAssign.ident),
+                    this.visit(statementAssign.expression));
+        }
+
+        @Override
+        public int visitVarDec(VarDec varDec, Void arg) throws PLPException {
+            return this.addDeclaration(NodeKind.VAR_DEC, varDec, varDec.ident, ASTArena.NONE);
+        }
+
+        @Override
+        public int visitStatementCall(StatementCall statementCall, Void arg) throws PLPException {
+            return this.add(NodeKind.STATEMENT_CALL, statementCall, this.visit(statementCall.ident));
+        }
+
+        @Override
+        public int visitStatementInput(StatementInput statementInput, Void arg) throws PLPException {
+            return this.add(NodeKind.STATEMENT_INPUT, statementInput, this.visit(statementInput.ident));
+        }
+
+        @Override
+        public int visitStatementOutput(StatementOutput statementOutput, Void arg) throws PLPException {
+            return this.add(NodeKind.STATEMENT_OUTPUT, statementOutput, this.visit(statementOutput.expression));
+        }
+
+        @Override
+        public int visitStatementBlock(StatementBlock statementBlock, Void arg) throws PLPException {
+            int[] children = new int[statementBlock.statements.size()];
+            this.visitAll(statementBlock.statements, children, 0);
+            return this.add(NodeKind.STATEMENT_BLOCK, statementBlock, children);
+        }
+
+        @Override
+        public int visitStatementIf(StatementIf statementIf, Void arg) throws PLPException {
+            return this.add(NodeKind.STATEMENT_IF, statementIf, this.visit(statementIf.expression),
+                    this.visit(statementIf.statement));
+        }
+
+        @Override
+        public int visitStatementWhile(StatementWhile statementWhile, Void arg) throws PLPException {
+            return this.add(NodeKind.STATEMENT_WHILE, statementWhile, this.visit(statementWhile.expression),
+                    this.visit(statementWhile.statement));
+        }
+
+        @Override
+        public int visitExpressionBinary(ExpressionBinary expressionBinary, Void arg) throws PLPException {
+            return this.addExpression(NodeKind.EXPRESSION_BINARY, expressionBinary, this.index(expressionBinary.op),
+                    this.visit(expressionBinary.e0), this.visit(expressionBinary.e1));
+        }
+
+        @Override
+        public int visitExpressionIdent(ExpressionIdent expressionIdent, Void arg) throws PLPException {
+            int node = this.addExpression(NodeKind.EXPRESSION_IDENT, expressionIdent, ASTArena.NONE, NO_CHILDREN);
+            this.addUse(node, expressionIdent);
+            return node;
+        }
+
+        @Override
+        public int visitExpressionNumLit(ExpressionNumLit expressionNumLit, Void arg) throws PLPException {
+            return this.addExpression(NodeKind.EXPRESSION_NUM_LIT, expressionNumLit, ASTArena.NONE, NO_CHILDREN);
+        }
+
+        @Override
+        public int visitExpressionStringLit(ExpressionStringLit expressionStringLit, Void arg)
+                throws PLPException {
+            return this.addExpression(NodeKind.EXPRESSION_STRING_LIT, expressionStringLit, ASTArena.NONE,
+                    NO_CHILDREN);
+        }
+
+        @Override
+        public int visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Void arg)
+                throws PLPException {
+            return this.addExpression(NodeKind.EXPRESSION_BOOLEAN_LIT, expressionBooleanLit, ASTArena.NONE,
+                    NO_CHILDREN);
+        }
+
+        @Override
+        public int visitExpressionError(ExpressionError expressionError, Void arg) throws PLPException {
+            return this.addExpression(NodeKind.EXPRESSION_ERROR, expressionError, ASTArena.NONE, NO_CHILDREN);
+        }
+
+        @Override
+        public int visitProcedure(ProcDec procDec, Void arg) throws PLPException {
+            return this.addDeclaration(NodeKind.PROC_DEC, procDec, procDec.ident, ASTArena.NONE,
+                    this.visit(procDec.block));
+        }
+
+        @Override
+        public int visitConstDec(ConstDec constDec, Void arg) throws PLPException {
+            // the value follows the ident and the EQ.
+            return this.addDeclaration(NodeKind.CONST_DEC, constDec, constDec.ident, this.index(constDec.ident) + 2);
+        }
+
+        @Override
+        public int visitStatementEmpty(StatementEmpty statementEmpty, Void arg) throws PLPException {
+            return this.add(NodeKind.STATEMENT_EMPTY, statementEmpty);
+        }
+
+        @Override
+        public int visitStatementError(StatementError statementError, Void arg) throws PLPException {
+            return this.add(NodeKind.STATEMENT_ERROR, statementError);
+        }
+
+        @Override
+        public int visitIdent(Ident ident, Void arg) throws PLPException {
+            int node = this.add(NodeKind.IDENT, ident);
+            this.addUse(node, ident);
+            return node;
+        }
+
+    }
+
+}
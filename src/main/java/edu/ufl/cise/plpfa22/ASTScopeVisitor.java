@@ -1,10 +1,6 @@
 package edu.ufl.cise.plpfa22;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.HashMap;
-
-import edu.ufl.cise.plpfa22.ast.ASTVisitor;
+import edu.ufl.cise.plpfa22.ast.Attributes;
 import edu.ufl.cise.plpfa22.ast.Block;
 import edu.ufl.cise.plpfa22.ast.ConstDec;
 import edu.ufl.cise.plpfa22.ast.Declaration;
@@ -13,10 +9,10 @@ import edu.ufl.cise.plpfa22.ast.ExpressionBooleanLit;
 import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
 import edu.ufl.cise.plpfa22.ast.ExpressionNumLit;
 import edu.ufl.cise.plpfa22.ast.ExpressionStringLit;
+import edu.ufl.cise.plpfa22.ast.GenericASTVisitor;
 import edu.ufl.cise.plpfa22.ast.Ident;
 import edu.ufl.cise.plpfa22.ast.ProcDec;
 import edu.ufl.cise.plpfa22.ast.Program;
-import edu.ufl.cise.plpfa22.ast.Statement;
 import edu.ufl.cise.plpfa22.ast.StatementAssign;
 import edu.ufl.cise.plpfa22.ast.StatementBlock;
 import edu.ufl.cise.plpfa22.ast.StatementCall;
@@ -27,34 +23,26 @@ import edu.ufl.cise.plpfa22.ast.StatementOutput;
 import edu.ufl.cise.plpfa22.ast.StatementWhile;
 import edu.ufl.cise.plpfa22.ast.VarDec;
 
-public class ASTScopeVisitor implements ASTVisitor {
+public class ASTScopeVisitor implements GenericASTVisitor<Void, Boolean> {
     // the nesting level for the current nesting scope.
     // since the nesting Level for the first scope is 0 and nesting level would add
     // one when entering each scope, the default value for nesting level is -1.
     private int nestingLevel = -1;
 
-    // Notice that this is not the current scope id, which should be found at the
-    // top of the scopeStack
-    private int nextScopeID = 0;
+    // the declarations visible in the current scope.
+    private final SymbolTable symbolTable = new SymbolTable();
 
-    private class SymboltableAttribute {
-        Declaration dec;
+    private final StackGuard stackGuard = new StackGuard();
 
-        public SymboltableAttribute(Declaration dec) {
-            this.dec = dec;
-        }
-    }
+    // where the declarations and the nesting levels are stored.
+    private final Attributes attributes;
 
-    // ident name string as key, list of ident with that same name as value.
-    private HashMap<String, HashMap<Integer, SymboltableAttribute>> symbolTable = new HashMap<>();
-
-    // store the scope nesting structure, by storing the scope IDs.
-    // the top of the stack represents the ID of the current scope
-    // replace stack by deque for better performance.
-    private Deque<Integer> scopeStack = new ArrayDeque<>();
+    public ASTScopeVisitor() {
+        this(Attributes.TREE);
+    }
 
-    private int getCurrentScopeId() {
-        return this.scopeStack.peek();
+    public ASTScopeVisitor(Attributes attributes) {
+        this.attributes = attributes;
     }
 
     /**
@@ -65,90 +53,60 @@ public class ASTScopeVisitor implements ASTVisitor {
      * @throws PLPException
      */
     private void insertIdent(IToken ident, Declaration dec) throws PLPException {
-        String name = new String(ident.getText());
-        if (this.symbolTable.containsKey(name)) {
-            // there's already an identifier in the symbol table with the same name, put if
-            // it has a different scope id, otherwise, throw an exception
-            HashMap<Integer, SymboltableAttribute> identMap = this.symbolTable.get(name);
-            if (identMap.containsKey(this.getCurrentScopeId())) {
-                throw new ScopeException(
-                        "re-declaration of identifier " + new String(ident.getText()),
-                        ident.getSourceLocation().line(),
-                        ident.getSourceLocation().column());
-            } else {
-                identMap.put(this.getCurrentScopeId(), new SymboltableAttribute(dec));
-            }
-        } else {
-            HashMap<Integer, SymboltableAttribute> identMap = new HashMap<>();
-            identMap.put(this.getCurrentScopeId(), new SymboltableAttribute(dec));
-            this.symbolTable.put(name, identMap);
+        if (!this.symbolTable.declare(ident, dec)) {
+            // there's already an identifier with the same name in the current scope.
+            throw new ScopeException(
+                    "re-declaration of identifier " + ident.getTextView(),
+                    ident.getSourceLocation().line(),
+                    ident.getSourceLocation().column());
         }
-
     }
 
     /**
-     * return the symbol table attirbute for the ident.
-     * find the ident with scope id closest to the top of the stack.
+     * return the declaration of the ident in the innermost visible scope.
      * 
-     * @param identName
-     * @return SymboltableAttribute
+     * @param ident
+     * @return the declaration
      * @throws ScopeException when can't find the ident at visible scopes
      */
-    private SymboltableAttribute getIdentAttribute(String identName) throws ScopeException {
-        if (!this.symbolTable.containsKey(identName)) {
-            // the symbol table doesn't contain an ident with name identName.
-            throw new ScopeException("can't find ident \"" + identName + "\"");
-        }
-        HashMap<Integer, SymboltableAttribute> identMap = this.symbolTable.get(identName);
-        for (int scopeID : this.scopeStack) {
-            // find the ident with the closest scope id towards the top of the stack.
-            // since we use the deque as stack, push is equivalent to addFirst, thus we just
-            // iterate through the scopeStack(deque)
-            if (identMap.containsKey(scopeID)) {
-                return identMap.get(scopeID);
-            }
+    private Declaration getIdentDec(IToken ident) throws ScopeException {
+        Declaration dec = this.symbolTable.lookup(ident);
+        if (dec == null) {
+            throw new ScopeException(
+                    "can't find ident \"" + ident.getTextView() + "\"",
+                    ident.getSourceLocation().line(),
+                    ident.getSourceLocation().column());
         }
-        throw new ScopeException("can't find ident \"" + identName + "\"");
+        return dec;
     }
 
     /**
      * entering a new scope
-     * 1. get the new scope ID for this scope
-     * 2. push the scope ID to the scopeStack (Thus the top element of the stack is
-     * the ID for the current scope)
-     * 3. increment nesting level
+     * 1. open a scope of the symbol table
+     * 2. increment nesting level
      */
     private void enterScope() {
-        int scopeID = this.getNextScopeID();
-        this.scopeStack.push(scopeID);
+        this.symbolTable.enterScope();
         this.nestingLevel++;
     }
 
     /**
      * closing the current scope
-     * 1. pop the scope stack
+     * 1. close the scope of the symbol table, the declarations it shadowed are
+     * visible again
      * 2 decrement the nesting level.
      */
     private void closeScope() {
-        this.scopeStack.pop();
+        this.symbolTable.closeScope();
         this.nestingLevel--;
     }
 
-    /**
-     * return the next scope ID and increment it after returning it.
-     * 
-     * @return the next scope ID.
-     */
-    private int getNextScopeID() {
-        return this.nextScopeID++;
-    }
-
     /**
      * arg is a boolean, representing 'is building symbol table(first pass)'
      */
     @Override
-    public Object visitBlock(Block block, Object arg) throws PLPException {
-        boolean isFirst = (boolean) arg;
+    public Void visitBlock(Block block, Boolean arg) throws PLPException {
+        boolean isFirst = arg;
         // start of the scope, call enterScope()
         this.enterScope();
 
@@ -163,13 +121,23 @@ public class ASTScopeVisitor implements ASTVisitor {
                 varDec.visit(this, arg);
             }
 
+        } else {
+            // the second pass sees all the declarations of the block, so a procedure
+            // can be called before it's declared. They were checked in the first pass.
+            for (ConstDec constDec : block.constDecs) {
+                this.symbolTable.declare(constDec.ident, constDec);
+            }
+            for (VarDec varDec : block.varDecs) {
+                this.symbolTable.declare(varDec.ident, varDec);
+            }
+            for (ProcDec procDec : block.procedureDecs) {
+                this.symbolTable.declare(procDec.ident, procDec);
+            }
         }
 
-        for (ProcDec procDec : block.procedureDecs) {
-            procDec.visit(this, arg);
-        }
+        this.stackGuard.forEach(block.procedureDecs, procDec -> procDec.visit(this, arg));
 
-        block.statement.visit(this, arg);
+        this.stackGuard.visit(block.statement, this, arg);
 
         // end of the scope, call closeScope
         this.closeScope();
@@ -177,40 +145,38 @@ public class ASTScopeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitProgram(Program program, Object arg) throws PLPException {
+    public Void visitProgram(Program program, Boolean arg) throws PLPException {
         // 1st pass, build the symbol table
         program.block.visit(this, true);
 
-        // 2nd pass, decorate the AST.
-        // reset the nestingLevel and nextScopeId so that each scope would be assigned
-        // the same scope ID.
+        // 2nd pass, decorate the AST. All the scopes were closed, so the symbol table
+        // is empty again.
         this.nestingLevel = -1;
-        this.nextScopeID = 0;
         program.block.visit(this, false);
         return null;
     }
 
     @Override
-    public Object visitStatementAssign(StatementAssign statementAssign, Object arg) throws PLPException {
+    public Void visitStatementAssign(StatementAssign statementAssign, Boolean arg) throws PLPException {
         statementAssign.ident.visit(this, arg);
         statementAssign.expression.visit(this, arg);
         return null;
     }
 
     @Override
-    public Object visitVarDec(VarDec varDec, Object arg) throws PLPException {
-        if (!(boolean) arg) {
+    public Void visitVarDec(VarDec varDec, Boolean arg) throws PLPException {
+        if (!arg) {
             // for the second pass, do nothing.
             return null;
         }
         this.insertIdent(varDec.ident, varDec);
-        varDec.setNest(this.nestingLevel);
+        this.attributes.setNest(varDec, this.nestingLevel);
         return null;
     }
 
     @Override
-    public Object visitStatementCall(StatementCall statementCall, Object arg) throws PLPException {
-        if (!(boolean) arg) {
+    public Void visitStatementCall(StatementCall statementCall, Boolean arg) throws PLPException {
+        if (!arg) {
             // since this ident is a procedure, only visit it in the second pass.
             statementCall.ident.visit(this, arg);
         }
@@ -218,8 +184,8 @@ public class ASTScopeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitStatementInput(StatementInput statementInput, Object arg) throws PLPException {
-        if ((boolean) arg) {
+    public Void visitStatementInput(StatementInput statementInput, Boolean arg) throws PLPException {
+        if (arg) {
             // since the ident in an input statement should be an ident of a non-procedure,
             // then process it only in the first pass
             statementInput.ident.visit(this, arg);
@@ -228,120 +194,97 @@ public class ASTScopeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitStatementOutput(StatementOutput statementOutput, Object arg) throws PLPException {
+    public Void visitStatementOutput(StatementOutput statementOutput, Boolean arg) throws PLPException {
         statementOutput.expression.visit(this, arg);
         return null;
     }
 
     @Override
-    public Object visitStatementBlock(StatementBlock statementBlock, Object arg) throws PLPException {
+    public Void visitStatementBlock(StatementBlock statementBlock, Boolean arg) throws PLPException {
 
-        for (Statement statement : statementBlock.statements) {
-            statement.visit(this, arg);
-        }
+        this.stackGuard.forEach(statementBlock.statements, statement -> statement.visit(this, arg));
 
         return null;
     }
 
     @Override
-    public Object visitStatementIf(StatementIf statementIf, Object arg) throws PLPException {
+    public Void visitStatementIf(StatementIf statementIf, Boolean arg) throws PLPException {
         statementIf.expression.visit(this, arg);
-        statementIf.statement.visit(this, arg);
+        this.stackGuard.visit(statementIf.statement, this, arg);
         return null;
     }
 
     @Override
-    public Object visitStatementWhile(StatementWhile statementWhile, Object arg) throws PLPException {
+    public Void visitStatementWhile(StatementWhile statementWhile, Boolean arg) throws PLPException {
         statementWhile.expression.visit(this, arg);
-        statementWhile.statement.visit(this, arg);
+        this.stackGuard.visit(statementWhile.statement, this, arg);
         return null;
     }
 
     @Override
-    public Object visitExpressionBinary(ExpressionBinary expressionBinary, Object arg) throws PLPException {
-        expressionBinary.e0.visit(this, arg);
-        expressionBinary.e1.visit(this, arg);
+    public Void visitExpressionBinary(ExpressionBinary expressionBinary, Boolean arg) throws PLPException {
+        this.stackGuard.visit(expressionBinary.e0, this, arg);
+        this.stackGuard.visit(expressionBinary.e1, this, arg);
         return null;
     }
 
     @Override
-    public Object visitExpressionIdent(ExpressionIdent expressionIdent, Object arg) throws PLPException {
-        if (!(boolean) arg) {
+    public Void visitExpressionIdent(ExpressionIdent expressionIdent, Boolean arg) throws PLPException {
+        if (!arg) {
             // do nothing in the second pass.
             return null;
         }
-        IToken ident = expressionIdent.firstToken;
-        String identName = new String(ident.getText());
-        try {
-            SymboltableAttribute identAttribute = this.getIdentAttribute(identName);
-            expressionIdent.setDec(identAttribute.dec);
-            expressionIdent.setNest(this.nestingLevel);
-        } catch (ScopeException scopeException) {
-            // decorate the exception with the location of the ident token.
-            throw new ScopeException(
-                    scopeException.getMessage(),
-                    ident.getSourceLocation().line(),
-                    ident.getSourceLocation().column());
-        }
+        this.attributes.setDec(expressionIdent, this.getIdentDec(expressionIdent.firstToken));
+        this.attributes.setNest(expressionIdent, this.nestingLevel);
         return null;
     }
 
     @Override
-    public Object visitExpressionNumLit(ExpressionNumLit expressionNumLit, Object arg) throws PLPException {
+    public Void visitExpressionNumLit(ExpressionNumLit expressionNumLit, Boolean arg) throws PLPException {
         return null;
     }
 
     @Override
-    public Object visitExpressionStringLit(ExpressionStringLit expressionStringLit, Object arg) throws PLPException {
+    public Void visitExpressionStringLit(ExpressionStringLit expressionStringLit, Boolean arg) throws PLPException {
         return null;
     }
 
     @Override
-    public Object visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Object arg) throws PLPException {
+    public Void visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Boolean arg) throws PLPException {
         return null;
     }
 
     @Override
-    public Object visitProcedure(ProcDec procDec, Object arg) throws PLPException {
+    public Void visitProcedure(ProcDec procDec, Boolean arg) throws PLPException {
         // if first pass, insert ident into symbolTable
-        if ((boolean) arg) {
+        if (arg) {
             this.insertIdent(procDec.ident, procDec);
-            procDec.setNest(this.nestingLevel);
+            this.attributes.setNest(procDec, this.nestingLevel);
         }
-        procDec.block.visit(this, arg);
+        this.stackGuard.visit(procDec.block, this, arg);
         return null;
     }
 
     @Override
-    public Object visitConstDec(ConstDec constDec, Object arg) throws PLPException {
-        if (!(boolean) arg) {
+    public Void visitConstDec(ConstDec constDec, Boolean arg) throws PLPException {
+        if (!arg) {
             // for the second pass, do nothing.
             return null;
         }
         this.insertIdent(constDec.ident, constDec);
-        constDec.setNest(this.nestingLevel);
+        this.attributes.setNest(constDec, this.nestingLevel);
         return null;
     }
 
     @Override
-    public Object visitStatementEmpty(StatementEmpty statementEmpty, Object arg) throws PLPException {
+    public Void visitStatementEmpty(StatementEmpty statementEmpty, Boolean arg) throws PLPException {
         return null;
     }
 
     @Override
-    public Object visitIdent(Ident ident, Object arg) throws PLPException {
-        IToken identToken = ident.firstToken;
-        try {
-            SymboltableAttribute identAttribute = this.getIdentAttribute(new String(identToken.getText()));
-            ident.setDec(identAttribute.dec);
-            ident.setNest(this.nestingLevel);
-        } catch (ScopeException e) {
-            throw new ScopeException(
-                    e.getMessage(),
-                    identToken.getSourceLocation().line(),
-                    identToken.getSourceLocation().column());
-        }
-
+    public Void visitIdent(Ident ident, Boolean arg) throws PLPException {
+        this.attributes.setDec(ident, this.getIdentDec(ident.firstToken));
+        this.attributes.setNest(ident, this.nestingLevel);
         return null;
     }
 
@@ -0,0 +1,748 @@
+package edu.ufl.cise.plpfa22;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.ufl.cise.plpfa22.ASTArena.NodeKind;
+import edu.ufl.cise.plpfa22.IToken.Kind;
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.Attributes;
+import edu.ufl.cise.plpfa22.ast.Block;
+import edu.ufl.cise.plpfa22.ast.ConstDec;
+import edu.ufl.cise.plpfa22.ast.Declaration;
+import edu.ufl.cise.plpfa22.ast.Expression;
+import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
+import edu.ufl.cise.plpfa22.ast.ExpressionBooleanLit;
+import edu.ufl.cise.plpfa22.ast.ExpressionError;
+import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
+import edu.ufl.cise.plpfa22.ast.ExpressionNumLit;
+import edu.ufl.cise.plpfa22.ast.ExpressionStringLit;
+import edu.ufl.cise.plpfa22.ast.GenericASTVisitor;
+import edu.ufl.cise.plpfa22.ast.Ident;
+import edu.ufl.cise.plpfa22.ast.ProcDec;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.Statement;
+import edu.ufl.cise.plpfa22.ast.StatementAssign;
+import edu.ufl.cise.plpfa22.ast.StatementBlock;
+import edu.ufl.cise.plpfa22.ast.StatementCall;
+import edu.ufl.cise.plpfa22.ast.StatementEmpty;
+import edu.ufl.cise.plpfa22.ast.StatementError;
+import edu.ufl.cise.plpfa22.ast.StatementIf;
+import edu.ufl.cise.plpfa22.ast.StatementInput;
+import edu.ufl.cise.plpfa22.ast.StatementOutput;
+import edu.ufl.cise.plpfa22.ast.StatementWhile;
+import edu.ufl.cise.plpfa22.ast.Types.Type;
+import edu.ufl.cise.plpfa22.ast.VarDec;
+
+/**
+ * Writes a decorated AST to a ByteBuffer and reads it back, so that a compiler
+ * can cache the analyzed program and skip the lexer, the parser and the scope
+ * and type visitors when it compiles the same input again. The JVM names of the
+ * procedures aren't stored, the code generation computes them again.
+ *
+ * The format is:
+ * <ul>
+ * <li>the header: MAGIC and VERSION, then the numbers of tokens, declarations
+ * and nodes, as ints</li>
+ * <li>the input, as the number of its UTF-8 bytes and the bytes</li>
+ * <li>the nodes in postorder, so the children of a node are read before it</li>
+ * </ul>
+ * The other numbers are varints: 7 bits per byte, low bits first, the high bit
+ * set on every byte but the last. Signed numbers are zigzag encoded first.
+ *
+ * A node is the ordinal of its ASTArena.NodeKind as a byte, the reference to
+ * its first token and the fields of its kind:
+ * <ul>
+ * <li>BLOCK: the numbers of ConstDecs, VarDecs and ProcDecs</li>
+ * <li>CONST_DEC, VAR_DEC, PROC_DEC: the ident token, the value of a CONST_DEC,
+ * then the declaration, the type and the nest. The value is the ordinal of the
+ * kind of its literal, followed by an int, a boolean byte or a string</li>
+ * <li>STATEMENT_BLOCK: the number of statements</li>
+ * <li>an expression: the type; an EXPRESSION_BINARY then has the operator
+ * token</li>
+ * <li>IDENT, EXPRESSION_IDENT: the nest and the declaration it's bound to</li>
+ * </ul>
+ * A type is its ordinal plus 1 as a byte, 0 if there's none. Declarations are
+ * numbered from 0, in the order they're first written or referred to, since an
+ * ident can be bound to a procedure that's written after it; a binding is the
+ * number plus 1, 0 if there's none.
+ *
+ * Tokens are numbered in the order they're written. A reference to a token that
+ * was already written is the number of tokens written since it, plus 1. A token
+ * is written where it's first referred to: its reference is 0, followed by the
+ * ordinal of its kind as a byte, the
+ * difference between its offset and the one of the previous token, and its
+ * length shifted left by one. The low bit is 0 if the text is the input at the
+ * offset; otherwise it's 1, the number is the length of the text in UTF-8 bytes
+ * and the bytes follow, e.g. for a folded literal. A NUM_LIT then has its
+ * value.
+ */
+public class ASTSerializer {
+    /**
+     * the first int of the format.
+     */
+    public static final int MAGIC = 0x504c5041;
+
+    /**
+     * the version of the format, which is changed whenever the format is.
+     */
+    public static final short VERSION = 1;
+
+    // the size of the header, and the position of the number of tokens in it.
+    private static final int HEADER_SIZE = 18;
+    private static final int COUNTS = 6;
+
+    private static final NodeKind[] NODE_KINDS = NodeKind.values();
+    private static final Kind[] KINDS = Kind.values();
+    private static final Type[] TYPES = Type.values();
+
+    private ASTSerializer() {
+    }
+
+    /**
+     * serialize a tree decorated by the scope and type visitors.
+     *
+     * @param program the root of the tree
+     * @param input   the input the tree was parsed from
+     * @return a buffer whose remaining bytes are the serialized tree
+     * @throws PLPException
+     * @throws IllegalArgumentException if an ident of the tree isn't bound to a
+     *                                  declaration, e.g. if the tree was
+     *                                  analyzed into an AttributeTable
+     */
+    public static ByteBuffer write(Program program, String input) throws PLPException {
+        return write(program, input, Attributes.TREE);
+    }
+
+    /**
+     * serialize a tree with the decorations of the scope and type visitors in
+     * attributes, e.g. an AttributeTable. The tree read back has them in its
+     * nodes.
+     *
+     * @param program    the root of the tree
+     * @param input      the input the tree was parsed from
+     * @param attributes the decorations of the tree
+     * @return a buffer whose remaining bytes are the serialized tree
+     * @throws PLPException
+     * @throws IllegalArgumentException if an ident of the tree isn't bound to a
+     *                                  declaration in attributes
+     */
+    public static ByteBuffer write(Program program, String input, Attributes attributes) throws PLPException {
+        byte[] inputBytes = input.getBytes(StandardCharsets.UTF_8);
+        Writer writer = new Writer(input, attributes,
+                ByteBuffer.allocate(HEADER_SIZE + 5 + inputBytes.length * 2 + 64));
+        writer.buffer.putInt(MAGIC).putShort(VERSION).putInt(0).putInt(0).putInt(0);
+        writer.putVarint(inputBytes.length);
+        writer.buffer.put(inputBytes);
+        program.visit(writer, null);
+        if (writer.declarations.size() != writer.declarationsWritten) {
+            throw new IllegalArgumentException("a declaration isn't in the tree");
+        }
+        writer.buffer.putInt(COUNTS, writer.tokens.size()).putInt(COUNTS + 4, writer.declarations.size())
+                .putInt(COUNTS + 8, writer.nodes);
+        return writer.buffer.flip();
+    }
+
+    /**
+     * deserialize a tree written by write(). The tokens of the tree are views of
+     * the input stored in the buffer, and have the same offsets and locations as
+     * the ones of the written tree.
+     *
+     * @param buffer the serialized tree, from its position, which is moved after
+     *               it
+     * @return the root of the tree
+     * @throws IllegalArgumentException if the buffer isn't a serialized tree of
+     *                                  this version
+     */
+    public static Program read(ByteBuffer buffer) {
+        try {
+            return new Reader(buffer).read();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException e) {
+            throw new IllegalArgumentException("the serialized tree is corrupt", e);
+        }
+    }
+
+    /**
+     * writes the nodes of a tree in postorder.
+     */
+    private static class Writer implements GenericASTVisitor<Void, Void> {
+        private final String input;
+        private final Attributes attributes;
+        private ByteBuffer buffer;
+        private final StackGuard stackGuard = new StackGuard();
+
+        // the number of each token and declaration, in the order they're referred
+        // to.
+        private final Map<IToken, Integer> tokens = new IdentityHashMap<>();
+        private final Map<Declaration, Integer> declarations = new IdentityHashMap<>();
+        private int declarationsWritten = 0;
+
+        private int previousOffset = 0;
+        private int nodes = 0;
+
+        Writer(String input, Attributes attributes, ByteBuffer buffer) {
+            this.input = input;
+            this.attributes = attributes;
+            this.buffer = buffer;
+        }
+
+        private void ensure(int size) {
+            if (this.buffer.remaining() < size) {
+                ByteBuffer buffer = ByteBuffer.allocate(Math.max(this.buffer.capacity() * 2,
+                        this.buffer.position() + size));
+                this.buffer = buffer.put(this.buffer.flip());
+            }
+        }
+
+        private void putByte(int value) {
+            this.ensure(1);
+            this.buffer.put((byte) value);
+        }
+
+        private void putVarint(int value) {
+            this.ensure(5);
+            while ((value & ~0x7f) != 0) {
+                this.buffer.put((byte) (value & 0x7f | 0x80));
+                value >>>= 7;
+            }
+            this.buffer.put((byte) value);
+        }
+
+        private void putSigned(int value) {
+            this.putVarint(value << 1 ^ value >> 31);
+        }
+
+        private void putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.putVarint(bytes.length);
+            this.ensure(bytes.length);
+            this.buffer.put(bytes);
+        }
+
+        private void putType(Type type) {
+            this.putByte(type == null ? 0 : type.ordinal() + 1);
+        }
+
+        /**
+         * @return whether the text of the token is the input at its offset.
+         */
+        private boolean inInput(IToken token, TokenText text) {
+            int offset = token.getOffset();
+            int length = text.length();
+            if (offset < 0 || offset + length > this.input.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (text.charAt(i) != this.input.charAt(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void putToken(IToken token) {
+            Integer number = this.tokens.get(token);
+            if (number != null) {
+                this.putVarint(this.tokens.size() - number);
+                return;
+            }
+            this.putVarint(0);
+            this.tokens.put(token, this.tokens.size());
+            this.putByte(token.getKind().ordinal());
+            this.putSigned(token.getOffset() - this.previousOffset);
+            this.previousOffset = token.getOffset();
+            TokenText text = token.getTextView();
+            if (this.inInput(token, text)) {
+                this.putVarint(text.length() << 1);
+            } else {
+                byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+                this.putVarint(bytes.length << 1 | 1);
+                this.ensure(bytes.length);
+                this.buffer.put(bytes);
+            }
+            if (token.getKind() == Kind.NUM_LIT) {
+                this.putSigned(token.getIntValue());
+            }
+        }
+
+        private int declaration(Declaration declaration) {
+            Integer number = this.declarations.get(declaration);
+            if (number == null) {
+                number = this.declarations.size();
+                this.declarations.put(declaration, number);
+            }
+            return number;
+        }
+
+        private void putNode(NodeKind kind, ASTNode node) {
+            this.nodes++;
+            this.putByte(kind.ordinal());
+            this.putToken(node.getFirstToken());
+        }
+
+        private void putDeclaration(NodeKind kind, Declaration declaration, IToken ident) {
+            this.putNode(kind, declaration);
+            this.putToken(ident);
+            if (declaration instanceof ConstDec constDec) {
+                if (constDec.val instanceof Integer n) {
+                    this.putByte(Kind.NUM_LIT.ordinal());
+                    this.putSigned(n);
+                } else if (constDec.val instanceof Boolean b) {
+                    this.putByte(Kind.BOOLEAN_LIT.ordinal());
+                    this.putByte(b ? 1 : 0);
+                } else {
+                    this.putByte(Kind.STRING_LIT.ordinal());
+                    this.putString((String) constDec.val);
+                }
+            }
+            this.putVarint(this.declaration(declaration));
+            this.declarationsWritten++;
+            this.putType(this.attributes.getType(declaration));
+            this.putVarint(this.attributes.getNest(declaration));
+        }
+
+        /**
+         * write the nest and the declaration of an Ident or an ExpressionIdent,
+         * which the scope visitor binds every ident to.
+         */
+        private void putUse(ASTNode ident) {
+            Declaration declaration = this.attributes.getDec(ident);
+            if (declaration == null) {
+                throw new IllegalArgumentException("the ident at " + ident.getSourceLocation()
+                        + " isn't bound to a declaration, the tree isn't decorated");
+            }
+            this.putVarint(this.attributes.getNest(ident));
+            this.putVarint(this.declaration(declaration) + 1);
+        }
+
+        private void visit(ASTNode node) throws PLPException {
+            this.stackGuard.visit(node, this, null);
+        }
+
+        private void visitAll(List<? extends ASTNode> nodes) throws PLPException {
+            this.stackGuard.forEach(nodes, node -> node.visit(this, null));
+        }
+
+        @Override
+        public Void visitBlock(Block block, Void arg) throws PLPException {
+            this.visitAll(block.constDecs);
+            this.visitAll(block.varDecs);
+            this.visitAll(block.procedureDecs);
+            this.visit(block.statement);
+            this.putNode(NodeKind.BLOCK, block);
+            this.putVarint(block.constDecs.size());
+            this.putVarint(block.varDecs.size());
+            this.putVarint(block.procedureDecs.size());
+            return null;
+        }
+
+        @Override
+        public Void visitProgram(Program program, Void arg) throws PLPException {
+            this.visit(program.block);
+            this.putNode(NodeKind.PROGRAM, program);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementAssign(StatementAssign statementAssign, Void arg) throws PLPException {
+            this.visit(statementAssign.ident);
+            this.visit(statementAssign.expression);
+            this.putNode(NodeKind.STATEMENT_ASSIGN, statementAssign);
+            return null;
+        }
+
+        @Override
+        public Void visitVarDec(VarDec varDec, Void arg) throws PLPException {
+            this.putDeclaration(NodeKind.VAR_DEC, varDec, varDec.ident);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementCall(StatementCall statementCall, Void arg) throws PLPException {
+            this.visit(statementCall.ident);
+            this.putNode(NodeKind.STATEMENT_CALL, statementCall);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementInput(StatementInput statementInput, Void arg) throws PLPException {
+            this.visit(statementInput.ident);
+            this.putNode(NodeKind.STATEMENT_INPUT, statementInput);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementOutput(StatementOutput statementOutput, Void arg) throws PLPException {
+            this.visit(statementOutput.expression);
+            this.putNode(NodeKind.STATEMENT_OUTPUT, statementOutput);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementBlock(StatementBlock statementBlock, Void arg) throws PLPException {
+            this.visitAll(statementBlock.statements);
+            this.putNode(NodeKind.STATEMENT_BLOCK, statementBlock);
+            this.putVarint(statementBlock.statements.size());
+            return null;
+        }
+
+        @Override
+        public Void visitStatementIf(StatementIf statementIf, Void arg) throws PLPException {
+            this.visit(statementIf.expression);
+            this.visit(statementIf.statement);
+            this.putNode(NodeKind.STATEMENT_IF, statementIf);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementWhile(StatementWhile statementWhile, Void arg) throws PLPException {
+            this.visit(statementWhile.expression);
+            this.visit(statementWhile.statement);
+            this.putNode(NodeKind.STATEMENT_WHILE, statementWhile);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionBinary(ExpressionBinary expressionBinary, Void arg) throws PLPException {
+            this.visit(expressionBinary.e0);
+            this.visit(expressionBinary.e1);
+            this.putNode(NodeKind.EXPRESSION_BINARY, expressionBinary);
+            this.putType(this.attributes.getType(expressionBinary));
+            this.putToken(expressionBinary.op);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionIdent(ExpressionIdent expressionIdent, Void arg) throws PLPException {
+            this.putNode(NodeKind.EXPRESSION_IDENT, expressionIdent);
+            this.putType(this.attributes.getType(expressionIdent));
+            this.putUse(expressionIdent);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionNumLit(ExpressionNumLit expressionNumLit, Void arg) throws PLPException {
+            this.putNode(NodeKind.EXPRESSION_NUM_LIT, expressionNumLit);
+            this.putType(this.attributes.getType(expressionNumLit));
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStringLit(ExpressionStringLit expressionStringLit, Void arg)
+                throws PLPException {
+            this.putNode(NodeKind.EXPRESSION_STRING_LIT, expressionStringLit);
+            this.putType(this.attributes.getType(expressionStringLit));
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Void arg)
+                throws PLPException {
+            this.putNode(NodeKind.EXPRESSION_BOOLEAN_LIT, expressionBooleanLit);
+            this.putType(this.attributes.getType(expressionBooleanLit));
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionError(ExpressionError expressionError, Void arg) throws PLPException {
+            this.putNode(NodeKind.EXPRESSION_ERROR, expressionError);
+            this.putType(this.attributes.getType(expressionError));
+            return null;
+        }
+
+        @Override
+        public Void visitProcedure(ProcDec procDec, Void arg) throws PLPException {
+            this.visit(procDec.block);
+            this.putDeclaration(NodeKind.PROC_DEC, procDec, procDec.ident);
+            return null;
+        }
+
+        @Override
+        public Void visitConstDec(ConstDec constDec, Void arg) throws PLPException {
+            this.putDeclaration(NodeKind.CONST_DEC, constDec, constDec.ident);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementEmpty(StatementEmpty statementEmpty, Void arg) throws PLPException {
+            this.putNode(NodeKind.STATEMENT_EMPTY, statementEmpty);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementError(StatementError statementError, Void arg) throws PLPException {
+            this.putNode(NodeKind.STATEMENT_ERROR, statementError);
+            return null;
+        }
+
+        @Override
+        public Void visitIdent(Ident ident, Void arg) throws PLPException {
+            this.putNode(NodeKind.IDENT, ident);
+            this.putUse(ident);
+            return null;
+        }
+
+    }
+
+    /**
+     * reads the nodes in postorder, with a stack of the nodes whose parent isn't
+     * read yet, so it doesn't recurse on deep trees.
+     */
+    private static class Reader {
+        private final ByteBuffer buffer;
+        private final String input;
+        private final LineIndex lines;
+
+        private final IToken[] tokens;
+        private int tokenCount = 0;
+        private int previousOffset = 0;
+
+        private final Declaration[] declarations;
+        private final int nodeCount;
+
+        // the idents, and the numbers of the declarations they're bound to, which
+        // are set once all the declarations are read.
+        private ASTNode[] uses = new ASTNode[64];
+        private int[] useDeclarations = new int[64];
+        private int useCount = 0;
+
+        private ASTNode[] stack = new ASTNode[64];
+        private int depth = 0;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("the buffer isn't a serialized tree");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IllegalArgumentException(
+                        "the serialized tree has version " + version + " instead of " + VERSION);
+            }
+            int tokenCount = buffer.getInt();
+            int declarationCount = buffer.getInt();
+            this.nodeCount = buffer.getInt();
+            // every token, declaration and node takes at least one byte.
+            if (Math.min(Math.min(tokenCount, declarationCount), this.nodeCount) < 0
+                    || Math.max(Math.max(tokenCount, declarationCount), this.nodeCount) > buffer.remaining()) {
+                throw new IllegalArgumentException("the serialized tree is corrupt");
+            }
+            this.tokens = new IToken[tokenCount];
+            this.declarations = new Declaration[declarationCount];
+            int length = this.getVarint();
+            this.input = this.getString(length);
+            this.lines = new LineIndex(this.input);
+        }
+
+        private int getVarint() {
+            int value = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = this.buffer.get();
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private int getSigned() {
+            int value = this.getVarint();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        private String getString(int length) {
+            String value;
+            if (this.buffer.hasArray()) {
+                int position = this.buffer.position();
+                value = new String(this.buffer.array(), this.buffer.arrayOffset() + position, length,
+                        StandardCharsets.UTF_8);
+                this.buffer.position(position + length);
+            } else {
+                byte[] bytes = new byte[length];
+                this.buffer.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return value;
+        }
+
+        private Type getType() {
+            int type = this.buffer.get();
+            return type == 0 ? null : TYPES[type - 1];
+        }
+
+        private IToken getToken() {
+            int distance = this.getVarint();
+            if (distance != 0) {
+                return this.tokens[this.tokenCount - distance];
+            }
+            Kind kind = KINDS[this.buffer.get()];
+            int offset = this.previousOffset + this.getSigned();
+            this.previousOffset = offset;
+            int length = this.getVarint();
+            TokenText text = (length & 1) == 0 ? new TokenText(this.input, offset, length >>> 1)
+                    : new TokenText(this.getString(length >>> 1));
+            int value = kind == Kind.NUM_LIT ? this.getSigned() : -1;
+            IToken token = new TokenImp(kind, offset, this.lines, text, value);
+            this.tokens[this.tokenCount++] = token;
+            return token;
+        }
+
+        private void push(ASTNode node) {
+            if (this.depth == this.stack.length) {
+                this.stack = Arrays.copyOf(this.stack, this.depth * 2);
+            }
+            this.stack[this.depth++] = node;
+        }
+
+        private ASTNode pop() {
+            if (this.depth == 0) {
+                throw new IllegalArgumentException("a node is missing children");
+            }
+            ASTNode node = this.stack[--this.depth];
+            this.stack[this.depth] = null;
+            return node;
+        }
+
+        /**
+         * @return the nodes on top of the stack, in the order they were written.
+         */
+        @SuppressWarnings("unchecked")
+        private <T extends ASTNode> List<T> pop(int count) {
+            if (count > this.depth) {
+                throw new IllegalArgumentException("a node is missing children");
+            }
+            List<T> nodes = new ArrayList<>(count);
+            for (int i = this.depth - count; i < this.depth; i++) {
+                nodes.add((T) this.stack[i]);
+                this.stack[i] = null;
+            }
+            this.depth -= count;
+            return nodes;
+        }
+
+        private <T extends Declaration> T declaration(T declaration) {
+            int number = this.getVarint();
+            this.declarations[number] = declaration;
+            declaration.setType(this.getType());
+            declaration.setNest(this.getVarint());
+            return declaration;
+        }
+
+        private void use(ASTNode node) {
+            int number = this.getVarint() - 1;
+            if (number >= 0) {
+                if (this.useCount == this.uses.length) {
+                    this.uses = Arrays.copyOf(this.uses, this.useCount * 2);
+                    this.useDeclarations = Arrays.copyOf(this.useDeclarations, this.useCount * 2);
+                }
+                this.uses[this.useCount] = node;
+                this.useDeclarations[this.useCount++] = number;
+            }
+        }
+
+        private Object value() {
+            Kind kind = KINDS[this.buffer.get()];
+            return switch (kind) {
+                case NUM_LIT -> this.getSigned();
+                case BOOLEAN_LIT -> this.buffer.get() != 0;
+                case STRING_LIT -> this.getString(this.getVarint());
+                default -> throw new IllegalArgumentException("the value of a ConstDec isn't a literal");
+            };
+        }
+
+        private <T extends Expression> T expression(T expression) {
+            expression.setType(this.getType());
+            return expression;
+        }
+
+        Program read() {
+            for (int i = 0; i < this.nodeCount; i++) {
+                NodeKind kind = NODE_KINDS[this.buffer.get()];
+                IToken firstToken = this.getToken();
+                ASTNode node = switch (kind) {
+                    case PROGRAM -> new Program(firstToken, (Block) this.pop());
+                    case BLOCK -> {
+                        int constCount = this.getVarint();
+                        int varCount = this.getVarint();
+                        int procCount = this.getVarint();
+                        Statement statement = (Statement) this.pop();
+                        List<ProcDec> procDecs = this.pop(procCount);
+                        List<VarDec> varDecs = this.pop(varCount);
+                        List<ConstDec> constDecs = this.pop(constCount);
+                        yield new Block(firstToken, constDecs, varDecs, procDecs, statement);
+                    }
+                    case CONST_DEC -> this.declaration(new ConstDec(firstToken, this.getToken(), this.value()));
+                    case VAR_DEC -> this.declaration(new VarDec(firstToken, this.getToken()));
+                    case PROC_DEC -> this.declaration(new ProcDec(firstToken, this.getToken(), (Block) this.pop()));
+                    case STATEMENT_ASSIGN -> {
+                        Expression expression = (Expression) this.pop();
+                        yield new StatementAssign(firstToken, (Ident) this.pop(), expression);
+                    }
+                    case STATEMENT_CALL -> new StatementCall(firstToken, (Ident) this.pop());
+                    case STATEMENT_INPUT -> new StatementInput(firstToken, (Ident) this.pop());
+                    case STATEMENT_OUTPUT -> new StatementOutput(firstToken, (Expression) this.pop());
+                    case STATEMENT_BLOCK -> new StatementBlock(firstToken, this.pop(this.getVarint()));
+                    case STATEMENT_IF -> {
+                        Statement statement = (Statement) this.pop();
+                        yield new StatementIf(firstToken, (Expression) this.pop(), statement);
+                    }
+                    case STATEMENT_WHILE -> {
+                        Statement statement = (Statement) this.pop();
+                        yield new StatementWhile(firstToken, (Expression) this.pop(), statement);
+                    }
+                    case STATEMENT_EMPTY -> new StatementEmpty(firstToken);
+                    case STATEMENT_ERROR -> new StatementError(firstToken);
+                    case EXPRESSION_BINARY -> {
+                        Type type = this.getType();
+                        Expression e1 = (Expression) this.pop();
+                        Expression e0 = (Expression) this.pop();
+                        ExpressionBinary binary = new ExpressionBinary(firstToken, e0, this.getToken(), e1);
+                        binary.setType(type);
+                        yield binary;
+                    }
+                    case EXPRESSION_IDENT -> {
+                        ExpressionIdent ident = this.expression(new ExpressionIdent(firstToken));
+                        ident.setNest(this.getVarint());
+                        this.use(ident);
+                        yield ident;
+                    }
+                    case EXPRESSION_NUM_LIT -> this.expression(new ExpressionNumLit(firstToken));
+                    case EXPRESSION_STRING_LIT -> this.expression(new ExpressionStringLit(firstToken));
+                    case EXPRESSION_BOOLEAN_LIT -> this.expression(new ExpressionBooleanLit(firstToken));
+                    case EXPRESSION_ERROR -> this.expression(new ExpressionError(firstToken));
+                    case IDENT -> {
+                        Ident ident = new Ident(firstToken);
+                        ident.setNest(this.getVarint());
+                        this.use(ident);
+                        yield ident;
+                    }
+                };
+                this.push(node);
+            }
+            if (this.depth != 1 || !(this.stack[0] instanceof Program)) {
+                throw new IllegalArgumentException("the serialized tree isn't a program");
+            }
+            // the bindings, once all the declarations exist.
+            for (int i = 0; i < this.useCount; i++) {
+                Declaration declaration = this.declarations[this.useDeclarations[i]];
+                if (declaration == null) {
+                    throw new IllegalArgumentException("a declaration isn't in the serialized tree");
+                }
+                if (this.uses[i] instanceof Ident ident) {
+                    ident.setDec(declaration);
+                } else {
+                    ((ExpressionIdent) this.uses[i]).setDec(declaration);
+                }
+            }
+            return (Program) this.stack[0];
+        }
+
+    }
+
+}
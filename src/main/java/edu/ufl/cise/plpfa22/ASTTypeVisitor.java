@@ -4,7 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import edu.ufl.cise.plpfa22.ast.ASTNode;
-import edu.ufl.cise.plpfa22.ast.ASTVisitor;
+import edu.ufl.cise.plpfa22.ast.Attributes;
 import edu.ufl.cise.plpfa22.ast.Block;
 import edu.ufl.cise.plpfa22.ast.ConstDec;
 import edu.ufl.cise.plpfa22.ast.Declaration;
@@ -14,10 +14,10 @@ import edu.ufl.cise.plpfa22.ast.ExpressionBooleanLit;
 import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
 import edu.ufl.cise.plpfa22.ast.ExpressionNumLit;
 import edu.ufl.cise.plpfa22.ast.ExpressionStringLit;
+import edu.ufl.cise.plpfa22.ast.GenericASTVisitor;
 import edu.ufl.cise.plpfa22.ast.Ident;
 import edu.ufl.cise.plpfa22.ast.ProcDec;
 import edu.ufl.cise.plpfa22.ast.Program;
-import edu.ufl.cise.plpfa22.ast.Statement;
 import edu.ufl.cise.plpfa22.ast.StatementAssign;
 import edu.ufl.cise.plpfa22.ast.StatementBlock;
 import edu.ufl.cise.plpfa22.ast.StatementCall;
@@ -29,11 +29,32 @@ import edu.ufl.cise.plpfa22.ast.StatementWhile;
 import edu.ufl.cise.plpfa22.ast.Types.Type;
 import edu.ufl.cise.plpfa22.ast.VarDec;
 
-public class ASTTypeVisitor implements ASTVisitor {
+public class ASTTypeVisitor implements GenericASTVisitor<ASTNode, Type> {
 
     // if the AST changed in this pass (some node get it's type)
     private boolean changed = false;
 
+    private final StackGuard stackGuard = new StackGuard();
+
+    // where the types are stored, and the declarations are read.
+    private final Attributes attributes;
+
+    public ASTTypeVisitor() {
+        this(Attributes.TREE);
+    }
+
+    public ASTTypeVisitor(Attributes attributes) {
+        this.attributes = attributes;
+    }
+
+    private Type type(ASTNode node) {
+        return this.attributes.getType(node);
+    }
+
+    private Declaration dec(ASTNode node) {
+        return this.attributes.getDec(node);
+    }
+
     /**
      * set the type of an expression and set this.change to true. Use this method to
      * avoid forget setting this.change. If it's already typed, check if the type is
@@ -48,11 +69,11 @@ public class ASTTypeVisitor implements ASTVisitor {
             // bug
             assert false;
         }
-        if (expr.getType() != null && expr.getType() != type) {
+        if (this.type(expr) != null && this.type(expr) != type) {
             throw new TypeCheckException("type conflict", expr.firstToken.getSourceLocation());
-        } else if (expr.getType() == null) {
+        } else if (this.type(expr) == null) {
             this.changed = true;
-            expr.setType(type);
+            this.attributes.setType(expr, type);
         }
     }
 
@@ -66,11 +87,11 @@ public class ASTTypeVisitor implements ASTVisitor {
      * @throws TypeCheckException
      */
     private void setDecType(Declaration dec, Type type) throws TypeCheckException {
-        if (dec.getType() != null && dec.getType() != type) {
+        if (this.type(dec) != null && this.type(dec) != type) {
             throw new TypeCheckException("type conflict", dec.firstToken.getSourceLocation());
-        } else if (dec.getType() == null) {
+        } else if (this.type(dec) == null) {
             this.changed = true;
-            dec.setType(type);
+            this.attributes.setType(dec, type);
         }
     }
 
@@ -83,8 +104,8 @@ public class ASTTypeVisitor implements ASTVisitor {
      * @return
      * @throws PLPException
      */
-    private ASTNode visitSetUntyped(ASTNode node, Object arg, ASTNode untyped) throws PLPException {
-        ASTNode res = (ASTNode) node.visit(this, arg);
+    private ASTNode visitSetUntyped(ASTNode node, Type arg, ASTNode untyped) throws PLPException {
+        ASTNode res = this.stackGuard.visit(node, this, arg);
         if (untyped == null) {
             return res;
         } else {
@@ -92,28 +113,47 @@ public class ASTTypeVisitor implements ASTVisitor {
         }
     }
 
+    /**
+     * visit the nodes with arg, return the first untyped node.
+     * 
+     * @param nodes   the nodes to visit
+     * @param arg     the arg to the nodes
+     * @param untyped current untyped node
+     * @return
+     * @throws PLPException
+     */
+    private ASTNode visitAllSetUntyped(List<? extends ASTNode> nodes, Type arg, ASTNode untyped)
+            throws PLPException {
+        ASTNode[] first = { untyped };
+        this.stackGuard.forEach(nodes, node -> {
+            ASTNode res = node.visit(this, arg);
+            if (first[0] == null) {
+                first[0] = res;
+            }
+        });
+        return first[0];
+    }
+
     @Override
-    public Object visitBlock(Block block, Object arg) throws PLPException {
+    public ASTNode visitBlock(Block block, Type arg) throws PLPException {
         ASTNode untypedNode = null;
         for (ConstDec constDec : block.constDecs) {
             constDec.visit(this, null);
         }
 
-        for (ProcDec procDec : block.procedureDecs) {
-            untypedNode = this.visitSetUntyped(procDec, null, untypedNode);
-        }
+        untypedNode = this.visitAllSetUntyped(block.procedureDecs, null, untypedNode);
         untypedNode = this.visitSetUntyped(block.statement, null, untypedNode);
         return untypedNode;
     }
 
     /* arg: if it's the typing visit. */
     @Override
-    public Object visitProgram(Program program, Object arg) throws PLPException {
+    public ASTNode visitProgram(Program program, Type arg) throws PLPException {
         ASTNode firstUntypedNode;
         // visit the children if anything is typed on the last visit.
         do {
             this.changed = false;
-            firstUntypedNode = (ASTNode) program.block.visit(this, null);
+            firstUntypedNode = program.block.visit(this, null);
         } while (this.changed);
 
         if (firstUntypedNode != null) {
@@ -125,35 +165,35 @@ public class ASTTypeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitStatementAssign(StatementAssign statementAssign, Object arg) throws PLPException {
+    public ASTNode visitStatementAssign(StatementAssign statementAssign, Type arg) throws PLPException {
         Ident ident = statementAssign.ident;
         Expression expression = statementAssign.expression;
-        if (ident.getDec() instanceof ConstDec) {
+        if (this.dec(ident) instanceof ConstDec) {
             throw new TypeCheckException("can't assign to const variables", ident.getSourceLocation());
         }
-        if (ident.getDec().getType() == null && expression.getType() != null) {
+        if (this.type(this.dec(ident)) == null && this.type(expression) != null) {
             // set the ident's type by expression type
-            if (expression.getType() == Type.PROCEDURE) {
+            if (this.type(expression) == Type.PROCEDURE) {
                 throw new TypeCheckException("can't assign to procedures", ident.getSourceLocation());
             }
-            this.setDecType(ident.getDec(), expression.getType());
+            this.setDecType(this.dec(ident), this.type(expression));
             return null;
-        } else if (ident.getDec().getType() != null && expression.getType() == null) {
+        } else if (this.type(this.dec(ident)) != null && this.type(expression) == null) {
             // visit the expression knowing that it has this type
-            if (ident.getDec().getType() == Type.PROCEDURE) {
+            if (this.type(this.dec(ident)) == Type.PROCEDURE) {
                 throw new TypeCheckException("can't assign to procedures", ident.getSourceLocation());
             }
-            return expression.visit(this, ident.getDec().getType());
-        } else if (ident.getDec().getType() != null && expression.getType() != null) {
+            return expression.visit(this, this.type(this.dec(ident)));
+        } else if (this.type(this.dec(ident)) != null && this.type(expression) != null) {
             // inconsistant type.
-            if (ident.getDec().getType() != expression.getType()) {
+            if (this.type(this.dec(ident)) != this.type(expression)) {
                 throw new TypeCheckException("variable type error", ident.getSourceLocation());
             } else {
                 // is it possible that an expression has type but it still needs to be visited?
-                if (ident.getDec().getType() == Type.PROCEDURE) {
+                if (this.type(this.dec(ident)) == Type.PROCEDURE) {
                     throw new TypeCheckException("can't assign to procedures", ident.getSourceLocation());
                 }
-                return expression.visit(this, expression.getType());
+                return expression.visit(this, this.type(expression));
             }
         } else {
             // both are null, visit the expression and deal with this in the next pass.
@@ -163,15 +203,15 @@ public class ASTTypeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitVarDec(VarDec varDec, Object arg) throws PLPException {
+    public ASTNode visitVarDec(VarDec varDec, Type arg) throws PLPException {
         assert false;// shouldn't visit var declaration.
         return null;
     }
 
     @Override
-    public Object visitStatementCall(StatementCall statementCall, Object arg) throws PLPException {
-        if (statementCall.ident.getDec().getType() != null
-                && statementCall.ident.getDec().getType() != Type.PROCEDURE) {
+    public ASTNode visitStatementCall(StatementCall statementCall, Type arg) throws PLPException {
+        if (this.type(this.dec(statementCall.ident)) != null
+                && this.type(this.dec(statementCall.ident)) != Type.PROCEDURE) {
             throw new TypeCheckException("can't call a statement that is not a procedure",
                     statementCall.ident.firstToken.getSourceLocation());
         }
@@ -179,9 +219,9 @@ public class ASTTypeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitStatementInput(StatementInput statementInput, Object arg) throws PLPException {
+    public ASTNode visitStatementInput(StatementInput statementInput, Type arg) throws PLPException {
         Ident ident = statementInput.ident;
-        Type identType = ident.getDec().getType();
+        Type identType = this.type(this.dec(ident));
         if (identType == null) {
             return ident;
         }
@@ -193,9 +233,9 @@ public class ASTTypeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitStatementOutput(StatementOutput statementOutput, Object arg) throws PLPException {
+    public ASTNode visitStatementOutput(StatementOutput statementOutput, Type arg) throws PLPException {
         Expression expression = statementOutput.expression;
-        Type exprType = expression.getType();
+        Type exprType = this.type(expression);
         if (exprType == null) {
             return expression.visit(this, null);
         } else {
@@ -208,19 +248,14 @@ public class ASTTypeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitStatementBlock(StatementBlock statementBlock, Object arg) throws PLPException {
-        ASTNode untyped = null;
-        for (Statement statement : statementBlock.statements) {
-            untyped = this.visitSetUntyped(statement, arg, untyped);
-        }
-
-        return untyped;
+    public ASTNode visitStatementBlock(StatementBlock statementBlock, Type arg) throws PLPException {
+        return this.visitAllSetUntyped(statementBlock.statements, arg, null);
     }
 
     @Override
-    public Object visitStatementIf(StatementIf statementIf, Object arg) throws PLPException {
+    public ASTNode visitStatementIf(StatementIf statementIf, Type arg) throws PLPException {
         Expression expression = statementIf.expression;
-        Type exprType = expression.getType();
+        Type exprType = this.type(expression);
         ASTNode untyped = null;
         if (exprType != null && exprType != Type.BOOLEAN) {
             throw new TypeCheckException("expression in statementIf shoule be type boolean",
@@ -234,9 +269,9 @@ public class ASTTypeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitStatementWhile(StatementWhile statementWhile, Object arg) throws PLPException {
+    public ASTNode visitStatementWhile(StatementWhile statementWhile, Type arg) throws PLPException {
         Expression expression = statementWhile.expression;
-        Type exprType = expression.getType();
+        Type exprType = this.type(expression);
         ASTNode untyped = null;
         if (exprType != null && exprType != Type.BOOLEAN) {
             throw new TypeCheckException("expression in statementIf shoule be type boolean",
@@ -249,18 +284,18 @@ public class ASTTypeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitExpressionBinary(ExpressionBinary expressionBinary, Object arg) throws PLPException {
+    public ASTNode visitExpressionBinary(ExpressionBinary expressionBinary, Type arg) throws PLPException {
         // check arg type
-        if ((Type) arg != null) {
-            this.setExprType(expressionBinary, (Type) arg);
+        if (arg != null) {
+            this.setExprType(expressionBinary, arg);
         }
 
         // make sure that if there's only one expression that doesn't have type, set it
         // to expression 0
         // that is, there will only be null x null, not-null x null, not-null x not-null
 
-        Expression expression0 = expressionBinary.e0.getType() == null ? expressionBinary.e1 : expressionBinary.e0;
-        Expression expression1 = expressionBinary.e0.getType() == null ? expressionBinary.e0 : expressionBinary.e1;
+        Expression expression0 = this.type(expressionBinary.e0) == null ? expressionBinary.e1 : expressionBinary.e0;
+        Expression expression1 = this.type(expressionBinary.e0) == null ? expressionBinary.e0 : expressionBinary.e1;
         ASTNode untyped = null;
 
         switch (expressionBinary.op.getKind()) {
@@ -284,25 +319,25 @@ public class ASTTypeVisitor implements ASTVisitor {
                         assert false;
                     }
                 }
-                if (expressionBinary.getType() != null) {
+                if (this.type(expressionBinary) != null) {
                     // _ x _ -> not-null
-                    if (!allowedKindLeft.contains(expressionBinary.getType())) {
+                    if (!allowedKindLeft.contains(this.type(expressionBinary))) {
                         throw new TypeCheckException("wrong type for expressionBinary",
                                 expressionBinary.getFirstToken().getSourceLocation());
                     }
-                    untyped = this.visitSetUntyped(expression0, expressionBinary.getType(), untyped);
-                    untyped = this.visitSetUntyped(expression1, expressionBinary.getType(), untyped);
+                    untyped = this.visitSetUntyped(expression0, this.type(expressionBinary), untyped);
+                    untyped = this.visitSetUntyped(expression1, this.type(expressionBinary), untyped);
                 } else {
                     // _ x _ -> null
-                    if (expression0.getType() != null) {
+                    if (this.type(expression0) != null) {
                         // not-null x _ -> null
-                        if (!allowedKindLeft.contains(expression0.getType())) {
+                        if (!allowedKindLeft.contains(this.type(expression0))) {
                             throw new TypeCheckException("wrong type for expressionBinary",
                                     expressionBinary.getFirstToken().getSourceLocation());
                         }
-                        this.setExprType(expressionBinary, expression0.getType());
+                        this.setExprType(expressionBinary, this.type(expression0));
                         untyped = this.visitSetUntyped(expression0, null, untyped);
-                        untyped = this.visitSetUntyped(expression1, expression0.getType(), untyped);
+                        untyped = this.visitSetUntyped(expression1, this.type(expression0), untyped);
                     } else {
                         // null x null -> null
                         untyped = this.visitSetUntyped(expression0, null, untyped);
@@ -314,19 +349,19 @@ public class ASTTypeVisitor implements ASTVisitor {
             case EQ, NEQ, LT, LE, GT, GE -> {
                 // a x a -> BOOLEAN
                 // a \in {NUMBER, BOOLEAN, STRING}
-                if (expressionBinary.getType() != null && expressionBinary.getType() != Type.BOOLEAN) {
+                if (this.type(expressionBinary) != null && this.type(expressionBinary) != Type.BOOLEAN) {
                     throw new TypeCheckException("This expressionBinary should have BOOLEAN type",
                             expressionBinary.getFirstToken().getSourceLocation());
                 }
                 this.setExprType(expressionBinary, Type.BOOLEAN);
-                if (expression0.getType() == null) {
+                if (this.type(expression0) == null) {
                     // null x null -> BOOLEAN
                     untyped = this.visitSetUntyped(expression0, null, untyped);
                     untyped = this.visitSetUntyped(expression1, null, untyped);
                 } else {
                     // not-null x _ -> BOOLEAN
                     untyped = this.visitSetUntyped(expression0, null, untyped);
-                    untyped = this.visitSetUntyped(expression1, expression0.getType(), untyped);
+                    untyped = this.visitSetUntyped(expression1, this.type(expression0), untyped);
                 }
 
             }
@@ -339,14 +374,14 @@ public class ASTTypeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitExpressionIdent(ExpressionIdent expressionIdent, Object arg) throws PLPException {
+    public ASTNode visitExpressionIdent(ExpressionIdent expressionIdent, Type arg) throws PLPException {
 
-        if ((Type) arg != null) {
-            this.setExprType(expressionIdent, (Type) arg);
-            this.setDecType(expressionIdent.getDec(), (Type) arg);
+        if (arg != null) {
+            this.setExprType(expressionIdent, arg);
+            this.setDecType(this.dec(expressionIdent), arg);
         }
-        if (expressionIdent.getDec().getType() != null) {
-            this.setExprType(expressionIdent, expressionIdent.getDec().getType());
+        if (this.type(this.dec(expressionIdent)) != null) {
+            this.setExprType(expressionIdent, this.type(this.dec(expressionIdent)));
         } else {
             return expressionIdent;
         }
@@ -354,44 +389,44 @@ public class ASTTypeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitExpressionNumLit(ExpressionNumLit expressionNumLit, Object arg) throws PLPException {
-        if ((Type) arg != null) {
-            this.setExprType(expressionNumLit, (Type) arg);
+    public ASTNode visitExpressionNumLit(ExpressionNumLit expressionNumLit, Type arg) throws PLPException {
+        if (arg != null) {
+            this.setExprType(expressionNumLit, arg);
         }
         this.setExprType(expressionNumLit, Type.NUMBER);
         return null;
     }
 
     @Override
-    public Object visitExpressionStringLit(ExpressionStringLit expressionStringLit, Object arg) throws PLPException {
-        if ((Type) arg != null) {
-            this.setExprType(expressionStringLit, (Type) arg);
+    public ASTNode visitExpressionStringLit(ExpressionStringLit expressionStringLit, Type arg) throws PLPException {
+        if (arg != null) {
+            this.setExprType(expressionStringLit, arg);
         }
         this.setExprType(expressionStringLit, Type.STRING);
         return null;
     }
 
     @Override
-    public Object visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Object arg) throws PLPException {
-        if ((Type) arg != null) {
-            this.setExprType(expressionBooleanLit, (Type) arg);
+    public ASTNode visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Type arg) throws PLPException {
+        if (arg != null) {
+            this.setExprType(expressionBooleanLit, arg);
         }
         this.setExprType(expressionBooleanLit, Type.BOOLEAN);
         return null;
     }
 
     @Override
-    public Object visitProcedure(ProcDec procDec, Object arg) throws PLPException {
-        if (procDec.getType() == null) {
+    public ASTNode visitProcedure(ProcDec procDec, Type arg) throws PLPException {
+        if (this.type(procDec) == null) {
             this.setDecType(procDec, Type.PROCEDURE);
         }
-        return procDec.block.visit(this, null);
+        return this.stackGuard.visit(procDec.block, this, null);
 
     }
 
     @Override
-    public Object visitConstDec(ConstDec constDec, Object arg) throws PLPException {
-        if (constDec.getType() == null) {
+    public ASTNode visitConstDec(ConstDec constDec, Type arg) throws PLPException {
+        if (this.type(constDec) == null) {
             if (constDec.val instanceof Integer) {
                 this.setDecType(constDec, Type.NUMBER);
             } else if (constDec.val instanceof String) {
@@ -407,12 +442,12 @@ public class ASTTypeVisitor implements ASTVisitor {
     }
 
     @Override
-    public Object visitStatementEmpty(StatementEmpty statementEmpty, Object arg) throws PLPException {
+    public ASTNode visitStatementEmpty(StatementEmpty statementEmpty, Type arg) throws PLPException {
         return null;
     }
 
     @Override
-    public Object visitIdent(Ident ident, Object arg) throws PLPException {
+    public ASTNode visitIdent(Ident ident, Type arg) throws PLPException {
         assert false; // shouldn't visit Ident
         return null;
     }
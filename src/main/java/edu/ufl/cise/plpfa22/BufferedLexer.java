@@ -0,0 +1,108 @@
+package edu.ufl.cise.plpfa22;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+/**
+ * An ILexer that is a cursor over a TokenBuffer. Kinds are read from the
+ * buffer by index, and an IToken is only created by next() and peek().
+ */
+public class BufferedLexer implements ILexer {
+    private final TokenBuffer buffer;
+
+    // the index of the next token in the buffer
+    private int index;
+
+    // the token at index, if it has been created by peek().
+    private IToken peeked;
+
+    public BufferedLexer(TokenBuffer buffer) {
+        this(buffer, 0);
+    }
+
+    /**
+     * @param buffer
+     * @param index the index of the first token to return
+     */
+    public BufferedLexer(TokenBuffer buffer, int index) {
+        this.buffer = buffer;
+        this.index = index;
+    }
+
+    public TokenBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * @return the index of the next token in the buffer.
+     */
+    public int index() {
+        return this.index;
+    }
+
+    /**
+     * move the cursor to a token of the buffer.
+     */
+    void seek(int index) {
+        this.index = index;
+        this.peeked = null;
+    }
+
+    /**
+     * throw the lexical error of the buffer if the cursor has reached it.
+     */
+    private void checkError() throws LexicalException {
+        if (this.index == this.buffer.size()) {
+            throw this.buffer.getError();
+        }
+    }
+
+    @Override
+    public IToken next() throws LexicalException {
+        IToken res = this.peek();
+        this.skip();
+        return res;
+    }
+
+    @Override
+    public IToken peek() throws LexicalException {
+        if (this.peeked == null) {
+            this.checkError();
+            this.peeked = this.buffer.token(this.index);
+        }
+        return this.peeked;
+    }
+
+    @Override
+    public IToken peek(int k) throws LexicalException {
+        if (k == 0) {
+            return this.peek();
+        }
+        // like LexerImp, stop at EOF, or throw the error if it comes first.
+        int last = this.buffer.size() - 1;
+        int target = this.index + k;
+        if (target > last) {
+            if (this.buffer.getError() != null) {
+                throw this.buffer.getError();
+            }
+            target = last;
+        }
+        return this.buffer.token(target);
+    }
+
+    @Override
+    public Kind peekKind() throws LexicalException {
+        this.checkError();
+        return this.buffer.kind(this.index);
+    }
+
+    @Override
+    public void skip() throws LexicalException {
+        this.checkError();
+        this.peeked = null;
+        // like LexerImp, keep returning EOF at the end of the input.
+        if (this.buffer.kind(this.index) != Kind.EOF) {
+            this.index++;
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+package edu.ufl.cise.plpfa22;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A LexerImp over UTF-8 encoded bytes, which doesn't decode the input into a
+ * String first. All the characters of a PLP program are ASCII, except the ones
+ * in string literals and comments, so the DFA runs on the bytes as if they were
+ * characters. A non-ASCII byte outside a string or a comment is an illegal
+ * character, like the character it's part of.
+ *
+ * The positions of the lexer are byte offsets. The text of a token is a view of
+ * the bytes, except for a string literal containing non-ASCII characters, which
+ * is the only text that is decoded. The columns of the line index still count
+ * UTF-16 characters, as in the other lexers.
+ */
+public class ByteLexer extends LexerImp {
+    // the input, the byte at position i is input[offset + i].
+    private final byte[] input;
+    private final int offset;
+    private final int length;
+
+    // the input as characters, one per byte.
+    private final AsciiSequence view;
+
+    public ByteLexer(byte[] input) {
+        this(input, 0, input.length, new SymbolInterner());
+    }
+
+    /**
+     * @param input    the input is input[offset, offset + length)
+     * @param interner the interner of the compilation
+     */
+    public ByteLexer(byte[] input, int offset, int length, SymbolInterner interner) {
+        this(new AsciiSequence(input, offset, length), interner);
+    }
+
+    private ByteLexer(AsciiSequence view, SymbolInterner interner) {
+        super(interner, new Utf8LineIndex(view));
+        this.input = view.bytes;
+        this.offset = view.offset;
+        this.length = view.length;
+        this.view = view;
+    }
+
+    /**
+     * @param input the bytes between the position and the limit of the buffer are
+     *              the input. The position of the buffer isn't changed.
+     */
+    public ByteLexer(ByteBuffer input) {
+        this(input, new SymbolInterner());
+    }
+
+    /**
+     * @param input    the bytes between the position and the limit of the buffer
+     *                 are the input. The position of the buffer isn't changed. The
+     *                 bytes of a buffer without an accessible array (e.g. a direct
+     *                 one) are copied once into an array.
+     * @param interner the interner of the compilation
+     */
+    public ByteLexer(ByteBuffer input, SymbolInterner interner) {
+        this(array(input), input.hasArray() ? input.arrayOffset() + input.position() : 0, input.remaining(),
+                interner);
+    }
+
+    private static byte[] array(ByteBuffer input) {
+        if (input.hasArray()) {
+            return input.array();
+        }
+        byte[] bytes = new byte[input.remaining()];
+        input.get(input.position(), bytes);
+        return bytes;
+    }
+
+    @Override
+    protected char charAt(int index) {
+        return index < this.length ? (char) (this.input[this.offset + index] & 0xff) : 0;
+    }
+
+    @Override
+    protected TokenText text(int start, int end) {
+        if (start < end && this.input[this.offset + start] == '"') {
+            for (int i = this.offset + start; i < this.offset + end; i++) {
+                if (this.input[i] < 0) {
+                    // a string literal with non-ASCII characters.
+                    return new TokenText(new String(this.input, this.offset + start, end - start,
+                            StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return new TokenText(this.view, start, end - start);
+    }
+
+    @Override
+    protected int intern(int start, int end, int hash) {
+        return this.getInterner().intern(this.view, start, end - start, hash);
+    }
+
+    @Override
+    protected TokenText identText(int start, int end, String name) {
+        return new TokenText(this.view, start, end - start, name);
+    }
+
+    /**
+     * a line index whose offsets are the ones of UTF-8 bytes.
+     */
+    private static final class Utf8LineIndex extends LineIndex {
+        private final AsciiSequence view;
+
+        Utf8LineIndex(AsciiSequence view) {
+            super(view);
+            this.view = view;
+        }
+
+        /**
+         * the continuation bytes of the UTF-8 sequences aren't characters, but the
+         * first byte of a 4 byte sequence is 2 UTF-16 characters.
+         */
+        @Override
+        protected int width(int start, int end) {
+            int width = end - start;
+            for (int i = this.view.offset + start; i < this.view.offset + end; i++) {
+                byte b = this.view.bytes[i];
+                if ((b & 0xc0) == 0x80) {
+                    width--;
+                } else if ((b & 0xf8) == 0xf0) {
+                    width++;
+                }
+            }
+            return width;
+        }
+
+    }
+
+    /**
+     * ASCII bytes as a CharSequence, without copying them.
+     */
+    private static final class AsciiSequence implements CharSequence {
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+
+        AsciiSequence(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return this.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (this.bytes[this.offset + index] & 0xff);
+        }
+
+        @Override
+        public String subSequence(int start, int end) {
+            return new String(this.bytes, this.offset + start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return this.subSequence(0, this.length());
+        }
+
+    }
+
+}
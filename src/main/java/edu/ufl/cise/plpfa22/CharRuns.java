@@ -0,0 +1,136 @@
+package edu.ufl.cise.plpfa22;
+
+/**
+ * Finds the ends of the runs of characters that the DFA of LexerImp consumes
+ * without changing its state: blanks at the start of a line, the text of a
+ * comment, and the rest of an identifier or a number. LexerImp skips such a run
+ * with one call instead of a transition per character.
+ *
+ * The runs are off by default. They're turned on by the system property
+ * plpfa22.runs: "scalar" uses the loops of this class, and "vector" uses
+ * VectorCharRuns, which finds the runs a whole vector of characters at a time
+ * with the jdk.incubator.vector module. VectorCharRuns is only compiled by the
+ * vector profile of the build, and the module must be added at run time with
+ * --add-modules jdk.incubator.vector. If it can't be loaded, the scalar loops
+ * are used instead.
+ */
+class CharRuns {
+    static final String PROPERTY = "plpfa22.runs";
+
+    private static final String VECTOR_CLASS = "edu.ufl.cise.plpfa22.VectorCharRuns";
+
+    private static final CharRuns DEFAULT = load(System.getProperty(PROPERTY));
+
+    /**
+     * @return the runs selected by the system property, or null if they're off.
+     */
+    static CharRuns getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param kind "scalar" or "vector"
+     * @return the runs of that kind, or null for any other kind.
+     */
+    static CharRuns load(String kind) {
+        if ("vector".equals(kind)) {
+            try {
+                return (CharRuns) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // not compiled, or the module isn't there.
+                return new CharRuns();
+            }
+        }
+        return "scalar".equals(kind) ? new CharRuns() : null;
+    }
+
+    /**
+     * @return the index of the first character in [from, end) of chars that isn't
+     *         a space, a tab or a carriage return, or end if there isn't one.
+     */
+    int skipBlanks(char[] chars, int from, int end) {
+        int i = from;
+        while (i < end && isBlank(chars[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index of the first line feed, carriage return or 0 (which the DFA
+     *         treats as the end of the input) in [from, end) of chars, or end if
+     *         there isn't one.
+     */
+    int skipCommentText(char[] chars, int from, int end) {
+        int i = from;
+        while (i < end && !endsComment(chars[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index of the first character in [from, end) of chars that can't
+     *         be in an identifier, or end if there isn't one.
+     */
+    int skipIdentChars(char[] chars, int from, int end) {
+        int i = from;
+        while (i < end && isIdentChar(chars[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index of the first character in [from, end) of chars that isn't
+     *         a digit, or end if there isn't one.
+     */
+    int skipDigits(char[] chars, int from, int end) {
+        int i = from;
+        while (i < end && isDigit(chars[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    static boolean isBlank(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\r';
+    }
+
+    static boolean endsComment(char ch) {
+        return ch == '\n' || ch == '\r' || ch == 0;
+    }
+
+    static boolean isIdentChar(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || isDigit(ch) || ch == '_' || ch == '$';
+    }
+
+    static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /**
+     * @return the hash code of the characters [from, to), the same as the one of
+     *         the equivalent String.
+     */
+    static int hash(char[] chars, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + chars[i];
+        }
+        return h;
+    }
+
+    /**
+     * @return the value of the digits [from, to). Like the DFA, it stops growing
+     *         once it exceeds Integer.MAX_VALUE.
+     */
+    static long value(char[] chars, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to && value <= Integer.MAX_VALUE; i++) {
+            value = value * 10 + (chars[i] - '0');
+        }
+        return value;
+    }
+
+}
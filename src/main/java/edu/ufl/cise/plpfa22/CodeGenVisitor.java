@@ -8,10 +8,13 @@ import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
+import edu.ufl.cise.plpfa22.ast.ASTNode;
 import edu.ufl.cise.plpfa22.ast.ASTVisitor;
+import edu.ufl.cise.plpfa22.ast.Attributes;
 import edu.ufl.cise.plpfa22.IToken.Kind;
 import edu.ufl.cise.plpfa22.ast.Block;
 import edu.ufl.cise.plpfa22.ast.ConstDec;
+import edu.ufl.cise.plpfa22.ast.Declaration;
 import edu.ufl.cise.plpfa22.ast.Expression;
 import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
 import edu.ufl.cise.plpfa22.ast.ExpressionBooleanLit;
@@ -54,8 +57,19 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 
 	ArrayList<GenClass> innerGenClasses = new ArrayList<>();
 
+	final StackGuard stackGuard = new StackGuard();
+
+	// where the decorations of the scope and type visitors are read, and the JVM
+	// names of the procedures are stored.
+	final Attributes attributes;
+
 	public CodeGenVisitor(String className, String packageName, String sourceFileName) {
+		this(className, packageName, sourceFileName, Attributes.TREE);
+	}
+
+	public CodeGenVisitor(String className, String packageName, String sourceFileName, Attributes attributes) {
 		super();
+		this.attributes = attributes;
 		this.packageName = packageName;
 		this.className = className;
 		this.sourceFileName = sourceFileName;
@@ -79,11 +93,9 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 		for (VarDec varDec : block.varDecs) {
 			varDec.visit(this, cw);
 		}
-		for (ProcDec procDec : block.procedureDecs) {
-			procDec.visit(this, null);
-		}
+		this.stackGuard.forEach(block.procedureDecs, procDec -> procDec.visit(this, null));
 		// add instructions from statement to method
-		block.statement.visit(this, methodVisitorRun);
+		this.stackGuard.visit(block.statement, this, methodVisitorRun);
 
 		this.currentNestLevel -= 1;
 
@@ -94,6 +106,22 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 
 	}
 
+	private Type type(ASTNode node) {
+		return this.attributes.getType(node);
+	}
+
+	private int nest(ASTNode node) {
+		return this.attributes.getNest(node);
+	}
+
+	private Declaration dec(ASTNode node) {
+		return this.attributes.getDec(node);
+	}
+
+	private String jvmProcName(ProcDec procDec) {
+		return this.attributes.getJVMProcName(procDec);
+	}
+
 	/**
 	 * visit inner class. Use the className to find the enclosing class name and the
 	 * simple class name.
@@ -118,7 +146,7 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 		// call the JVMNameVisitor to annotate the JVM nams for all the procedures
 		// need to get a list of those names for seting the nest member attribute.
 		ArrayList<String> procNames = new ArrayList<>();
-		JVMNameVisitor jvmNameVisitor = new JVMNameVisitor(this.fullyQualifiedClassName, procNames);
+		JVMNameVisitor jvmNameVisitor = new JVMNameVisitor(this.fullyQualifiedClassName, procNames, this.attributes);
 		program.visit(jvmNameVisitor, null);
 
 		// create a classWriter and visit it
@@ -140,7 +168,7 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 
 		// for program, add all the direct nest procedure to inner class
 		for (ProcDec procDec : program.block.procedureDecs) {
-			this.setInnerClass(classWriter, procDec.JVMProcName);
+			this.setInnerClass(classWriter, this.jvmProcName(procDec));
 		}
 
 		// init method
@@ -204,8 +232,8 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 		String identClassJVMName = (String) statementAssign.ident.visit(this, arg);
 		mv.visitInsn(SWAP);
 		mv.visitFieldInsn(PUTFIELD, identClassJVMName,
-				new String(statementAssign.ident.getFirstToken().getText()),
-				statementAssign.ident.getDec().getType().getDataJVMType());
+				statementAssign.ident.getFirstToken().getTextView().toString(),
+				this.type(this.dec(statementAssign.ident)).getDataJVMType());
 
 		return null;
 	}
@@ -213,11 +241,11 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 	@Override
 	public Object visitVarDec(VarDec varDec, Object arg) throws PLPException {
 		ClassWriter cw = (ClassWriter) arg;
-		if (varDec.getType() == null) {
+		if (this.type(varDec) == null) {
 			// the variable is not used, hence ignore the declaration.
 			return null;
 		}
-		FieldVisitor fv = cw.visitField(0, new String(varDec.ident.getText()), varDec.getType().getDataJVMType(), null,
+		FieldVisitor fv = cw.visitField(0, varDec.ident.getTextView().toString(), this.type(varDec).getDataJVMType(), null,
 				null);
 		fv.visitEnd();
 		return null;
@@ -235,21 +263,21 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 	public Object visitStatementCall(StatementCall statementCall, Object arg) throws PLPException {
 		// create an instance
 		MethodVisitor mv = (MethodVisitor) arg;
-		ProcDec procDec = (ProcDec) statementCall.ident.getDec();
-		mv.visitTypeInsn(NEW, procDec.JVMProcName);
+		ProcDec procDec = (ProcDec) this.dec(statementCall.ident);
+		mv.visitTypeInsn(NEW, this.jvmProcName(procDec));
 		mv.visitInsn(DUP);
 
 		// find the enclosing reference
-		String enclosingClassDesc = this.getEnclosingClassDesc(procDec.JVMProcName);
+		String enclosingClassDesc = this.getEnclosingClassDesc(this.jvmProcName(procDec));
 
-		this.loadEnclosingClass2Stack(mv, procDec.getNest());
+		this.loadEnclosingClass2Stack(mv, this.nest(procDec));
 
 		// invoke run()
 		mv.visitMethodInsn(INVOKESPECIAL,
-				procDec.JVMProcName, "<init>",
+				this.jvmProcName(procDec), "<init>",
 				"(" + enclosingClassDesc + ")V", false);
 		mv.visitMethodInsn(INVOKEVIRTUAL,
-				procDec.JVMProcName, "run", "()V", false);
+				this.jvmProcName(procDec), "run", "()V", false);
 
 		return null;
 	}
@@ -264,7 +292,7 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 		MethodVisitor mv = (MethodVisitor) arg;
 		mv.visitFieldInsn(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
 		statementOutput.expression.visit(this, arg);
-		Type etype = statementOutput.expression.getType();
+		Type etype = this.type(statementOutput.expression);
 		String JVMType = (etype.equals(Type.NUMBER) ? "I" : (etype.equals(Type.BOOLEAN) ? "Z" : "Ljava/lang/String;"));
 		String printlnSig = "(" + JVMType + ")V";
 		mv.visitMethodInsn(INVOKEVIRTUAL, "java/io/PrintStream", "println", printlnSig, false);
@@ -273,9 +301,7 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 
 	@Override
 	public Object visitStatementBlock(StatementBlock statementBlock, Object arg) throws PLPException {
-		for (Statement statement : statementBlock.statements) {
-			statement.visit(this, arg);
-		}
+		this.stackGuard.forEach(statementBlock.statements, statement -> statement.visit(this, arg));
 		return null;
 	}
 
@@ -289,7 +315,7 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 		Label labelPostIf = new Label();
 
 		mv.visitJumpInsn(IFEQ, labelPostIf);
-		statement.visit(this, arg);
+		this.stackGuard.visit(statement, this, arg);
 		mv.visitLabel(labelPostIf);
 		return null;
 	}
@@ -301,7 +327,7 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 		Label guardLabel = new Label();
 		mv.visitJumpInsn(GOTO, guardLabel);
 		mv.visitLabel(bodyLabel);
-		statementWhile.statement.visit(this, arg);
+		this.stackGuard.visit(statementWhile.statement, this, arg);
 		mv.visitLabel(guardLabel);
 		statementWhile.expression.visit(this, arg);
 		mv.visitJumpInsn(IFNE, bodyLabel);
@@ -311,12 +337,12 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 	@Override
 	public Object visitExpressionBinary(ExpressionBinary expressionBinary, Object arg) throws PLPException {
 		MethodVisitor mv = (MethodVisitor) arg;
-		Type argType = expressionBinary.e0.getType();
+		Type argType = this.type(expressionBinary.e0);
 		Kind op = expressionBinary.op.getKind();
 		switch (argType) {
 			case NUMBER -> {
-				expressionBinary.e0.visit(this, arg);
-				expressionBinary.e1.visit(this, arg);
+				this.stackGuard.visit(expressionBinary.e0, this, arg);
+				this.stackGuard.visit(expressionBinary.e1, this, arg);
 				switch (op) {
 					case PLUS -> mv.visitInsn(IADD);
 					case MINUS -> mv.visitInsn(ISUB);
@@ -335,8 +361,8 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 
 			}
 			case BOOLEAN -> {
-				expressionBinary.e0.visit(this, arg);
-				expressionBinary.e1.visit(this, arg);
+				this.stackGuard.visit(expressionBinary.e0, this, arg);
+				this.stackGuard.visit(expressionBinary.e1, this, arg);
 				switch (op) {
 					case PLUS -> {
 						// OR
@@ -358,8 +384,8 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 
 			}
 			case STRING -> {
-				expressionBinary.e0.visit(this, arg);
-				expressionBinary.e1.visit(this, arg);
+				this.stackGuard.visit(expressionBinary.e0, this, arg);
+				this.stackGuard.visit(expressionBinary.e1, this, arg);
 				switch (op) {
 					case PLUS -> {
 						mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "concat",
@@ -519,17 +545,17 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 	@Override
 	public Object visitExpressionIdent(ExpressionIdent expressionIdent, Object arg) throws PLPException {
 		MethodVisitor mv = (MethodVisitor) arg;
-		if (expressionIdent.getDec() instanceof ConstDec) {
+		if (this.dec(expressionIdent) instanceof ConstDec) {
 			// simply push the constant's value on the stack
-			ConstDec constDec = (ConstDec) expressionIdent.getDec();
+			ConstDec constDec = (ConstDec) this.dec(expressionIdent);
 			mv.visitLdcInsn(constDec.val);
 		} else {
 			// load the ident's enclosing class's reference then get the value
-			String enclosingClassName = this.loadEnclosingClass2Stack(mv, expressionIdent.getDec().getNest());
+			String enclosingClassName = this.loadEnclosingClass2Stack(mv, this.nest(this.dec(expressionIdent)));
 
 			mv.visitFieldInsn(GETFIELD, enclosingClassName,
-					new String(expressionIdent.getFirstToken().getText()),
-					expressionIdent.getDec().getType().getDataJVMType());
+					expressionIdent.getFirstToken().getTextView().toString(),
+					this.type(this.dec(expressionIdent)).getDataJVMType());
 		}
 		return null;
 	}
@@ -561,11 +587,11 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 	public Object visitProcedure(ProcDec procDec, Object arg) throws PLPException {
 		// add a GenClass type instance to this.innerGenClasses.
 
-		String enclosingtClassDesc = this.getEnclosingClassDesc(procDec.JVMProcName);
-		String thisN = "this$" + String.valueOf(procDec.getNest());
+		String enclosingtClassDesc = this.getEnclosingClassDesc(this.jvmProcName(procDec));
+		String thisN = "this$" + String.valueOf(this.nest(procDec));
 
 		ClassWriter classWriterProc = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
-		classWriterProc.visit(V18, ACC_SUPER, procDec.JVMProcName, null, "java/lang/Object",
+		classWriterProc.visit(V18, ACC_SUPER, this.jvmProcName(procDec), null, "java/lang/Object",
 				new String[] { "java/lang/Runnable" });
 		classWriterProc.visitSource(this.sourceFileName, null);
 
@@ -595,7 +621,7 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 			// innerClass.this$n = outerClass
 			mvInit.visitVarInsn(ALOAD, 0);
 			mvInit.visitVarInsn(ALOAD, 1);
-			mvInit.visitFieldInsn(PUTFIELD, procDec.JVMProcName, thisN, enclosingtClassDesc);
+			mvInit.visitFieldInsn(PUTFIELD, this.jvmProcName(procDec), thisN, enclosingtClassDesc);
 			mvInit.visitVarInsn(ALOAD, 0);
 			mvInit.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V",
 					false);
@@ -603,7 +629,7 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 			Label label1 = new Label();
 			mvInit.visitLabel(label1);
 			mvInit.visitLocalVariable("this",
-					"L" + procDec.JVMProcName + ";", null, label0, label1, 0);
+					"L" + this.jvmProcName(procDec) + ";", null, label0, label1, 0);
 			mvInit.visitMaxs(2, 2);
 			mvInit.visitEnd();
 		}
@@ -612,13 +638,13 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 		{
 			// set and restore this.currentJVMDesc
 			String enclosingJVMName = this.currentJVMName;
-			this.currentJVMName = procDec.JVMProcName;
-			procDec.block.visit(this, classWriterProc);
+			this.currentJVMName = this.jvmProcName(procDec);
+			this.stackGuard.visit(procDec.block, this, classWriterProc);
 			this.currentJVMName = enclosingJVMName;
 		}
 
 		// add a GenClass type
-		this.innerGenClasses.add(new GenClass(procDec.JVMProcName, classWriterProc.toByteArray()));
+		this.innerGenClasses.add(new GenClass(this.jvmProcName(procDec), classWriterProc.toByteArray()));
 
 		return null;
 	}
@@ -662,7 +688,7 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 	 */
 	private void setProcInnerClass(ProcDec procDec, ClassWriter classWriterProc) {
 		// 1. all of the enclosing class, including itself
-		String[] classNames = procDec.JVMProcName.split("\\$");
+		String[] classNames = this.jvmProcName(procDec).split("\\$");
 		String cur = classNames[0];
 		for (int i = 1; i < classNames.length; i++) {
 			cur = cur + "$" + classNames[i];
@@ -671,7 +697,7 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 
 		// 2. direct nested class
 		for (ProcDec nestedProcDec : procDec.block.procedureDecs) {
-			this.setInnerClass(classWriterProc, nestedProcDec.JVMProcName);
+			this.setInnerClass(classWriterProc, this.jvmProcName(nestedProcDec));
 		}
 	}
 
@@ -695,7 +721,7 @@ public class CodeGenVisitor implements ASTVisitor, Opcodes {
 		// push the reference of the class that contains this ident on the stack
 		MethodVisitor mv = (MethodVisitor) arg;
 
-		return this.loadEnclosingClass2Stack(mv, ident.getDec().getNest());
+		return this.loadEnclosingClass2Stack(mv, this.nest(this.dec(ident)));
 	}
 
 	/**
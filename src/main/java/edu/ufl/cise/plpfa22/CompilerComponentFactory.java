@@ -4,7 +4,14 @@
 
 package edu.ufl.cise.plpfa22;
 
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import edu.ufl.cise.plpfa22.ast.ASTVisitor;
+import edu.ufl.cise.plpfa22.ast.Attributes;
 
 public class CompilerComponentFactory {
 
@@ -13,20 +20,114 @@ public class CompilerComponentFactory {
 
 	}
 
+	/**
+	 * Lex the input while reading it, through a fixed-size buffer.
+	 */
+	public static ILexer getLexer(Reader input) {
+		return new StreamingLexer(input);
+	}
+
+	/**
+	 * Lex UTF-8 encoded input while reading it, through a fixed-size buffer.
+	 */
+	public static ILexer getLexer(ReadableByteChannel input) {
+		return new StreamingLexer(input);
+	}
+
+	/**
+	 * Lex UTF-8 encoded input directly from its bytes, without decoding it into a
+	 * String first.
+	 */
+	public static ILexer getLexer(ByteBuffer input) {
+		return new ByteLexer(input);
+	}
+
+	/**
+	 * Lex the whole input at once into a TokenBuffer, and return a cursor over it.
+	 */
+	public static ILexer getBatchLexer(String input) {
+		return new BufferedLexer(TokenBuffer.lex(input));
+	}
+
+	/**
+	 * Lex the whole input at once, recovering from lexical errors: they're added to
+	 * diagnostics, and the wrong parts of the input are returned as ERROR tokens.
+	 */
+	public static ILexer getRecoveringLexer(String input, List<Diagnostic> diagnostics) {
+		return new BufferedLexer(TokenBuffer.lex(input, new SymbolInterner(), diagnostics));
+	}
+
+	/**
+	 * Like getBatchLexer, but large inputs are lexed on the common ForkJoinPool.
+	 */
+	public static ILexer getParallelLexer(String input) {
+		return new BufferedLexer(ParallelLexer.lex(input));
+	}
+
 	public static IParser getParser(ILexer lexer) {
 		return new ParserImp(lexer);
 	}
 
+	/**
+	 * Lex the whole input on the common ForkJoinPool, and parse its top-level
+	 * procedures concurrently on it as well.
+	 */
+	public static IParser getParallelParser(String input) {
+		return new ParserImp(new BufferedLexer(ParallelLexer.lex(input)), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Lex the whole input at once, and fold the expressions of literals and
+	 * constants while parsing it.
+	 */
+	public static IParser getFoldingParser(String input) {
+		return new ParserImp(new BufferedLexer(TokenBuffer.lex(input)), true);
+	}
+
+	/**
+	 * Lex the whole input at once, and share the identical expressions of a block
+	 * while parsing it.
+	 */
+	public static IParser getHashConsingParser(String input) {
+		return new ParserImp(new BufferedLexer(TokenBuffer.lex(input)), false, true);
+	}
+
+	/**
+	 * Parse the whole input, recovering from lexical and syntax errors: they're
+	 * added to diagnostics, and parse() returns a partial Program.
+	 */
+	public static IParser getRecoveringParser(String input, List<Diagnostic> diagnostics) {
+		return new ParserImp(getRecoveringLexer(input, diagnostics), diagnostics);
+	}
+
 	public static ASTVisitor getScopeVisitor() {
-		return new ASTScopeVisitor();
+		return ASTVisitor.of(new ASTScopeVisitor());
 	}
 
 	public static ASTVisitor getTypeInferenceVisitor() {
-		return new ASTTypeVisitor();
+		return ASTVisitor.of(new ASTTypeVisitor());
 	}
 
 	public static ASTVisitor getCodeGenVisitor(String className, String packageName, String string) {
 		return new CodeGenVisitor(className, packageName, string);
 	}
 
+	/**
+	 * The visitors of an analysis whose results are stored in attributes instead
+	 * of in the tree, e.g. in an AttributeTable of its own, so several analyses of
+	 * the same tree can run at once.
+	 */
+	public static ASTVisitor getScopeVisitor(Attributes attributes) {
+		return ASTVisitor.of(new ASTScopeVisitor(attributes));
+	}
+
+	public static ASTVisitor getTypeInferenceVisitor(Attributes attributes) {
+		return ASTVisitor.of(new ASTTypeVisitor(attributes));
+	}
+
+	public static ASTVisitor getCodeGenVisitor(String className, String packageName, String string,
+			Attributes attributes) {
+		return new CodeGenVisitor(className, packageName, string, attributes);
+	}
+
 }
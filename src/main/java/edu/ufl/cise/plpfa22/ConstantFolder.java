@@ -0,0 +1,209 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+import edu.ufl.cise.plpfa22.ast.ConstDec;
+import edu.ufl.cise.plpfa22.ast.Expression;
+import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
+import edu.ufl.cise.plpfa22.ast.ExpressionBooleanLit;
+import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
+import edu.ufl.cise.plpfa22.ast.ExpressionNumLit;
+import edu.ufl.cise.plpfa22.ast.ExpressionStringLit;
+import edu.ufl.cise.plpfa22.ast.VarDec;
+
+/**
+ * Folds the expressions of literals and constants into a literal while they're
+ * parsed. The value of a folded expression is the one the generated code
+ * computes: numbers are ints that overflow, + and * of booleans are OR and AND,
+ * and a string is less than another one if it's a prefix of it, greater if
+ * it's a suffix. An expression isn't folded if its evaluation would fail, e.g. a
+ * division by zero, or if its operands have the wrong types, so that the error
+ * is still found by the type visitor or at runtime.
+ *
+ * The token of a folded literal has the kind of the literal and the offset of
+ * the first token of the expression, and its text is the literal the value
+ * would be written as.
+ */
+class ConstantFolder {
+    // the value of a name declared by a VAR, which hides the constants of the
+    // enclosing blocks.
+    private static final Object VARIABLE = new Object();
+
+    // the names of all the procedures of the input. Before the procedures of a
+    // block are parsed, they aren't known, and one of them could hide a constant
+    // of an enclosing block, so a constant with the name of a procedure is never
+    // folded.
+    private final Set<TokenText> procedureNames;
+
+    // the constants and variables of the blocks being parsed, from the innermost
+    // one.
+    private final Deque<Map<TokenText, Object>> scopes = new ArrayDeque<>();
+
+    ConstantFolder(TokenBuffer tokens) {
+        this.procedureNames = new HashSet<>();
+        for (int i = 0; i + 1 < tokens.size(); i++) {
+            if (tokens.kind(i) == Kind.KW_PROCEDURE && tokens.kind(i + 1) == Kind.IDENT) {
+                this.procedureNames.add(new TokenText(tokens.getInput(), tokens.start(i + 1), tokens.length(i + 1)));
+            }
+        }
+    }
+
+    /**
+     * start a block, after its declarations of constants and variables are parsed.
+     */
+    void enterBlock(List<ConstDec> constDecs, List<VarDec> varDecs) {
+        Map<TokenText, Object> scope = new HashMap<>();
+        for (ConstDec constDec : constDecs) {
+            scope.put(constDec.ident.getTextView(), constDec.val);
+        }
+        for (VarDec varDec : varDecs) {
+            scope.put(varDec.ident.getTextView(), VARIABLE);
+        }
+        this.scopes.push(scope);
+    }
+
+    void exitBlock() {
+        this.scopes.pop();
+    }
+
+    /**
+     * @return a literal if ident is a constant, an ExpressionIdent otherwise.
+     */
+    Expression ident(IToken ident) {
+        TokenText name = ident.getTextView();
+        if (!this.procedureNames.contains(name)) {
+            for (Map<TokenText, Object> scope : this.scopes) {
+                Object value = scope.get(name);
+                if (value != null) {
+                    if (value != VARIABLE) {
+                        return literal(ident, value);
+                    }
+                    break;
+                }
+            }
+        }
+        return new ExpressionIdent(ident);
+    }
+
+    /**
+     * @return a literal if e0 op e1 can be folded, the ExpressionBinary otherwise.
+     */
+    Expression binary(IToken firstToken, Expression e0, IToken op, Expression e1) {
+        Object v0 = value(e0);
+        Object v1 = value(e1);
+        Object value = null;
+        if (v0 instanceof Integer n0 && v1 instanceof Integer n1) {
+            value = fold(n0, op.getKind(), n1);
+        } else if (v0 instanceof Boolean b0 && v1 instanceof Boolean b1) {
+            value = fold(b0, op.getKind(), b1);
+        } else if (v0 instanceof String s0 && v1 instanceof String s1) {
+            value = fold(s0, op.getKind(), s1);
+        }
+        return value != null ? literal(firstToken, value) : new ExpressionBinary(firstToken, e0, op, e1);
+    }
+
+    /**
+     * @return the value of a literal, null if the expression isn't one.
+     */
+    private static Object value(Expression expression) {
+        IToken token = expression.getFirstToken();
+        if (expression instanceof ExpressionNumLit) {
+            return token.getIntValue();
+        } else if (expression instanceof ExpressionBooleanLit) {
+            return token.getBooleanValue();
+        } else if (expression instanceof ExpressionStringLit) {
+            return token.getStringValue();
+        }
+        return null;
+    }
+
+    private static Object fold(int n0, Kind op, int n1) {
+        return switch (op) {
+            case PLUS -> n0 + n1;
+            case MINUS -> n0 - n1;
+            case TIMES -> n0 * n1;
+            // IDIV and IREM throw an ArithmeticException at runtime.
+            case DIV -> n1 != 0 ? n0 / n1 : null;
+            case MOD -> n1 != 0 ? n0 % n1 : null;
+            case EQ, NEQ, LT, LE, GT, GE -> compare(Integer.compare(n0, n1), op);
+            default -> null;
+        };
+    }
+
+    private static Object fold(boolean b0, Kind op, boolean b1) {
+        return switch (op) {
+            case PLUS -> b0 || b1;
+            case TIMES -> b0 && b1;
+            // booleans are compared as the ints 0 and 1.
+            case EQ, NEQ, LT, LE, GT, GE -> compare(Boolean.compare(b0, b1), op);
+            default -> null;
+        };
+    }
+
+    private static Object fold(String s0, Kind op, String s1) {
+        return switch (op) {
+            case PLUS -> s0.concat(s1);
+            case EQ -> s0.equals(s1);
+            case NEQ -> !s0.equals(s1);
+            case LT -> s1.startsWith(s0) && !s0.equals(s1);
+            case LE -> s1.startsWith(s0);
+            case GT -> s0.endsWith(s1) && !s0.equals(s1);
+            case GE -> s0.endsWith(s1);
+            default -> null;
+        };
+    }
+
+    private static boolean compare(int comparison, Kind op) {
+        return switch (op) {
+            case EQ -> comparison == 0;
+            case NEQ -> comparison != 0;
+            case LT -> comparison < 0;
+            case LE -> comparison <= 0;
+            case GT -> comparison > 0;
+            default -> comparison >= 0;
+        };
+    }
+
+    /**
+     * a literal of value, at the offset of the token at.
+     */
+    private static Expression literal(IToken at, Object value) {
+        TokenImp token = (TokenImp) at;
+        if (value instanceof Integer n) {
+            return new ExpressionNumLit(token.at(Kind.NUM_LIT, new TokenText(Integer.toString(n)), n));
+        } else if (value instanceof Boolean b) {
+            return new ExpressionBooleanLit(token.at(Kind.BOOLEAN_LIT, new TokenText(b ? "TRUE" : "FALSE"), 0));
+        } else {
+            return new ExpressionStringLit(token.at(Kind.STRING_LIT, new TokenText(quote((String) value)), 0));
+        }
+    }
+
+    /**
+     * @return the STRING_LIT whose value is value.
+     */
+    static String quote(String value) {
+        StringBuilder text = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\n' -> text.append("\\n");
+                case '\t' -> text.append("\\t");
+                case '\b' -> text.append("\\b");
+                case '\f' -> text.append("\\f");
+                case '\r' -> text.append("\\r");
+                case '"' -> text.append("\\\"");
+                case '\\' -> text.append("\\\\");
+                default -> text.append(c);
+            }
+        }
+        return text.append('"').toString();
+    }
+
+}
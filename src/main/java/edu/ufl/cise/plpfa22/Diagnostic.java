@@ -0,0 +1,21 @@
+package edu.ufl.cise.plpfa22;
+
+/**
+ * An error found in the input that is recorded instead of thrown, so that the
+ * compilation can go on and report all the errors at once.
+ *
+ * @param message the description of the error
+ * @param line    the line of the first character of the wrong part of the input
+ * @param column  the column of that character
+ */
+public record Diagnostic(String message, int line, int column) {
+
+    /**
+     * the same format as the message of a PLPException.
+     */
+    @Override
+    public String toString() {
+        return this.line + ":" + this.column + "  " + this.message;
+    }
+
+}
@@ -0,0 +1,117 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import edu.ufl.cise.plpfa22.ast.Expression;
+import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
+import edu.ufl.cise.plpfa22.ast.ExpressionError;
+
+/**
+ * Shares the identical expressions of a block while they're parsed: an
+ * expression with the same structure as one already parsed in the block is
+ * replaced by that one, so the expressions of a repetitive program take less
+ * memory. The AST is then a DAG, whose shared nodes are visited once per
+ * occurrence by the passes.
+ *
+ * The operands of an expression are shared before it is, so two binary
+ * expressions have the same structure if they have the same operator and the
+ * same operand nodes, and an expression is looked up in O(1) by its structural
+ * hash.
+ *
+ * Expressions have no side effects, but a name can be bound to different
+ * declarations in different blocks, so only the expressions of the same block
+ * are shared, and they get the same decorations. A shared expression has the
+ * location of its first occurrence, which is where the errors of the scope and
+ * type visitors are reported. ExpressionErrors aren't shared.
+ */
+class HashConser {
+    private static final int INITIAL_CAPACITY = 64;
+
+    // the expressions of the blocks being parsed, from the innermost one.
+    private final Deque<Table> tables = new ArrayDeque<>();
+
+    void enterBlock() {
+        this.tables.push(new Table());
+    }
+
+    void exitBlock() {
+        this.tables.pop();
+    }
+
+    /**
+     * @return the expression of the block with the same structure as the
+     *         expression, which is added if there's none.
+     */
+    Expression share(Expression expression) {
+        if (expression instanceof ExpressionError || this.tables.isEmpty()) {
+            return expression;
+        }
+        return this.tables.peek().share(expression);
+    }
+
+    /**
+     * @return whether two expressions whose operands are shared have the same
+     *         structure.
+     */
+    private static boolean same(Expression a, Expression b) {
+        if (a.getClass() != b.getClass()) {
+            return false;
+        } else if (a instanceof ExpressionBinary binary) {
+            ExpressionBinary other = (ExpressionBinary) b;
+            return binary.e0 == other.e0 && binary.e1 == other.e1 && binary.op.getKind() == other.op.getKind();
+        }
+        IToken token = a.getFirstToken();
+        IToken otherToken = b.getFirstToken();
+        return token.getKind() == otherToken.getKind() && token.getTextView().equals(otherToken.getTextView());
+    }
+
+    /**
+     * mix the high bits of a hash into the low ones, which pick the slot.
+     */
+    private static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+
+    /**
+     * a hash set of the expressions of a block, with open addressing.
+     */
+    private static class Table {
+        private Expression[] expressions = new Expression[INITIAL_CAPACITY];
+        private int size = 0;
+
+        Expression share(Expression expression) {
+            int hash = expression.structuralHash();
+            int mask = this.expressions.length - 1;
+            int slot = spread(hash) & mask;
+            while (this.expressions[slot] != null) {
+                Expression other = this.expressions[slot];
+                if (other.structuralHash() == hash && same(expression, other)) {
+                    return other;
+                }
+                slot = (slot + 1) & mask;
+            }
+            this.expressions[slot] = expression;
+            if (++this.size * 2 > this.expressions.length) {
+                this.rehash();
+            }
+            return expression;
+        }
+
+        private void rehash() {
+            Expression[] old = this.expressions;
+            this.expressions = new Expression[old.length * 2];
+            int mask = this.expressions.length - 1;
+            for (Expression expression : old) {
+                if (expression != null) {
+                    int slot = spread(expression.structuralHash()) & mask;
+                    while (this.expressions[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    this.expressions[slot] = expression;
+                }
+            }
+        }
+    }
+
+}
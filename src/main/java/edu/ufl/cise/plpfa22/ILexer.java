@@ -3,6 +3,8 @@
  */
 package edu.ufl.cise.plpfa22;
 
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
 public interface ILexer {
 
 	/**
@@ -22,4 +24,37 @@ public interface ILexer {
 	 * @throws LexicalException
 	 */
 	IToken peek() throws LexicalException;
+
+	/**
+	 * Return the IToken k positions after the next one without advancing the
+	 * internal position, so peek(0) is the same as peek(). Subsequent calls to next
+	 * will return the peeked ITokens in order. After EOF, EOF is returned.
+	 * 
+	 * @param k the number of ITokens to look past, k &gt;= 0
+	 * @return
+	 * @throws LexicalException
+	 */
+	IToken peek(int k) throws LexicalException;
+
+	/**
+	 * Return the Kind of the IToken that would be returned by peek, without
+	 * advancing the internal position. Lexers that keep their tokens in a
+	 * TokenBuffer answer this without creating an IToken.
+	 * 
+	 * @return
+	 * @throws LexicalException
+	 */
+	default Kind peekKind() throws LexicalException {
+		return peek().getKind();
+	}
+
+	/**
+	 * Advance the internal position past the next IToken, like next, but without
+	 * returning it.
+	 * 
+	 * @throws LexicalException
+	 */
+	default void skip() throws LexicalException {
+		next();
+	}
 }
@@ -71,6 +71,37 @@ public interface IToken {
 	 */
 	public char[] getText();
 
+	/**
+	 * Returns the characters of getText() as a view, without copying them if the
+	 * token refers to its source.
+	 * 
+	 * @return
+	 */
+	public default TokenText getTextView() {
+		return new TokenText(new String(getText()));
+	}
+
+	/**
+	 * Returns true if the text of this IToken is the same as name. Doesn't create
+	 * any object if getTextView() doesn't.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public default boolean textEquals(CharSequence name) {
+		return getTextView().contentEquals(name);
+	}
+
+	/**
+	 * Precondition: getKind == IDENT
+	 * 
+	 * @return the ID assigned to the name of this IToken by the SymbolInterner of
+	 *         the lexer, or -1 if it doesn't have one.
+	 */
+	public default int getSymbolId() {
+		return -1;
+	}
+
 	/**
 	 * Returns a SourceLocation record containing the line and position in the line
 	 * of the first character in this IToken.
@@ -79,6 +110,16 @@ public interface IToken {
 	 */
 	public SourceLocation getSourceLocation();
 
+	/**
+	 * Returns the offset of the first character of this IToken in the source, or
+	 * -1 if it's unknown. getSourceLocation() is computed from it on demand.
+	 *
+	 * @return
+	 */
+	public default int getOffset() {
+		return -1;
+	}
+
 	/**
 	 * Precondition: getKind == NUM_LIT
 	 * 
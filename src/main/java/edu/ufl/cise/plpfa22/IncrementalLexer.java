@@ -0,0 +1,133 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.Objects;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+/**
+ * Updates the TokenBuffer of an input after an edit, for editors that relex
+ * the source after every change.
+ *
+ * The tokens ending before the edit, with at least one character between them
+ * and the edit, can't be changed by it, since the DFA decides where a token
+ * ends by looking at the character after it. The input is relexed from the end
+ * of the last such token, where the DFA is in the START state, until a new
+ * token starts after the edit at the same place as an old token. From there on,
+ * the old tokens are the same, and they are copied with their starts shifted.
+ * So only the tokens around the edit are relexed.
+ *
+ * The identifiers are interned with the interner of the old buffer, so the
+ * symbol IDs of the unchanged tokens stay valid. The old buffer must come from
+ * a lexer that throws on lexical errors, like TokenBuffer.lex(String); a
+ * lexical error is recorded in the new buffer the same way.
+ */
+public class IncrementalLexer {
+
+    private IncrementalLexer() {
+    }
+
+    /**
+     * replace removedLength characters of the input of previous at offset with
+     * insertedText, and lex the new input.
+     *
+     * @param previous      the tokens of the input before the edit
+     * @param offset        the position of the edit in that input
+     * @param removedLength the number of characters removed
+     * @param insertedText  the characters inserted instead
+     * @return the buffer containing all the tokens of the new input, which is
+     *         the same as TokenBuffer.lex() of it except for the symbol IDs.
+     */
+    public static TokenBuffer relex(TokenBuffer previous, int offset, int removedLength, String insertedText) {
+        String oldInput = previous.getInput();
+        Objects.checkFromIndexSize(offset, removedLength, oldInput.length());
+        String input = oldInput.substring(0, offset) + insertedText + oldInput.substring(offset + removedLength);
+        int shift = insertedText.length() - removedLength;
+        // the first position of the new input after the edit.
+        int editEnd = offset + insertedText.length();
+
+        // keep the tokens that end before offset.
+        int kept = restartIndex(previous, offset);
+        TokenBuffer buffer = new TokenBuffer(input, previous.getInterner(),
+                Math.max(64, previous.size() + shift / 4));
+        buffer.appendShifted(previous, 0, kept, 0);
+
+        LexerImp lexer = new LexerImp(input, 0, input.length(), previous.getInterner(), buffer.getLineIndex());
+        lexer.resume(end(buffer));
+        // the old tokens starting from index old can still be resynchronized with.
+        int old = kept;
+        try {
+            while (true) {
+                Kind kind = lexer.lexOneInto(buffer);
+                int index = buffer.size() - 1;
+                int start = buffer.start(index);
+                if (start >= editEnd) {
+                    while (old < previous.size() && previous.start(old) + shift < start) {
+                        old++;
+                    }
+                    if (old < previous.size() && previous.start(old) + shift == start) {
+                        // drop the token, it will be copied from the old buffer.
+                        buffer.truncate(index);
+                        buffer.appendShifted(previous, old, previous.size(), shift);
+                        if (previous.getError() != null) {
+                            relexError(buffer, lexer);
+                        }
+                        return buffer;
+                    }
+                }
+                if (kind == Kind.EOF) {
+                    return buffer;
+                }
+            }
+        } catch (LexicalException e) {
+            buffer.setError(e);
+            return buffer;
+        }
+    }
+
+    /**
+     * @return the number of tokens of buffer that end before offset (the character
+     *         after them is before it), which are the ones that can't be changed
+     *         by an edit at offset.
+     */
+    private static int restartIndex(TokenBuffer buffer, int offset) {
+        int low = 0;
+        int high = buffer.size();
+        // binary search for the first token that ends at offset or later.
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.start(middle) + buffer.length(middle) < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * the old buffer stopped at a lexical error. The exception can't be shifted,
+     * so lex the rest of the input again from the end of the last token, which is
+     * where the old lexer failed.
+     */
+    private static void relexError(TokenBuffer buffer, LexerImp lexer) {
+        lexer.resume(end(buffer));
+        try {
+            while (lexer.lexOneInto(buffer) != Kind.EOF) {
+            }
+        } catch (LexicalException e) {
+            buffer.setError(e);
+        }
+    }
+
+    /**
+     * @return the end of the last token of the buffer, or 0 if it's empty.
+     */
+    private static int end(TokenBuffer buffer) {
+        if (buffer.size() == 0) {
+            return 0;
+        }
+        int last = buffer.size() - 1;
+        return buffer.start(last) + buffer.length(last);
+    }
+
+}
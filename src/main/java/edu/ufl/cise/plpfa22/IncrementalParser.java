@@ -0,0 +1,351 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.Block;
+import edu.ufl.cise.plpfa22.ast.ConstDec;
+import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
+import edu.ufl.cise.plpfa22.ast.ExpressionBooleanLit;
+import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
+import edu.ufl.cise.plpfa22.ast.ExpressionNumLit;
+import edu.ufl.cise.plpfa22.ast.ExpressionStringLit;
+import edu.ufl.cise.plpfa22.ast.GenericASTVisitor;
+import edu.ufl.cise.plpfa22.ast.Ident;
+import edu.ufl.cise.plpfa22.ast.ProcDec;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.StatementAssign;
+import edu.ufl.cise.plpfa22.ast.StatementBlock;
+import edu.ufl.cise.plpfa22.ast.StatementCall;
+import edu.ufl.cise.plpfa22.ast.StatementEmpty;
+import edu.ufl.cise.plpfa22.ast.StatementIf;
+import edu.ufl.cise.plpfa22.ast.StatementInput;
+import edu.ufl.cise.plpfa22.ast.StatementOutput;
+import edu.ufl.cise.plpfa22.ast.StatementWhile;
+import edu.ufl.cise.plpfa22.ast.VarDec;
+
+/**
+ * Keeps the tokens and the AST of an input up to date after every edit, for
+ * editors that parse the source after every change.
+ *
+ * The tokens are relexed with IncrementalLexer. If the edit is inside a
+ * procedure, the innermost such procedure is parsed again alone, and replaces
+ * the old ProcDec in the procedureDecs of its block; the rest of the tree is
+ * reused. The text of a procedure is from its PROCEDURE to the first token of
+ * what follows it in the block, so it's reparsed alone only if it still ends
+ * there. Otherwise, e.g. if the edit removes the SEMI of the procedure or adds a
+ * declaration, or if the edit isn't in a procedure, the whole input is parsed
+ * again.
+ *
+ * The reused tokens are moved into the new input in place: the ones after the
+ * edit to their new offsets, and all of them get views of the new input and its
+ * line index, so the tree doesn't keep the old input. The edit changes the tree,
+ * so the scope and type passes must be run again on it before code generation,
+ * as for a new tree.
+ */
+public class IncrementalParser {
+    private TokenBuffer tokens;
+
+    // the AST of the tokens, or null if they have a lexical or a syntax error.
+    private Program program;
+
+    /**
+     * parse an input.
+     *
+     * @throws PLPException the error of the input, if any
+     */
+    public IncrementalParser(String input) throws PLPException {
+        this.tokens = TokenBuffer.lex(input);
+        this.program = this.parse();
+    }
+
+    public TokenBuffer getTokens() {
+        return this.tokens;
+    }
+
+    /**
+     * @return the AST of the input, or null if the last edit made it wrong.
+     */
+    public Program getProgram() {
+        return this.program;
+    }
+
+    /**
+     * replace removedLength characters of the input at offset with insertedText,
+     * and update the AST.
+     *
+     * @param offset        the position of the edit in the input
+     * @param removedLength the number of characters removed
+     * @param insertedText  the characters inserted instead
+     * @return the AST of the new input, which reuses the nodes of the procedures
+     *         that aren't changed.
+     * @throws PLPException the error of the new input, if any. The AST is null
+     *                      until an edit fixes it.
+     */
+    public Program edit(int offset, int removedLength, String insertedText) throws PLPException {
+        this.tokens = IncrementalLexer.relex(this.tokens, offset, removedLength, insertedText);
+        Program previous = this.program;
+        this.program = null;
+        if (previous != null && this.tokens.getError() == null
+                && this.reparseProcedure(previous, offset, offset + removedLength, insertedText.length() - removedLength)) {
+            this.program = previous;
+        } else {
+            this.program = this.parse();
+        }
+        return this.program;
+    }
+
+    private Program parse() throws PLPException {
+        return (Program) new ParserImp(new BufferedLexer(this.tokens)).parse();
+    }
+
+    /**
+     * the first token after the index-th procedure of the block.
+     */
+    private static IToken following(Block block, int index) {
+        return index + 1 < block.procedureDecs.size() ? block.procedureDecs.get(index + 1).firstToken
+                : block.statement.firstToken;
+    }
+
+    /**
+     * parse the innermost procedure containing the edit [offset, editEnd) of the
+     * old input again, and replace it in the tree.
+     *
+     * @param shift the change of the length of the input
+     * @return false if the edit isn't inside a procedure, or if the procedure
+     *         doesn't end at the same token anymore. The tree isn't changed then.
+     */
+    private boolean reparseProcedure(Program program, int offset, int editEnd, int shift) {
+        // the blocks from the program to the procedure, and the index of the
+        // procedure containing the edit in each of them.
+        List<Block> blocks = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        Block block = program.block;
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (int i = 0; i < block.procedureDecs.size(); i++) {
+                ProcDec procDec = block.procedureDecs.get(i);
+                if (procDec.firstToken.getOffset() < offset && editEnd < following(block, i).getOffset()) {
+                    blocks.add(block);
+                    indices.add(i);
+                    block = procDec.block;
+                    found = true;
+                    break;
+                }
+            }
+        }
+        if (blocks.isEmpty()) {
+            return false;
+        }
+
+        Block parent = blocks.get(blocks.size() - 1);
+        int index = indices.get(indices.size() - 1);
+        // the procedure starts before the edit, so its first token is at the same
+        // place in the new input, unless the edit changes it.
+        int first = this.tokens.indexOfStart(parent.procedureDecs.get(index).firstToken.getOffset());
+        if (first < 0) {
+            return false;
+        }
+        BufferedLexer lexer = new BufferedLexer(this.tokens, first);
+        ProcDec procDec;
+        try {
+            procDec = new ParserImp(lexer).parseProcDec();
+        } catch (PLPException e) {
+            return false;
+        }
+        if (this.tokens.start(lexer.index()) != following(parent, index).getOffset() + shift) {
+            return false;
+        }
+
+        parent.procedureDecs.set(index, procDec);
+        // the tokens of the new procedure are already in the new input.
+        new TokenRelocator(editEnd, shift, this.tokens.getInput(), this.tokens.getLineIndex()).visit(program);
+        // the structures of the enclosing nodes changed.
+        program.clearStructuralHash();
+        for (int level = 0; level < blocks.size(); level++) {
+            blocks.get(level).clearStructuralHash();
+            blocks.get(level).procedureDecs.get(indices.get(level)).clearStructuralHash();
+        }
+        // the new nodes get IDs after the ones of the program.
+        program.nodesAdded();
+        return true;
+    }
+
+    /**
+     * moves the tokens of a tree into the new input after an edit, the ones after
+     * the edit to their new offsets. A token can be shared by several nodes, e.g.
+     * by a StatementAssign and its Ident, and it's only moved once.
+     */
+    private static class TokenRelocator implements GenericASTVisitor<Void, Void> {
+        private final int editEnd;
+        private final int shift;
+        private final String input;
+        private final LineIndex lines;
+        private final StackGuard stackGuard = new StackGuard();
+
+        TokenRelocator(int editEnd, int shift, String input, LineIndex lines) {
+            this.editEnd = editEnd;
+            this.shift = shift;
+            this.input = input;
+            this.lines = lines;
+        }
+
+        void visit(ASTNode node) {
+            try {
+                node.visit(this, null);
+            } catch (PLPException e) {
+                // the visitor doesn't throw.
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void relocate(IToken token) {
+            TokenImp tokenImp = (TokenImp) token;
+            if (tokenImp.getLineIndex() != this.lines) {
+                tokenImp.relocate(tokenImp.getOffset() >= this.editEnd ? this.shift : 0, this.input, this.lines);
+            }
+        }
+
+        @Override
+        public Void visitBlock(Block block, Void arg) throws PLPException {
+            this.relocate(block.firstToken);
+            this.stackGuard.forEach(block.constDecs, constDec -> constDec.visit(this, arg));
+            this.stackGuard.forEach(block.varDecs, varDec -> varDec.visit(this, arg));
+            this.stackGuard.forEach(block.procedureDecs, procDec -> procDec.visit(this, arg));
+            this.stackGuard.visit(block.statement, this, arg);
+            return null;
+        }
+
+        @Override
+        public Void visitProgram(Program program, Void arg) throws PLPException {
+            this.relocate(program.firstToken);
+            this.stackGuard.visit(program.block, this, arg);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementAssign(StatementAssign statementAssign, Void arg) throws PLPException {
+            this.relocate(statementAssign.firstToken);
+            this.stackGuard.visit(statementAssign.ident, this, arg);
+            this.stackGuard.visit(statementAssign.expression, this, arg);
+            return null;
+        }
+
+        @Override
+        public Void visitVarDec(VarDec varDec, Void arg) throws PLPException {
+            this.relocate(varDec.firstToken);
+            this.relocate(varDec.ident);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementCall(StatementCall statementCall, Void arg) throws PLPException {
+            this.relocate(statementCall.firstToken);
+            this.stackGuard.visit(statementCall.ident, this, arg);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementInput(StatementInput statementInput, Void arg) throws PLPException {
+            this.relocate(statementInput.firstToken);
+            this.stackGuard.visit(statementInput.ident, this, arg);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementOutput(StatementOutput statementOutput, Void arg) throws PLPException {
+            this.relocate(statementOutput.firstToken);
+            this.stackGuard.visit(statementOutput.expression, this, arg);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementBlock(StatementBlock statementBlock, Void arg) throws PLPException {
+            this.relocate(statementBlock.firstToken);
+            this.stackGuard.forEach(statementBlock.statements, statement -> statement.visit(this, arg));
+            return null;
+        }
+
+        @Override
+        public Void visitStatementIf(StatementIf statementIf, Void arg) throws PLPException {
+            this.relocate(statementIf.firstToken);
+            this.stackGuard.visit(statementIf.expression, this, arg);
+            this.stackGuard.visit(statementIf.statement, this, arg);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementWhile(StatementWhile statementWhile, Void arg) throws PLPException {
+            this.relocate(statementWhile.firstToken);
+            this.stackGuard.visit(statementWhile.expression, this, arg);
+            this.stackGuard.visit(statementWhile.statement, this, arg);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionBinary(ExpressionBinary expressionBinary, Void arg) throws PLPException {
+            this.relocate(expressionBinary.firstToken);
+            this.stackGuard.visit(expressionBinary.e0, this, arg);
+            this.relocate(expressionBinary.op);
+            this.stackGuard.visit(expressionBinary.e1, this, arg);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionIdent(ExpressionIdent expressionIdent, Void arg) throws PLPException {
+            this.relocate(expressionIdent.firstToken);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionNumLit(ExpressionNumLit expressionNumLit, Void arg) throws PLPException {
+            this.relocate(expressionNumLit.firstToken);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStringLit(ExpressionStringLit expressionStringLit, Void arg)
+                throws PLPException {
+            this.relocate(expressionStringLit.firstToken);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Void arg)
+                throws PLPException {
+            this.relocate(expressionBooleanLit.firstToken);
+            return null;
+        }
+
+        @Override
+        public Void visitProcedure(ProcDec procDec, Void arg) throws PLPException {
+            this.relocate(procDec.firstToken);
+            this.relocate(procDec.ident);
+            this.stackGuard.visit(procDec.block, this, arg);
+            return null;
+        }
+
+        @Override
+        public Void visitConstDec(ConstDec constDec, Void arg) throws PLPException {
+            this.relocate(constDec.firstToken);
+            this.relocate(constDec.ident);
+            return null;
+        }
+
+        @Override
+        public Void visitStatementEmpty(StatementEmpty statementEmpty, Void arg) throws PLPException {
+            this.relocate(statementEmpty.firstToken);
+            return null;
+        }
+
+        @Override
+        public Void visitIdent(Ident ident, Void arg) throws PLPException {
+            this.relocate(ident.firstToken);
+            return null;
+        }
+
+    }
+
+}
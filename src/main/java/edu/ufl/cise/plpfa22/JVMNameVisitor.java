@@ -2,7 +2,7 @@ package edu.ufl.cise.plpfa22;
 
 import java.util.List;
 
-import edu.ufl.cise.plpfa22.ast.ASTVisitor;
+import edu.ufl.cise.plpfa22.ast.Attributes;
 import edu.ufl.cise.plpfa22.ast.Block;
 import edu.ufl.cise.plpfa22.ast.ConstDec;
 import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
@@ -10,6 +10,7 @@ import edu.ufl.cise.plpfa22.ast.ExpressionBooleanLit;
 import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
 import edu.ufl.cise.plpfa22.ast.ExpressionNumLit;
 import edu.ufl.cise.plpfa22.ast.ExpressionStringLit;
+import edu.ufl.cise.plpfa22.ast.GenericASTVisitor;
 import edu.ufl.cise.plpfa22.ast.Ident;
 import edu.ufl.cise.plpfa22.ast.ProcDec;
 import edu.ufl.cise.plpfa22.ast.Program;
@@ -23,133 +24,141 @@ import edu.ufl.cise.plpfa22.ast.StatementOutput;
 import edu.ufl.cise.plpfa22.ast.StatementWhile;
 import edu.ufl.cise.plpfa22.ast.VarDec;
 
-public class JVMNameVisitor implements ASTVisitor {
+public class JVMNameVisitor implements GenericASTVisitor<Void, String> {
     final String fullyQualifiedClassName;
     List<String> procNames;
 
+    private final StackGuard stackGuard = new StackGuard();
+
+    // where the JVM names are stored.
+    private final Attributes attributes;
+
     public JVMNameVisitor(String fullyQualifiedClassName, List<String> procNames) {
+        this(fullyQualifiedClassName, procNames, Attributes.TREE);
+    }
+
+    public JVMNameVisitor(String fullyQualifiedClassName, List<String> procNames, Attributes attributes) {
         super();
         this.fullyQualifiedClassName = fullyQualifiedClassName;
         this.procNames = procNames;
+        this.attributes = attributes;
     }
 
     @Override
-    public Object visitBlock(Block block, Object arg) throws PLPException {
-        for (ProcDec procDec : block.procedureDecs) {
-            procDec.visit(this, arg);
-        }
+    public Void visitBlock(Block block, String arg) throws PLPException {
+        this.stackGuard.forEach(block.procedureDecs, procDec -> procDec.visit(this, arg));
         return null;
     }
 
     @Override
-    public Object visitProgram(Program program, Object arg) throws PLPException {
+    public Void visitProgram(Program program, String arg) throws PLPException {
         // arg: current nested structure's JVM name
         program.block.visit(this, this.fullyQualifiedClassName);
         return null;
     }
 
     @Override
-    public Object visitStatementAssign(StatementAssign statementAssign, Object arg) throws PLPException {
+    public Void visitStatementAssign(StatementAssign statementAssign, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitVarDec(VarDec varDec, Object arg) throws PLPException {
+    public Void visitVarDec(VarDec varDec, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitStatementCall(StatementCall statementCall, Object arg) throws PLPException {
+    public Void visitStatementCall(StatementCall statementCall, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitStatementInput(StatementInput statementInput, Object arg) throws PLPException {
+    public Void visitStatementInput(StatementInput statementInput, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitStatementOutput(StatementOutput statementOutput, Object arg) throws PLPException {
+    public Void visitStatementOutput(StatementOutput statementOutput, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitStatementBlock(StatementBlock statementBlock, Object arg) throws PLPException {
+    public Void visitStatementBlock(StatementBlock statementBlock, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitStatementIf(StatementIf statementIf, Object arg) throws PLPException {
+    public Void visitStatementIf(StatementIf statementIf, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitStatementWhile(StatementWhile statementWhile, Object arg) throws PLPException {
+    public Void visitStatementWhile(StatementWhile statementWhile, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitExpressionBinary(ExpressionBinary expressionBinary, Object arg) throws PLPException {
+    public Void visitExpressionBinary(ExpressionBinary expressionBinary, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitExpressionIdent(ExpressionIdent expressionIdent, Object arg) throws PLPException {
+    public Void visitExpressionIdent(ExpressionIdent expressionIdent, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitExpressionNumLit(ExpressionNumLit expressionNumLit, Object arg) throws PLPException {
+    public Void visitExpressionNumLit(ExpressionNumLit expressionNumLit, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitExpressionStringLit(ExpressionStringLit expressionStringLit, Object arg) throws PLPException {
+    public Void visitExpressionStringLit(ExpressionStringLit expressionStringLit, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Object arg) throws PLPException {
+    public Void visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitProcedure(ProcDec procDec, Object arg) throws PLPException {
-        String curName = (String) arg;
-        curName += "$" + new String(procDec.ident.getText());
-        procDec.JVMProcName = curName;
+    public Void visitProcedure(ProcDec procDec, String arg) throws PLPException {
+        String curName = arg;
+        curName += "$" + procDec.ident.getTextView();
+        this.attributes.setJVMProcName(procDec, curName);
         this.procNames.add(curName);
-        procDec.block.visit(this, curName);
+        this.stackGuard.visit(procDec.block, this, curName);
         return null;
     }
 
     @Override
-    public Object visitConstDec(ConstDec constDec, Object arg) throws PLPException {
+    public Void visitConstDec(ConstDec constDec, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitStatementEmpty(StatementEmpty statementEmpty, Object arg) throws PLPException {
+    public Void visitStatementEmpty(StatementEmpty statementEmpty, String arg) throws PLPException {
         assert false;
         return null;
     }
 
     @Override
-    public Object visitIdent(Ident ident, Object arg) throws PLPException {
+    public Void visitIdent(Ident ident, String arg) throws PLPException {
         assert false;
         return null;
     }
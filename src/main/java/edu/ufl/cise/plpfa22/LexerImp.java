@@ -1,457 +1,521 @@
 package edu.ufl.cise.plpfa22;
 
-import java.util.Map;
-import static java.util.Map.entry;
+import java.util.Arrays;
+import java.util.List;
 
 import edu.ufl.cise.plpfa22.IToken.Kind;
+import edu.ufl.cise.plpfa22.IToken.SourceLocation;
 
 public class LexerImp implements ILexer {
-    private String input;
+    private final String input;
 
-    // The line and column number of the next character to be read (at this
-    // position).
-    // The line number and column number starts from 1.
-    private int lineNum = 1;
-    private int colNum = 1;
+    // the end of the part of input to be lexed, EOF is returned at this position.
+    private final int end;
+
+    // maps the positions of the input to lines and columns. The lexer only deals
+    // with positions, and the locations are computed when they're asked for.
+    private final LineIndex lines;
 
     // the next character's position in input that will be sent to the DFA.
     private int pos = 0;
     // record the start index for each token
     private int startIndex = 0;
 
-    // A map from reserved words to the type of the token. This is needed to check
-    // for every identifier token.
-    private Map<String, Kind> reservedWords = Map.ofEntries(
-            entry("TRUE", Kind.BOOLEAN_LIT),
-            entry("FALSE", Kind.BOOLEAN_LIT),
-            entry("CONST", Kind.KW_CONST),
-            entry("VAR", Kind.KW_VAR),
-            entry("PROCEDURE", Kind.KW_PROCEDURE),
-            entry("CALL", Kind.KW_CALL),
-            entry("BEGIN", Kind.KW_BEGIN),
-            entry("END", Kind.KW_END),
-            entry("IF", Kind.KW_IF),
-            entry("THEN", Kind.KW_THEN),
-            entry("WHILE", Kind.KW_WHILE),
-            entry("DO", Kind.KW_DO));
-
-    private enum State {
-        START, // start state
-        IN_NUM, // ,
-        IDENT, // identifier
-        DOT, // .
-        COMMA, // ,
-        SEMI, // ;
-        QUOTE, // " (not a singel character token)
-        LPAREN, // (
-        RPAREN, // )
-        PLUS, // +
-        MINUS, // -
-        TIMES, // *
-        DIV, // /
-        MOD, // %
-        QUESTION, // ?
-        BANG, // !
-        ASSIGN1, // first character of :=
-        ASSIGN2, // second character of :=
-        EQ, // =
-        NEQ, // #
-        LT, // <
-        LE, // <= (after LT)
-        GT, // >
-        GE, // >= (after GT)
-        COMMENT1,
-        COMMENT2,
-        COMMENT3,
-        STRING_LIT, // string
-        STRING_END,
-        HAS_SLASH
-    }
-
-    private State currentState = State.START;
+    // kind and end index of the token recognized by the last call to scan(). The
+    // start index is this.startIndex.
+    private Kind tokenKind;
+    private int tokenEnd;
+
+    // the value of the digits of a NUM_LIT accumulated during the scan. It stops
+    // growing once it exceeds Integer.MAX_VALUE, so that it can't overflow. For an
+    // IDENT, it's the symbol ID of the identifier.
+    private long tokenValue;
+
+    // the hash code of an IDENT, the same as the one of its String.
+    private int tokenHash;
+
+    // finds the ends of the runs of blanks, comment text, identifier and digit
+    // characters in chars, a copy of the part of the input from position
+    // charsOffset. Both are null unless the runs are enabled, see CharRuns.
+    private final CharRuns runs;
+    private final char[] chars;
+    private final int charsOffset;
+
+    // the errors found so far, if the lexer recovers from them. Null if the lexer
+    // throws a LexicalException on the first error instead.
+    private final List<Diagnostic> diagnostics;
+
+    // true if an error has been recovered inside the current string literal, which
+    // is then returned as an ERROR token.
+    private boolean tokenError;
+
+    // assigns the symbol IDs of the identifiers.
+    private final SymbolInterner interner;
+
+    // ring buffer of the tokens that have been scanned by peek() but not returned
+    // by next() yet. The next token is lookahead[lookaheadHead], and the capacity is
+    // always a power of 2.
+    private IToken[] lookahead = new IToken[4];
+    private int lookaheadHead = 0;
+    private int lookaheadCount = 0;
+
+    // the error hit while filling the lookahead buffer. It's thrown again when all
+    // the tokens before it have been returned.
+    private LexicalException lookaheadError;
+
+
+    /*
+     * The DFA is driven by two tables: CHAR_CLASSES maps every ASCII character to
+     * its character class (any other character is in C_OTHER), and
+     * TRANSITIONS[state][class] is the next state, or one of the actions ACCEPT,
+     * ERROR and END_OF_INPUT.
+     */
+
+    // character classes
+    private static final int C_OTHER = 0; // illegal outside of string literals
+    private static final int C_EOF = 1; // 0, returned by charAt() at the end of the input
+    private static final int C_SPACE = 2; // ' ', '\t'
+    private static final int C_CR = 3; // '\r'
+    private static final int C_NL = 4; // '\n'
+    private static final int C_LETTER = 5; // letters that are not C_ESC_LETTER, '_', '$'
+    private static final int C_ESC_LETTER = 6; // b, t, n, f, r, which can follow a '\'
+    private static final int C_ZERO = 7; // 0
+    private static final int C_DIGIT = 8; // 1-9
+    private static final int C_SINGLE = 9; // . , ; ( ) + - * % ? ! #, tokens of one character
+    private static final int C_SLASH = 10; // /
+    private static final int C_COLON = 11; // :
+    private static final int C_EQ = 12; // =
+    private static final int C_LT = 13; // <
+    private static final int C_GT = 14; // >
+    private static final int C_QUOTE = 15; // "
+    private static final int C_APOS = 16; // '
+    private static final int C_BACKSLASH = 17; // \
+    private static final int CLASS_COUNT = 18;
+
+    // states
+    private static final int S_START = 0; // start state
+    private static final int S_IDENT = 1; // identifier or reserved word
+    private static final int S_ZERO = 2; // 0, a NUM_LIT can't start with 0
+    private static final int S_NUM = 3; // NUM_LIT
+    private static final int S_SINGLE = 4; // token of one character, the kind is in SINGLE_KINDS
+    private static final int S_EQ = 5; // =
+    private static final int S_SLASH = 6; // / (DIV or the start of a comment)
+    private static final int S_COMMENT = 7; // after //
+    private static final int S_COMMENT_CR = 8; // \r in a comment, must be followed by \n
+    private static final int S_COLON = 9; // first character of :=
+    private static final int S_ASSIGN = 10; // :=
+    private static final int S_LT = 11; // <
+    private static final int S_LE = 12; // <=
+    private static final int S_GT = 13; // >
+    private static final int S_GE = 14; // >=
+    private static final int S_STRING = 15; // in a string literal
+    private static final int S_ESCAPE = 16; // after a \ in a string literal
+    private static final int S_STRING_END = 17; // after the closing "
+    private static final int STATE_COUNT = 18;
+
+    // actions
+    private static final int ACCEPT = -1; // the token ends before the current character
+    private static final int ERROR = -2; // the current character is illegal in this state
+    private static final int END_OF_INPUT = -3; // return EOF
+
+    private static final byte[] CHAR_CLASSES = new byte[128];
+    private static final int[][] TRANSITIONS = new int[STATE_COUNT][CLASS_COUNT];
+
+    // the kind of the token recognized when a state accepts. Null for S_IDENT and
+    // S_SINGLE, whose kinds depend on the characters of the token.
+    private static final Kind[] ACCEPT_KINDS = new Kind[STATE_COUNT];
+
+    // the kinds of the C_SINGLE tokens, indexed by their character.
+    private static final Kind[] SINGLE_KINDS = new Kind[128];
+
+    // the message of the LexicalException when a state hits ERROR.
+    private static final String[] ERROR_MESSAGES = new String[STATE_COUNT];
+
+    static {
+        for (char ch = 'a'; ch <= 'z'; ch++) {
+            CHAR_CLASSES[ch] = C_LETTER;
+            CHAR_CLASSES[Character.toUpperCase(ch)] = C_LETTER;
+        }
+        CHAR_CLASSES['_'] = C_LETTER;
+        CHAR_CLASSES['$'] = C_LETTER;
+        for (char ch : "btnfr".toCharArray()) {
+            CHAR_CLASSES[ch] = C_ESC_LETTER;
+        }
+        for (char ch = '1'; ch <= '9'; ch++) {
+            CHAR_CLASSES[ch] = C_DIGIT;
+        }
+        CHAR_CLASSES['0'] = C_ZERO;
+        CHAR_CLASSES[0] = C_EOF;
+        CHAR_CLASSES[' '] = C_SPACE;
+        CHAR_CLASSES['\t'] = C_SPACE;
+        CHAR_CLASSES['\r'] = C_CR;
+        CHAR_CLASSES['\n'] = C_NL;
+        CHAR_CLASSES['/'] = C_SLASH;
+        CHAR_CLASSES[':'] = C_COLON;
+        CHAR_CLASSES['='] = C_EQ;
+        CHAR_CLASSES['<'] = C_LT;
+        CHAR_CLASSES['>'] = C_GT;
+        CHAR_CLASSES['"'] = C_QUOTE;
+        CHAR_CLASSES['\''] = C_APOS;
+        CHAR_CLASSES['\\'] = C_BACKSLASH;
+
+        String singles = ".,;()+-*%?!#";
+        Kind[] singleKinds = { Kind.DOT, Kind.COMMA, Kind.SEMI, Kind.LPAREN, Kind.RPAREN, Kind.PLUS, Kind.MINUS,
+                Kind.TIMES, Kind.MOD, Kind.QUESTION, Kind.BANG, Kind.NEQ };
+        for (int i = 0; i < singles.length(); i++) {
+            CHAR_CLASSES[singles.charAt(i)] = C_SINGLE;
+            SINGLE_KINDS[singles.charAt(i)] = singleKinds[i];
+        }
+
+        // by default, a state accepts the token before any character.
+        for (int[] row : TRANSITIONS) {
+            Arrays.fill(row, ACCEPT);
+        }
+
+        int[] start = TRANSITIONS[S_START];
+        Arrays.fill(start, ERROR);
+        start[C_EOF] = END_OF_INPUT;
+        start[C_SPACE] = S_START;
+        start[C_CR] = S_START; // \r will always be followed by a \n, so it's just a white space
+        start[C_NL] = S_START;
+        start[C_LETTER] = S_IDENT;
+        start[C_ESC_LETTER] = S_IDENT;
+        start[C_ZERO] = S_ZERO;
+        start[C_DIGIT] = S_NUM;
+        start[C_SINGLE] = S_SINGLE;
+        start[C_EQ] = S_EQ;
+        start[C_SLASH] = S_SLASH;
+        start[C_COLON] = S_COLON;
+        start[C_LT] = S_LT;
+        start[C_GT] = S_GT;
+        start[C_QUOTE] = S_STRING;
+        ERROR_MESSAGES[S_START] = "Illegal character at start state";
+
+        for (int c : new int[] { C_LETTER, C_ESC_LETTER, C_ZERO, C_DIGIT }) {
+            TRANSITIONS[S_IDENT][c] = S_IDENT;
+        }
+        TRANSITIONS[S_NUM][C_ZERO] = S_NUM;
+        TRANSITIONS[S_NUM][C_DIGIT] = S_NUM;
+        TRANSITIONS[S_LT][C_EQ] = S_LE;
+        TRANSITIONS[S_GT][C_EQ] = S_GE;
+        TRANSITIONS[S_SLASH][C_SLASH] = S_COMMENT;
+
+        // ':' is not a valid token, so any character following ':' except '=' would
+        // cause a lexical error.
+        Arrays.fill(TRANSITIONS[S_COLON], ERROR);
+        TRANSITIONS[S_COLON][C_EQ] = S_ASSIGN;
+        ERROR_MESSAGES[S_COLON] = "':' can't be followed by any character other than '='";
+
+        // a comment ends at the end of the line, and \r\n is the same as \n.
+        Arrays.fill(TRANSITIONS[S_COMMENT], S_COMMENT);
+        TRANSITIONS[S_COMMENT][C_EOF] = END_OF_INPUT;
+        TRANSITIONS[S_COMMENT][C_CR] = S_COMMENT_CR;
+        TRANSITIONS[S_COMMENT][C_NL] = S_START;
+        Arrays.fill(TRANSITIONS[S_COMMENT_CR], ERROR);
+        TRANSITIONS[S_COMMENT_CR][C_NL] = S_START;
+        ERROR_MESSAGES[S_COMMENT_CR] = "an \\r should always be followed by a \\n";
+
+        Arrays.fill(TRANSITIONS[S_STRING], S_STRING);
+        TRANSITIONS[S_STRING][C_EOF] = ERROR; // hit EOF, that means the quote is not closed.
+        TRANSITIONS[S_STRING][C_BACKSLASH] = S_ESCAPE;
+        TRANSITIONS[S_STRING][C_QUOTE] = S_STRING_END;
+        ERROR_MESSAGES[S_STRING] = "Unterminated String";
+        Arrays.fill(TRANSITIONS[S_ESCAPE], ERROR);
+        for (int c : new int[] { C_ESC_LETTER, C_QUOTE, C_APOS, C_BACKSLASH }) {
+            TRANSITIONS[S_ESCAPE][c] = S_STRING;
+        }
+        ERROR_MESSAGES[S_ESCAPE] = "illegal escape sequence";
+
+        ACCEPT_KINDS[S_ZERO] = Kind.NUM_LIT;
+        ACCEPT_KINDS[S_NUM] = Kind.NUM_LIT;
+        ACCEPT_KINDS[S_EQ] = Kind.EQ;
+        ACCEPT_KINDS[S_SLASH] = Kind.DIV;
+        ACCEPT_KINDS[S_ASSIGN] = Kind.ASSIGN;
+        ACCEPT_KINDS[S_LT] = Kind.LT;
+        ACCEPT_KINDS[S_LE] = Kind.LE;
+        ACCEPT_KINDS[S_GT] = Kind.GT;
+        ACCEPT_KINDS[S_GE] = Kind.GE;
+        ACCEPT_KINDS[S_STRING_END] = Kind.STRING_LIT;
+    }
+
+    /*
+     * Reserved words are found with a perfect hash of the length, the first and
+     * the last character of an identifier, and then compared with the only
+     * reserved word that has that hash.
+     */
+    private static final int RESERVED_WORDS_MASK = 15;
+    private static final String[] RESERVED_WORDS = new String[RESERVED_WORDS_MASK + 1];
+    private static final Kind[] RESERVED_WORD_KINDS = new Kind[RESERVED_WORDS_MASK + 1];
+
+    static {
+        String[] words = { "TRUE", "FALSE", "CONST", "VAR", "PROCEDURE", "CALL", "BEGIN", "END", "IF", "THEN",
+                "WHILE", "DO" };
+        Kind[] kinds = { Kind.BOOLEAN_LIT, Kind.BOOLEAN_LIT, Kind.KW_CONST, Kind.KW_VAR, Kind.KW_PROCEDURE,
+                Kind.KW_CALL, Kind.KW_BEGIN, Kind.KW_END, Kind.KW_IF, Kind.KW_THEN, Kind.KW_WHILE, Kind.KW_DO };
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            int hash = reservedWordHash(word.length(), word.charAt(0), word.charAt(word.length() - 1));
+            // checked even without assertions, a collision would misclassify identifiers.
+            if (RESERVED_WORDS[hash] != null) {
+                throw new IllegalStateException("the hash of reserved words is not perfect: " + word + " and "
+                        + RESERVED_WORDS[hash] + " have the same hash");
+            }
+            RESERVED_WORDS[hash] = word;
+            RESERVED_WORD_KINDS[hash] = kinds[i];
+        }
+    }
+
+    private static int reservedWordHash(int length, char first, char last) {
+        return (length + 2 * first + 6 * last) & RESERVED_WORDS_MASK;
+    }
+
+    // the current state of the DFA, only updated when it changes.
+    private int currentState = S_START;
 
     /**
-     * read the next character, change the state, lineNum, ColNum, and pos
-     * accordingly.
-     * 
-     * @return the next token.
+     * record the token that ends at the current position, and reset the DFA to the
+     * START state.
      * 
-     * @exception LexicalException the next token to read is illegal.
+     * @param kind the kind of the token
+     * @return kind
      */
-    private IToken getNextToken() throws LexicalException {
-        char ch;
-
-        // start index, line, and col number of the next token.
-        this.startIndex = pos;
-        int startLineNum = this.lineNum;
-        int startColNum = this.colNum;
-        while (true) {
-            // get the next character and handle EOF, which is that we reached the end of
-            // the input string.
-            if (this.pos != this.input.length()) {
-                ch = this.input.charAt(this.pos);
-            } else {
-                ch = 0; // EOF
-            }
+    private Kind accept(Kind kind) {
+        this.currentState = S_START;
+        this.tokenKind = kind;
+        this.tokenEnd = this.pos;
+        return kind;
+    }
 
-            switch (this.currentState) {
-                case START -> {
-                    switch (ch) {
-                        case '.' -> {
-                            this.currentState = State.DOT;
-                        }
-                        case ',' -> {
-                            this.currentState = State.COMMA;
-                        }
-                        case ';' -> {
-                            this.currentState = State.SEMI;
-                        }
-                        case '(' -> {
-                            this.currentState = State.LPAREN;
-                        }
-                        case ')' -> {
-                            this.currentState = State.RPAREN;
-                        }
-                        case '+' -> {
-                            this.currentState = State.PLUS;
-                        }
-                        case '-' -> {
-                            this.currentState = State.MINUS;
-                        }
-                        case '*' -> {
-                            this.currentState = State.TIMES;
-                        }
-                        case '/' -> {
-                            this.currentState = State.DIV;
-                        }
-                        case '%' -> {
-                            this.currentState = State.MOD;
-                        }
-                        case '?' -> {
-                            this.currentState = State.QUESTION;
-                        }
-                        case '!' -> {
-                            this.currentState = State.BANG;
-                        }
-                        case ':' -> {
-                            this.currentState = State.ASSIGN1;
-                        }
-                        case '=' -> {
-                            this.currentState = State.EQ;
-                        }
-                        case '#' -> {
-                            this.currentState = State.NEQ;
-                        }
-                        case '<' -> {
-                            this.currentState = State.LT;
-                        }
-                        case '>' -> {
-                            this.currentState = State.GT;
-                        }
-                        case ' ', '\t', '\r' -> {
-                            // skip white spaces
-
-                            // since white spaces is not part of the token and is omitted, the start index
-                            // and col number need to be updated (line number doesn't change).
-                            this.startIndex = pos + 1; // add 1 because pos and colNum will add 1 that each loop.
-                            startColNum = this.colNum + 1;
-                        }
-                        case '\n' -> {
-                            // \r\r don't need to be considered since we can assume that \r will always be
-                            // followed by a \n
-                            // reset col to 0 and increase lineNum by 1
-                            this.colNum = 0;
-                            this.lineNum += 1;
-
-                            // since whitespaces is not part of the token and is omitted, the start index,
-                            // start line and col number need to be updated.
-                            this.startIndex = pos + 1; // add 1 because pos and colNum will add 1 that each loop.
-                            startColNum = this.colNum + 1;
-                            startLineNum = this.lineNum;
-                        }
-                        case 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r',
-                                's', 't', 'u', 'v', 'w', 'x', 'y', 'z', 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I',
-                                'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
-                                '_', '$' -> {
-                            this.currentState = State.IDENT;
-                        }
-                        case 0 -> {
-                            return new TokenImp(Kind.EOF, this.lineNum, this.colNum, "");
-                        }
-                        // start of num_lit
-                        case '0' -> {
-                            //
-                            pos += 1;
-                            this.colNum += 1;
-
-                            return new TokenImp(Kind.NUM_LIT, startLineNum, startColNum, "0");
-                        }
-                        case '1', '2', '3', '4', '5', '6', '7', '8', '9' -> {
-                            // keep track of the startIndex and make the substring later
-                            this.currentState = State.IN_NUM;
-                        }
-                        case '"' -> {
-                            this.currentState = State.STRING_LIT;
-                        }
-                        default -> {
-                            // Illegal character
-                            throw new LexicalException("Illegal character at start state", this.lineNum, this.colNum);
-                        }
-                    }
-                }
-                case IDENT -> {
-                    switch (ch) {
-                        case 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r',
-                                's', 't', 'u', 'v', 'w', 'x', 'y', 'z', 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I',
-                                'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
-                                '_', '$', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> {
-                            // state not changed
-                        }
-                        default -> {
-                            // Either it's an identifier, or it's a reserved word. The curState will always
-                            // switch to START.
-                            this.currentState = State.START;
-
-                            // the text of the token, used to check if it's a reserved word and construct
-                            // the Token instance.
-                            String curTokenText = this.input.substring(startIndex, this.pos);
-
-                            // check if it's a reserved word or an identifier
-                            if (this.reservedWords.containsKey(curTokenText)) {
-                                // it's a reserved word.
-                                return new TokenImp(this.reservedWords.get(curTokenText), startLineNum, startColNum,
-                                        curTokenText);
-                            } else {
-                                // it's an identifier.
-                                return new TokenImp(Kind.IDENT, startLineNum, startColNum, curTokenText);
-                            }
-
-                        }
-                    }
-                }
-                case DOT -> {
-                    this.currentState = State.START; // TODO: Maybe this should be refactored to be executed every time
-                                                     // before this method returns.
-                    return new TokenImp(Kind.DOT, startLineNum, startColNum, ".");
-                }
-                case COMMA -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.COMMA, startLineNum, startColNum, ",");
-                }
-                case SEMI -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.SEMI, startLineNum, startColNum, ";");
-                }
-                case LPAREN -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.LPAREN, startLineNum, startColNum, "(");
-                }
-                case RPAREN -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.RPAREN, startLineNum, startColNum, ")");
-                }
+    /**
+     * get the character at a position of the input. Subclasses that don't keep the
+     * whole input in a String override this and text().
+     * 
+     * @param index the position in the input. It's never before the start of the
+     *              current token.
+     * @return the character, or 0 if index is at the end of the input (EOF).
+     * @throws LexicalException the input can't be read
+     */
+    protected char charAt(int index) throws LexicalException {
+        return index < this.end ? this.input.charAt(index) : 0;
+    }
 
-                case PLUS -> {
-                    // return token of PLUS no matter what the next character is.
-                    this.currentState = State.START;
+    /**
+     * get the characters in [start, end) of the input. The text is a view of the
+     * input, so no character is copied.
+     * 
+     * @throws LexicalException the input can't be read
+     */
+    protected TokenText text(int start, int end) throws LexicalException {
+        return new TokenText(this.input, start, end - start);
+    }
 
-                    // the start of the next token.
-                    return new TokenImp(Kind.PLUS, startLineNum, startColNum, "+");
+    /**
+     * @return the first position of the input that will be read again, i.e. the
+     *         start of the current token. White spaces and comments are never read
+     *         again, so a subclass can drop them while they're being skipped.
+     */
+    protected int firstRetainedIndex() {
+        return switch (this.currentState) {
+            case S_START, S_COMMENT, S_COMMENT_CR -> this.pos;
+            default -> this.startIndex;
+        };
+    }
 
-                }
-                case MINUS -> {
-                    // return token of MINUS no matter what the next character is.
-                    this.currentState = State.START;
+    /**
+     * check if the characters in [start, end) is a reserved word without creating
+     * a substring.
+     * 
+     * @return the kind of the reserved word, or IDENT if it's not a reserved word.
+     */
+    private Kind reservedWordKind(int start, int end) throws LexicalException {
+        int length = end - start;
+        char first = this.charAt(start);
+        char last = this.charAt(end - 1);
+        int hash = reservedWordHash(length, first, last);
+        String word = RESERVED_WORDS[hash];
+        if (word == null || word.length() != length) {
+            return Kind.IDENT;
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.charAt(start + i) != word.charAt(i)) {
+                return Kind.IDENT;
+            }
+        }
+        return RESERVED_WORD_KINDS[hash];
+    }
 
-                    // the start of the next token.
-                    return new TokenImp(Kind.MINUS, startLineNum, startColNum, "-");
-                }
-                case TIMES -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.TIMES, startLineNum, startColNum, "*");
-                }
-                case DIV -> {
-                    switch (ch) {
-                        case '/' -> {
-                            this.currentState = State.COMMENT1;
-                        }
-                        default -> {
-                            this.currentState = State.START;
-                            return new TokenImp(Kind.DIV, startLineNum, startColNum, "/");
-                        }
-                    }
-                }
-                case COMMENT1 -> {
-                    switch (ch) {
-                        case '\r' -> {
-                            this.currentState = State.COMMENT2;
-                            this.lineNum += 1;
-                            this.colNum = 0;
-                        }
-                        case '\n' -> {
-                            this.currentState = State.COMMENT3;
-                            this.lineNum += 1;
-                            this.colNum = 0;
-                        }
-                        case 0 -> {
-                            return new TokenImp(Kind.EOF, this.lineNum, this.colNum, "");
-                        }
-                        default -> {
-
-                        }
-                    }
-                }
-                case COMMENT2 -> {
-                    switch (ch) {
-                        case '\n' -> {
-                            this.currentState = State.COMMENT3;
-                        }
-                        default -> {
-                            throw new LexicalException("an \\r should always be followed by a \\n");
-                        }
-                    }
-                }
-                case COMMENT3 -> {
-                    this.currentState = State.START;
-                    startLineNum = this.lineNum;
-                    startColNum = this.colNum;
-                    startIndex = this.pos;
-                    this.pos -= 1; // pos will add 1 at the end of the loop, so minus 1 here to make sure this
-                                   // character is still the next character to read.
-                    this.colNum -= 1; // same for colNum
-                }
-                case MOD -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.MOD, startLineNum, startColNum, "%");
-                }
-                case QUESTION -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.QUESTION, startLineNum, startColNum, "?");
-                }
-                case BANG -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.BANG, startLineNum, startColNum, "!");
-                }
-                case ASSIGN1 -> {
-                    switch (ch) {
-                        case '=' -> {
-                            this.currentState = State.ASSIGN2;
-                        }
-                        default -> {
-                            // Since ':' is not a valid token, any character follow ':' except '=' would
-                            // cause a lexical error.
-                            // ASSIGN1 is not an accept state.
-                            throw new LexicalException("':' can't be followed by any character other than '='",
-                                    startLineNum, startColNum);
-                        }
+    /**
+     * run the DFA from the current position until it recognizes a token, and update
+     * the state and pos accordingly. The kind and position of the recognized token
+     * is recorded in startIndex and tokenEnd, and the value of a NUM_LIT or the
+     * symbol ID of an IDENT in tokenValue, so that no object is created for the
+     * token.
+     * 
+     * @return the kind of the next token.
+     * 
+     * @exception LexicalException the next token to read is illegal.
+     */
+    private Kind scan() throws LexicalException {
+        int state = S_START;
+        // the value of the digits of a NUM_LIT and the hash code of an IDENT. They
+        // are only updated in these states, which always end the scan.
+        long value = 0;
+        int hash = 0;
+        while (true) {
+            // get the next character, 0 if we reached the end of the input.
+            char ch = this.charAt(this.pos);
+            int charClass = ch < 128 ? CHAR_CLASSES[ch] : C_OTHER;
+            int next = TRANSITIONS[state][charClass];
+            if (next != state) {
+                if (next == ERROR && state == S_ESCAPE && this.diagnostics != null) {
+                    // keep the illegal character in the string, which becomes an ERROR token.
+                    this.report(ERROR_MESSAGES[state], this.startIndex);
+                    this.tokenError = true;
+                    next = S_STRING;
+                    if (charClass == C_EOF) {
+                        this.currentState = next;
+                        state = next;
+                        continue;
                     }
+                } else if (next < 0) {
+                    this.tokenValue = value;
+                    this.tokenHash = hash;
+                    return this.act(next, state);
                 }
-                case ASSIGN2 -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.ASSIGN, startLineNum, startColNum, ":=");
-                }
-                case EQ -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.EQ, startLineNum, startColNum, "=");
-                }
-                case NEQ -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.NEQ, startLineNum, startColNum, "#");
+                if (state == S_START) {
+                    // the first character of a token.
+                    this.startIndex = this.pos;
+                    this.tokenError = false;
                 }
-                case LT -> {
-                    switch (ch) {
-                        case '=' -> {
-                            this.currentState = State.LE;
-                        }
-                        default -> {
-                            this.currentState = State.START;
-                            return new TokenImp(Kind.LT, startLineNum, startColNum, "<");
-                        }
-                    }
-                }
-                case LE -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.LE, startLineNum, startColNum, "<=");
-                }
-                case GT -> {
-                    switch (ch) {
-                        case '=' -> {
-                            this.currentState = State.GE;
-                        }
-                        default -> {
-                            this.currentState = State.START;
-                            return new TokenImp(Kind.GT, startLineNum, startColNum, ">");
-                        }
-                    }
-                }
-                case GE -> {
-                    this.currentState = State.START;
-                    return new TokenImp(Kind.GE, startLineNum, startColNum, ">=");
+                this.currentState = next;
+                state = next;
+                if (this.runs != null && this.skipRun(state)) {
+                    // the whole run is consumed, the current character ends it.
+                    hash = this.tokenHash;
+                    value = this.tokenValue;
+                    continue;
                 }
+            }
+            if (state == S_IDENT) {
+                hash = 31 * hash + ch;
+            } else if (state == S_NUM && value <= Integer.MAX_VALUE) {
+                value = value * 10 + (ch - '0');
+            }
+            this.pos += 1;
+            if (charClass == C_NL && this.runs != null && state == S_START) {
+                // skip the indentation of the next line.
+                this.pos = this.runs.skipBlanks(this.chars, this.pos - this.charsOffset, this.chars.length)
+                        + this.charsOffset;
+            }
+        }
+    }
 
-                case IN_NUM -> {
-                    // keep reading the input till next char is not int
-                    switch (ch) {
-                        case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> {
-                            // no need to add anything in this bracket so far
-                        }
-                        default -> {
-                            // return the NUM_LIT token
-                            this.currentState = State.START;
-                            return new TokenImp(Kind.NUM_LIT, startLineNum, startColNum,
-                                    input.substring(startIndex, this.pos));
-                        }
+    /**
+     * skip the rest of a run of characters that doesn't change the state with
+     * runs, after the first character of an IDENT or a NUM_LIT, or the // of a
+     * comment. None of these runs contains a line feed.
+     * 
+     * @param state the state after the current character
+     * @return true if pos is moved after the run, with the hash code or the value
+     *         of the token in tokenHash or tokenValue.
+     */
+    private boolean skipRun(int state) {
+        // the current character, in chars.
+        int index = this.pos - this.charsOffset;
+        int runEnd;
+        switch (state) {
+            case S_IDENT -> {
+                runEnd = this.runs.skipIdentChars(this.chars, index + 1, this.chars.length);
+                this.tokenHash = CharRuns.hash(this.chars, index, runEnd);
+            }
+            case S_NUM -> {
+                runEnd = this.runs.skipDigits(this.chars, index + 1, this.chars.length);
+                this.tokenValue = CharRuns.value(this.chars, index, runEnd);
+            }
+            case S_COMMENT -> {
+                runEnd = this.runs.skipCommentText(this.chars, index + 1, this.chars.length);
+            }
+            default -> {
+                return false;
+            }
+        }
+        this.pos = runEnd + this.charsOffset;
+        return true;
+    }
+
+    /**
+     * do an action of the DFA.
+     * 
+     * @param action ACCEPT, ERROR or END_OF_INPUT
+     * @param state  the state in which the action happens
+     * @return the kind of the recognized token.
+     * @throws LexicalException the action is ERROR
+     */
+    private Kind act(int action, int state) throws LexicalException {
+        switch (action) {
+            case ACCEPT -> {
+                Kind kind = ACCEPT_KINDS[state];
+                if (state == S_IDENT) {
+                    // Either it's an identifier, or it's a reserved word.
+                    kind = this.reservedWordKind(this.startIndex, this.pos);
+                    if (kind == Kind.IDENT) {
+                        this.tokenValue = this.intern(this.startIndex, this.pos, this.tokenHash);
                     }
+                } else if (state == S_SINGLE) {
+                    kind = SINGLE_KINDS[this.charAt(this.startIndex)];
+                } else if (state == S_NUM && this.tokenValue > Integer.MAX_VALUE) {
+                    return this.error("integer literal is out of range", this.startIndex);
+                } else if (state == S_STRING_END && this.tokenError) {
+                    return this.accept(Kind.ERROR);
                 }
-                case STRING_LIT -> {
-                    switch (ch) {
-                        case '"' -> {
-                            // end of a string
-                            this.currentState = State.STRING_END;
-                        }
-                        case '\\' -> {
-                            this.currentState = State.HAS_SLASH;
-                        }
-                        case '\n' -> {
-                            this.lineNum += 1;
-                            this.colNum = 0;
-                        }
-                        case 0 -> {
-                            // hit EOF, that means the quote is not closed.
-                            throw new LexicalException("Unterminated String", startLineNum, startColNum);
-                        }
-                        default -> {
-
-                        }
+                return this.accept(kind);
+            }
+            case END_OF_INPUT -> {
+                this.startIndex = this.pos;
+                return this.accept(Kind.EOF);
+            }
+            default -> {
+                if (state == S_START) {
+                    // the illegal character is the current one, which is the ERROR token.
+                    this.startIndex = this.pos;
+                    if (this.diagnostics != null) {
+                        this.pos += 1;
                     }
                 }
-                case HAS_SLASH -> {
-                    switch (ch) {
-                        case 'b', 't', 'n', 'f', 'r', '"', '\'', '\\' -> {
-
-                            this.currentState = State.STRING_LIT;
-                        }
-                        default -> {
-                            throw new LexicalException();
-                        }
-                    }
+                // otherwise, the ERROR token is the part of the token before the current
+                // character, and the lexer goes on from the current character.
+                return this.error(ERROR_MESSAGES[state], this.startIndex);
+            }
+        }
+    }
 
-                }
-                case STRING_END -> {
-                    this.currentState = State.START;
+    /**
+     * throw a LexicalException, or report a diagnostic and return the current token
+     * as an ERROR token if the lexer recovers from errors.
+     * 
+     * @return ERROR
+     * @throws LexicalException the lexer doesn't recover from errors.
+     */
+    private Kind error(String message, int position) throws LexicalException {
+        if (this.diagnostics == null) {
+            SourceLocation location = this.lines.location(position);
+            throw new LexicalException(message, location.line(), location.column());
+        }
+        this.report(message, position);
+        return this.accept(Kind.ERROR);
+    }
 
-                    return new TokenImp(Kind.STRING_LIT, startLineNum, startColNum,
-                            input.substring(startIndex, this.pos));
-                }
-                default -> {
-                    // it would be an error if the current state is not in the above states
-                    assert false;
-                }
+    private void report(String message, int position) {
+        SourceLocation location = this.lines.location(position);
+        this.diagnostics.add(new Diagnostic(message, location.line(), location.column()));
+    }
 
-            }
-            this.pos += 1;
-            this.colNum += 1;
-        }
+    /**
+     * @return the diagnostics of the errors found so far, or null if the lexer
+     *         throws a LexicalException on the first error.
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return this.diagnostics;
     }
 
     /**
@@ -460,30 +524,250 @@ public class LexerImp implements ILexer {
      * @param input the string to be lexical-analysed
      */
     public LexerImp(String input) {
+        this(input, new SymbolInterner());
+    }
+
+    /**
+     * @param input    the string to be lexical-analysed
+     * @param interner the interner of the compilation, which assigns the symbol
+     *                 IDs of the identifiers
+     */
+    public LexerImp(String input, SymbolInterner interner) {
+        this(input, 0, input.length(), interner, CharRuns.getDefault(), null);
+    }
+
+    /**
+     * @param input    the string to be lexical-analysed
+     * @param interner the interner of the identifiers
+     * @param runs     finds the runs of characters, or null to run the DFA on
+     *                 every character
+     */
+    LexerImp(String input, SymbolInterner interner, CharRuns runs) {
+        this(input, 0, input.length(), interner, runs, null);
+    }
+
+    /**
+     * a lexer that recovers from lexical errors: an error is recorded in
+     * diagnostics, the wrong part of the input is returned as an ERROR token, and
+     * the lexer goes on after it, so no LexicalException is thrown.
+     * 
+     * @param input       the string to be lexical-analysed
+     * @param interner    the interner of the identifiers
+     * @param diagnostics the list the errors are added to
+     */
+    public LexerImp(String input, SymbolInterner interner, List<Diagnostic> diagnostics) {
+        this(input, 0, input.length(), interner, CharRuns.getDefault(), diagnostics);
+    }
+
+    /**
+     * lexer over the characters [start, end) of the input, as if the input ended
+     * at end.
+     * 
+     * @param input    the string to be lexical-analysed
+     * @param start    the position of the first character to be lexed
+     * @param end      the position where EOF is returned
+     * @param interner the interner of the identifiers
+     * @param lines    the line index of the whole input
+     */
+    LexerImp(String input, int start, int end, SymbolInterner interner, LineIndex lines) {
+        this(input, start, end, interner, lines, CharRuns.getDefault(), null);
+    }
+
+    private LexerImp(String input, int start, int end, SymbolInterner interner, CharRuns runs,
+            List<Diagnostic> diagnostics) {
+        this(input, start, end, interner, new LineIndex(input), runs, diagnostics);
+    }
+
+    private LexerImp(String input, int start, int end, SymbolInterner interner, LineIndex lines, CharRuns runs,
+            List<Diagnostic> diagnostics) {
         this.input = input;
+        this.lines = lines;
+        this.diagnostics = diagnostics;
+        this.runs = runs;
+        this.chars = runs != null ? new char[end - start] : null;
+        this.charsOffset = start;
+        if (runs != null) {
+            input.getChars(start, end, this.chars, 0);
+        }
+        this.end = end;
+        this.pos = start;
+        this.startIndex = start;
+        this.interner = interner;
+    }
+
+    /**
+     * Constructor for subclasses that provide the characters by overriding
+     * charAt(), text(), intern() and identText().
+     * 
+     * @param interner the interner of the identifiers
+     * @param lines    the line index of the positions of the subclass
+     */
+    protected LexerImp(SymbolInterner interner, LineIndex lines) {
+        this.input = null;
+        this.lines = lines;
+        this.diagnostics = null;
+        this.end = 0;
+        this.runs = null;
+        this.chars = null;
+        this.charsOffset = 0;
+        this.interner = interner;
+    }
+
+    public SymbolInterner getInterner() {
+        return this.interner;
+    }
+
+    public LineIndex getLineIndex() {
+        return this.lines;
+    }
+
+    /**
+     * get the symbol ID of the identifier in [start, end) of the input.
+     * 
+     * @param hash the hash code of the identifier, computed during the scan
+     * @throws LexicalException the input can't be read
+     */
+    protected int intern(int start, int end, int hash) throws LexicalException {
+        return this.interner.intern(this.input, start, end - start, hash);
+    }
+
+    /**
+     * get the text of the identifier in [start, end) of the input, whose String is
+     * the name shared by all the occurrences of the identifier.
+     * 
+     * @param name the name of the identifier in the interner
+     * @throws LexicalException the input can't be read
+     */
+    protected TokenText identText(int start, int end, String name) throws LexicalException {
+        return new TokenText(this.input, start, end - start, name);
+    }
+
+    /**
+     * create a token from the result of the last call to scan().
+     * 
+     * @return the token
+     * @throws LexicalException
+     */
+    private IToken makeToken() throws LexicalException {
+        int value = (int) this.tokenValue;
+        TokenText text = this.tokenKind == Kind.IDENT
+                ? this.identText(this.startIndex, this.tokenEnd, this.interner.name(value))
+                : this.text(this.startIndex, this.tokenEnd);
+        return this.token(this.tokenKind, this.startIndex, text, value);
+    }
+
+    /**
+     * create a token at a position of the input, whose location is computed from
+     * the line index when it's asked for.
+     */
+    protected IToken token(Kind kind, int start, TokenText text, int value) {
+        return new TokenImp(kind, start, this.lines, text, value);
+    }
+
+    /**
+     * lex the rest of the input into a TokenBuffer without creating any token
+     * objects. If there's a lexical error, the buffer keeps the tokens before it
+     * and the exception, which is thrown when a cursor reaches it.
+     * 
+     * @param buffer the buffer to append to
+     */
+    void lexInto(TokenBuffer buffer) {
+        assert this.lookaheadCount == 0;
+        try {
+            while (this.lexOneInto(buffer) != Kind.EOF) {
+            }
+        } catch (LexicalException e) {
+            buffer.setError(e);
+        }
+    }
+
+    /**
+     * scan the next token and append it to a TokenBuffer.
+     * 
+     * @param buffer the buffer to append to
+     * @return the kind of the token
+     * @throws LexicalException the next token is illegal
+     */
+    Kind lexOneInto(TokenBuffer buffer) throws LexicalException {
+        Kind kind = this.scan();
+        buffer.add(kind, this.startIndex, this.tokenEnd - this.startIndex, (int) this.tokenValue);
+        return kind;
+    }
+
+    /**
+     * continue lexing from another position of the input, which must not be inside
+     * a token, a comment or a string.
+     * 
+     * @param position the position of the next character to read
+     */
+    void resume(int position) {
+        assert this.lookaheadCount == 0 && this.input != null;
+        this.pos = position;
+        this.startIndex = position;
+        this.currentState = S_START;
+    }
+
+    /**
+     * scan tokens into the lookahead buffer until it contains at least count tokens.
+     * 
+     * @param count
+     * @throws LexicalException
+     */
+    private void fillLookahead(int count) throws LexicalException {
+        if (this.lookaheadError != null) {
+            throw this.lookaheadError;
+        }
+        if (count > this.lookahead.length) {
+            // grow the ring buffer, and move the tokens to the beginning of it.
+            int capacity = Integer.highestOneBit(count - 1) << 1;
+            IToken[] newLookahead = new IToken[capacity];
+            for (int i = 0; i < this.lookaheadCount; i++) {
+                newLookahead[i] = this.lookahead[(this.lookaheadHead + i) & (this.lookahead.length - 1)];
+            }
+            this.lookahead = newLookahead;
+            this.lookaheadHead = 0;
+        }
+        try {
+            while (this.lookaheadCount < count) {
+                this.scan();
+                this.lookahead[(this.lookaheadHead + this.lookaheadCount) & (this.lookahead.length - 1)] = this
+                        .makeToken();
+                this.lookaheadCount++;
+            }
+        } catch (LexicalException e) {
+            this.lookaheadError = e;
+            throw e;
+        }
     }
 
     @Override
     public IToken next() throws LexicalException {
-        return this.getNextToken();
+        if (this.lookaheadCount == 0) {
+            if (this.lookaheadError != null) {
+                throw this.lookaheadError;
+            }
+            this.scan();
+            return this.makeToken();
+        }
+        IToken res = this.lookahead[this.lookaheadHead];
+        this.lookahead[this.lookaheadHead] = null;
+        this.lookaheadHead = (this.lookaheadHead + 1) & (this.lookahead.length - 1);
+        this.lookaheadCount--;
+        return res;
     }
 
     @Override
     public IToken peek() throws LexicalException {
-        // store the current states and position information.
-        int lastPos = this.pos;
-        int lastLineNum = this.lineNum;
-        int lastColNum = this.colNum;
-        State lastCurrentState = this.currentState;
-
-        // get the next token. currentState and position information changed.
-        IToken res = this.getNextToken();
-
-        // restore the last state and position information.
-        this.pos = lastPos;
-        this.lineNum = lastLineNum;
-        this.colNum = lastColNum;
-        this.currentState = lastCurrentState;
-        return res;
+        return this.peek(0);
+    }
+
+    @Override
+    public IToken peek(int k) throws LexicalException {
+        // the peeked tokens are kept, so that peeking again or the following next()
+        // doesn't scan them again.
+        if (k >= this.lookaheadCount) {
+            this.fillLookahead(k + 1);
+        }
+        return this.lookahead[(this.lookaheadHead + k) & (this.lookahead.length - 1)];
     }
 }
@@ -0,0 +1,151 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.Arrays;
+
+import edu.ufl.cise.plpfa22.IToken.SourceLocation;
+
+/**
+ * Maps the offsets of a source to lines and columns. Tokens only store the
+ * offset of their first character, and the lexer doesn't count lines, so the
+ * line and the column are only computed when a diagnostic or a test needs them.
+ *
+ * The index is the sorted offsets of the first characters of the lines, and a
+ * line is found by binary search. For a source given as a whole, the line
+ * feeds are found on the first query; a lexer that reads its source
+ * progressively adds them as it reads instead, and discards the lines it has
+ * passed, so the index only has the lines it still reads.
+ *
+ * Lines and columns start from 1, and a column is the number of characters
+ * from the start of the line plus 1.
+ */
+public class LineIndex {
+    // the source, searched for line feeds on the first query, or null if the line
+    // feeds are added with addLineFeeds().
+    private CharSequence source;
+
+    // lineStarts[0, lineCount) are the offsets of the first character of the
+    // lines, in increasing order.
+    private int[] lineStarts = new int[16];
+    private int lineCount = 1;
+
+    // the line of lineStarts[0], after the lines discarded before it.
+    private int firstLine = 1;
+
+    /**
+     * an index of the whole source, which is built on the first query.
+     */
+    public LineIndex(CharSequence source) {
+        this.source = source;
+    }
+
+    /**
+     * an index whose line feeds are added with addLineFeeds().
+     */
+    LineIndex() {
+        this.source = null;
+    }
+
+    /**
+     * add the line feeds of chars[from, to), which are the characters of the
+     * source from offset base + from. The characters must follow the ones already
+     * added.
+     */
+    synchronized void addLineFeeds(char[] chars, int from, int to, int base) {
+        for (int i = from; i < to; i++) {
+            if (chars[i] == '\n') {
+                this.addLineStart(base + i + 1);
+            }
+        }
+    }
+
+    /**
+     * discard the lines before the one of offset. The offsets before it can't be
+     * queried anymore.
+     */
+    synchronized void discardBefore(int offset) {
+        int index = Arrays.binarySearch(this.lineStarts, 0, this.lineCount, offset);
+        int discarded = index >= 0 ? index : -index - 2;
+        if (discarded > 0) {
+            this.lineCount -= discarded;
+            System.arraycopy(this.lineStarts, discarded, this.lineStarts, 0, this.lineCount);
+            this.firstLine += discarded;
+        }
+    }
+
+    /**
+     * @return the number of lines in the index.
+     */
+    synchronized int size() {
+        this.build();
+        return this.lineCount;
+    }
+
+    private void addLineStart(int offset) {
+        if (this.lineCount == this.lineStarts.length) {
+            this.lineStarts = Arrays.copyOf(this.lineStarts, this.lineCount * 2);
+        }
+        this.lineStarts[this.lineCount++] = offset;
+    }
+
+    /**
+     * find the line feeds of the source if it hasn't been done yet.
+     */
+    private void build() {
+        if (this.source != null) {
+            CharSequence source = this.source;
+            this.source = null;
+            if (source instanceof String string) {
+                for (int i = string.indexOf('\n'); i >= 0; i = string.indexOf('\n', i + 1)) {
+                    this.addLineStart(i + 1);
+                }
+            } else {
+                for (int i = 0; i < source.length(); i++) {
+                    if (source.charAt(i) == '\n') {
+                        this.addLineStart(i + 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the line of the offset.
+     */
+    public synchronized int line(int offset) {
+        this.build();
+        int index = Arrays.binarySearch(this.lineStarts, 0, this.lineCount, offset);
+        return (index >= 0 ? index : -index - 2) + this.firstLine;
+    }
+
+    /**
+     * @return the column of the offset.
+     */
+    public int column(int offset) {
+        return this.width(this.lineStart(this.line(offset)), offset) + 1;
+    }
+
+    /**
+     * @return the location of the offset.
+     */
+    public SourceLocation location(int offset) {
+        int line = this.line(offset);
+        return new SourceLocation(line, this.width(this.lineStart(line), offset) + 1);
+    }
+
+    /**
+     * @return the offset of the first character of the line.
+     */
+    public synchronized int lineStart(int line) {
+        this.build();
+        return this.lineStarts[line - this.firstLine];
+    }
+
+    /**
+     * get the number of characters in [start, end) of the source, which is on one
+     * line. Subclasses whose offsets aren't characters override it.
+     */
+    protected int width(int start, int end) {
+        return end - start;
+    }
+
+}
@@ -0,0 +1,200 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+/**
+ * Lexes a large input into a TokenBuffer on several threads. The input is
+ * split into chunks at line boundaries, and every chunk is lexed concurrently
+ * as if it started in the START state of the DFA.
+ *
+ * That guess is only wrong when a chunk starts inside a multi-line string
+ * literal (a comment always ends at the end of its line). The chunks are then
+ * stitched together in order. When a chunk doesn't end cleanly (the lexer hit
+ * an error, which includes a string running into the next chunk), the input is
+ * lexed sequentially from the end of the last good token, until a token starts
+ * at the same position as a token of a following chunk. From there on, that
+ * chunk's tokens are the same as the sequential ones, since the DFA is in the
+ * START state at both.
+ *
+ * The result, including the symbol IDs and the lexical error if there is one,
+ * is identical to TokenBuffer.lex().
+ */
+public class ParallelLexer {
+    // the default number of characters in a chunk.
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final String input;
+    private final SymbolInterner interner;
+
+    // the line index of the input, shared by all the chunks.
+    private final LineIndex lines;
+
+    // chunk k is [chunkStarts[k], chunkStarts[k + 1]) of the input.
+    private final int[] chunkStarts;
+
+    // the speculative tokens of every chunk, lexed with its own interner.
+    private final TokenBuffer[] chunks;
+
+    // the result.
+    private final TokenBuffer buffer;
+
+    private ParallelLexer(String input, SymbolInterner interner, int chunkSize) {
+        this.input = input;
+        this.interner = interner;
+        this.lines = new LineIndex(input);
+        this.chunkStarts = splitLines(input, chunkSize);
+        this.chunks = new TokenBuffer[this.chunkStarts.length - 1];
+        this.buffer = new TokenBuffer(input, interner, this.lines, Math.max(64, input.length() / 4));
+    }
+
+    /**
+     * lex the input on the common ForkJoinPool.
+     *
+     * @param input the string to be lexical-analysed
+     * @return the buffer containing all the tokens of the input.
+     */
+    public static TokenBuffer lex(String input) {
+        return lex(input, new SymbolInterner(), ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param input     the string to be lexical-analysed
+     * @param interner  the interner of the compilation
+     * @param pool      the pool lexing the chunks
+     * @param chunkSize the approximate number of characters in a chunk
+     * @return the buffer containing all the tokens of the input.
+     */
+    public static TokenBuffer lex(String input, SymbolInterner interner, ForkJoinPool pool, int chunkSize) {
+        ParallelLexer lexer = new ParallelLexer(input, interner, chunkSize);
+        if (lexer.chunks.length == 1) {
+            return TokenBuffer.lex(input, interner);
+        }
+        lexer.lexChunks(pool);
+        lexer.stitch();
+        return lexer.buffer;
+    }
+
+    /**
+     * split the input after the first line feed following every multiple of
+     * chunkSize.
+     *
+     * @return the start of every chunk, followed by the length of the input.
+     */
+    private static int[] splitLines(String input, int chunkSize) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        int start = 0;
+        while (input.length() - start > chunkSize) {
+            start = input.indexOf('\n', start + chunkSize) + 1;
+            if (start == 0 || start == input.length()) {
+                break;
+            }
+            starts.add(start);
+        }
+        starts.add(input.length());
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void lexChunks(ForkJoinPool pool) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int k = 0; k < this.chunks.length; k++) {
+            int chunk = k;
+            tasks.add(pool.submit(() -> this.lexChunk(chunk)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    private void lexChunk(int k) {
+        int start = this.chunkStarts[k];
+        int end = this.chunkStarts[k + 1];
+        TokenBuffer chunk = new TokenBuffer(this.input, new SymbolInterner(), this.lines,
+                Math.max(64, (end - start) / 4));
+        new LexerImp(this.input, start, end, chunk.getInterner(), this.lines).lexInto(chunk);
+        this.chunks[k] = chunk;
+    }
+
+    /**
+     * append the tokens of the chunks to the buffer in order, relexing the parts
+     * where the chunks are wrong.
+     */
+    private void stitch() {
+        int[][] symbolMaps = new int[this.chunks.length][];
+        for (int k = 0; k < this.chunks.length; k++) {
+            symbolMaps[k] = new int[this.chunks[k].getInterner().size()];
+            Arrays.fill(symbolMaps[k], -1);
+        }
+
+        LexerImp sequential = null;
+        int k = 0;
+        int from = 0;
+        while (true) {
+            // the tokens of chunk k from index from are right.
+            TokenBuffer chunk = this.chunks[k];
+            boolean last = k == this.chunks.length - 1;
+            int to = chunk.getError() == null && !last ? chunk.size() - 1 : chunk.size();
+            this.buffer.append(chunk, from, to, symbolMaps[k]);
+            if (chunk.getError() == null) {
+                if (last) {
+                    return;
+                }
+                // the chunk ends at EOF in the START state, so the next one starts in it.
+                k++;
+                from = 0;
+                continue;
+            }
+
+            // relex from the end of the last good token.
+            int position = this.chunkStarts[k];
+            if (this.buffer.size() > 0) {
+                int lastToken = this.buffer.size() - 1;
+                position = this.buffer.start(lastToken) + this.buffer.length(lastToken);
+            }
+            if (sequential == null) {
+                sequential = new LexerImp(this.input, 0, this.input.length(), this.interner, this.lines);
+            }
+            sequential.resume(position);
+            while (true) {
+                Kind kind;
+                try {
+                    kind = sequential.lexOneInto(this.buffer);
+                } catch (LexicalException e) {
+                    this.buffer.setError(e);
+                    return;
+                }
+                if (kind == Kind.EOF) {
+                    return;
+                }
+                int index = this.buffer.size() - 1;
+                int start = this.buffer.start(index);
+                int next = this.chunkOf(start);
+                if (next > k) {
+                    int resync = this.chunks[next].indexOfStart(start);
+                    if (resync >= 0) {
+                        // drop the token, it will be appended from the chunk.
+                        this.buffer.truncate(index);
+                        k = next;
+                        from = resync;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the index of the chunk containing the position.
+     */
+    private int chunkOf(int position) {
+        int k = Arrays.binarySearch(this.chunkStarts, 0, this.chunks.length, position);
+        return k >= 0 ? k : -k - 2;
+    }
+
+}
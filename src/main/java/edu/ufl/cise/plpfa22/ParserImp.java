@@ -1,15 +1,23 @@
 package edu.ufl.cise.plpfa22;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import edu.ufl.cise.plpfa22.IToken.Kind;
+import edu.ufl.cise.plpfa22.IToken.SourceLocation;
 import edu.ufl.cise.plpfa22.ast.ASTNode;
 import edu.ufl.cise.plpfa22.ast.Block;
 import edu.ufl.cise.plpfa22.ast.ConstDec;
 import edu.ufl.cise.plpfa22.ast.Expression;
 import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
 import edu.ufl.cise.plpfa22.ast.ExpressionBooleanLit;
+import edu.ufl.cise.plpfa22.ast.ExpressionError;
 import edu.ufl.cise.plpfa22.ast.ExpressionNumLit;
 import edu.ufl.cise.plpfa22.ast.ExpressionStringLit;
 import edu.ufl.cise.plpfa22.ast.Ident;
@@ -20,6 +28,7 @@ import edu.ufl.cise.plpfa22.ast.StatementAssign;
 import edu.ufl.cise.plpfa22.ast.StatementBlock;
 import edu.ufl.cise.plpfa22.ast.StatementCall;
 import edu.ufl.cise.plpfa22.ast.StatementEmpty;
+import edu.ufl.cise.plpfa22.ast.StatementError;
 import edu.ufl.cise.plpfa22.ast.StatementIf;
 import edu.ufl.cise.plpfa22.ast.StatementInput;
 import edu.ufl.cise.plpfa22.ast.StatementOutput;
@@ -28,24 +37,202 @@ import edu.ufl.cise.plpfa22.ast.VarDec;
 import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
 
 public class ParserImp implements IParser {
+    // FOLLOW(statement): a statement is followed by the DOT of the program, the
+    // SEMI of a procedure or of a statement list, or the END of a statement list.
+    private static final Set<Kind> STATEMENT_FOLLOW = EnumSet.of(Kind.DOT, Kind.SEMI, Kind.KW_END);
+
+    // the tokens after which a broken declaration stops being skipped: the SEMI
+    // ending it, or a token starting a following part of the block.
+    private static final Set<Kind> DECLARATION_SYNC = EnumSet.of(Kind.SEMI, Kind.KW_CONST, Kind.KW_VAR,
+            Kind.KW_PROCEDURE, Kind.KW_BEGIN, Kind.DOT);
+
+    // the levels of the expression grammar, from the lowest precedence. The
+    // parentheses are a pseudo-level enclosing a nested expression.
+    private static final int PARENTHESES = -1;
+    private static final int RELATIONAL = 0;
+    private static final int ADDITIVE = 1;
+    private static final int MULTIPLICATIVE = 2;
+
+    // the minimum number of top-level procedures parsed concurrently.
+    private static final int PARALLEL_THRESHOLD = 2;
+
     private final ILexer lexer;
-    private IToken nextToken;
+
+    private final StackGuard stackGuard = new StackGuard();
+
+    // the pool the top-level procedures are parsed on, or null if they're parsed
+    // sequentially.
+    private ForkJoinPool pool;
+
+    // folds the expressions of literals and constants, or null if they're kept.
+    private ConstantFolder folder;
+
+    // shares the identical expressions of a block, or null if they aren't.
+    private HashConser conser;
+
+    // the syntax errors found so far, if the parser recovers from them. Null if the
+    // parser throws a SyntaxException on the first error instead.
+    private final List<Diagnostic> diagnostics;
+
+    // the location of the last error reported, so that an error found again at the
+    // same token while recovering isn't reported twice.
+    private SourceLocation lastErrorLocation;
 
     public ParserImp(ILexer lexer) {
+        this(lexer, null);
+    }
+
+    /**
+     * a parser that recovers from syntax errors: an error is recorded in
+     * diagnostics, and the parser skips the tokens up to the next statement or
+     * declaration, so parse() returns a partial Program with StatementError and
+     * ExpressionError nodes where the errors were. The lexer should recover from
+     * lexical errors as well; the errors at its ERROR tokens aren't reported
+     * again.
+     * 
+     * @param lexer       the tokens to be parsed
+     * @param diagnostics the list the errors are added to
+     */
+    public ParserImp(ILexer lexer, List<Diagnostic> diagnostics) {
         this.lexer = lexer;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * a parser that parses the top-level procedures concurrently on a pool. The
+     * bounds of the procedures are found by a scan of the kinds of the tokens,
+     * then every procedure is parsed by a parser of its own. If the scan is wrong
+     * or a procedure has an error, they're parsed sequentially again, so the AST
+     * and the errors are the same as the ones of the sequential parser.
+     *
+     * @param lexer the tokens to be parsed
+     * @param pool  the pool the procedures are parsed on
+     */
+    public ParserImp(BufferedLexer lexer, ForkJoinPool pool) {
+        this(lexer, (List<Diagnostic>) null);
+        this.pool = pool;
+    }
+
+    /**
+     * a parser that folds the expressions made only of literals and constants into
+     * a literal, e.g. 3 + 4 * 2 into 11, as it parses them. See ConstantFolder.
+     *
+     * @param lexer         the tokens to be parsed
+     * @param foldConstants whether the expressions are folded
+     */
+    public ParserImp(BufferedLexer lexer, boolean foldConstants) {
+        this(lexer, foldConstants, false);
+    }
+
+    /**
+     * a parser that may fold the expressions of literals and constants, and may
+     * share the identical expressions of a block, so that a repetitive program
+     * takes less memory. See ConstantFolder and HashConser.
+     *
+     * @param lexer            the tokens to be parsed
+     * @param foldConstants    whether the expressions are folded
+     * @param shareExpressions whether the identical expressions are shared
+     */
+    public ParserImp(BufferedLexer lexer, boolean foldConstants, boolean shareExpressions) {
+        this(lexer, (List<Diagnostic>) null);
+        if (foldConstants) {
+            this.folder = new ConstantFolder(lexer.getBuffer());
+        }
+        if (shareExpressions) {
+            this.conser = new HashConser();
+        }
     }
 
     @Override
     public ASTNode parse() throws PLPException {
-        // init the nextToken in here instead of in the constructor, because we don't
-        // want to throw the lexical exception before parse() is invoked.
-        this.nextToken = this.lexer.next();
-
+        // tokens are read from the lexer lazily, so the lexical exception won't be
+        // thrown before parse() is invoked.
         Program program = this.program();
-        this.match(Kind.EOF);
+        try {
+            this.skip(Kind.EOF);
+        } catch (SyntaxError e) {
+            this.recover(e, EnumSet.noneOf(Kind.class));
+        }
         return program;
     }
 
+    /**
+     * parse one procedure declaration, starting at the next token. Used to
+     * reparse a procedure alone after an edit; the caller checks where it ends.
+     */
+    ProcDec parseProcDec() throws PLPException {
+        return this.procDec();
+    }
+
+    /**
+     * @return the diagnostics of the errors found so far, or null if the parser
+     *         throws a SyntaxException on the first error.
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return this.diagnostics;
+    }
+
+    /**
+     * A SyntaxException carrying the diagnostic of the error, and the token where
+     * the error was found.
+     */
+    @SuppressWarnings("serial")
+    private static class SyntaxError extends SyntaxException {
+        final Diagnostic diagnostic;
+        final IToken token;
+
+        SyntaxError(Diagnostic diagnostic, IToken token) {
+            super(diagnostic.message(), diagnostic.line(), diagnostic.column());
+            this.diagnostic = diagnostic;
+            this.token = token;
+        }
+    }
+
+    private SyntaxError error(String message, IToken token) {
+        SourceLocation location = token.getSourceLocation();
+        return new SyntaxError(new Diagnostic(message, location.line(), location.column()), token);
+    }
+
+    /**
+     * throw the error if the parser doesn't recover from errors. Otherwise report
+     * it, and skip the tokens until one of sync or EOF.
+     * 
+     * @throws PLPException the error, or a lexical error while skipping
+     */
+    private void recover(SyntaxError error, Set<Kind> sync) throws PLPException {
+        this.report(error);
+        while (!sync.contains(this.nextKind()) && !this.isKind(Kind.EOF)) {
+            this.lexer.skip();
+        }
+    }
+
+    /**
+     * throw the error if the parser doesn't recover from errors, otherwise add it to
+     * the diagnostics.
+     */
+    private void report(SyntaxError error) throws SyntaxError {
+        if (this.diagnostics == null) {
+            throw error;
+        }
+        SourceLocation location = error.token.getSourceLocation();
+        // the lexer has reported the errors of the ERROR tokens.
+        if (error.token.getKind() != Kind.ERROR && !location.equals(this.lastErrorLocation)) {
+            this.diagnostics.add(error.diagnostic);
+            this.lastErrorLocation = location;
+        }
+    }
+
+    /**
+     * skip a broken declaration up to the SEMI ending it, or the start of the next
+     * part of the block.
+     */
+    private void recoverDeclaration(SyntaxError error) throws PLPException {
+        this.recover(error, DECLARATION_SYNC);
+        if (this.isKind(Kind.SEMI)) {
+            this.lexer.skip();
+        }
+    }
+
     /**
      * Get the next token if it has the expected kind, then move forward the lexer.
      * 
@@ -55,14 +242,34 @@ public class ParserImp implements IParser {
      *                      right or if there's a lexical error
      */
     private IToken match(Kind kind) throws PLPException {
-        if (this.isKind(this.nextToken, kind)) {
+        if (this.isKind(kind)) {
             return this.consume();
         } else {
-            throw new SyntaxException("The next token is not the correct type",
-                    this.nextToken.getSourceLocation().line(), this.nextToken.getSourceLocation().column());
+            throw this.unexpectedToken();
         }
     }
 
+    /**
+     * Move forward the lexer if the next token has the expected kind, like match,
+     * but for tokens that are not needed in the AST, so the lexer doesn't have to
+     * create them.
+     * 
+     * @param kind the expected kind.
+     * @throws PLPException raise an exception if the kind of the next token is not
+     *                      right or if there's a lexical error
+     */
+    private void skip(Kind kind) throws PLPException {
+        if (this.isKind(kind)) {
+            this.lexer.skip();
+        } else {
+            throw this.unexpectedToken();
+        }
+    }
+
+    private SyntaxError unexpectedToken() throws PLPException {
+        return this.error("The next token is not the correct type", this.nextToken());
+    }
+
     /**
      * return the next token and let the lexer moves forward by one token.
      * 
@@ -70,52 +277,109 @@ public class ParserImp implements IParser {
      * @throws PLPException raise an exception if there's a lexical error
      */
     private IToken consume() throws PLPException {
-        IToken res = this.nextToken;
-        this.nextToken = this.lexer.next();
-        return res;
+        return this.lexer.next();
     }
 
     /**
-     * check if a token is a certain kind.
+     * return the next token without moving forward the lexer.
      * 
-     * @param token
-     * @param kind  the expected kind.
-     * @return return true if the token is that kind
+     * @return
+     * @throws PLPException raise an exception if there's a lexical error
      */
-    private boolean isKind(IToken token, Kind kind) {
-        return token.getKind() == kind;
+    private IToken nextToken() throws PLPException {
+        return this.lexer.peek();
+    }
+
+    /**
+     * return the kind of the next token without moving forward the lexer.
+     * 
+     * @return
+     * @throws PLPException raise an exception if there's a lexical error
+     */
+    private Kind nextKind() throws PLPException {
+        return this.lexer.peekKind();
+    }
+
+    /**
+     * check if the next token is a certain kind.
+     * 
+     * @param kind the expected kind.
+     * @return return true if the next token is that kind
+     * @throws PLPException raise an exception if there's a lexical error
+     */
+    private boolean isKind(Kind kind) throws PLPException {
+        return this.nextKind() == kind;
     }
 
     private Program program() throws PLPException {
-        IToken firstToken = this.nextToken;
+        IToken firstToken = this.nextToken();
         Block block = block();
 
         // A program must end with a dot, so just simply call match, syntax error will
         // be thrown in match if there isn't a dot token.
-        this.match(Kind.DOT);
+        try {
+            this.skip(Kind.DOT);
+        } catch (SyntaxError e) {
+            this.recover(e, EnumSet.of(Kind.DOT));
+            if (this.isKind(Kind.DOT)) {
+                this.lexer.skip();
+            }
+        }
         return new Program(firstToken, block);
 
     }
 
     private Block block() throws PLPException {
-        IToken firstToken = this.nextToken;
+        IToken firstToken = this.nextToken();
         List<ConstDec> constDecs = new ArrayList<>();
         List<VarDec> varDecs = new ArrayList<>();
         List<ProcDec> procDecs = new ArrayList<>();
 
-        while (this.isKind(this.nextToken, Kind.KW_CONST)) {
-            constDecs.addAll(this.constDecList());
+        while (this.isKind(Kind.KW_CONST)) {
+            try {
+                this.constDecList(constDecs);
+            } catch (SyntaxError e) {
+                this.recoverDeclaration(e);
+            }
+        }
+
+        while (this.isKind(Kind.KW_VAR)) {
+            try {
+                this.varDecList(varDecs);
+            } catch (SyntaxError e) {
+                this.recoverDeclaration(e);
+            }
         }
 
-        while (this.isKind(this.nextToken, Kind.KW_VAR)) {
-            varDecs.addAll(this.varDecList());
+        if (this.folder != null) {
+            this.folder.enterBlock(constDecs, varDecs);
+        }
+        if (this.conser != null) {
+            this.conser.enterBlock();
         }
 
-        while (this.isKind(this.nextToken, Kind.KW_PROCEDURE)) {
-            procDecs.add(this.procDec());
+        if (this.pool != null && this.isKind(Kind.KW_PROCEDURE)) {
+            this.parallelProcDecs(procDecs);
         }
+        this.stackGuard.repeat(() -> {
+            if (!this.isKind(Kind.KW_PROCEDURE)) {
+                return false;
+            }
+            try {
+                procDecs.add(this.procDec());
+            } catch (SyntaxError e) {
+                this.recoverDeclaration(e);
+            }
+            return true;
+        });
 
         Statement statement = this.statement();
+        if (this.folder != null) {
+            this.folder.exitBlock();
+        }
+        if (this.conser != null) {
+            this.conser.exitBlock();
+        }
         return new Block(firstToken, constDecs, varDecs, procDecs, statement);
     }
 
@@ -123,55 +387,50 @@ public class ParserImp implements IParser {
      * CONST <ident> = <const_val> ( , <ident> = <const_val> )* ;
      * List<ConstDec>
      * 
-     * @return a list of ConstDec
+     * @param constDecs the list the ConstDecs are added to, as soon as they're
+     *                  parsed
      * @throws PLPException
      */
-    private List<ConstDec> constDecList() throws PLPException {
-        IToken firstToken = this.nextToken;
-        List<ConstDec> constDecs = new ArrayList<>();
+    private void constDecList(List<ConstDec> constDecs) throws PLPException {
+        IToken firstToken = this.nextToken();
 
-        this.match(Kind.KW_CONST);
+        this.skip(Kind.KW_CONST);
         IToken ident = this.match(Kind.IDENT);
-        this.match(Kind.EQ);
+        this.skip(Kind.EQ);
         Expression constExpression = this.constVal(); // get the <const_val> non-terminal
         Object constVal = this.getConstValValue(constExpression); // get the value of that non-terminal
         constDecs.add(new ConstDec(firstToken, ident, constVal));
 
-        while (this.isKind(this.nextToken, Kind.COMMA)) {
-            firstToken = this.nextToken;
-            this.match(Kind.COMMA);
+        while (this.isKind(Kind.COMMA)) {
+            firstToken = this.nextToken();
+            this.skip(Kind.COMMA);
             ident = this.match(Kind.IDENT);
-            this.match(Kind.EQ);
+            this.skip(Kind.EQ);
             constExpression = this.constVal();
             constVal = this.getConstValValue(constExpression);
             constDecs.add(new ConstDec(firstToken, ident, constVal));
         }
 
-        this.match(Kind.SEMI);
-
-        return constDecs;
+        this.skip(Kind.SEMI);
     }
 
     /**
      * VAR <ident> ( , <ident> )* ) ;
      */
-    private List<VarDec> varDecList() throws PLPException {
-        IToken firstToken = this.nextToken;
-        List<VarDec> varDecs = new ArrayList<>();
+    private void varDecList(List<VarDec> varDecs) throws PLPException {
+        IToken firstToken = this.nextToken();
 
-        this.match(Kind.KW_VAR);
+        this.skip(Kind.KW_VAR);
         IToken ident = this.match(Kind.IDENT);
         varDecs.add(new VarDec(firstToken, ident));
 
-        while (this.isKind(this.nextToken, Kind.COMMA)) {
-            firstToken = this.nextToken;
-            this.match(Kind.COMMA);
+        while (this.isKind(Kind.COMMA)) {
+            firstToken = this.nextToken();
+            this.skip(Kind.COMMA);
             ident = this.match(Kind.IDENT);
             varDecs.add(new VarDec(firstToken, ident));
         }
-        this.match(Kind.SEMI);
-
-        return varDecs;
+        this.skip(Kind.SEMI);
     }
 
     /**
@@ -195,8 +454,7 @@ public class ParserImp implements IParser {
                 return litToken.getBooleanValue();
             }
             default -> {
-                throw new SyntaxException("can get value of the token type", litToken.getSourceLocation().line(),
-                        litToken.getSourceLocation().column());
+                throw this.error("can get value of the token type", litToken);
             }
         }
     }
@@ -209,15 +467,132 @@ public class ParserImp implements IParser {
      * @throws PLPException
      */
     private ProcDec procDec() throws PLPException {
-        IToken firstToken = this.nextToken;
-        this.match(Kind.KW_PROCEDURE);
+        IToken firstToken = this.nextToken();
+        this.skip(Kind.KW_PROCEDURE);
         IToken ident = this.match(Kind.IDENT);
-        this.match(Kind.SEMI);
-        Block block = this.block();
-        this.match(Kind.SEMI);
+        this.skip(Kind.SEMI);
+        Block block = this.stackGuard.call(this::block);
+        try {
+            this.skip(Kind.SEMI);
+        } catch (SyntaxError e) {
+            // keep the procedure.
+            this.recoverDeclaration(e);
+        }
         return new ProcDec(firstToken, ident, block);
     }
 
+    /**
+     * parse the procedures starting at the next token concurrently, and add them to
+     * procDecs. Nothing is parsed if the scan of the procedures fails or if one of
+     * them has an error; the sequential parser then finds the error. Only the
+     * procedures of the first block, which is the one of the program, are parsed
+     * this way.
+     */
+    private void parallelProcDecs(List<ProcDec> procDecs) throws PLPException {
+        ForkJoinPool pool = this.pool;
+        this.pool = null;
+        BufferedLexer lexer = (BufferedLexer) this.lexer;
+        TokenBuffer buffer = lexer.getBuffer();
+        List<Integer> ends = scanProcDecs(buffer, lexer.index());
+        if (ends.size() < PARALLEL_THRESHOLD) {
+            return;
+        }
+        List<ForkJoinTask<ProcDec>> tasks = new ArrayList<>(ends.size());
+        int start = lexer.index();
+        for (int end : ends) {
+            int procStart = start;
+            tasks.add(pool.submit(() -> parseProcDec(buffer, procStart, end)));
+            start = end;
+        }
+        List<ProcDec> parsed = new ArrayList<>(ends.size());
+        for (ForkJoinTask<ProcDec> task : tasks) {
+            parsed.add(task.join());
+        }
+        if (parsed.contains(null)) {
+            return;
+        }
+        procDecs.addAll(parsed);
+        lexer.seek(start);
+    }
+
+    /**
+     * parse the procedure buffer[start, end).
+     *
+     * @return the procedure, or null if it has an error or doesn't end at end.
+     */
+    private static ProcDec parseProcDec(TokenBuffer buffer, int start, int end) {
+        BufferedLexer lexer = new BufferedLexer(buffer, start);
+        try {
+            ProcDec procDec = new ParserImp(lexer).procDec();
+            return lexer.index() == end ? procDec : null;
+        } catch (PLPException e) {
+            return null;
+        }
+    }
+
+    /**
+     * find the ends of the procedures following each other from the token at
+     * index, without parsing them. Outside of a BEGIN ... END, the SEMIs end a
+     * CONST or VAR list, the header of a procedure, or the statement of a
+     * procedure's block, which ends the procedure.
+     *
+     * @return the index after the last token of every procedure, up to the first
+     *         one whose end isn't found.
+     */
+    static List<Integer> scanProcDecs(TokenBuffer buffer, int index) {
+        List<Integer> ends = new ArrayList<>();
+        int size = buffer.size();
+        // the number of procedures that haven't ended, and the number of BEGINs
+        // without their END.
+        int open = 0;
+        int depth = 0;
+        for (int i = index; i < size; i++) {
+            switch (buffer.kind(i)) {
+                case KW_PROCEDURE -> {
+                    if (depth != 0 || i + 2 >= size || buffer.kind(i + 1) != Kind.IDENT
+                            || buffer.kind(i + 2) != Kind.SEMI) {
+                        return ends;
+                    }
+                    open++;
+                    i += 2;
+                }
+                case KW_CONST, KW_VAR -> {
+                    if (depth != 0) {
+                        return ends;
+                    }
+                    while (i < size && buffer.kind(i) != Kind.SEMI) {
+                        i++;
+                    }
+                }
+                case KW_BEGIN -> depth++;
+                case KW_END -> {
+                    if (--depth < 0) {
+                        return ends;
+                    }
+                }
+                case SEMI -> {
+                    if (depth == 0) {
+                        if (--open < 0) {
+                            return ends;
+                        }
+                        if (open == 0) {
+                            ends.add(i + 1);
+                            if (i + 1 == size || buffer.kind(i + 1) != Kind.KW_PROCEDURE) {
+                                return ends;
+                            }
+                        }
+                    }
+                }
+                case EOF, ERROR, DOT -> {
+                    return ends;
+                }
+                default -> {
+                }
+            }
+        }
+        return ends;
+    }
+
     /**
      * <ident> := <expression> StatementAssign(Ident,Expression)
      * | CALL <ident> StatementCall(Ident)
@@ -231,13 +606,25 @@ public class ParserImp implements IParser {
      * StatementWhile(Expression, Statement)
      * | ε StatementEmpty
      * 
+     * A statement with a syntax error is a StatementError if the parser recovers
+     * from errors.
+     * 
      * @return
      * @throws PLPException
      */
     private Statement statement() throws PLPException {
-        IToken firstToken = this.nextToken;
+        IToken firstToken = this.nextToken();
+        try {
+            return this.stackGuard.call(() -> this.statement(firstToken));
+        } catch (SyntaxError e) {
+            this.recover(e, STATEMENT_FOLLOW);
+            return new StatementError(firstToken);
+        }
+    }
+
+    private Statement statement(IToken firstToken) throws PLPException {
         Statement statement;
-        switch (this.nextToken.getKind()) {
+        switch (this.nextKind()) {
             case IDENT -> {
                 statement = this.statementAssign();
             }
@@ -267,8 +654,7 @@ public class ParserImp implements IParser {
                 statement = new StatementEmpty(firstToken);
             }
             default -> {
-                throw new SyntaxException("error parsing Statement, illegal token",
-                        this.nextToken.getSourceLocation().line(), this.nextToken.getSourceLocation().column());
+                throw this.error("error parsing Statement, illegal token", firstToken);
             }
         }
         return statement;
@@ -282,26 +668,37 @@ public class ParserImp implements IParser {
      * @throws PLPException
      */
     private StatementBlock statementBlock() throws PLPException {
-        IToken firstToken = this.nextToken;
+        IToken firstToken = this.nextToken();
         List<Statement> statements = new ArrayList<>();
-        this.match(Kind.KW_BEGIN);
-        Statement statement = this.statement();
-        statements.add(statement);
-        while (this.nextToken.getKind() == Kind.SEMI) {
-            this.match(Kind.SEMI);
-            statement = this.statement();
-            statements.add(statement);
+        this.skip(Kind.KW_BEGIN);
+        statements.add(this.statement());
+        this.stackGuard.repeat(() -> {
+            if (this.nextKind() == Kind.SEMI) {
+                this.skip(Kind.SEMI);
+                statements.add(this.statement());
+                return true;
+            } else if (this.nextKind() == Kind.KW_END || this.diagnostics == null) {
+                return false;
+            }
+            // a statement followed by something else than SEMI or END.
+            this.recover(this.unexpectedToken(), STATEMENT_FOLLOW);
+            return this.isKind(Kind.SEMI);
+        });
+        try {
+            this.skip(Kind.KW_END);
+        } catch (SyntaxError e) {
+            // keep the statements, as if the END was there.
+            this.report(e);
         }
-        this.match(Kind.KW_END);
 
         return new StatementBlock(firstToken, statements);
     }
 
     private StatementWhile statementWhile() throws PLPException {
-        IToken firstToken = this.nextToken;
-        this.match(Kind.KW_WHILE);
+        IToken firstToken = this.nextToken();
+        this.skip(Kind.KW_WHILE);
         Expression expression = this.expression();
-        this.match(Kind.KW_DO);
+        this.skip(Kind.KW_DO);
         Statement statement = this.statement();
         return new StatementWhile(firstToken, expression, statement);
     }
@@ -314,10 +711,10 @@ public class ParserImp implements IParser {
      * @throws PLPException
      */
     private StatementIf statementIf() throws PLPException {
-        IToken firstToken = this.nextToken;
-        this.match(Kind.KW_IF);
+        IToken firstToken = this.nextToken();
+        this.skip(Kind.KW_IF);
         Expression expression = this.expression();
-        this.match(Kind.KW_THEN);
+        this.skip(Kind.KW_THEN);
         Statement statement = this.statement();
         return new StatementIf(firstToken, expression, statement);
     }
@@ -329,8 +726,8 @@ public class ParserImp implements IParser {
      * @throws PLPException
      */
     private StatementOutput statementOutput() throws PLPException {
-        IToken firstToken = this.nextToken;
-        this.match(Kind.BANG);
+        IToken firstToken = this.nextToken();
+        this.skip(Kind.BANG);
         Expression expression = this.expression();
         return new StatementOutput(firstToken, expression);
     }
@@ -342,8 +739,8 @@ public class ParserImp implements IParser {
      * @throws PLPException
      */
     private StatementInput statementInput() throws PLPException {
-        IToken firstToken = this.nextToken;
-        this.match(Kind.QUESTION);
+        IToken firstToken = this.nextToken();
+        this.skip(Kind.QUESTION);
         IToken ident = this.match(Kind.IDENT);
         return new StatementInput(firstToken, new Ident(ident));
     }
@@ -355,8 +752,8 @@ public class ParserImp implements IParser {
      * @throws PLPException
      */
     private StatementCall statementCall() throws PLPException {
-        IToken firstToken = this.nextToken;
-        this.match(Kind.KW_CALL);
+        IToken firstToken = this.nextToken();
+        this.skip(Kind.KW_CALL);
         IToken ident = this.match(Kind.IDENT);
         return new StatementCall(firstToken, new Ident(ident));
     }
@@ -368,72 +765,127 @@ public class ParserImp implements IParser {
      * @throws PLPException
      */
     private StatementAssign statementAssign() throws PLPException {
-        IToken firstToken = this.nextToken;
+        IToken firstToken = this.nextToken();
         IToken ident = this.match(Kind.IDENT);
-        this.match(Kind.ASSIGN);
+        this.skip(Kind.ASSIGN);
         Expression expression = this.expression();
         // In the StatementAssign, the ident is a Ident type(ASTNode), not an IToken
         // type. It's sepcified in Slack by the teacher.
         return new StatementAssign(firstToken, new Ident(ident), expression);
     }
 
+    /**
+     * <expression> ::= <additive_expression> ( ( < | > | = | # | <= | >= ) <additive_expression> )*
+     * <additive_expression> ::= <multiplicative_expression> ( ( + | - ) <multiplicative_expression> )*
+     * <multiplicative_expression> ::= <primary_expression> ( ( * | / | % ) <primary_expression> )*
+     * <primary_expression> ::= <ident> | <const_val> | ( <expression> )
+     * 
+     * The levels are parsed with an explicit stack instead of recursive calls, so
+     * long chains of operators and deeply nested parentheses don't overflow the
+     * call stack. A frame of the stack is a call of the recursive descent parser:
+     * its level, its first token, the operand on its left and the operator after
+     * it. The AST is the same as the one of the recursive descent.
+     * 
+     * @return
+     * @throws PLPException
+     */
     private Expression expression() throws PLPException {
-        IToken firstToken = this.nextToken;
-        Expression leftExpression = this.additiveExpression();
-        Kind nextTokenKind = this.nextToken.getKind();
-        while (nextTokenKind == Kind.LT || nextTokenKind == Kind.GT || nextTokenKind == Kind.EQ
-                || nextTokenKind == Kind.NEQ || nextTokenKind == Kind.LE || nextTokenKind == Kind.GE) {
-            // consume whatever token if it has the above type
-            IToken op = this.consume();
-            leftExpression = new ExpressionBinary(firstToken, leftExpression, op, this.additiveExpression());
-            nextTokenKind = this.nextToken.getKind();
+        Deque<ExpressionFrame> frames = new ArrayDeque<>();
+        frames.push(new ExpressionFrame(RELATIONAL, this.nextToken()));
+        // the operand just parsed, which goes to the frame on the top.
+        Expression operand = null;
+        while (true) {
+            ExpressionFrame frame = frames.peek();
+            if (operand == null) {
+                if (frame.level != MULTIPLICATIVE) {
+                    frames.push(new ExpressionFrame(frame.level + 1, this.nextToken()));
+                    continue;
+                }
+                if (this.isKind(Kind.LPAREN)) {
+                    this.skip(Kind.LPAREN);
+                    frames.push(new ExpressionFrame(PARENTHESES, null));
+                    frames.push(new ExpressionFrame(RELATIONAL, this.nextToken()));
+                    continue;
+                }
+                operand = this.primaryExpression();
+            } else if (frame.level == PARENTHESES) {
+                frames.pop();
+                this.skip(Kind.RPAREN);
+                continue;
+            }
+
+            frame.left = frame.left == null ? operand : this.binary(frame.firstToken, frame.left, frame.op, operand);
+            operand = null;
+            if (isOperator(frame.level, this.nextKind())) {
+                frame.op = this.consume();
+                continue;
+            }
+            frames.pop();
+            if (frames.isEmpty()) {
+                return frame.left;
+            }
+            operand = frame.left;
         }
+    }
 
-        return leftExpression;
+    private Expression binary(IToken firstToken, Expression e0, IToken op, Expression e1) {
+        Expression binary = this.folder != null ? this.folder.binary(firstToken, e0, op, e1)
+                : new ExpressionBinary(firstToken, e0, op, e1);
+        return this.conser != null ? this.conser.share(binary) : binary;
     }
 
-    private Expression additiveExpression() throws PLPException {
-        IToken firstToken = this.nextToken;
-        Expression leftExpression = this.multiplicativeExpression();
-        Kind nextTokenKind = this.nextToken.getKind();
-        while (nextTokenKind == Kind.PLUS || nextTokenKind == Kind.MINUS) {
-            IToken op = this.consume();
-            leftExpression = new ExpressionBinary(firstToken, leftExpression, op, this.multiplicativeExpression());
-            nextTokenKind = this.nextToken.getKind();
-        }
-        return leftExpression;
+    private static boolean isOperator(int level, Kind kind) {
+        return switch (level) {
+            case RELATIONAL -> kind == Kind.LT || kind == Kind.GT || kind == Kind.EQ || kind == Kind.NEQ
+                    || kind == Kind.LE || kind == Kind.GE;
+            case ADDITIVE -> kind == Kind.PLUS || kind == Kind.MINUS;
+            case MULTIPLICATIVE -> kind == Kind.TIMES || kind == Kind.DIV || kind == Kind.MOD;
+            default -> false;
+        };
     }
 
-    private Expression multiplicativeExpression() throws PLPException {
-        IToken firstToken = this.nextToken;
-        Expression leftExpression = this.primaryExpression();
-        Kind nextTokenKind = this.nextToken.getKind();
-        while (nextTokenKind == Kind.TIMES || nextTokenKind == Kind.DIV || nextTokenKind == Kind.MOD) {
-            IToken op = this.consume();
-            leftExpression = new ExpressionBinary(firstToken, leftExpression, op, this.primaryExpression());
-            nextTokenKind = this.nextToken.getKind();
+    /**
+     * a level of the expression grammar being parsed.
+     */
+    private static class ExpressionFrame {
+        final int level;
+        final IToken firstToken;
+        Expression left;
+        IToken op;
+
+        ExpressionFrame(int level, IToken firstToken) {
+            this.level = level;
+            this.firstToken = firstToken;
         }
-        return leftExpression;
     }
 
+    /**
+     * an identifier or a literal.
+     * 
+     * @return
+     * @throws PLPException
+     */
     private Expression primaryExpression() throws PLPException {
-        IToken firstToken = this.nextToken;
+        IToken firstToken = this.nextToken();
         Expression expression;
-        switch (this.nextToken.getKind()) {
+        switch (this.nextKind()) {
             case IDENT -> {
                 this.consume();
-                expression = new ExpressionIdent(firstToken);
+                expression = this.folder != null ? this.folder.ident(firstToken) : new ExpressionIdent(firstToken);
             }
-            case LPAREN -> {
-                this.match(Kind.LPAREN);
-                expression = this.expression();
-                this.match((Kind.RPAREN));
+            case NUM_LIT, STRING_LIT, BOOLEAN_LIT -> {
+                expression = this.constVal();
             }
             default -> {
-                expression = this.constVal();
+                // a missing operand.
+                this.report(this.error("unsupported const type", firstToken));
+                if (firstToken.getKind() == Kind.ERROR) {
+                    this.lexer.skip();
+                }
+                expression = new ExpressionError(firstToken);
             }
         }
-        return expression;
+        return this.conser != null ? this.conser.share(expression) : expression;
     }
 
     /**
@@ -448,23 +900,22 @@ public class ParserImp implements IParser {
      */
     private Expression constVal() throws PLPException {
         Expression constVal;
-        IToken firstToken = this.nextToken;
-        switch (this.nextToken.getKind()) {
+        IToken firstToken = this.nextToken();
+        switch (this.nextKind()) {
             case NUM_LIT -> {
-                this.match(Kind.NUM_LIT);
+                this.skip(Kind.NUM_LIT);
                 constVal = new ExpressionNumLit(firstToken);
             }
             case STRING_LIT -> {
-                this.match(Kind.STRING_LIT);
+                this.skip(Kind.STRING_LIT);
                 constVal = new ExpressionStringLit(firstToken);
             }
             case BOOLEAN_LIT -> {
-                this.match(Kind.BOOLEAN_LIT);
+                this.skip(Kind.BOOLEAN_LIT);
                 constVal = new ExpressionBooleanLit(firstToken);
             }
             default -> {
-                throw new SyntaxException("unsupported const type", firstToken.getSourceLocation().line(),
-                        firstToken.getSourceLocation().column());
+                throw this.error("unsupported const type", firstToken);
             }
         }
 
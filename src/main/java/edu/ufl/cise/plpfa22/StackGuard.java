@@ -0,0 +1,206 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.Iterator;
+
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.GenericASTVisitor;
+import edu.ufl.cise.plpfa22.ast.IntASTVisitor;
+
+/**
+ * Lets a recursive pass over the AST handle any nesting depth. The pass makes
+ * its recursive calls through the guard, which counts them. When the count
+ * reaches the budget of the current stack, the call goes on on a new thread
+ * with a large stack, and the thread of the pass waits for it, so the depth is
+ * only limited by memory. Shallow programs never leave the thread of the pass.
+ *
+ * A node can have any number of children at the depth where the budget runs
+ * out, e.g. the statements of a block, and starting a thread for each of them
+ * would make the pass a thousand times slower. So the children of a node are
+ * visited with forEach() or repeat(), which move the remaining ones to a new
+ * thread together as soon as one of them needs one.
+ *
+ * A guard belongs to one pass, which runs on one thread at a time.
+ */
+public class StackGuard {
+    // the number of nested calls on the thread of the pass, whose stack size is
+    // unknown, and on every new thread, whose stack is THREAD_STACK_SIZE bytes. A
+    // call takes a few frames of the pass, well under 1KB.
+    static final int CALLER_BUDGET = 256;
+    static final int THREAD_BUDGET = 16384;
+    static final long THREAD_STACK_SIZE = 64L << 20;
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws PLPException;
+    }
+
+    @FunctionalInterface
+    public interface Step {
+        /**
+         * @return whether there's another step.
+         */
+        boolean step() throws PLPException;
+    }
+
+    @FunctionalInterface
+    public interface Action<T> {
+        void accept(T item) throws PLPException;
+    }
+
+    // the number of nested calls on the current thread, and how many it can take.
+    private int depth = 0;
+    private int budget;
+
+    // the number of threads started, which tells a loop that a step needed one.
+    private int threads = 0;
+
+    public StackGuard() {
+        this(CALLER_BUDGET);
+    }
+
+    StackGuard(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * make a nested call of the pass.
+     */
+    public <T> T call(Call<T> call) throws PLPException {
+        if (this.depth == this.budget) {
+            return this.callOnNewThread(call);
+        }
+        this.depth++;
+        try {
+            return call.call();
+        } finally {
+            this.depth--;
+        }
+    }
+
+    /**
+     * visit a child of the node being visited.
+     */
+    public <R, A> R visit(ASTNode node, GenericASTVisitor<R, A> visitor, A arg) throws PLPException {
+        if (this.depth == this.budget) {
+            return this.callOnNewThread(() -> node.visit(visitor, arg));
+        }
+        this.depth++;
+        try {
+            return node.visit(visitor, arg);
+        } finally {
+            this.depth--;
+        }
+    }
+
+    /**
+     * visit a child of the node being visited, with a visitor returning an int. The
+     * result is only boxed when the visit moves to a new thread.
+     */
+    public <A> int visit(ASTNode node, IntASTVisitor<A> visitor, A arg) throws PLPException {
+        if (this.depth == this.budget) {
+            return this.callOnNewThread(() -> node.visitInt(visitor, arg));
+        }
+        this.depth++;
+        try {
+            return node.visitInt(visitor, arg);
+        } finally {
+            this.depth--;
+        }
+    }
+
+    /**
+     * make nested calls of the pass, e.g. one per child of the node being
+     * visited, until step returns false. Once a step needs a new thread, the
+     * remaining steps are made on one new thread, so a wide node at the depth
+     * where the budget runs out costs a few threads rather than one per child.
+     */
+    public void repeat(Step step) throws PLPException {
+        boolean more = true;
+        while (more) {
+            if (this.depth == this.budget) {
+                this.moveToNewThread(step);
+                return;
+            }
+            int threads = this.threads;
+            this.depth++;
+            try {
+                more = step.step();
+            } finally {
+                this.depth--;
+            }
+            if (more && this.threads != threads) {
+                this.moveToNewThread(step);
+                return;
+            }
+        }
+    }
+
+    /**
+     * call action with each item, as nested calls of the pass, see repeat().
+     */
+    public <T> void forEach(Iterable<? extends T> items, Action<? super T> action) throws PLPException {
+        Iterator<? extends T> iterator = items.iterator();
+        if (iterator.hasNext()) {
+            this.repeat(() -> {
+                action.accept(iterator.next());
+                return iterator.hasNext();
+            });
+        }
+    }
+
+    private void moveToNewThread(Step step) throws PLPException {
+        this.callOnNewThread(() -> {
+            this.repeat(step);
+            return null;
+        });
+    }
+
+    private <T> T callOnNewThread(Call<T> call) throws PLPException {
+        this.threads++;
+        int depth = this.depth;
+        int budget = this.budget;
+        Object[] result = new Object[1];
+        Throwable[] error = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                result[0] = this.call(call);
+            } catch (Throwable e) {
+                error[0] = e;
+            }
+        }, "StackGuard", THREAD_STACK_SIZE);
+        this.depth = 0;
+        this.budget = THREAD_BUDGET;
+        thread.start();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    // the call can't be abandoned while it uses the pass.
+                    interrupted = true;
+                }
+            }
+        } finally {
+            this.depth = depth;
+            this.budget = budget;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (error[0] instanceof PLPException e) {
+            throw e;
+        } else if (error[0] instanceof RuntimeException e) {
+            throw e;
+        } else if (error[0] instanceof Error e) {
+            throw e;
+        } else if (error[0] != null) {
+            throw new IllegalStateException(error[0]);
+        }
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
+
+}
@@ -0,0 +1,154 @@
+package edu.ufl.cise.plpfa22;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+/**
+ * A LexerImp that reads its input from a Reader through a fixed-size char
+ * buffer, instead of requiring the whole input as one String. Only the current
+ * token and the characters after it are kept in the buffer, so the memory used
+ * doesn't depend on the size of the input. The line index only has the lines
+ * of the buffer, so the tokens get their locations when they're created. The
+ * buffer only grows if a single token (e.g. a long string literal) doesn't fit
+ * in it.
+ */
+public class StreamingLexer extends LexerImp {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+
+    // buffer[0, bufferLength) holds the characters of the input from position
+    // bufferStart.
+    private char[] buffer;
+
+    // buffer as a CharSequence, for the interner.
+    private CharBuffer bufferView;
+    private int bufferStart = 0;
+    private int bufferLength = 0;
+
+    // true if the reader has reached the end of the input.
+    private boolean endOfInput = false;
+
+    public StreamingLexer(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param reader     the input to be lexical-analysed
+     * @param bufferSize the initial size of the char buffer
+     */
+    public StreamingLexer(Reader reader, int bufferSize) {
+        this(reader, bufferSize, new SymbolInterner());
+    }
+
+    /**
+     * @param reader     the input to be lexical-analysed
+     * @param bufferSize the initial size of the char buffer
+     * @param interner   the interner of the compilation
+     */
+    public StreamingLexer(Reader reader, int bufferSize, SymbolInterner interner) {
+        super(interner, new LineIndex());
+        this.reader = reader;
+        this.buffer = new char[Math.max(bufferSize, 1)];
+        this.bufferView = CharBuffer.wrap(this.buffer);
+    }
+
+    /**
+     * Lexer over UTF-8 encoded bytes from a channel. The bytes are decoded through
+     * a fixed-size buffer as well.
+     */
+    public StreamingLexer(ReadableByteChannel channel) {
+        this(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), DEFAULT_BUFFER_SIZE),
+                DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @return the current size of the char buffer.
+     */
+    int bufferCapacity() {
+        return this.buffer.length;
+    }
+
+    @Override
+    protected char charAt(int index) throws LexicalException {
+        int offset = index - this.bufferStart;
+        while (offset >= this.bufferLength) {
+            if (this.endOfInput || !this.refill()) {
+                return 0;
+            }
+            offset = index - this.bufferStart;
+        }
+        return this.buffer[offset];
+    }
+
+    /**
+     * the buffer is reused for the following characters, so the text of a token is
+     * copied into a String.
+     */
+    @Override
+    protected TokenText text(int start, int end) {
+        return new TokenText(new String(this.buffer, start - this.bufferStart, end - start));
+    }
+
+    @Override
+    protected IToken token(Kind kind, int start, TokenText text, int value) {
+        return new TokenImp(kind, start, this.getLineIndex().location(start), text, value);
+    }
+
+    @Override
+    protected int intern(int start, int end, int hash) {
+        return this.getInterner().intern(this.bufferView, start - this.bufferStart, end - start, hash);
+    }
+
+    /**
+     * an identifier doesn't need a copy, its text is the interned name.
+     */
+    @Override
+    protected TokenText identText(int start, int end, String name) {
+        return new TokenText(name);
+    }
+
+    /**
+     * drop the characters that won't be read again, and read more characters
+     * after the ones in the buffer.
+     *
+     * @return false if there's no more input.
+     * @throws LexicalException the reader throws an IOException.
+     */
+    private boolean refill() throws LexicalException {
+        int retained = this.firstRetainedIndex() - this.bufferStart;
+        if (retained > 0) {
+            // move the current token to the beginning of the buffer.
+            System.arraycopy(this.buffer, retained, this.buffer, 0, this.bufferLength - retained);
+            this.bufferStart += retained;
+            this.bufferLength -= retained;
+            this.getLineIndex().discardBefore(this.bufferStart);
+        } else if (this.bufferLength == this.buffer.length) {
+            // the current token fills the buffer.
+            char[] newBuffer = new char[this.buffer.length * 2];
+            System.arraycopy(this.buffer, 0, newBuffer, 0, this.bufferLength);
+            this.buffer = newBuffer;
+            this.bufferView = CharBuffer.wrap(newBuffer);
+        }
+        try {
+            int count = this.reader.read(this.buffer, this.bufferLength, this.buffer.length - this.bufferLength);
+            if (count < 0) {
+                this.endOfInput = true;
+                return false;
+            }
+            this.getLineIndex().addLineFeeds(this.buffer, this.bufferLength, this.bufferLength + count,
+                    this.bufferStart);
+            this.bufferLength += count;
+            return true;
+        } catch (IOException e) {
+            throw new LexicalException("can't read the input", e);
+        }
+    }
+
+}
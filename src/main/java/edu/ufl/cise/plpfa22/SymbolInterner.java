@@ -0,0 +1,161 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.Arrays;
+
+/**
+ * Assigns every distinct identifier of a compilation a dense int ID, starting
+ * from 0 in the order they're first seen. The lexer interns each IDENT token,
+ * so later phases can index arrays by the ID of a name instead of hashing the
+ * name again.
+ *
+ * Names are looked up by a range of characters, so only the first occurrence
+ * of a name creates a String.
+ */
+public class SymbolInterner {
+    private static final int INITIAL_CAPACITY = 64;
+
+    // open addressing hash table, table[slot] is the ID + 1 of the name in that
+    // slot, or 0 if the slot is empty. Its length is a power of 2, and it's at
+    // most half full. tableHashes[slot] is the hash code of the name in that slot,
+    // so that most mismatches are found without reading the name.
+    private int[] table = new int[INITIAL_CAPACITY];
+    private int[] tableHashes = new int[INITIAL_CAPACITY];
+
+    // names[id] and hashes[id] are the name and the hash code of the ID.
+    private String[] names = new String[INITIAL_CAPACITY / 2];
+    private int[] hashes = new int[INITIAL_CAPACITY / 2];
+
+    private int size = 0;
+
+    /**
+     * get the ID of the characters [offset, offset + length) of source, assigning
+     * a new ID if it's the first time the name is seen.
+     *
+     * @return the ID of the name
+     */
+    public int intern(CharSequence source, int offset, int length) {
+        return this.intern(source, offset, length, hash(source, offset, length));
+    }
+
+    /**
+     * the same as intern(source, offset, length), for a caller that has computed
+     * the hash code while reading the characters.
+     *
+     * @param hash the hash code of the name, which must be the same as the one of
+     *             the equivalent String
+     * @return the ID of the name
+     */
+    public int intern(CharSequence source, int offset, int length, int hash) {
+        int slot = this.find(source, offset, length, hash);
+        if (this.table[slot] != 0) {
+            return this.table[slot] - 1;
+        }
+        int id = this.size++;
+        if (id == this.names.length) {
+            this.names = Arrays.copyOf(this.names, id * 2);
+            this.hashes = Arrays.copyOf(this.hashes, id * 2);
+        }
+        this.names[id] = source.subSequence(offset, offset + length).toString();
+        this.hashes[id] = hash;
+        this.table[slot] = id + 1;
+        this.tableHashes[slot] = hash;
+        if (this.size * 2 > this.table.length) {
+            this.rehash();
+        }
+        return id;
+    }
+
+    public int intern(CharSequence name) {
+        return this.intern(name, 0, name.length());
+    }
+
+    /**
+     * @return the ID of name, or -1 if it hasn't been interned.
+     */
+    public int lookup(CharSequence name) {
+        int slot = this.find(name, 0, name.length(), hash(name, 0, name.length()));
+        return this.table[slot] - 1;
+    }
+
+    /**
+     * @return the name of the ID.
+     */
+    public String name(int id) {
+        if (id < 0 || id >= this.size) {
+            throw new IndexOutOfBoundsException(id);
+        }
+        return this.names[id];
+    }
+
+    /**
+     * @return the number of distinct names, all IDs are less than it.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * the same hash code as String.hashCode().
+     */
+    private static int hash(CharSequence source, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + source.charAt(offset + i);
+        }
+        return h;
+    }
+
+    private static int firstSlot(int hash, int mask) {
+        // mix the high bits in, since the table only uses the low ones.
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * @return the slot containing the name, or the empty slot where it should be
+     *         inserted.
+     */
+    private int find(CharSequence source, int offset, int length, int hash) {
+        int mask = this.table.length - 1;
+        int slot = firstSlot(hash, mask);
+        while (this.table[slot] != 0) {
+            if (this.tableHashes[slot] == hash && matches(this.names[this.table[slot] - 1], source, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static boolean matches(String name, CharSequence source, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        if (source instanceof String string) {
+            return string.regionMatches(offset, name, 0, length);
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != source.charAt(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * double the size of the table.
+     */
+    private void rehash() {
+        this.table = new int[this.table.length * 2];
+        this.tableHashes = new int[this.table.length];
+        int mask = this.table.length - 1;
+        for (int id = 0; id < this.size; id++) {
+            int slot = firstSlot(this.hashes[id], mask);
+            while (this.table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot] = id + 1;
+            this.tableHashes[slot] = this.hashes[id];
+        }
+    }
+
+}
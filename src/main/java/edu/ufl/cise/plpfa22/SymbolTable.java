@@ -0,0 +1,114 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.Arrays;
+
+import edu.ufl.cise.plpfa22.ast.Declaration;
+
+/**
+ * The declarations visible at a point of the program, for the ASTScopeVisitor.
+ * Every name gets a dense ID from a SymbolInterner, and visible[id] is the
+ * innermost declaration of the name, so a lookup is a probe of the interner and
+ * an array access, whatever the depth of the nesting.
+ *
+ * Each name has a shadow stack of its declarations in the open scopes. The
+ * stacks are kept in one undo log: a declaration saves the one it shadows
+ * there, and closing a scope restores the saved ones, from the last to the
+ * first.
+ *
+ * The names are interned by the text of their tokens rather than by their
+ * symbol IDs, since not every tree has them, e.g. a deserialized one.
+ */
+class SymbolTable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final SymbolInterner names = new SymbolInterner();
+
+    // the innermost visible declaration of each name ID, or null, and the depth of
+    // the scope where it's declared.
+    private Declaration[] visible = new Declaration[INITIAL_CAPACITY];
+    private int[] visibleDepths = new int[INITIAL_CAPACITY];
+
+    // the undo log: the name ID of each declaration of the open scopes, and the
+    // declaration it shadows and its depth.
+    private int[] logNames = new int[INITIAL_CAPACITY];
+    private Declaration[] logShadowed = new Declaration[INITIAL_CAPACITY];
+    private int[] logDepths = new int[INITIAL_CAPACITY];
+    private int logSize = 0;
+
+    // scopeStarts[d] is the size of the log when the scope of depth d + 1 was
+    // entered.
+    private int[] scopeStarts = new int[16];
+
+    // the depth of the current scope, 0 outside of the program.
+    private int depth = 0;
+
+    void enterScope() {
+        if (this.depth == this.scopeStarts.length) {
+            this.scopeStarts = Arrays.copyOf(this.scopeStarts, this.depth * 2);
+        }
+        this.scopeStarts[this.depth++] = this.logSize;
+    }
+
+    /**
+     * close the current scope, and make the declarations it shadowed visible
+     * again.
+     */
+    void closeScope() {
+        int start = this.scopeStarts[--this.depth];
+        while (this.logSize > start) {
+            this.logSize--;
+            int name = this.logNames[this.logSize];
+            this.visible[name] = this.logShadowed[this.logSize];
+            this.visibleDepths[name] = this.logDepths[this.logSize];
+            this.logShadowed[this.logSize] = null;
+        }
+    }
+
+    /**
+     * declare the name of the ident in the current scope.
+     *
+     * @return false if it's already declared in the current scope, in which case
+     *         nothing is declared.
+     */
+    boolean declare(IToken ident, Declaration dec) {
+        int name = this.id(ident);
+        if (this.visible[name] != null && this.visibleDepths[name] == this.depth) {
+            return false;
+        }
+        if (this.logSize == this.logNames.length) {
+            int capacity = this.logSize * 2;
+            this.logNames = Arrays.copyOf(this.logNames, capacity);
+            this.logShadowed = Arrays.copyOf(this.logShadowed, capacity);
+            this.logDepths = Arrays.copyOf(this.logDepths, capacity);
+        }
+        this.logNames[this.logSize] = name;
+        this.logShadowed[this.logSize] = this.visible[name];
+        this.logDepths[this.logSize] = this.visibleDepths[name];
+        this.logSize++;
+        this.visible[name] = dec;
+        this.visibleDepths[name] = this.depth;
+        return true;
+    }
+
+    /**
+     * @return the innermost visible declaration of the name of the ident, or null
+     *         if there's none.
+     */
+    Declaration lookup(IToken ident) {
+        return this.visible[this.id(ident)];
+    }
+
+    /**
+     * @return the ID of the name of the ident, for which visible has room.
+     */
+    private int id(IToken ident) {
+        TokenText text = ident.getTextView();
+        int id = this.names.intern(text.getSource(), text.getOffset(), text.length(), text.hashCode());
+        if (id == this.visible.length) {
+            this.visible = Arrays.copyOf(this.visible, id * 2);
+            this.visibleDepths = Arrays.copyOf(this.visibleDepths, id * 2);
+        }
+        return id;
+    }
+
+}
@@ -0,0 +1,275 @@
+package edu.ufl.cise.plpfa22;
+
+import java.util.Arrays;
+import java.util.List;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+/**
+ * The tokens of a whole input, lexed at once and stored as a struct of
+ * primitive arrays instead of one TokenImp per token. Tokens are identified by
+ * their index, and a TokenImp is only created when someone asks for it.
+ *
+ * The last token is always EOF, unless there's a lexical error, in which case
+ * the buffer contains the tokens before the error and the exception.
+ */
+public class TokenBuffer {
+    private static final Kind[] KINDS = Kind.values();
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // the source of all the tokens.
+    private final String input;
+
+    // kinds[i] is the ordinal of the kind of the i-th token.
+    private byte[] kinds;
+
+    // the index of the first character of the i-th token in the input, and the
+    // number of characters in it.
+    private int[] starts;
+    private int[] lengths;
+
+    // the value of the i-th token if it's a NUM_LIT, or its symbol ID if it's an
+    // IDENT, computed by the lexer.
+    private int[] values;
+
+    // the interner that assigned the symbol IDs.
+    private final SymbolInterner interner;
+
+    // maps the starts of the tokens to lines and columns.
+    private final LineIndex lines;
+
+    private int size = 0;
+
+    // the error that stopped the lexer, null if the whole input is lexed.
+    private LexicalException error;
+
+    TokenBuffer(String input, SymbolInterner interner, int capacity) {
+        this(input, interner, new LineIndex(input), capacity);
+    }
+
+    TokenBuffer(String input, SymbolInterner interner, LineIndex lines, int capacity) {
+        this.input = input;
+        this.interner = interner;
+        this.lines = lines;
+        this.kinds = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.values = new int[capacity];
+    }
+
+    /**
+     * lex the whole input. Lexical errors are not thrown here but recorded in the
+     * buffer.
+     *
+     * @param input the string to be lexical-analysed
+     * @return the buffer containing all the tokens of the input.
+     */
+    public static TokenBuffer lex(String input) {
+        return lex(input, new SymbolInterner());
+    }
+
+    /**
+     * lex the whole input, interning the identifiers with interner.
+     *
+     * @param input    the string to be lexical-analysed
+     * @param interner the interner of the compilation
+     * @return the buffer containing all the tokens of the input.
+     */
+    public static TokenBuffer lex(String input, SymbolInterner interner) {
+        return lex(input, new LexerImp(input, interner));
+    }
+
+    /**
+     * lex the whole input, recovering from lexical errors. The wrong parts of the
+     * input are ERROR tokens, and the errors are added to diagnostics, so the
+     * buffer never has an error.
+     *
+     * @param input       the string to be lexical-analysed
+     * @param interner    the interner of the compilation
+     * @param diagnostics the list the errors are added to
+     * @return the buffer containing all the tokens of the input.
+     */
+    public static TokenBuffer lex(String input, SymbolInterner interner, List<Diagnostic> diagnostics) {
+        return lex(input, new LexerImp(input, interner, diagnostics));
+    }
+
+    private static TokenBuffer lex(String input, LexerImp lexer) {
+        // a token usually takes a few characters, so this avoids most of the resizing.
+        TokenBuffer buffer = new TokenBuffer(input, lexer.getInterner(), lexer.getLineIndex(),
+                Math.max(INITIAL_CAPACITY, input.length() / 4));
+        lexer.lexInto(buffer);
+        return buffer;
+    }
+
+    /**
+     * append a token to the buffer.
+     */
+    void add(Kind kind, int start, int length, int value) {
+        if (this.size == this.kinds.length) {
+            this.grow(this.size * 2);
+        }
+        this.kinds[this.size] = (byte) kind.ordinal();
+        this.starts[this.size] = start;
+        this.lengths[this.size] = length;
+        this.values[this.size] = value;
+        this.size++;
+    }
+
+    /**
+     * append the tokens [from, to) of another buffer of the same input.
+     *
+     * @param other     the buffer containing the tokens
+     * @param symbolMap maps the symbol IDs of other's interner to the ones of this
+     *                  buffer's interner. The entries that are -1 are filled by
+     *                  interning the names.
+     */
+    void append(TokenBuffer other, int from, int to, int[] symbolMap) {
+        for (int i = from; i < to; i++) {
+            Kind kind = other.kind(i);
+            int value = other.values[i];
+            if (kind == Kind.IDENT) {
+                if (symbolMap[value] < 0) {
+                    symbolMap[value] = this.interner.intern(other.interner.name(value));
+                }
+                value = symbolMap[value];
+            }
+            this.add(kind, other.starts[i], other.lengths[i], value);
+        }
+    }
+
+    /**
+     * append the tokens [from, to) of a buffer with the same interner, for an input
+     * that is other's input with an edit before the tokens.
+     *
+     * @param startShift the number added to the starts of the tokens
+     */
+    void appendShifted(TokenBuffer other, int from, int to, int startShift) {
+        assert other.interner == this.interner;
+        int count = to - from;
+        int capacity = this.kinds.length;
+        while (this.size + count > capacity) {
+            capacity *= 2;
+        }
+        if (capacity > this.kinds.length) {
+            this.grow(capacity);
+        }
+        System.arraycopy(other.kinds, from, this.kinds, this.size, count);
+        System.arraycopy(other.lengths, from, this.lengths, this.size, count);
+        System.arraycopy(other.values, from, this.values, this.size, count);
+        for (int i = 0; i < count; i++) {
+            this.starts[this.size + i] = other.starts[from + i] + startShift;
+        }
+        this.size += count;
+    }
+
+    private void grow(int capacity) {
+        this.kinds = Arrays.copyOf(this.kinds, capacity);
+        this.starts = Arrays.copyOf(this.starts, capacity);
+        this.lengths = Arrays.copyOf(this.lengths, capacity);
+        this.values = Arrays.copyOf(this.values, capacity);
+    }
+
+    /**
+     * remove the tokens from index size on.
+     */
+    void truncate(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return the index of the token starting at the position, or -1 if no token
+     *         starts there.
+     */
+    int indexOfStart(int position) {
+        int index = Arrays.binarySearch(this.starts, 0, this.size, position);
+        return index >= 0 ? index : -1;
+    }
+
+    void setError(LexicalException error) {
+        this.error = error;
+    }
+
+    /**
+     * @return the lexical error that stopped the lexer, or null if there isn't one.
+     */
+    public LexicalException getError() {
+        return this.error;
+    }
+
+    public String getInput() {
+        return this.input;
+    }
+
+    public SymbolInterner getInterner() {
+        return this.interner;
+    }
+
+    public LineIndex getLineIndex() {
+        return this.lines;
+    }
+
+    /**
+     * @return the number of tokens in the buffer, including EOF.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public Kind kind(int index) {
+        return KINDS[this.kinds[index]];
+    }
+
+    public int start(int index) {
+        return this.starts[index];
+    }
+
+    public int length(int index) {
+        return this.lengths[index];
+    }
+
+    /**
+     * @return the line of the index-th token, computed from its start.
+     */
+    public int line(int index) {
+        return this.lines.line(this.starts[index]);
+    }
+
+    /**
+     * @return the column of the index-th token, computed from its start.
+     */
+    public int column(int index) {
+        return this.lines.column(this.starts[index]);
+    }
+
+    /**
+     * @return the value of the index-th token, which must be a NUM_LIT.
+     */
+    public int intValue(int index) {
+        return this.values[index];
+    }
+
+    /**
+     * @return the symbol ID of the index-th token, which must be an IDENT.
+     */
+    public int symbolId(int index) {
+        return this.values[index];
+    }
+
+    /**
+     * create the IToken for the index-th token.
+     *
+     * @param index
+     * @return a new IToken
+     * @throws LexicalException
+     */
+    public IToken token(int index) throws LexicalException {
+        int start = this.starts[index];
+        Kind kind = this.kind(index);
+        TokenText text = kind == Kind.IDENT
+                ? new TokenText(this.input, start, this.lengths[index], this.interner.name(this.values[index]))
+                : new TokenText(this.input, start, this.lengths[index]);
+        return new TokenImp(kind, start, this.lines, text, this.values[index]);
+    }
+
+}
@@ -3,12 +3,31 @@ package edu.ufl.cise.plpfa22;
 public class TokenImp implements IToken {
     private Kind kind;
 
+    // the offset of the first character of the token in the input, and the index
+    // that maps it to a location. Tokens constructed with their location, e.g.
+    // the ones of a StreamingLexer, have it instead of the index.
+    private int offset = -1;
+    private LineIndex lines;
     private SourceLocation location;
 
-    private String text;
+    // a view of the raw text of the token in the input.
+    private TokenText text;
 
+    // the value of a STRING_LIT, decoded by the first call of getStringValue().
     private String stringValue;
 
+    // the value of a NUM_LIT, and whether it's known. The lexers compute it while
+    // scanning the digits, and the constructors from a text parse it, so a NUM_LIT
+    // out of the range of int is a LexicalException there. Otherwise it's parsed
+    // by the first call of getIntValue().
+    // hasNum is volatile so a thread that sees it set sees num as well, since
+    // several analyses of the same tree may run at once.
+    private int num;
+    private volatile boolean hasNum;
+
+    // the symbol ID of an IDENT, -1 if it's unknown.
+    private int symbolId = -1;
+
     /**
      * construct a token
      * 
@@ -19,21 +38,88 @@ public class TokenImp implements IToken {
      *             stream
      * @param text the string that contains the raw text of the token in the input
      *             string.
+     * @throws LexicalException if kind is NUM_LIT and the text isn't an int.
      */
-    private int num;
-
     public TokenImp(Kind kind, int line, int col, String text) throws LexicalException {
-        this.kind = kind;
-        this.location = new SourceLocation(line, col);
-        this.text = text;
+        this(kind, line, col, new TokenText(text));
+    }
+
+    /**
+     * construct a token whose text is a view of the input.
+     * 
+     * @param kind The type of the token. Kind is an enum defind in IToken
+     * @param line the line number of the first character in the input character
+     *             stream.
+     * @param col  the col number of the first character in the in put character
+     *             stream
+     * @param text the raw text of the token in the input.
+     * @throws LexicalException if kind is NUM_LIT and the text isn't an int.
+     */
+    public TokenImp(Kind kind, int line, int col, TokenText text) throws LexicalException {
+        this(kind, new SourceLocation(line, col), text);
         if (kind == Kind.NUM_LIT) {
             try {
-                num = Integer.parseInt(text);
+                this.num = Integer.parseInt(text.getSource(), text.getOffset(), text.getOffset() + text.length(), 10);
             } catch (NumberFormatException nfe) {
                 throw new LexicalException(nfe);
             }
-        } else if (kind == Kind.STRING_LIT) {
-            this.stringValue = this.computeStringValue(text);
+            this.hasNum = true;
+        }
+    }
+
+    private TokenImp(Kind kind, SourceLocation location, TokenText text) {
+        this.kind = kind;
+        this.location = location;
+        this.text = text;
+    }
+
+    /**
+     * construct a token at an offset of the input, whose location is only computed
+     * if it's asked for.
+     * 
+     * @param kind   The type of the token. Kind is an enum defind in IToken
+     * @param offset the offset of the first character in the input
+     * @param lines  the line index of the input
+     * @param text   the raw text of the token in the input.
+     * @param value  the value of the token if kind is NUM_LIT, the symbol ID if
+     *               kind is IDENT, ignored otherwise.
+     */
+    public TokenImp(Kind kind, int offset, LineIndex lines, TokenText text, int value) {
+        this.kind = kind;
+        this.offset = offset;
+        this.lines = lines;
+        this.text = text;
+        this.setValue(value);
+    }
+
+    /**
+     * construct a token at an offset of the input, whose location is already
+     * known, e.g. because the line index won't have it later.
+     */
+    TokenImp(Kind kind, int offset, SourceLocation location, TokenText text, int value) {
+        this(kind, location, text);
+        this.offset = offset;
+        this.setValue(value);
+    }
+
+    /**
+     * construct a token whose text is a view of the input, with the value of the
+     * NUM_LIT computed by the lexer.
+     * 
+     * @param value the value of the token if kind is NUM_LIT, the symbol ID if
+     *              kind is IDENT, ignored otherwise.
+     */
+    public TokenImp(Kind kind, int line, int col, TokenText text, int value) {
+        this(kind, new SourceLocation(line, col), text);
+        this.setValue(value);
+    }
+
+    private void setValue(int value) {
+        if (this.kind == Kind.NUM_LIT) {
+            this.num = value;
+            this.hasNum = true;
+        } else if (this.kind == Kind.IDENT) {
+            this.symbolId = value;
         }
     }
 
@@ -62,6 +148,16 @@ public class TokenImp implements IToken {
         return text.toCharArray();
     }
 
+    @Override
+    public TokenText getTextView() {
+        return this.text;
+    }
+
+    @Override
+    public int getSymbolId() {
+        return this.symbolId;
+    }
+
     /**
      * Returns a SourceLocation record containing the line and position in the line
      * of the first character in this IToken.
@@ -70,7 +166,36 @@ public class TokenImp implements IToken {
      */
     @Override
     public SourceLocation getSourceLocation() {
-        return this.location;
+        return this.lines != null ? this.lines.location(this.offset) : this.location;
+    }
+
+    @Override
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * move the token by shift characters, into a new input whose line index is
+     * lines. Its text becomes a view of the new input, so the token doesn't keep
+     * the old one. Used when a token is reused after an edit.
+     */
+    void relocate(int shift, String input, LineIndex lines) {
+        assert this.lines != null;
+        this.offset += shift;
+        this.lines = lines;
+        this.text = this.text.in(input, this.offset);
+    }
+
+    LineIndex getLineIndex() {
+        return this.lines;
+    }
+
+    /**
+     * @return a token with the offset and the location of this one.
+     */
+    TokenImp at(Kind kind, TokenText text, int value) {
+        return this.lines != null ? new TokenImp(kind, this.offset, this.lines, text, value)
+                : new TokenImp(kind, this.offset, this.location, text, value);
     }
 
     /**
@@ -80,7 +205,12 @@ public class TokenImp implements IToken {
      */
     @Override
     public int getIntValue() {
-        return num;
+        if (!this.hasNum) {
+            this.num = Integer.parseInt(this.text.getSource(), this.text.getOffset(),
+                    this.text.getOffset() + this.text.length(), 10);
+            this.hasNum = true;
+        }
+        return this.num;
     }
 
     /**
@@ -94,7 +224,7 @@ public class TokenImp implements IToken {
             // the method can't be invoked if the kind of the token is not BOOLEAN_LIT
             assert false;
         }
-        return this.text.equals("TRUE");
+        return this.text.contentEquals("TRUE");
     }
 
     /**
@@ -105,9 +235,18 @@ public class TokenImp implements IToken {
      * @param text input text, including some escape characters.
      * @return the String value.
      */
-    private String computeStringValue(String text) {
-        StringBuilder resStringBuilder = new StringBuilder();
+    private String computeStringValue(TokenText text) {
+        int end = text.length() - 1;
         int i = 1;
+        while (i < end && text.charAt(i) != '\\') {
+            i++;
+        }
+        if (i == end) {
+            // there's no escape sequence, the value is the text without the quotes.
+            return text.subSequence(1, end).toString();
+        }
+        StringBuilder resStringBuilder = new StringBuilder(end - 1);
+        resStringBuilder.append(text, 1, i);
         // iterate text[1:length - 1], to remove the two quotes.
         while (i < text.length() - 1) {
             if (text.charAt(i) == '\\') {
@@ -170,7 +309,9 @@ public class TokenImp implements IToken {
 
             assert false;
         }
-
+        if (this.stringValue == null) {
+            this.stringValue = this.computeStringValue(this.text);
+        }
         return this.stringValue;
     }
 
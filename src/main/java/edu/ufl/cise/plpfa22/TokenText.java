@@ -0,0 +1,156 @@
+package edu.ufl.cise.plpfa22;
+
+/**
+ * The text of a token as a view of the characters [offset, offset + length) of
+ * its source, so that lexing doesn't copy the text of every token.
+ *
+ * Two TokenTexts are equal if they contain the same characters, and the hash
+ * code is the same as the one of the equivalent String, so a TokenText can be
+ * used as the key of a hash map without converting it to a String.
+ */
+public final class TokenText implements CharSequence {
+    private final CharSequence source;
+    private final int offset;
+    private final int length;
+
+    // the hash code, computed on demand. 0 if it hasn't been computed yet.
+    private int hash;
+
+    // the String returned by toString(), created on demand.
+    private String string;
+
+    /**
+     * @param source the characters the token is lexed from
+     * @param offset the index of the first character of the token in source
+     * @param length the number of characters in the token
+     */
+    public TokenText(CharSequence source, int offset, int length) {
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * a view whose String is already known, e.g. the interned name of an
+     * identifier.
+     */
+    TokenText(CharSequence source, int offset, int length, String string) {
+        this(source, offset, length);
+        this.string = string;
+    }
+
+    /**
+     * a view of the whole string.
+     */
+    public TokenText(String text) {
+        this(text, 0, text.length());
+        this.string = text;
+    }
+
+    /**
+     * @return the same text as a view of another source, e.g. a new version of
+     *         the input, where it starts at offset.
+     */
+    TokenText in(CharSequence source, int offset) {
+        TokenText text = new TokenText(source, offset, this.length, this.string);
+        text.hash = this.hash;
+        return text;
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return this.source.charAt(this.offset + index);
+    }
+
+    @Override
+    public TokenText subSequence(int start, int end) {
+        if (start < 0 || end > this.length || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ")");
+        }
+        return new TokenText(this.source, this.offset + start, end - start);
+    }
+
+    /**
+     * @return the source of the token, and the position of the token in it.
+     */
+    public CharSequence getSource() {
+        return this.source;
+    }
+
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * compare the characters with a name without creating any object.
+     *
+     * @param name
+     * @return true if name contains the same characters as this text.
+     */
+    public boolean contentEquals(CharSequence name) {
+        if (name.length() != this.length) {
+            return false;
+        }
+        for (int i = 0; i < this.length; i++) {
+            if (this.source.charAt(this.offset + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a new array containing the characters.
+     */
+    public char[] toCharArray() {
+        char[] chars = new char[this.length];
+        if (this.source instanceof String s) {
+            s.getChars(this.offset, this.offset + this.length, chars, 0);
+        } else {
+            for (int i = 0; i < this.length; i++) {
+                chars[i] = this.source.charAt(this.offset + i);
+            }
+        }
+        return chars;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return obj instanceof TokenText other && this.hashCode() == other.hashCode() && this.contentEquals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = this.hash;
+        if (h == 0) {
+            for (int i = 0; i < this.length; i++) {
+                h = 31 * h + this.source.charAt(this.offset + i);
+            }
+            this.hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * @return the text as a String. The String is only created once.
+     */
+    @Override
+    public String toString() {
+        if (this.string == null) {
+            this.string = this.source.subSequence(this.offset, this.offset + this.length).toString();
+        }
+        return this.string;
+    }
+
+}
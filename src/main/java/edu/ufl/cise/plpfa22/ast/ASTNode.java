@@ -11,6 +11,14 @@ public abstract class ASTNode {
 
 	public final IToken firstToken;
 
+	// the structural hash of the subtree, computed on demand. 0 if it hasn't been
+	// computed yet.
+	int structuralHash;
+
+	// the ID of the node in its Program, see Program.nodeCount(). -1 if it hasn't
+	// been numbered yet.
+	int id = -1;
+
 	public ASTNode(IToken firstToken) {
 		this.firstToken = firstToken;
 	}
@@ -28,6 +36,43 @@ public abstract class ASTNode {
 		return firstToken;
 	}
 
-	public abstract Object visit(ASTVisitor v, Object arg) throws PLPException;
+	/**
+	 * @return the dense ID of the node, which indexes the attribute tables of the
+	 *         analyses, see Program.nodeCount() and AttributeTable. -1 if the node
+	 *         hasn't been numbered yet.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * A hash of the structure of the subtree, see StructuralHash. It's computed
+	 * from the hashes of the children, and cached in every node of the subtree, so
+	 * it costs O(1) per node. Equal subtrees have the same hash.
+	 */
+	public int structuralHash() {
+		int hash = structuralHash;
+		return hash != 0 ? hash : StructuralHash.hash(this);
+	}
+
+	/**
+	 * @return whether the subtree has the same structure as the other one, i.e.
+	 *         the same classes, tokens and children, wherever they are.
+	 */
+	public boolean structurallyEquals(ASTNode other) {
+		return StructuralHash.equal(this, other);
+	}
+
+	/**
+	 * forget the cached structural hash, after a child of the node is replaced.
+	 * The hashes of the enclosing nodes must be forgotten as well.
+	 */
+	public void clearStructuralHash() {
+		structuralHash = 0;
+	}
+
+	public abstract <R, A> R visit(GenericASTVisitor<R, A> v, A arg) throws PLPException;
+
+	public abstract <A> int visitInt(IntASTVisitor<A> v, A arg) throws PLPException;
 
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package edu.ufl.cise.plpfa22.ast;
+
+import edu.ufl.cise.plpfa22.PLPException;
+
+/**
+ * An ASTVisitor running a GenericASTVisitor, for the code that takes an
+ * ASTVisitor. The argument of a visit is the one passed to the ASTVisitor,
+ * which must be an A.
+ */
+class ASTVisitorAdapter<A> implements ASTVisitor {
+	private final GenericASTVisitor<?, A> visitor;
+
+	ASTVisitorAdapter(GenericASTVisitor<?, A> visitor) {
+		this.visitor = visitor;
+	}
+
+	@SuppressWarnings("unchecked")
+	private A arg(Object arg) {
+		return (A) arg;
+	}
+
+	@Override
+	public Object visitBlock(Block block, Object arg) throws PLPException {
+		return this.visitor.visitBlock(block, this.arg(arg));
+	}
+
+	@Override
+	public Object visitProgram(Program program, Object arg) throws PLPException {
+		return this.visitor.visitProgram(program, this.arg(arg));
+	}
+
+	@Override
+	public Object visitStatementAssign(StatementAssign statementAssign, Object arg) throws PLPException {
+		return this.visitor.visitStatementAssign(statementAssign, this.arg(arg));
+	}
+
+	@Override
+	public Object visitVarDec(VarDec varDec, Object arg) throws PLPException {
+		return this.visitor.visitVarDec(varDec, this.arg(arg));
+	}
+
+	@Override
+	public Object visitStatementCall(StatementCall statementCall, Object arg) throws PLPException {
+		return this.visitor.visitStatementCall(statementCall, this.arg(arg));
+	}
+
+	@Override
+	public Object visitStatementInput(StatementInput statementInput, Object arg) throws PLPException {
+		return this.visitor.visitStatementInput(statementInput, this.arg(arg));
+	}
+
+	@Override
+	public Object visitStatementOutput(StatementOutput statementOutput, Object arg) throws PLPException {
+		return this.visitor.visitStatementOutput(statementOutput, this.arg(arg));
+	}
+
+	@Override
+	public Object visitStatementBlock(StatementBlock statementBlock, Object arg) throws PLPException {
+		return this.visitor.visitStatementBlock(statementBlock, this.arg(arg));
+	}
+
+	@Override
+	public Object visitStatementIf(StatementIf statementIf, Object arg) throws PLPException {
+		return this.visitor.visitStatementIf(statementIf, this.arg(arg));
+	}
+
+	@Override
+	public Object visitStatementWhile(StatementWhile statementWhile, Object arg) throws PLPException {
+		return this.visitor.visitStatementWhile(statementWhile, this.arg(arg));
+	}
+
+	@Override
+	public Object visitExpressionBinary(ExpressionBinary expressionBinary, Object arg) throws PLPException {
+		return this.visitor.visitExpressionBinary(expressionBinary, this.arg(arg));
+	}
+
+	@Override
+	public Object visitExpressionIdent(ExpressionIdent expressionIdent, Object arg) throws PLPException {
+		return this.visitor.visitExpressionIdent(expressionIdent, this.arg(arg));
+	}
+
+	@Override
+	public Object visitExpressionNumLit(ExpressionNumLit expressionNumLit, Object arg) throws PLPException {
+		return this.visitor.visitExpressionNumLit(expressionNumLit, this.arg(arg));
+	}
+
+	@Override
+	public Object visitExpressionStringLit(ExpressionStringLit expressionStringLit, Object arg) throws PLPException {
+		return this.visitor.visitExpressionStringLit(expressionStringLit, this.arg(arg));
+	}
+
+	@Override
+	public Object visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Object arg) throws PLPException {
+		return this.visitor.visitExpressionBooleanLit(expressionBooleanLit, this.arg(arg));
+	}
+
+	@Override
+	public Object visitProcedure(ProcDec procDec, Object arg) throws PLPException {
+		return this.visitor.visitProcedure(procDec, this.arg(arg));
+	}
+
+	@Override
+	public Object visitConstDec(ConstDec constDec, Object arg) throws PLPException {
+		return this.visitor.visitConstDec(constDec, this.arg(arg));
+	}
+
+	@Override
+	public Object visitStatementEmpty(StatementEmpty statementEmpty, Object arg) throws PLPException {
+		return this.visitor.visitStatementEmpty(statementEmpty, this.arg(arg));
+	}
+
+	@Override
+	public Object visitIdent(Ident ident, Object arg) throws PLPException {
+		return this.visitor.visitIdent(ident, this.arg(arg));
+	}
+
+	@Override
+	public Object visitStatementError(StatementError statementError, Object arg) throws PLPException {
+		return this.visitor.visitStatementError(statementError, this.arg(arg));
+	}
+
+	@Override
+	public Object visitExpressionError(ExpressionError expressionError, Object arg) throws PLPException {
+		return this.visitor.visitExpressionError(expressionError, this.arg(arg));
+	}
+
+}
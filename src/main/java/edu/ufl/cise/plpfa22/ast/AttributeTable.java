@@ -0,0 +1,97 @@
+package edu.ufl.cise.plpfa22.ast;
+
+import edu.ufl.cise.plpfa22.ast.Types.Type;
+
+/**
+ * The attributes of the nodes of a Program in arrays indexed by their IDs, see
+ * Program.nodeCount(), instead of in the nodes. An analysis with its own table
+ * only reads the tree, so one parse can be analyzed by several threads at
+ * once, or kept in a cache and analyzed again, without being copied.
+ *
+ * A type is stored as its ordinal plus 1 and a declaration as its ID plus 1,
+ * so 0 means that there's none. The JVM names are only allocated for the
+ * programs that have procedures.
+ *
+ * A table is used by one thread at a time. It has the nodes numbered when it's
+ * created; the nodes added to the tree afterwards have no attributes in it.
+ */
+public final class AttributeTable implements Attributes {
+	private static final Type[] TYPES = Type.values();
+
+	private final ASTNode[] nodes;
+	private final byte[] types;
+	private final int[] nests;
+	private final int[] decs;
+	private String[] jvmProcNames;
+
+	public AttributeTable(Program program) {
+		int size = program.nodeCount();
+		nodes = program.nodes();
+		types = new byte[size];
+		nests = new int[size];
+		decs = new int[size];
+	}
+
+	/**
+	 * @return the number of nodes in the table.
+	 */
+	public int size() {
+		return types.length;
+	}
+
+	private int id(ASTNode node) {
+		int id = node.id;
+		if (id < 0 || id >= types.length || nodes[id] != node) {
+			throw new IllegalArgumentException("the node isn't in the table: " + node);
+		}
+		return id;
+	}
+
+	@Override
+	public Type getType(ASTNode node) {
+		int type = types[id(node)];
+		return type == 0 ? null : TYPES[type - 1];
+	}
+
+	@Override
+	public void setType(ASTNode node, Type type) {
+		types[id(node)] = (byte) (type == null ? 0 : type.ordinal() + 1);
+	}
+
+	@Override
+	public int getNest(ASTNode node) {
+		return nests[id(node)];
+	}
+
+	@Override
+	public void setNest(ASTNode node, int nest) {
+		nests[id(node)] = nest;
+	}
+
+	@Override
+	public Declaration getDec(ASTNode node) {
+		int dec = decs[id(node)];
+		return dec == 0 ? null : (Declaration) nodes[dec - 1];
+	}
+
+	@Override
+	public void setDec(ASTNode node, Declaration dec) {
+		decs[id(node)] = dec == null ? 0 : id(dec) + 1;
+	}
+
+	@Override
+	public String getJVMProcName(ProcDec procDec) {
+		int id = id(procDec);
+		return jvmProcNames == null ? null : jvmProcNames[id];
+	}
+
+	@Override
+	public void setJVMProcName(ProcDec procDec, String name) {
+		int id = id(procDec);
+		if (jvmProcNames == null) {
+			jvmProcNames = new String[types.length];
+		}
+		jvmProcNames[id] = name;
+	}
+
+}
@@ -0,0 +1,39 @@
+package edu.ufl.cise.plpfa22.ast;
+
+import edu.ufl.cise.plpfa22.ast.Types.Type;
+
+/**
+ * Where the scope, type and JVM name visitors store their results, and where
+ * the code generator reads them. TREE stores them in the nodes, like their
+ * setters do; an AttributeTable stores them in arrays indexed by the IDs of the
+ * nodes, so several analyses of the same tree can run at once, each one with
+ * its own table.
+ *
+ * The types are the ones of the Expressions and the Declarations, the nests
+ * the ones of the Declarations, the Idents and the ExpressionIdents, and the
+ * declarations the ones of the Idents and the ExpressionIdents.
+ */
+public interface Attributes {
+
+	/**
+	 * the attributes in the fields of the nodes.
+	 */
+	Attributes TREE = new TreeAttributes();
+
+	Type getType(ASTNode node);
+
+	void setType(ASTNode node, Type type);
+
+	int getNest(ASTNode node);
+
+	void setNest(ASTNode node, int nest);
+
+	Declaration getDec(ASTNode node);
+
+	void setDec(ASTNode node, Declaration dec);
+
+	String getJVMProcName(ProcDec procDec);
+
+	void setJVMProcName(ProcDec procDec, String name);
+
+}
@@ -27,7 +27,12 @@ public class Block extends ASTNode {
 	}
 
 	@Override
-	public Object visit(ASTVisitor v, Object arg) throws PLPException {
+	public <R, A> R visit(GenericASTVisitor<R, A> v, A arg) throws PLPException {
+		return v.visitBlock(this, arg);
+	}
+
+	@Override
+	public <A> int visitInt(IntASTVisitor<A> v, A arg) throws PLPException {
 		return v.visitBlock(this, arg);
 	}
 
@@ -22,7 +22,12 @@ public class ConstDec extends Declaration {
 
 
 	@Override
-	public Object visit(ASTVisitor v, Object arg) throws PLPException {
+	public <R, A> R visit(GenericASTVisitor<R, A> v, A arg) throws PLPException {
+		return v.visitConstDec(this, arg);
+	}
+
+	@Override
+	public <A> int visitInt(IntASTVisitor<A> v, A arg) throws PLPException {
 		return v.visitConstDec(this, arg);
 	}
 
@@ -14,7 +14,12 @@ public class ExpressionBooleanLit extends Expression {
 	}
 
 	@Override
-	public Object visit(ASTVisitor v, Object arg) throws PLPException {
+	public <R, A> R visit(GenericASTVisitor<R, A> v, A arg) throws PLPException {
+		return v.visitExpressionBooleanLit(this, arg);
+	}
+
+	@Override
+	public <A> int visitInt(IntASTVisitor<A> v, A arg) throws PLPException {
 		return v.visitExpressionBooleanLit(this, arg);
 	}
 
@@ -0,0 +1,32 @@
+package edu.ufl.cise.plpfa22.ast;
+
+import edu.ufl.cise.plpfa22.IToken;
+import edu.ufl.cise.plpfa22.PLPException;
+
+/**
+ * A missing or illegal operand, in the partial Program returned by a parser
+ * that recovers from syntax errors. firstToken is the token where an
+ * expression was expected.
+ */
+public class ExpressionError extends Expression {
+
+	public ExpressionError(IToken firstToken) {
+		super(firstToken);
+	}
+
+	@Override
+	public <R, A> R visit(GenericASTVisitor<R, A> v, A arg) throws PLPException {
+		return v.visitExpressionError(this, arg);
+	}
+
+	@Override
+	public <A> int visitInt(IntASTVisitor<A> v, A arg) throws PLPException {
+		return v.visitExpressionError(this, arg);
+	}
+
+	@Override
+	public String toString() {
+		return "ExpressionError [firstToken=" + firstToken + "]";
+	}
+
+}
@@ -26,7 +26,12 @@ public class ExpressionIdent extends Expression {
 	}
 
 	@Override
-	public Object visit(ASTVisitor v, Object arg) throws PLPException {
+	public <R, A> R visit(GenericASTVisitor<R, A> v, A arg) throws PLPException {
+		return v.visitExpressionIdent(this, arg);
+	}
+
+	@Override
+	public <A> int visitInt(IntASTVisitor<A> v, A arg) throws PLPException {
 		return v.visitExpressionIdent(this, arg);
 	}
 
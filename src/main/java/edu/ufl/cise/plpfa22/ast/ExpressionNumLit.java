@@ -20,7 +20,12 @@ public class ExpressionNumLit extends Expression {
 
 
 	@Override
-	public Object visit(ASTVisitor v, Object arg) throws PLPException {
+	public <R, A> R visit(GenericASTVisitor<R, A> v, A arg) throws PLPException {
+		return v.visitExpressionNumLit(this, arg);
+	}
+
+	@Override
+	public <A> int visitInt(IntASTVisitor<A> v, A arg) throws PLPException {
 		return v.visitExpressionNumLit(this, arg);
 	}
 
@@ -0,0 +1,65 @@
+package edu.ufl.cise.plpfa22.ast;
+
+import edu.ufl.cise.plpfa22.PLPException;
+
+/**
+ * A visitor whose methods return R and take an argument of type A, so a pass
+ * doesn't have to box or cast them. ASTVisitor is the one of Object and
+ * Object. A visitor returning an int is an IntASTVisitor instead.
+ *
+ * @param <R> the type of the results, Void if there's none
+ * @param <A> the type of the argument passed down the tree, Void if there's none
+ */
+public interface GenericASTVisitor<R, A> {
+
+	R visitBlock(Block block, A arg) throws PLPException;
+
+	R visitProgram(Program program, A arg) throws PLPException;
+
+	R visitStatementAssign(StatementAssign statementAssign, A arg) throws PLPException;
+
+	R visitVarDec(VarDec varDec, A arg) throws PLPException;
+
+	R visitStatementCall(StatementCall statementCall, A arg) throws PLPException;
+
+	R visitStatementInput(StatementInput statementInput, A arg) throws PLPException;
+
+	R visitStatementOutput(StatementOutput statementOutput, A arg) throws PLPException;
+
+	R visitStatementBlock(StatementBlock statementBlock, A arg) throws PLPException;
+
+	R visitStatementIf(StatementIf statementIf, A arg) throws PLPException;
+
+	R visitStatementWhile(StatementWhile statementWhile, A arg) throws PLPException;
+
+	R visitExpressionBinary(ExpressionBinary expressionBinary, A arg) throws PLPException;
+
+	R visitExpressionIdent(ExpressionIdent expressionIdent, A arg) throws PLPException;
+
+	R visitExpressionNumLit(ExpressionNumLit expressionNumLit, A arg) throws PLPException;
+
+	R visitExpressionStringLit(ExpressionStringLit expressionStringLit, A arg) throws PLPException;
+
+	R visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, A arg) throws PLPException;
+
+	R visitProcedure(ProcDec procDec, A arg) throws PLPException;
+
+	R visitConstDec(ConstDec constDec, A arg) throws PLPException;
+
+	R visitStatementEmpty(StatementEmpty statementEmpty, A arg) throws PLPException;
+
+	R visitIdent(Ident ident, A arg) throws PLPException;
+
+	/**
+	 * Error nodes only occur in the partial Program of a parser that recovers from
+	 * syntax errors, which isn't meant to be checked or compiled, so by default
+	 * they're ignored.
+	 */
+	default R visitStatementError(StatementError statementError, A arg) throws PLPException {
+		return null;
+	}
+
+	default R visitExpressionError(ExpressionError expressionError, A arg) throws PLPException {
+		return null;
+	}
+}
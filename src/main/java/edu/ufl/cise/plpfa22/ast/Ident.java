@@ -6,6 +6,7 @@ package edu.ufl.cise.plpfa22.ast;
 
 import edu.ufl.cise.plpfa22.IToken;
 import edu.ufl.cise.plpfa22.PLPException;
+import edu.ufl.cise.plpfa22.TokenText;
 
 public class Ident extends ASTNode {
 
@@ -26,7 +27,12 @@ public class Ident extends ASTNode {
 	}
 
 	@Override
-	public Object visit(ASTVisitor v, Object arg) throws PLPException {
+	public <R, A> R visit(GenericASTVisitor<R, A> v, A arg) throws PLPException {
+		return v.visitIdent(this, arg);
+	}
+
+	@Override
+	public <A> int visitInt(IntASTVisitor<A> v, A arg) throws PLPException {
 		return v.visitIdent(this, arg);
 	}
 
@@ -47,4 +53,8 @@ public class Ident extends ASTNode {
 		return firstToken.getText();
 	}
 
+	public TokenText getTextView() {
+		return firstToken.getTextView();
+	}
+
 }
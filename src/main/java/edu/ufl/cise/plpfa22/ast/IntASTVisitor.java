@@ -0,0 +1,55 @@
+package edu.ufl.cise.plpfa22.ast;
+
+import edu.ufl.cise.plpfa22.PLPException;
+
+/**
+ * Like a GenericASTVisitor, but the methods return an int, e.g. the index of
+ * the node in an ASTArena, without boxing it. There's no default for the error
+ * nodes, as no int means nothing.
+ *
+ * @param <A> the type of the argument passed down the tree, Void if there's none
+ */
+public interface IntASTVisitor<A> {
+
+	int visitBlock(Block block, A arg) throws PLPException;
+
+	int visitProgram(Program program, A arg) throws PLPException;
+
+	int visitStatementAssign(StatementAssign statementAssign, A arg) throws PLPException;
+
+	int visitVarDec(VarDec varDec, A arg) throws PLPException;
+
+	int visitStatementCall(StatementCall statementCall, A arg) throws PLPException;
+
+	int visitStatementInput(StatementInput statementInput, A arg) throws PLPException;
+
+	int visitStatementOutput(StatementOutput statementOutput, A arg) throws PLPException;
+
+	int visitStatementBlock(StatementBlock statementBlock, A arg) throws PLPException;
+
+	int visitStatementIf(StatementIf statementIf, A arg) throws PLPException;
+
+	int visitStatementWhile(StatementWhile statementWhile, A arg) throws PLPException;
+
+	int visitExpressionBinary(ExpressionBinary expressionBinary, A arg) throws PLPException;
+
+	int visitExpressionIdent(ExpressionIdent expressionIdent, A arg) throws PLPException;
+
+	int visitExpressionNumLit(ExpressionNumLit expressionNumLit, A arg) throws PLPException;
+
+	int visitExpressionStringLit(ExpressionStringLit expressionStringLit, A arg) throws PLPException;
+
+	int visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, A arg) throws PLPException;
+
+	int visitProcedure(ProcDec procDec, A arg) throws PLPException;
+
+	int visitConstDec(ConstDec constDec, A arg) throws PLPException;
+
+	int visitStatementEmpty(StatementEmpty statementEmpty, A arg) throws PLPException;
+
+	int visitIdent(Ident ident, A arg) throws PLPException;
+
+	int visitStatementError(StatementError statementError, A arg) throws PLPException;
+
+	int visitExpressionError(ExpressionError expressionError, A arg) throws PLPException;
+}
@@ -0,0 +1,180 @@
+package edu.ufl.cise.plpfa22.ast;
+
+import java.util.Arrays;
+import java.util.List;
+
+import edu.ufl.cise.plpfa22.PLPException;
+import edu.ufl.cise.plpfa22.StackGuard;
+
+/**
+ * Gives the nodes of a tree that have no ID yet the next IDs, in preorder, for
+ * Program.nodeCount(). The nodes that already have one keep it, and their
+ * subtrees are still visited, since a procedure replaced by the
+ * IncrementalParser is under nodes that were numbered before, except the ones
+ * of the expressions, which don't change. A node shared by the HashConser is
+ * numbered once.
+ */
+class NodeNumbering implements GenericASTVisitor<Void, Void> {
+	// the nodes by their IDs, nodes[0, count).
+	ASTNode[] nodes;
+	int count;
+
+	private final StackGuard stackGuard = new StackGuard();
+
+	NodeNumbering(ASTNode[] nodes, int count) {
+		this.nodes = nodes;
+		this.count = count;
+	}
+
+	void number(ASTNode node) {
+		try {
+			child(node);
+		} catch (PLPException e) {
+			// the visitor doesn't throw.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void child(ASTNode node) throws PLPException {
+		if (node.id >= 0 && node instanceof Expression) {
+			// an expression doesn't change, so its operands are numbered already.
+			return;
+		}
+		if (node.id < 0) {
+			if (count == nodes.length) {
+				nodes = Arrays.copyOf(nodes, Math.max(16, count * 2));
+			}
+			node.id = count;
+			nodes[count++] = node;
+		}
+		stackGuard.visit(node, this, null);
+	}
+
+	private void children(List<? extends ASTNode> nodes) throws PLPException {
+		stackGuard.forEach(nodes, this::child);
+	}
+
+	@Override
+	public Void visitBlock(Block block, Void arg) throws PLPException {
+		children(block.constDecs);
+		children(block.varDecs);
+		children(block.procedureDecs);
+		child(block.statement);
+		return null;
+	}
+
+	@Override
+	public Void visitProgram(Program program, Void arg) throws PLPException {
+		child(program.block);
+		return null;
+	}
+
+	@Override
+	public Void visitStatementAssign(StatementAssign statementAssign, Void arg) throws PLPException {
+		child(statementAssign.ident);
+		child(statementAssign.expression);
+		return null;
+	}
+
+	@Override
+	public Void visitVarDec(VarDec varDec, Void arg) throws PLPException {
+		return null;
+	}
+
+	@Override
+	public Void visitStatementCall(StatementCall statementCall, Void arg) throws PLPException {
+		child(statementCall.ident);
+		return null;
+	}
+
+	@Override
+	public Void visitStatementInput(StatementInput statementInput, Void arg) throws PLPException {
+		child(statementInput.ident);
+		return null;
+	}
+
+	@Override
+	public Void visitStatementOutput(StatementOutput statementOutput, Void arg) throws PLPException {
+		child(statementOutput.expression);
+		return null;
+	}
+
+	@Override
+	public Void visitStatementBlock(StatementBlock statementBlock, Void arg) throws PLPException {
+		children(statementBlock.statements);
+		return null;
+	}
+
+	@Override
+	public Void visitStatementIf(StatementIf statementIf, Void arg) throws PLPException {
+		child(statementIf.expression);
+		child(statementIf.statement);
+		return null;
+	}
+
+	@Override
+	public Void visitStatementWhile(StatementWhile statementWhile, Void arg) throws PLPException {
+		child(statementWhile.expression);
+		child(statementWhile.statement);
+		return null;
+	}
+
+	@Override
+	public Void visitExpressionBinary(ExpressionBinary expressionBinary, Void arg) throws PLPException {
+		child(expressionBinary.e0);
+		child(expressionBinary.e1);
+		return null;
+	}
+
+	@Override
+	public Void visitExpressionIdent(ExpressionIdent expressionIdent, Void arg) throws PLPException {
+		return null;
+	}
+
+	@Override
+	public Void visitExpressionNumLit(ExpressionNumLit expressionNumLit, Void arg) throws PLPException {
+		return null;
+	}
+
+	@Override
+	public Void visitExpressionStringLit(ExpressionStringLit expressionStringLit, Void arg) throws PLPException {
+		return null;
+	}
+
+	@Override
+	public Void visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Void arg) throws PLPException {
+		return null;
+	}
+
+	@Override
+	public Void visitProcedure(ProcDec procDec, Void arg) throws PLPException {
+		child(procDec.block);
+		return null;
+	}
+
+	@Override
+	public Void visitConstDec(ConstDec constDec, Void arg) throws PLPException {
+		return null;
+	}
+
+	@Override
+	public Void visitStatementEmpty(StatementEmpty statementEmpty, Void arg) throws PLPException {
+		return null;
+	}
+
+	@Override
+	public Void visitIdent(Ident ident, Void arg) throws PLPException {
+		return null;
+	}
+
+	@Override
+	public Void visitStatementError(StatementError statementError, Void arg) throws PLPException {
+		return null;
+	}
+
+	@Override
+	public Void visitExpressionError(ExpressionError expressionError, Void arg) throws PLPException {
+		return null;
+	}
+
+}
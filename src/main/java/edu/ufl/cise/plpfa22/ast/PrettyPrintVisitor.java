@@ -5,197 +5,253 @@
 
 package edu.ufl.cise.plpfa22.ast;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 import edu.ufl.cise.plpfa22.PLPException;
+import edu.ufl.cise.plpfa22.StackGuard;
 import edu.ufl.cise.plpfa22.ast.Types.Type;
 
+/**
+ * Prints an AST, one node per line, indented by the depth of the node. The
+ * text is written to an Appendable as the tree is visited, so a large tree
+ * never has to be held in memory as a String. The indentation of every depth
+ * is a prefix of one run of indents, which is only extended when the tree
+ * gets deeper. A printer has no shared state, so several trees can be printed
+ * on several threads at once, with a printer each.
+ */
 public class PrettyPrintVisitor implements ASTVisitor {
 
-	
-public static String AST2String(ASTNode ast) throws PLPException {
-    PrettyPrintVisitor v = new PrettyPrintVisitor("  ");
-    String s = (String) ast.visit(v, null);
-    return s;
-}
-	
-	static class PPVStringBuilder{
-		static String indent = "";
-		
-		public PPVStringBuilder(String indent){
-			this.indent=indent;
-		}
+	/**
+	 * @return the text of the AST.
+	 */
+	public static String AST2String(ASTNode ast) throws PLPException {
+		PrettyPrintVisitor v = new PrettyPrintVisitor("  ");
+		ast.visit(v, null);
+		return v.out.toString();
+	}
 
-		StringBuilder sb = new StringBuilder();
-		String currIndent = indent;
-		
-		PPVStringBuilder append(String text) {
-			sb.append('\n').append(currIndent).append(text);
-			return this;
-		}
-		
-		PPVStringBuilder down(String text) {
-			down();
-			sb.append('\n').append(currIndent).append(text);
-			return this;
+	/**
+	 * write the text of the AST to out. Use a buffered out, e.g. a BufferedWriter,
+	 * since the text is written in small pieces.
+	 * 
+	 * @throws IOException the error of out
+	 */
+	public static void print(ASTNode ast, Appendable out) throws PLPException, IOException {
+		try {
+			ast.visit(new PrettyPrintVisitor("  ", out), null);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
 		}
-		
-		PPVStringBuilder down() {
-			currIndent = currIndent + indent;
-			return this;
-		}
-		
-		PPVStringBuilder up(String text) {
-			up();
-			sb.append('\n').append(currIndent).append(text);
-			return this;			
+	}
+
+	final Appendable out;
+	final String indent;
+
+	// the indents of every depth so far, end to end. The indentation of depth d
+	// is the first d * indent.length() characters.
+	String indents;
+
+	// the depth of the next line. The lines of a Program are at depth 1.
+	int depth = 1;
+
+	final StackGuard stackGuard = new StackGuard();
+
+	/**
+	 * a printer into a String, which visitProgram returns.
+	 */
+	public PrettyPrintVisitor(String indent) {
+		this(indent, new StringBuilder());
+	}
+
+	/**
+	 * a printer into out. An IOException of out is thrown as an
+	 * UncheckedIOException.
+	 */
+	public PrettyPrintVisitor(String indent, Appendable out) {
+		this.out = out;
+		this.indent = indent;
+		this.indents = indent.repeat(16);
+	}
+
+	/**
+	 * start a new line at the current depth.
+	 */
+	PrettyPrintVisitor line() {
+		int length = this.depth * this.indent.length();
+		if (length > this.indents.length()) {
+			this.indents = this.indents.repeat(Math.max(2, length / this.indents.length() + 1));
 		}
-		
-		PPVStringBuilder up() {
-			currIndent = currIndent.substring(indent.length());
-			return this;			
+		try {
+			this.out.append('\n').append(this.indents, 0, length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
-		
-		@Override
-		public String toString() {
-			return sb.toString();
+		return this;
+	}
+
+	PrettyPrintVisitor print(CharSequence text) {
+		try {
+			this.out.append(text);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
-		
+		return this;
 	}
-	
-	
-	PPVStringBuilder sb;
-	
-	public PrettyPrintVisitor(String indent) {
-		sb = new PPVStringBuilder(indent);
+
+	PrettyPrintVisitor print(Object value) {
+		return this.print(String.valueOf(value));
+	}
+
+	PrettyPrintVisitor append(String text) {
+		return this.line().print(text);
+	}
+
+	PrettyPrintVisitor down(String text) {
+		this.depth++;
+		return this.append(text);
+	}
+
+	PrettyPrintVisitor down() {
+		this.depth++;
+		return this;
+	}
+
+	PrettyPrintVisitor up(String text) {
+		this.depth--;
+		return this.append(text);
+	}
+
+	PrettyPrintVisitor up() {
+		this.depth--;
+		return this;
 	}
 
 	@Override
 	public Object visitBlock(Block block, Object arg) throws PLPException {
-		sb.append("BLOCK");
-		sb.down("ConstDecs " + (block.constDecs.size() == 0 ? " none" : "") );
-		sb.down();
+		this.append("BLOCK");
+		this.down("ConstDecs " + (block.constDecs.size() == 0 ? " none" : "") );
+		this.down();
 		for (ConstDec dec : block.constDecs) {
 			dec.visit(this, arg);
 		}
-		sb.up();
-		sb.append("VarDecs"+ (block.varDecs.size() == 0 ? " none" : ""));
-		sb.down();
+		this.up();
+		this.append("VarDecs"+ (block.varDecs.size() == 0 ? " none" : ""));
+		this.down();
 		for (VarDec dec : block.varDecs) {
 			dec.visit(this, arg);
 		}
-		sb.up();
-		sb.append("ProcDecs"+ (block.procedureDecs.size() == 0 ? " none" : ""));
-		sb.down();
-		for (ProcDec dec : block.procedureDecs) {
-			dec.visit(this, arg);
-		}
-		sb.up();
-		sb.append("STATEMENT");
-		sb.down();
-		block.statement.visit(this,arg);
-		sb.up("END OF STATEMENT");
-		sb.up();
-		sb.append("END OF BLOCK");
+		this.up();
+		this.append("ProcDecs"+ (block.procedureDecs.size() == 0 ? " none" : ""));
+		this.down();
+		stackGuard.forEach(block.procedureDecs, dec -> dec.visit(this, arg));
+		this.up();
+		this.append("STATEMENT");
+		this.down();
+		stackGuard.visit(block.statement, this, arg);
+		this.up("END OF STATEMENT");
+		this.up();
+		this.append("END OF BLOCK");
 		return null;
 	}
 
 	@Override
 	public Object visitProgram(Program program, Object arg) throws PLPException {
-		sb.append("PROGRAM");
-		sb.down();
+		this.append("PROGRAM");
+		this.down();
 		program.block.visit(this, null);
-		sb.up("END OF PROGRAM");
-		return sb.toString();
+		this.up("END OF PROGRAM");
+		// the text, if it's printed into a String.
+		return out instanceof StringBuilder ? out.toString() : null;
 	}
 
 	@Override
 	public Object visitStatementAssign(StatementAssign statementAssign, Object arg) throws PLPException {
-		sb.append("ASSIGNMENT");
-		sb.down();
+		this.append("ASSIGNMENT");
+		this.down();
 		statementAssign.ident.visit(this, null);
 		statementAssign.expression.visit(this, null);
-		sb.up();
+		this.up();
 		return null;
 	}
 
 	@Override
 	public Object visitVarDec(VarDec varDec, Object arg) throws PLPException {
-		String identText = String.valueOf(varDec.ident.getText());
+		CharSequence identText = varDec.ident.getTextView();
 		int nest = varDec.getNest();
 		Types.Type type = varDec.getType();
-		sb.append("VAR " + identText +  " at nest level " + nest + " type="+type);
+		this.append("VAR ").print(identText).print(" at nest level ").print(nest).print(" type=").print(type);
 		return null;
 	}
 
 	@Override
 	public Object visitStatementCall(StatementCall statementCall, Object arg) throws PLPException {
-		sb.append("CALL");
-		sb.down();
+		this.append("CALL");
+		this.down();
 		statementCall.ident.visit(this, null);
-		sb.up();
+		this.up();
 		return null;		
 	}
 
 	@Override
 	public Object visitStatementInput(StatementInput statementInput, Object arg) throws PLPException {
-		sb.append("INPUT");
-		sb.down();
+		this.append("INPUT");
+		this.down();
 		statementInput.ident.visit(this, null);
-		sb.up();
+		this.up();
 		return null;		
 	}
 
 	@Override
 	public Object visitStatementOutput(StatementOutput statementOutput, Object arg) throws PLPException {
-		sb.append("OUTPUT");
-		sb.down();
+		this.append("OUTPUT");
+		this.down();
 		statementOutput.expression.visit(this, arg);
-		sb.up();
+		this.up();
 		return null;
 	}
 
 	@Override
 	public Object visitStatementBlock(StatementBlock statementBlock, Object arg) throws PLPException {
-		sb.append("BEGIN");
-		sb.down();
-		for(Statement s: statementBlock.statements) {
-			s.visit(this, arg);
-		}
-		sb.up("END");
+		this.append("BEGIN");
+		this.down();
+		stackGuard.forEach(statementBlock.statements, s -> s.visit(this, arg));
+		this.up("END");
 		return null;
 	}
 
 	@Override
 	public Object visitStatementIf(StatementIf statementIf, Object arg) throws PLPException {
-		sb.append("IF");
-		sb.down();
+		this.append("IF");
+		this.down();
 		statementIf.expression.visit(this,arg);
-		sb.up("THEN");
-		sb.down();
-		statementIf.statement.visit(this,arg);
-		sb.up("END OF IF");
+		this.up("THEN");
+		this.down();
+		stackGuard.visit(statementIf.statement, this, arg);
+		this.up("END OF IF");
 		return null;
 	}
 
 	@Override
 	public Object visitStatementWhile(StatementWhile statementWhile, Object arg) throws PLPException {
-		sb.append("WHILE");
-		sb.down();
+		this.append("WHILE");
+		this.down();
 		statementWhile.expression.visit(this,arg);
-		sb.up("DO");
-		sb.down();
-		statementWhile.statement.visit(this,arg);
-		sb.up("END OF WHILE");
+		this.up("DO");
+		this.down();
+		stackGuard.visit(statementWhile.statement, this, arg);
+		this.up("END OF WHILE");
 		return null;
 	}
 
 	@Override
 	public Object visitExpressionBinary(ExpressionBinary expressionBinary, Object arg) throws PLPException {
-		sb.append("binary expr");
-		sb.down();
-		expressionBinary.e0.visit(this, arg);
-		sb.append(String.valueOf(expressionBinary.op.getText()));
-		expressionBinary.e1.visit(this,arg);
-		sb.up();
+		this.append("binary expr");
+		this.down();
+		stackGuard.visit(expressionBinary.e0, this, arg);
+		this.append(expressionBinary.op.getTextView().toString());
+		stackGuard.visit(expressionBinary.e1, this, arg);
+		this.up();
 		return null;
 	}
 
@@ -205,53 +261,67 @@ public static String AST2String(ASTNode ast) throws PLPException {
 		int decNest = dec.getNest();
 		int identNest = expressionIdent.getNest();
 		Types.Type type = expressionIdent.getType();
-		String name = String.valueOf(expressionIdent.getFirstToken().getText());
-		sb.append("ExpressionIdent  " + name + " identNest=" + identNest + " decNest="+decNest + " type="+type);
+		CharSequence name = expressionIdent.getFirstToken().getTextView();
+		this.append("ExpressionIdent  ").print(name).print(" identNest=").print(identNest).print(" decNest=").print(decNest)
+				.print(" type=").print(type);
 		return null;
 	}
 
 	@Override
 	public Object visitExpressionNumLit(ExpressionNumLit expressionNumLit, Object arg) throws PLPException {
-		sb.append("NumLit " + expressionNumLit.getFirstToken().getIntValue());
+		this.append("NumLit ").print(expressionNumLit.getFirstToken().getIntValue());
 		return null;
 	}
 
 	@Override
 	public Object visitExpressionStringLit(ExpressionStringLit expressionStringLit, Object arg) throws PLPException {
-		sb.append("StringLit \"" + expressionStringLit.getFirstToken().getStringValue() + "\"");
+		this.append("StringLit \"").print(expressionStringLit.getFirstToken().getStringValue()).print("\"");
 		return null;
 	}
 
 	@Override
 	public Object visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Object arg) throws PLPException {
-		sb.append("BooleanLit " + expressionBooleanLit.getFirstToken().getBooleanValue());
+		this.append("BooleanLit ").print(expressionBooleanLit.getFirstToken().getBooleanValue());
 		return null;
 	}
 
 	@Override
 	public Object visitProcedure(ProcDec procDec, Object arg) throws PLPException {
-		String name = String.valueOf(procDec.ident.getText());
+		CharSequence name = procDec.ident.getTextView();
 		int nest = procDec.getNest();
-		sb.append("PROCEDURE " + name + " at nesting level " + nest );
-		sb.down();
-		procDec.block.visit(this, arg);
-		sb.up("END OF PROCEDURE " + name );
+		this.append("PROCEDURE ").print(name).print(" at nesting level ").print(nest);
+		this.down();
+		stackGuard.visit(procDec.block, this, arg);
+		this.up("END OF PROCEDURE ").print(name);
 		return null;
 	}
 
 	@Override
 	public Object visitConstDec(ConstDec constDec, Object arg) throws PLPException {
-		String identText = String.valueOf(constDec.ident.getText());
+		CharSequence identText = constDec.ident.getTextView();
 		int nest = constDec.getNest();
 		String valueText = constDec.val.toString();
 		Type type = constDec.getType();
-		sb.append("CONST " + identText + "=" + valueText + " at nest level " + nest+ " type=" + type);
+		this.append("CONST ").print(identText).print("=").print(valueText).print(" at nest level ").print(nest)
+				.print(" type=").print(type);
 		return null;
 	}
 
 	@Override
 	public Object visitStatementEmpty(StatementEmpty statementEmpty, Object arg) throws PLPException {
-		sb.append("EmptyStatement");
+		this.append("EmptyStatement");
+		return null;
+	}
+
+	@Override
+	public Object visitStatementError(StatementError statementError, Object arg) throws PLPException {
+		this.append("ErrorStatement");
+		return null;
+	}
+
+	@Override
+	public Object visitExpressionError(ExpressionError expressionError, Object arg) throws PLPException {
+		this.append("ErrorExpression");
 		return null;
 	}
 
@@ -260,9 +330,10 @@ public static String AST2String(ASTNode ast) throws PLPException {
 		Declaration dec = ident.getDec();
 		int decNest = dec.getNest();
 		int identNest = ident.getNest();
-		String name = String.valueOf(ident.getFirstToken().getText());
+		CharSequence name = ident.getFirstToken().getTextView();
 		Type type = dec.getType();
-		sb.append("Ident  " + name + " identNest=" + identNest + " decNest="+decNest + " type=" + type);
+		this.append("Ident  ").print(name).print(" identNest=").print(identNest).print(" decNest=").print(decNest)
+				.print(" type=").print(type);
 		return null;
 	}
 
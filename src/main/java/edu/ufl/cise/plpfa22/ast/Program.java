@@ -10,6 +10,13 @@ import edu.ufl.cise.plpfa22.PLPException;
 public class Program extends ASTNode {
 
 	public final Block block;
+
+	// the nodes of the tree by their IDs, nodes[0, nodeCount).
+	private ASTNode[] nodes = new ASTNode[0];
+	private int nodeCount;
+
+	// whether all the nodes of the tree have an ID.
+	private boolean numbered;
 	
 	public Program(IToken firstToken, Block block) {
 		super(firstToken);
@@ -18,10 +25,64 @@ public class Program extends ASTNode {
 	}
 
 	@Override
-	public Object visit(ASTVisitor v, Object arg) throws PLPException {
+	public <R, A> R visit(GenericASTVisitor<R, A> v, A arg) throws PLPException {
 		return v.visitProgram(this, arg);
 	}
 
+	@Override
+	public <A> int visitInt(IntASTVisitor<A> v, A arg) throws PLPException {
+		return v.visitProgram(this, arg);
+	}
+
+	/**
+	 * Numbers the nodes of the tree that have no ID yet, if there may be some, and
+	 * returns the number of IDs, which index the AttributeTables of the program.
+	 * The IDs are dense, in preorder, and stable: a node keeps its ID, and after
+	 * the IncrementalParser replaces a procedure, see nodesAdded(), only the new
+	 * nodes get new ones, after the existing IDs. The IDs of the replaced nodes
+	 * aren't reused.
+	 *
+	 * The tree can then be read by several threads, each one with its own
+	 * AttributeTable, as long as none of them changes it.
+	 */
+	public synchronized int nodeCount() {
+		if (!numbered) {
+			NodeNumbering numbering = new NodeNumbering(nodes, nodeCount);
+			numbering.number(this);
+			nodes = numbering.nodes;
+			nodeCount = numbering.count;
+			numbered = true;
+		}
+		return nodeCount;
+	}
+
+	/**
+	 * @return the node with the ID.
+	 */
+	public synchronized ASTNode node(int id) {
+		if (id < 0 || id >= nodeCount) {
+			throw new IndexOutOfBoundsException("no node has the ID " + id);
+		}
+		return nodes[id];
+	}
+
+	/**
+	 * @return the nodes by their IDs, after nodeCount(). The nodes of the IDs
+	 *         already given aren't changed in the array, new ones are added after
+	 *         them.
+	 */
+	synchronized ASTNode[] nodes() {
+		return nodes;
+	}
+
+	/**
+	 * tell that nodes without an ID were added to the tree, so they're numbered on
+	 * the next nodeCount().
+	 */
+	public synchronized void nodesAdded() {
+		numbered = false;
+	}
+
 	@Override
 	public String toString() {
 		return "Program [" + (block != null ? "block=" + block : "") + "]";
@@ -14,7 +14,12 @@ public class StatementBlock extends Statement {
 	public final List<Statement> statements;
 
 	@Override
-	public Object visit(ASTVisitor v, Object arg) throws PLPException {
+	public <R, A> R visit(GenericASTVisitor<R, A> v, A arg) throws PLPException {
+		return v.visitStatementBlock(this, arg);
+	}
+
+	@Override
+	public <A> int visitInt(IntASTVisitor<A> v, A arg) throws PLPException {
 		return v.visitStatementBlock(this, arg);
 	}
 
@@ -0,0 +1,32 @@
+package edu.ufl.cise.plpfa22.ast;
+
+import edu.ufl.cise.plpfa22.IToken;
+import edu.ufl.cise.plpfa22.PLPException;
+
+/**
+ * A statement that couldn't be parsed, in the partial Program returned by a
+ * parser that recovers from syntax errors. The tokens from firstToken up to
+ * the point where the parser resynchronized are skipped.
+ */
+public class StatementError extends Statement {
+
+	public StatementError(IToken firstToken) {
+		super(firstToken);
+	}
+
+	@Override
+	public <R, A> R visit(GenericASTVisitor<R, A> v, A arg) throws PLPException {
+		return v.visitStatementError(this, arg);
+	}
+
+	@Override
+	public <A> int visitInt(IntASTVisitor<A> v, A arg) throws PLPException {
+		return v.visitStatementError(this, arg);
+	}
+
+	@Override
+	public String toString() {
+		return "StatementError [firstToken=" + firstToken + "]";
+	}
+
+}
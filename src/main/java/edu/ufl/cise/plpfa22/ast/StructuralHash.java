@@ -0,0 +1,361 @@
+package edu.ufl.cise.plpfa22.ast;
+
+import java.util.List;
+import java.util.Objects;
+
+import edu.ufl.cise.plpfa22.IToken;
+import edu.ufl.cise.plpfa22.PLPException;
+import edu.ufl.cise.plpfa22.StackGuard;
+
+/**
+ * Computes the structural hashes of ASTNode.structuralHash(), and compares
+ * subtrees for ASTNode.structurallyEquals().
+ *
+ * The structure of a node is its class, the kinds and the texts of its tokens
+ * other than the first one, the value of a ConstDec, and the structures of its
+ * children, in order. The first token only counts for the literals, the idents
+ * and the error nodes, whose only token it is. The offsets and the locations of
+ * the tokens don't count, nor do the decorations of the scope and type visitors:
+ * an x has the same structure wherever it is, whatever it's bound to.
+ *
+ * The hash of a node is combined from the cached hashes of its children, so it's
+ * computed once per node. It depends only on the structure, not on the run, so
+ * it can be stored, e.g. as a key of a cache on disk.
+ */
+class StructuralHash implements IntASTVisitor<Void> {
+	// the seeds of the node classes.
+	private static final int PROGRAM = 1;
+	private static final int BLOCK = 2;
+	private static final int CONST_DEC = 3;
+	private static final int VAR_DEC = 4;
+	private static final int PROC_DEC = 5;
+	private static final int STATEMENT_ASSIGN = 6;
+	private static final int STATEMENT_CALL = 7;
+	private static final int STATEMENT_INPUT = 8;
+	private static final int STATEMENT_OUTPUT = 9;
+	private static final int STATEMENT_BLOCK = 10;
+	private static final int STATEMENT_IF = 11;
+	private static final int STATEMENT_WHILE = 12;
+	private static final int STATEMENT_EMPTY = 13;
+	private static final int STATEMENT_ERROR = 14;
+	private static final int EXPRESSION_BINARY = 15;
+	private static final int EXPRESSION_IDENT = 16;
+	private static final int EXPRESSION_NUM_LIT = 17;
+	private static final int EXPRESSION_STRING_LIT = 18;
+	private static final int EXPRESSION_BOOLEAN_LIT = 19;
+	private static final int EXPRESSION_ERROR = 20;
+	private static final int IDENT = 21;
+
+	private final StackGuard stackGuard = new StackGuard();
+
+	static int hash(ASTNode node) {
+		try {
+			return node.visitInt(new StructuralHash(), null);
+		} catch (PLPException e) {
+			// the visitor doesn't throw.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static boolean equal(ASTNode a, ASTNode b) {
+		try {
+			return new Equality().equal(a, b);
+		} catch (PLPException e) {
+			// the visitor doesn't throw.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static int token(int hash, IToken token) {
+		return 31 * (31 * hash + token.getKind().ordinal()) + token.getTextView().hashCode();
+	}
+
+	private static boolean sameToken(IToken a, IToken b) {
+		return a.getKind() == b.getKind() && a.getTextView().equals(b.getTextView());
+	}
+
+	/**
+	 * @return the hash of the node, from the cache if it's there.
+	 */
+	private int child(int hash, ASTNode node) throws PLPException {
+		int childHash = node.structuralHash;
+		if (childHash == 0) {
+			childHash = stackGuard.visit(node, this, null);
+		}
+		return 31 * hash + childHash;
+	}
+
+	private int children(int hash, List<? extends ASTNode> nodes) throws PLPException {
+		int[] result = { 31 * hash + nodes.size() };
+		stackGuard.forEach(nodes, node -> result[0] = child(result[0], node));
+		return result[0];
+	}
+
+	/**
+	 * cache the hash of the node. 0 means that there's none, so it's replaced.
+	 */
+	private static int cache(ASTNode node, int hash) {
+		if (hash == 0) {
+			hash = 1;
+		}
+		node.structuralHash = hash;
+		return hash;
+	}
+
+	@Override
+	public int visitBlock(Block block, Void arg) throws PLPException {
+		int hash = children(BLOCK, block.constDecs);
+		hash = children(hash, block.varDecs);
+		hash = children(hash, block.procedureDecs);
+		return cache(block, child(hash, block.statement));
+	}
+
+	@Override
+	public int visitProgram(Program program, Void arg) throws PLPException {
+		return cache(program, child(PROGRAM, program.block));
+	}
+
+	@Override
+	public int visitStatementAssign(StatementAssign statementAssign, Void arg) throws PLPException {
+		return cache(statementAssign,
+				child(child(STATEMENT_ASSIGN, statementAssign.ident), statementAssign.expression));
+	}
+
+	@Override
+	public int visitVarDec(VarDec varDec, Void arg) throws PLPException {
+		return cache(varDec, token(VAR_DEC, varDec.ident));
+	}
+
+	@Override
+	public int visitStatementCall(StatementCall statementCall, Void arg) throws PLPException {
+		return cache(statementCall, child(STATEMENT_CALL, statementCall.ident));
+	}
+
+	@Override
+	public int visitStatementInput(StatementInput statementInput, Void arg) throws PLPException {
+		return cache(statementInput, child(STATEMENT_INPUT, statementInput.ident));
+	}
+
+	@Override
+	public int visitStatementOutput(StatementOutput statementOutput, Void arg) throws PLPException {
+		return cache(statementOutput, child(STATEMENT_OUTPUT, statementOutput.expression));
+	}
+
+	@Override
+	public int visitStatementBlock(StatementBlock statementBlock, Void arg) throws PLPException {
+		return cache(statementBlock, children(STATEMENT_BLOCK, statementBlock.statements));
+	}
+
+	@Override
+	public int visitStatementIf(StatementIf statementIf, Void arg) throws PLPException {
+		return cache(statementIf, child(child(STATEMENT_IF, statementIf.expression), statementIf.statement));
+	}
+
+	@Override
+	public int visitStatementWhile(StatementWhile statementWhile, Void arg) throws PLPException {
+		return cache(statementWhile,
+				child(child(STATEMENT_WHILE, statementWhile.expression), statementWhile.statement));
+	}
+
+	@Override
+	public int visitExpressionBinary(ExpressionBinary expressionBinary, Void arg) throws PLPException {
+		int hash = child(EXPRESSION_BINARY, expressionBinary.e0);
+		return cache(expressionBinary, child(token(hash, expressionBinary.op), expressionBinary.e1));
+	}
+
+	@Override
+	public int visitExpressionIdent(ExpressionIdent expressionIdent, Void arg) throws PLPException {
+		return cache(expressionIdent, token(EXPRESSION_IDENT, expressionIdent.firstToken));
+	}
+
+	@Override
+	public int visitExpressionNumLit(ExpressionNumLit expressionNumLit, Void arg) throws PLPException {
+		return cache(expressionNumLit, token(EXPRESSION_NUM_LIT, expressionNumLit.firstToken));
+	}
+
+	@Override
+	public int visitExpressionStringLit(ExpressionStringLit expressionStringLit, Void arg) throws PLPException {
+		return cache(expressionStringLit, token(EXPRESSION_STRING_LIT, expressionStringLit.firstToken));
+	}
+
+	@Override
+	public int visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, Void arg)
+			throws PLPException {
+		return cache(expressionBooleanLit, token(EXPRESSION_BOOLEAN_LIT, expressionBooleanLit.firstToken));
+	}
+
+	@Override
+	public int visitProcedure(ProcDec procDec, Void arg) throws PLPException {
+		return cache(procDec, child(token(PROC_DEC, procDec.ident), procDec.block));
+	}
+
+	@Override
+	public int visitConstDec(ConstDec constDec, Void arg) throws PLPException {
+		return cache(constDec, 31 * token(CONST_DEC, constDec.ident) + Objects.hashCode(constDec.val));
+	}
+
+	@Override
+	public int visitStatementEmpty(StatementEmpty statementEmpty, Void arg) throws PLPException {
+		return cache(statementEmpty, STATEMENT_EMPTY);
+	}
+
+	@Override
+	public int visitIdent(Ident ident, Void arg) throws PLPException {
+		return cache(ident, token(IDENT, ident.firstToken));
+	}
+
+	@Override
+	public int visitStatementError(StatementError statementError, Void arg) throws PLPException {
+		return cache(statementError, token(STATEMENT_ERROR, statementError.firstToken));
+	}
+
+	@Override
+	public int visitExpressionError(ExpressionError expressionError, Void arg) throws PLPException {
+		return cache(expressionError, token(EXPRESSION_ERROR, expressionError.firstToken));
+	}
+
+	/**
+	 * compares a node with another one of the same class, the argument.
+	 */
+	private static class Equality implements GenericASTVisitor<Boolean, ASTNode> {
+		private final StackGuard stackGuard = new StackGuard();
+
+		boolean equal(ASTNode a, ASTNode b) throws PLPException {
+			if (a == b) {
+				return true;
+			}
+			return a.getClass() == b.getClass() && a.structuralHash() == b.structuralHash()
+					&& stackGuard.visit(a, this, b);
+		}
+
+		private boolean equal(List<? extends ASTNode> a, List<? extends ASTNode> b) throws PLPException {
+			if (a.size() != b.size()) {
+				return false;
+			}
+			// the number of equal nodes so far.
+			int[] equal = { 0 };
+			stackGuard.repeat(() -> equal[0] < a.size() && equal(a.get(equal[0]), b.get(equal[0]))
+					&& ++equal[0] < a.size());
+			return equal[0] == a.size();
+		}
+
+		@Override
+		public Boolean visitBlock(Block block, ASTNode arg) throws PLPException {
+			Block other = (Block) arg;
+			return equal(block.constDecs, other.constDecs) && equal(block.varDecs, other.varDecs)
+					&& equal(block.procedureDecs, other.procedureDecs) && equal(block.statement, other.statement);
+		}
+
+		@Override
+		public Boolean visitProgram(Program program, ASTNode arg) throws PLPException {
+			return equal(program.block, ((Program) arg).block);
+		}
+
+		@Override
+		public Boolean visitStatementAssign(StatementAssign statementAssign, ASTNode arg) throws PLPException {
+			StatementAssign other = (StatementAssign) arg;
+			return equal(statementAssign.ident, other.ident) && equal(statementAssign.expression, other.expression);
+		}
+
+		@Override
+		public Boolean visitVarDec(VarDec varDec, ASTNode arg) throws PLPException {
+			return sameToken(varDec.ident, ((VarDec) arg).ident);
+		}
+
+		@Override
+		public Boolean visitStatementCall(StatementCall statementCall, ASTNode arg) throws PLPException {
+			return equal(statementCall.ident, ((StatementCall) arg).ident);
+		}
+
+		@Override
+		public Boolean visitStatementInput(StatementInput statementInput, ASTNode arg) throws PLPException {
+			return equal(statementInput.ident, ((StatementInput) arg).ident);
+		}
+
+		@Override
+		public Boolean visitStatementOutput(StatementOutput statementOutput, ASTNode arg) throws PLPException {
+			return equal(statementOutput.expression, ((StatementOutput) arg).expression);
+		}
+
+		@Override
+		public Boolean visitStatementBlock(StatementBlock statementBlock, ASTNode arg) throws PLPException {
+			return equal(statementBlock.statements, ((StatementBlock) arg).statements);
+		}
+
+		@Override
+		public Boolean visitStatementIf(StatementIf statementIf, ASTNode arg) throws PLPException {
+			StatementIf other = (StatementIf) arg;
+			return equal(statementIf.expression, other.expression) && equal(statementIf.statement, other.statement);
+		}
+
+		@Override
+		public Boolean visitStatementWhile(StatementWhile statementWhile, ASTNode arg) throws PLPException {
+			StatementWhile other = (StatementWhile) arg;
+			return equal(statementWhile.expression, other.expression)
+					&& equal(statementWhile.statement, other.statement);
+		}
+
+		@Override
+		public Boolean visitExpressionBinary(ExpressionBinary expressionBinary, ASTNode arg) throws PLPException {
+			ExpressionBinary other = (ExpressionBinary) arg;
+			return sameToken(expressionBinary.op, other.op) && equal(expressionBinary.e0, other.e0)
+					&& equal(expressionBinary.e1, other.e1);
+		}
+
+		@Override
+		public Boolean visitExpressionIdent(ExpressionIdent expressionIdent, ASTNode arg) throws PLPException {
+			return sameToken(expressionIdent.firstToken, arg.firstToken);
+		}
+
+		@Override
+		public Boolean visitExpressionNumLit(ExpressionNumLit expressionNumLit, ASTNode arg) throws PLPException {
+			return sameToken(expressionNumLit.firstToken, arg.firstToken);
+		}
+
+		@Override
+		public Boolean visitExpressionStringLit(ExpressionStringLit expressionStringLit, ASTNode arg)
+				throws PLPException {
+			return sameToken(expressionStringLit.firstToken, arg.firstToken);
+		}
+
+		@Override
+		public Boolean visitExpressionBooleanLit(ExpressionBooleanLit expressionBooleanLit, ASTNode arg)
+				throws PLPException {
+			return sameToken(expressionBooleanLit.firstToken, arg.firstToken);
+		}
+
+		@Override
+		public Boolean visitProcedure(ProcDec procDec, ASTNode arg) throws PLPException {
+			ProcDec other = (ProcDec) arg;
+			return sameToken(procDec.ident, other.ident) && equal(procDec.block, other.block);
+		}
+
+		@Override
+		public Boolean visitConstDec(ConstDec constDec, ASTNode arg) throws PLPException {
+			ConstDec other = (ConstDec) arg;
+			return sameToken(constDec.ident, other.ident) && Objects.equals(constDec.val, other.val);
+		}
+
+		@Override
+		public Boolean visitStatementEmpty(StatementEmpty statementEmpty, ASTNode arg) throws PLPException {
+			return true;
+		}
+
+		@Override
+		public Boolean visitIdent(Ident ident, ASTNode arg) throws PLPException {
+			return sameToken(ident.firstToken, arg.firstToken);
+		}
+
+		@Override
+		public Boolean visitStatementError(StatementError statementError, ASTNode arg) throws PLPException {
+			return sameToken(statementError.firstToken, arg.firstToken);
+		}
+
+		@Override
+		public Boolean visitExpressionError(ExpressionError expressionError, ASTNode arg) throws PLPException {
+			return sameToken(expressionError.firstToken, arg.firstToken);
+		}
+
+	}
+
+}
@@ -0,0 +1,69 @@
+package edu.ufl.cise.plpfa22.ast;
+
+import edu.ufl.cise.plpfa22.ast.Types.Type;
+
+/**
+ * The attributes in the fields of the nodes, see Attributes.TREE.
+ */
+class TreeAttributes implements Attributes {
+
+	@Override
+	public Type getType(ASTNode node) {
+		return node instanceof Expression expression ? expression.type : ((Declaration) node).type;
+	}
+
+	@Override
+	public void setType(ASTNode node, Type type) {
+		if (node instanceof Expression expression) {
+			expression.type = type;
+		} else {
+			((Declaration) node).type = type;
+		}
+	}
+
+	@Override
+	public int getNest(ASTNode node) {
+		if (node instanceof ExpressionIdent expressionIdent) {
+			return expressionIdent.nest;
+		} else if (node instanceof Ident ident) {
+			return ident.nest;
+		}
+		return ((Declaration) node).nest;
+	}
+
+	@Override
+	public void setNest(ASTNode node, int nest) {
+		if (node instanceof ExpressionIdent expressionIdent) {
+			expressionIdent.nest = nest;
+		} else if (node instanceof Ident ident) {
+			ident.nest = nest;
+		} else {
+			((Declaration) node).nest = nest;
+		}
+	}
+
+	@Override
+	public Declaration getDec(ASTNode node) {
+		return node instanceof ExpressionIdent expressionIdent ? expressionIdent.dec : ((Ident) node).dec;
+	}
+
+	@Override
+	public void setDec(ASTNode node, Declaration dec) {
+		if (node instanceof ExpressionIdent expressionIdent) {
+			expressionIdent.dec = dec;
+		} else {
+			((Ident) node).dec = dec;
+		}
+	}
+
+	@Override
+	public String getJVMProcName(ProcDec procDec) {
+		return procDec.JVMProcName;
+	}
+
+	@Override
+	public void setJVMProcName(ProcDec procDec, String name) {
+		procDec.JVMProcName = name;
+	}
+
+}
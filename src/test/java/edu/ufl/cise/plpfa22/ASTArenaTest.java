@@ -0,0 +1,141 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.ASTArena.NodeKind;
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.AttributeTable;
+import edu.ufl.cise.plpfa22.ast.PrettyPrintVisitor;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.Types.Type;
+
+class ASTArenaTest {
+
+    static final String RECURSIVE = """
+            VAR n;
+            PROCEDURE even;
+                IF n > 0 THEN BEGIN n := n - 1; CALL odd END;
+            PROCEDURE odd;
+                IF n > 0 THEN BEGIN n := n - 1; CALL even END;
+            BEGIN
+                ? n;
+                CALL even
+            END
+            .
+            """;
+
+    static String print(ASTNode ast) throws PLPException {
+        return PrettyPrintVisitor.AST2String(ast);
+    }
+
+    @Test
+    void roundTrip() throws PLPException {
+        for (String input : new String[] { TokenBufferTest.PROGRAM, RECURSIVE }) {
+            Program expected = DeepNestingTest.decoratedAST(input);
+            ASTArena arena = ASTArenaAdapter.fromTree(expected, TokenBuffer.lex(input));
+            Program actual = ASTArenaAdapter.toTree(arena);
+            assertEquals(print(expected), print(actual));
+        }
+    }
+
+    @Test
+    void columns() throws PLPException {
+        TokenBuffer tokens = TokenBuffer.lex(RECURSIVE);
+        ASTArena arena = ASTArenaAdapter.fromTree(DeepNestingTest.decoratedAST(RECURSIVE), tokens);
+        int program = arena.root();
+        assertEquals(NodeKind.PROGRAM, arena.kind(program));
+        int block = arena.child(program, 0);
+        assertEquals(0, arena.constDecCount(block));
+        assertEquals(1, arena.varDecCount(block));
+        assertEquals(2, arena.procDecCount(block));
+
+        int n = arena.child(block, 0);
+        assertEquals(NodeKind.VAR_DEC, arena.kind(n));
+        assertEquals(Type.NUMBER, arena.type(n));
+        assertEquals("n", String.valueOf(tokens.token(arena.identToken(n)).getText()));
+
+        // CALL odd in even refers to the ProcDec after it.
+        int even = arena.child(block, 1);
+        int odd = arena.child(block, 2);
+        int ifStatement = arena.child(arena.child(even, 0), 0);
+        int call = arena.child(arena.child(ifStatement, 1), 1);
+        assertEquals(NodeKind.STATEMENT_CALL, arena.kind(call));
+        assertEquals(odd, arena.declaration(arena.child(call, 0)));
+        assertEquals(1, arena.nest(arena.child(call, 0)));
+
+        // n > 0
+        int condition = arena.child(ifStatement, 0);
+        assertEquals(NodeKind.EXPRESSION_BINARY, arena.kind(condition));
+        assertEquals(IToken.Kind.GT, tokens.kind(arena.opToken(condition)));
+        assertEquals(Type.BOOLEAN, arena.type(condition));
+        assertEquals(n, arena.declaration(arena.child(condition, 0)));
+    }
+
+    @Test
+    void walk() throws PLPException {
+        ASTArena arena = ASTArenaAdapter.fromTree(DeepNestingTest.decoratedAST(TokenBufferTest.PROGRAM),
+                TokenBuffer.lex(TokenBufferTest.PROGRAM));
+        List<Integer> entered = new ArrayList<>();
+        List<Integer> exited = new ArrayList<>();
+        arena.walk(arena.root(), new ASTArena.Visitor() {
+            @Override
+            public boolean enter(ASTArena arena, int node) {
+                entered.add(node);
+                return true;
+            }
+
+            @Override
+            public void exit(ASTArena arena, int node) {
+                exited.add(node);
+            }
+        });
+        // every node is visited once, the root first, and the exits are in the
+        // order the nodes were added.
+        assertEquals(arena.size(), entered.size());
+        assertEquals(arena.root(), entered.get(0));
+        for (int i = 0; i < arena.size(); i++) {
+            assertEquals(i, exited.get(i));
+        }
+
+        // the ProcDec's subtree is skipped.
+        List<NodeKind> kinds = new ArrayList<>();
+        arena.walk(arena.root(), (a, node) -> {
+            kinds.add(a.kind(node));
+            return a.kind(node) != NodeKind.PROC_DEC;
+        });
+        assertEquals(1, kinds.stream().filter(kind -> kind == NodeKind.BLOCK).count());
+    }
+
+    @Test
+    void attributeTable() throws PLPException {
+        TokenBuffer tokens = TokenBuffer.lex(RECURSIVE);
+        Program program = IncrementalParserTest.parse(RECURSIVE);
+        AttributeTable table = AttributeTableTest.analyze(program);
+        assertThrows(IllegalArgumentException.class, () -> ASTArenaAdapter.fromTree(program, tokens));
+
+        ASTArena expected = ASTArenaAdapter.fromTree(DeepNestingTest.decoratedAST(RECURSIVE), tokens);
+        ASTArena actual = ASTArenaAdapter.fromTree(program, tokens, table);
+        assertEquals(expected.size(), actual.size());
+        for (int node = 0; node < expected.size(); node++) {
+            assertEquals(expected.kind(node), actual.kind(node));
+            assertEquals(expected.type(node), actual.type(node));
+            assertEquals(expected.nest(node), actual.nest(node));
+            assertEquals(expected.declaration(node), actual.declaration(node));
+        }
+        assertEquals(print(DeepNestingTest.decoratedAST(RECURSIVE)), print(ASTArenaAdapter.toTree(actual)));
+    }
+
+    @Test
+    void tokenNotInBuffer() throws PLPException {
+        Program program = DeepNestingTest.decoratedAST(RECURSIVE);
+        assertThrows(IllegalArgumentException.class, () -> {
+            ASTArenaAdapter.fromTree(program, TokenBuffer.lex("\n" + RECURSIVE));
+        });
+    }
+
+}
@@ -0,0 +1,58 @@
+package edu.ufl.cise.plpfa22;
+
+import java.nio.ByteBuffer;
+
+import edu.ufl.cise.plpfa22.ast.Program;
+
+/**
+ * Time to get a decorated AST by parsing and analyzing a large generated
+ * program, and by reading it back from its serialized form. This is not a unit
+ * test; run it with
+ *
+ * java -Xmx6g -Xmn3g -cp target/classes:target/test-classes edu.ufl.cise.plpfa22.ASTSerializerBenchmark [MB]
+ *
+ * Both ways allocate the whole tree, so the young generation should fit it,
+ * otherwise the times are mostly the ones of the GC copying it.
+ */
+public class ASTSerializerBenchmark {
+
+    static Program analyze(String input) throws PLPException {
+        return DeepNestingTest.decorate(
+                (Program) CompilerComponentFactory.getParser(CompilerComponentFactory.getLexer(input)).parse());
+    }
+
+    interface Run {
+        Object run() throws Exception;
+    }
+
+    /**
+     * @return the seconds of a run.
+     */
+    static double measure(String name, String input, Run run) throws Exception {
+        // warm up the JIT
+        for (int i = 0; i < 5; i++) {
+            run.run();
+        }
+        int rounds = 10;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            run.run();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9 / rounds;
+        System.out.printf("%-32s %8.1f ms %8.1f MB/s%n", name, seconds * 1e3, input.length() / seconds / 1e6);
+        return seconds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        String input = LexerBenchmark.generateProgram(megabytes << 20);
+        Program program = analyze(input);
+        ByteBuffer buffer = ASTSerializer.write(program, input);
+        System.out.printf("%d characters of input, %d bytes serialized%n", input.length(), buffer.remaining());
+        double analyze = measure("parse + scope + type", input, () -> analyze(input));
+        measure("ASTSerializer.write()", input, () -> ASTSerializer.write(program, input));
+        double read = measure("ASTSerializer.read()", input, () -> ASTSerializer.read(buffer.duplicate()));
+        System.out.printf("read() is %.1f times faster%n", analyze / read);
+    }
+
+}
@@ -0,0 +1,174 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.ast.AttributeTable;
+import edu.ufl.cise.plpfa22.ast.ConstDec;
+import edu.ufl.cise.plpfa22.ast.Expression;
+import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
+import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
+import edu.ufl.cise.plpfa22.ast.PrettyPrintVisitor;
+import edu.ufl.cise.plpfa22.ast.ProcDec;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.StatementBlock;
+import edu.ufl.cise.plpfa22.ast.StatementCall;
+import edu.ufl.cise.plpfa22.ast.StatementIf;
+import edu.ufl.cise.plpfa22.ast.StatementOutput;
+import edu.ufl.cise.plpfa22.ast.Types.Type;
+import edu.ufl.cise.plpfa22.ast.VarDec;
+
+class ASTSerializerTest {
+
+    static Program roundTrip(Program program, String input) throws PLPException {
+        return ASTSerializer.read(ASTSerializer.write(program, input));
+    }
+
+    @Test
+    void roundTrip() throws PLPException {
+        for (String input : new String[] { TokenBufferTest.PROGRAM, ASTArenaTest.RECURSIVE }) {
+            Program expected = DeepNestingTest.decoratedAST(input);
+            Program actual = roundTrip(expected, input);
+            assertEquals(PrettyPrintVisitor.AST2String(expected), PrettyPrintVisitor.AST2String(actual));
+        }
+    }
+
+    @Test
+    void decorations() throws PLPException {
+        String input = "CONST s = \"a\\tb\", m = 300;\n" + ASTArenaTest.RECURSIVE.replace("? n", "! s; ! n");
+        Program original = DeepNestingTest.decoratedAST(input);
+        Program program = roundTrip(original, input);
+        ConstDec s = program.block.constDecs.get(0);
+        assertEquals("a\tb", s.val);
+        assertEquals(300, program.block.constDecs.get(1).val);
+
+        // CALL odd in even is bound to the ProcDec after it.
+        ProcDec even = program.block.procedureDecs.get(0);
+        ProcDec odd = program.block.procedureDecs.get(1);
+        StatementIf ifStatement = (StatementIf) even.block.statement;
+        StatementCall call = (StatementCall) ((StatementBlock) ifStatement.statement).statements.get(1);
+        assertSame(odd, call.ident.getDec());
+        assertEquals(1, call.ident.getNest());
+        assertEquals(0, odd.getNest());
+
+        // the tokens keep their offsets and locations, and are views of one copy
+        // of the input.
+        StatementIf originalIf = (StatementIf) original.block.procedureDecs.get(0).block.statement;
+        IToken originalCall = ((StatementBlock) originalIf.statement).statements.get(1).firstToken;
+        assertEquals(originalCall.getOffset(), call.firstToken.getOffset());
+        assertEquals(new IToken.SourceLocation(4, 37), call.getSourceLocation());
+        ExpressionBinary condition = (ExpressionBinary) ifStatement.expression;
+        assertSame(program.block.varDecs.get(0), ((ExpressionIdent) condition.e0).getDec());
+        assertSame(call.ident.getTextView().getSource(), condition.op.getTextView().getSource());
+        assertEquals(input, condition.op.getTextView().getSource().toString());
+        StatementOutput output = (StatementOutput) ((StatementBlock) program.block.statement).statements.get(0);
+        assertSame(s, ((ExpressionIdent) output.expression).getDec());
+    }
+
+    @Test
+    void run() throws Exception {
+        String input = """
+                CONST greeting = "hi";
+                VAR x;
+                PROCEDURE p;
+                    x := x * 2 + 1;
+                BEGIN
+                    x := 3;
+                    CALL p;
+                    ! x;
+                    ! greeting + " there";
+                    ! x > 6
+                END
+                .
+                """;
+        Program program = DeepNestingTest.decoratedAST(input);
+        String expected = DeepNestingTest.run(program);
+        // the code generation doesn't need the scope and type visitors.
+        assertEquals(expected, DeepNestingTest.run(roundTrip(program, input)));
+
+        // the text of a folded literal isn't in the input.
+        String folded = "! (\"a\\n\" + \"b\") + \"\\\"\" .";
+        Program foldedProgram = DeepNestingTest.decorate(ConstantFoldingTest.fold(folded));
+        assertEquals(DeepNestingTest.run(foldedProgram), DeepNestingTest.run(roundTrip(foldedProgram, folded)));
+    }
+
+    @Test
+    void attributeTable() throws PLPException {
+        String input = ASTArenaTest.RECURSIVE;
+        Program program = IncrementalParserTest.parse(input);
+        // the nodes of a tree analyzed into a table aren't decorated.
+        AttributeTable table = AttributeTableTest.analyze(program);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> ASTSerializer.write(program, input));
+        assertTrue(e.getMessage().contains("isn't decorated"), e.getMessage());
+
+        ByteBuffer expected = ASTSerializer.write(DeepNestingTest.decoratedAST(input), input);
+        ByteBuffer actual = ASTSerializer.write(program, input, table);
+        assertEquals(expected, actual);
+        assertEquals(PrettyPrintVisitor.AST2String(ASTSerializer.read(expected)),
+                PrettyPrintVisitor.AST2String(ASTSerializer.read(actual)));
+    }
+
+    @Test
+    void deepTree() throws PLPException {
+        int terms = 100_000;
+        String input = "VAR a; BEGIN a := 1; ! a" + " + a".repeat(terms - 1) + " END .";
+        Program program = DeepNestingTest.decoratedAST(input);
+        ByteBuffer buffer = ASTSerializer.write(program, input);
+        // a term is 4 characters of the input, and 2 nodes and 2 tokens in about 17
+        // bytes.
+        assertTrue(buffer.remaining() < 6 * input.length(), Integer.toString(buffer.remaining()));
+        Program actual = ASTSerializer.read(buffer);
+        assertFalse(buffer.hasRemaining());
+
+        // the printout of the chain is quadratic, so it's compared node by node.
+        Expression expected = ConstantFoldingTest.output(program, 1);
+        Expression chain = ConstantFoldingTest.output(actual, 1);
+        VarDec a = actual.block.varDecs.get(0);
+        for (int i = 1; i < terms; i++) {
+            ExpressionBinary expectedBinary = (ExpressionBinary) expected;
+            ExpressionBinary binary = (ExpressionBinary) chain;
+            assertEquals(expectedBinary.op.getOffset(), binary.op.getOffset());
+            assertEquals(Type.NUMBER, binary.getType());
+            assertSame(a, ((ExpressionIdent) binary.e1).getDec());
+            expected = expectedBinary.e0;
+            chain = binary.e0;
+        }
+        assertSame(a, ((ExpressionIdent) chain).getDec());
+        assertEquals(expected.firstToken.getOffset(), chain.firstToken.getOffset());
+    }
+
+    @Test
+    void badInput() throws PLPException {
+        String input = ASTArenaTest.RECURSIVE;
+        ByteBuffer buffer = ASTSerializer.write(DeepNestingTest.decoratedAST(input), input);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+
+        byte[] version = bytes.clone();
+        version[5]++;
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> ASTSerializer.read(ByteBuffer.wrap(version)));
+        assertEquals("the serialized tree has version 2 instead of 1", e.getMessage());
+
+        byte[] magic = bytes.clone();
+        magic[0] = 'X';
+        assertThrows(IllegalArgumentException.class, () -> ASTSerializer.read(ByteBuffer.wrap(magic)));
+
+        for (int length : new int[] { 3, 20, bytes.length / 2, bytes.length - 1 }) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> ASTSerializer.read(ByteBuffer.wrap(bytes, 0, length)));
+        }
+
+        // two trees in one buffer.
+        ByteBuffer twice = ByteBuffer.allocate(2 * bytes.length).put(bytes).put(bytes).flip();
+        ASTSerializer.read(twice);
+        assertEquals(bytes.length, twice.position());
+        ASTSerializer.read(twice);
+        assertFalse(twice.hasRemaining());
+    }
+
+}
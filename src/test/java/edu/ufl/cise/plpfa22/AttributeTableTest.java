@@ -0,0 +1,169 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.CodeGenUtils.GenClass;
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.AttributeTable;
+import edu.ufl.cise.plpfa22.ast.Attributes;
+import edu.ufl.cise.plpfa22.ast.Declaration;
+import edu.ufl.cise.plpfa22.ast.Expression;
+import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
+import edu.ufl.cise.plpfa22.ast.Ident;
+import edu.ufl.cise.plpfa22.ast.ProcDec;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.Types.Type;
+
+class AttributeTableTest {
+
+    static AttributeTable analyze(Program program) throws PLPException {
+        AttributeTable table = new AttributeTable(program);
+        program.visit(CompilerComponentFactory.getScopeVisitor(table), null);
+        program.visit(CompilerComponentFactory.getTypeInferenceVisitor(table), null);
+        return table;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<GenClass> generate(Program program, Attributes attributes) throws PLPException {
+        return (List<GenClass>) program.visit(
+                CompilerComponentFactory.getCodeGenVisitor("prog", "edu/ufl/cise/plpfa22", "", attributes), null);
+    }
+
+    @Test
+    void nodeIds() throws PLPException {
+        Program program = IncrementalParserTest.parse(IncrementalParserTest.PROGRAM);
+        assertEquals(-1, program.getId());
+        int count = program.nodeCount();
+        assertEquals(count, program.nodeCount());
+        assertEquals(0, program.getId());
+        assertEquals(1, program.block.getId());
+        for (int id = 0; id < count; id++) {
+            assertEquals(id, program.node(id).getId());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> program.node(count));
+    }
+
+    @Test
+    void sameAsTree() throws PLPException {
+        String input = "CONST s = \"a\";\n" + ASTArenaTest.RECURSIVE.replace("? n", "! s; ! n");
+        Program program = IncrementalParserTest.parse(input);
+        AttributeTable table = analyze(program);
+        assertEquals(program.nodeCount(), table.size());
+        // the tree isn't decorated.
+        for (int id = 0; id < table.size(); id++) {
+            ASTNode node = program.node(id);
+            if (node instanceof Expression expression) {
+                assertNull(expression.getType());
+            } else if (node instanceof Declaration declaration) {
+                assertNull(declaration.getType());
+            }
+        }
+
+        DeepNestingTest.decorate(program);
+        for (int id = 0; id < table.size(); id++) {
+            ASTNode node = program.node(id);
+            if (node instanceof Expression || node instanceof Declaration) {
+                assertEquals(Attributes.TREE.getType(node), table.getType(node), node.toString());
+            }
+            if (node instanceof Ident || node instanceof ExpressionIdent || node instanceof Declaration) {
+                assertEquals(Attributes.TREE.getNest(node), table.getNest(node), node.toString());
+            }
+            if (node instanceof Ident || node instanceof ExpressionIdent) {
+                assertSame(Attributes.TREE.getDec(node), table.getDec(node), node.toString());
+            }
+        }
+        ProcDec even = program.block.procedureDecs.get(0);
+        assertEquals(Type.PROCEDURE, table.getType(even));
+        assertNull(table.getJVMProcName(even));
+
+        // a node of another tree isn't in the table.
+        Program other = IncrementalParserTest.parse(input);
+        other.nodeCount();
+        assertThrows(IllegalArgumentException.class, () -> table.getType(other.block.procedureDecs.get(0)));
+    }
+
+    @Test
+    void errors() throws PLPException {
+        Program program = IncrementalParserTest.parse("VAR x; BEGIN x := 1; ! y END .");
+        ScopeException e = assertThrows(ScopeException.class, () -> analyze(program));
+        assertTrue(e.getMessage().startsWith("1:24 "), e.getMessage());
+        Program untyped = IncrementalParserTest.parse("VAR x, y; x := y .");
+        TypeCheckException t = assertThrows(TypeCheckException.class, () -> analyze(untyped));
+        assertTrue(t.getMessage().startsWith("1:11 "), t.getMessage());
+    }
+
+    @Test
+    void concurrentAnalyses() throws Exception {
+        String input = IncrementalParserTest.PROGRAM;
+        Program decorated = IncrementalParserTest.parse(input);
+        DeepNestingTest.decorate(decorated);
+        List<GenClass> expected = generate(decorated, Attributes.TREE);
+        // one parse, analyzed by several threads at once.
+        Program program = IncrementalParserTest.parse(input);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<GenClass>>> results = new ArrayList<>();
+            for (int i = 0; i < threads * 4; i++) {
+                results.add(executor.submit(() -> {
+                    AttributeTable table = analyze(program);
+                    return generate(program, table);
+                }));
+            }
+            for (Future<List<GenClass>> result : results) {
+                List<GenClass> classes = result.get();
+                assertEquals(expected.size(), classes.size());
+                for (int i = 0; i < classes.size(); i++) {
+                    assertEquals(expected.get(i).className(), classes.get(i).className());
+                    assertArrayEquals(expected.get(i).byteCode(), classes.get(i).byteCode());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // the tree is still undecorated, and can be decorated as before.
+        assertNull(program.block.varDecs.get(0).getType());
+        assertNull(program.block.procedureDecs.get(0).JVMProcName);
+        assertEquals(DeepNestingTest.run(DeepNestingTest.decorate(IncrementalParserTest.parse(input))),
+                DeepNestingTest.run(DeepNestingTest.decorate(program)));
+    }
+
+    @Test
+    void incrementalParser() throws PLPException {
+        IncrementalParser parser = new IncrementalParser(IncrementalParserTest.PROGRAM);
+        Program program = parser.getProgram();
+        int count = program.nodeCount();
+        AttributeTable before = analyze(program);
+        ProcDec p = program.block.procedureDecs.get(0);
+        ProcDec s = program.block.procedureDecs.get(2);
+        int sId = s.getId();
+        assertEquals(Type.NUMBER, before.getType(program.block.varDecs.get(0)));
+
+        Program after = parser.edit(IncrementalParserTest.PROGRAM.indexOf("2;"), 1, "3");
+        assertSame(program, after);
+        // the nodes that weren't replaced keep their IDs, the new ones follow them.
+        assertSame(p, after.block.procedureDecs.get(0));
+        assertEquals(sId, s.getId());
+        ProcDec q = after.block.procedureDecs.get(1);
+        ProcDec r = q.block.procedureDecs.get(0);
+        assertEquals(-1, r.getId());
+        assertTrue(after.nodeCount() > count);
+        assertTrue(r.getId() >= count);
+        assertSame(r, after.node(r.getId()));
+
+        // the old table doesn't have the new nodes, a new one does.
+        assertThrows(IllegalArgumentException.class, () -> before.getType(r));
+        AttributeTable table = analyze(after);
+        assertEquals(Type.PROCEDURE, table.getType(r));
+        assertEquals(Type.NUMBER, table.getType(program.block.varDecs.get(0)));
+    }
+
+}
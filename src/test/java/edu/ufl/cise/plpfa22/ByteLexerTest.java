@@ -0,0 +1,72 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+class ByteLexerTest {
+
+    static ILexer byteLexer(String input) {
+        return new ByteLexer(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void checkSameTokens(String input) throws LexicalException {
+        TokenBufferTest.checkSameTokens(new LexerImp(input), byteLexer(input));
+        ILexer expected = new LexerImp(input);
+        ILexer actual = byteLexer(input);
+        IToken e;
+        do {
+            e = expected.next();
+            IToken a = actual.next();
+            if (e.getKind() == Kind.STRING_LIT) {
+                assertEquals(e.getStringValue(), a.getStringValue());
+            } else if (e.getKind() == Kind.NUM_LIT) {
+                assertEquals(e.getIntValue(), a.getIntValue());
+            } else if (e.getKind() == Kind.IDENT) {
+                assertEquals(e.getSymbolId(), a.getSymbolId());
+            }
+        } while (e.getKind() != Kind.EOF);
+    }
+
+    @Test
+    void sameTokensAsLexerImp() throws LexicalException {
+        checkSameTokens(TokenBufferTest.PROGRAM);
+    }
+
+    @Test
+    void nonAsciiStrings() throws LexicalException {
+        checkSameTokens("""
+                // commentaire: élève, 日本語
+                ! "héllo, wörld" + x; ! "日本語" y
+                ! "😀 \\t é
+                ün ☃" z "" + "\\"é\\"" 12
+                """);
+    }
+
+    @Test
+    void errors() {
+        for (String input : new String[] { "x := é", "\"日本\" + ü", "\"😀\" : a", "\"é\n", "99999999999" }) {
+            LexicalException expected = assertThrows(LexicalException.class, () -> new LexerImp(input).peek(100));
+            LexicalException actual = assertThrows(LexicalException.class, () -> byteLexer(input).peek(100));
+            assertEquals(expected.getMessage(), actual.getMessage());
+        }
+    }
+
+    // the input is the rest of a buffer from its position, which can be a direct one.
+    @Test
+    void byteBuffers() throws LexicalException {
+        String input = "VAR x; BEGIN x := 1; ! \"ë\" END .";
+        byte[] bytes = ("garbage" + input).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer heap = ByteBuffer.wrap(bytes).position(7);
+        TokenBufferTest.checkSameTokens(new LexerImp(input), CompilerComponentFactory.getLexer(heap));
+        assertEquals(7, heap.position());
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).position(7);
+        TokenBufferTest.checkSameTokens(new LexerImp(input), new ByteLexer(direct));
+    }
+
+}
@@ -0,0 +1,70 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+class CharRunsTest {
+
+    // check that the lexer skipping runs returns the same tokens as the DFA alone.
+    static void checkSameTokens(String input, CharRuns runs) throws LexicalException {
+        ILexer expected = new LexerImp(input, new SymbolInterner(), (CharRuns) null);
+        ILexer actual = new LexerImp(input, new SymbolInterner(), runs);
+        IToken e;
+        do {
+            e = expected.next();
+            IToken a = actual.next();
+            assertEquals(e.getKind(), a.getKind());
+            assertEquals(e.getSourceLocation(), a.getSourceLocation());
+            assertEquals(e.getTextView(), a.getTextView());
+            assertEquals(e.getSymbolId(), a.getSymbolId());
+            if (e.getKind() == Kind.NUM_LIT) {
+                assertEquals(e.getIntValue(), a.getIntValue());
+            }
+        } while (e.getKind() != Kind.EOF);
+    }
+
+    static void checkSameError(String input, CharRuns runs) {
+        LexicalException expected = assertThrows(LexicalException.class, () -> {
+            checkSameTokens(input, null);
+            new LexerImp(input, new SymbolInterner(), (CharRuns) null).peek(1000);
+        });
+        LexicalException actual = assertThrows(LexicalException.class, () -> {
+            new LexerImp(input, new SymbolInterner(), runs).peek(1000);
+        });
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    static void checkRuns(CharRuns runs) throws LexicalException {
+        checkSameTokens(TokenBufferTest.PROGRAM, runs);
+        checkSameTokens(LexerBenchmark.generateProgram(1 << 14), runs);
+        String longName = "a_very_long_identifier$with_Digits0123456789_and_more_characters";
+        checkSameTokens("""
+                        \t   \r
+                    %s := 00 + 0123456789 + 2147483647;
+                // a comment that is longer than a vector, with "quotes" and /* stars */ \r
+                %s//
+                  x\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\ty
+                """.formatted(longName, longName.toUpperCase()), runs);
+        checkSameTokens("// a comment ending at the end of the input without a line feed", runs);
+        checkSameTokens("abc// a comment ending with a nul \0 ignored", runs);
+        checkSameError("x := 12345678901234567890123456789\n", runs);
+        checkSameError("                                        é", runs);
+        checkSameError("abcdefghijklmnopqrstuvwxyz0123456789_é", runs);
+        checkSameError("// a comment \r followed by something else", runs);
+    }
+
+    @Test
+    void scalarRuns() throws LexicalException {
+        checkRuns(CharRuns.load("scalar"));
+    }
+
+    // uses the vector API if it's available, the scalar runs otherwise.
+    @Test
+    void vectorRuns() throws LexicalException {
+        checkRuns(CharRuns.load("vector"));
+    }
+
+}
@@ -0,0 +1,149 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.Expression;
+import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
+import edu.ufl.cise.plpfa22.ast.ExpressionBooleanLit;
+import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
+import edu.ufl.cise.plpfa22.ast.ExpressionNumLit;
+import edu.ufl.cise.plpfa22.ast.ExpressionStringLit;
+import edu.ufl.cise.plpfa22.ast.ProcDec;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.Statement;
+import edu.ufl.cise.plpfa22.ast.StatementBlock;
+import edu.ufl.cise.plpfa22.ast.StatementOutput;
+
+class ConstantFoldingTest {
+
+    static Program parse(String input) throws PLPException {
+        return (Program) CompilerComponentFactory.getParser(CompilerComponentFactory.getBatchLexer(input)).parse();
+    }
+
+    static Program fold(String input) throws PLPException {
+        return (Program) CompilerComponentFactory.getFoldingParser(input).parse();
+    }
+
+    // the message of the error of the scope or type visitor, or null if there
+    // isn't one.
+    static String error(ASTNode ast) {
+        try {
+            DeepNestingTest.decorate(ast);
+            return null;
+        } catch (PLPException e) {
+            return e.getMessage();
+        }
+    }
+
+    // the expression of the index-th statement of the block of the program.
+    static Expression output(Program program, int index) {
+        Statement statement = program.block.statement;
+        if (statement instanceof StatementBlock block) {
+            statement = block.statements.get(index);
+        }
+        return ((StatementOutput) statement).expression;
+    }
+
+    @Test
+    void literals() throws PLPException {
+        Expression number = output(fold("! 3 + 4 * 2 ."), 0);
+        assertInstanceOf(ExpressionNumLit.class, number);
+        assertEquals(11, number.getFirstToken().getIntValue());
+        assertEquals(new IToken.SourceLocation(1, 3), number.getFirstToken().getSourceLocation());
+
+        Expression string = output(fold("! (\"a\\n\" + \"b\") + \"\\\"\" ."), 0);
+        assertInstanceOf(ExpressionStringLit.class, string);
+        assertEquals("a\nb\"", string.getFirstToken().getStringValue());
+        assertEquals("\"a\\nb\\\"\"", String.valueOf(string.getFirstToken().getText()));
+
+        Expression bool = output(fold("! \"ab\" < \"abc\" ."), 0);
+        assertInstanceOf(ExpressionBooleanLit.class, bool);
+        assertTrue(bool.getFirstToken().getBooleanValue());
+
+        // only the literal operands are folded.
+        ExpressionBinary binary = (ExpressionBinary) output(fold("VAR x; ! x + 2 * 3 ."), 0);
+        assertInstanceOf(ExpressionIdent.class, binary.e0);
+        assertEquals(6, binary.e1.getFirstToken().getIntValue());
+    }
+
+    @Test
+    void runtimeSemantics() throws Exception {
+        String[] expressions = { "2147483647 + 1", "0 - 2147483647 - 2", "65536 * 65536", "7 / 2", "7 % 3",
+                "10 - 3 - 2", "3 < 4", "4 <= 3", "3 = 3", "3 # 3", "4 > 3", "3 >= 4", "TRUE + FALSE", "TRUE * FALSE",
+                "FALSE < TRUE", "TRUE <= FALSE", "TRUE > FALSE", "FALSE >= FALSE", "TRUE = FALSE", "TRUE # FALSE",
+                "\"a\" + \"b\"", "\"ab\" < \"abc\"", "\"ab\" < \"ab\"", "\"ab\" < \"b\"", "\"ab\" <= \"ab\"",
+                "\"b\" <= \"ab\"", "\"abc\" > \"bc\"", "\"abc\" > \"abc\"", "\"abc\" >= \"c\"", "\"abc\" >= \"a\"",
+                "\"a\" = \"a\"", "\"a\" # \"b\"", "(\"a\\t\" + \"\\\\\") + \"\\r\"", "(1 < 2) = (\"\" < \"a\")" };
+        for (String expression : expressions) {
+            String input = "! " + expression + " .";
+            Program folded = fold(input);
+            assertFalse(output(folded, 0) instanceof ExpressionBinary, expression);
+            assertEquals(DeepNestingTest.run(DeepNestingTest.decoratedAST(input)),
+                    DeepNestingTest.run(DeepNestingTest.decorate(folded)), expression);
+        }
+    }
+
+    @Test
+    void constants() throws Exception {
+        String input = """
+                CONST a = 2, s = "x";
+                PROCEDURE p;
+                    VAR a;
+                    BEGIN a := 1; ! a + 1; ! s + s END;
+                PROCEDURE q;
+                    CONST s = TRUE;
+                    ! s * s;
+                BEGIN ! a * 3; ! s + s; CALL p; CALL q END
+                .
+                """;
+        Program folded = fold(input);
+        assertEquals(DeepNestingTest.run(DeepNestingTest.decoratedAST(input)),
+                DeepNestingTest.run(DeepNestingTest.decorate(folded)));
+        assertEquals(6, output(folded, 0).getFirstToken().getIntValue());
+        assertEquals("xx", output(folded, 1).getFirstToken().getStringValue());
+
+        // the VAR in p hides the constant, the CONST in q hides the one of the
+        // program.
+        StatementBlock p = (StatementBlock) folded.block.procedureDecs.get(0).block.statement;
+        assertInstanceOf(ExpressionBinary.class, ((StatementOutput) p.statements.get(1)).expression);
+        assertInstanceOf(ExpressionStringLit.class, ((StatementOutput) p.statements.get(2)).expression);
+        ProcDec q = folded.block.procedureDecs.get(1);
+        assertTrue(((StatementOutput) q.block.statement).expression.getFirstToken().getBooleanValue());
+    }
+
+    @Test
+    void procedureHidesConstant() throws PLPException {
+        // the a in q is the procedure declared after it, not the constant.
+        String input = "CONST a = 1; PROCEDURE p; PROCEDURE q; ! a + 1; PROCEDURE a; ; ; .";
+        Program folded = fold(input);
+        ProcDec q = folded.block.procedureDecs.get(0).block.procedureDecs.get(0);
+        ExpressionBinary binary = (ExpressionBinary) ((StatementOutput) q.block.statement).expression;
+        assertInstanceOf(ExpressionIdent.class, binary.e0);
+        assertEquals(error(parse(input)), error(folded));
+    }
+
+    @Test
+    void notFolded() throws PLPException {
+        // the division by zero is left to the runtime.
+        assertInstanceOf(ExpressionBinary.class, output(fold("! 1 / (2 - 2) ."), 0));
+        assertInstanceOf(ExpressionBinary.class, output(fold("! 1 % 0 ."), 0));
+        // wrong types are left to the type visitor.
+        assertInstanceOf(ExpressionBinary.class, output(fold("! TRUE - FALSE ."), 0));
+        assertThrows(TypeCheckException.class, () -> DeepNestingTest.decorate(fold("CONST a = 1; ! a + \"a\" .")));
+    }
+
+    @Test
+    void arena() throws PLPException {
+        // a folded literal isn't a token of the input.
+        String input = "! 3 + 4 .";
+        assertThrows(IllegalArgumentException.class,
+                () -> ASTArenaAdapter.fromTree(fold(input), TokenBuffer.lex(input)));
+        String same = "! 3 * 1 .";
+        ASTArena arena = ASTArenaAdapter.fromTree(fold(same), TokenBuffer.lex(same));
+        assertEquals(4, arena.size());
+    }
+
+}
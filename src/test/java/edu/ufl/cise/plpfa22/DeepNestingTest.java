@@ -0,0 +1,151 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.CodeGenUtils.DynamicClassLoader;
+import edu.ufl.cise.plpfa22.CodeGenUtils.GenClass;
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
+import edu.ufl.cise.plpfa22.ast.PrettyPrintVisitor;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.StatementBlock;
+import edu.ufl.cise.plpfa22.ast.StatementOutput;
+import edu.ufl.cise.plpfa22.ast.Types.Type;
+
+class DeepNestingTest {
+
+    // the tree after the scope and type visitors, which the tests of the later
+    // passes share.
+    static <T extends ASTNode> T decorate(T ast) throws PLPException {
+        ast.visit(CompilerComponentFactory.getScopeVisitor(), null);
+        ast.visit(CompilerComponentFactory.getTypeInferenceVisitor(), null);
+        return ast;
+    }
+
+    static Program decoratedAST(String input) throws PLPException {
+        return decorate(
+                (Program) CompilerComponentFactory.getParser(CompilerComponentFactory.getBatchLexer(input)).parse());
+    }
+
+    // the output of the main method of the decorated program.
+    @SuppressWarnings("unchecked")
+    static String run(ASTNode ast) throws Exception {
+        List<GenClass> classes = (List<GenClass>) ast
+                .visit(CompilerComponentFactory.getCodeGenVisitor("prog", "edu/ufl/cise/plpfa22", ""), null);
+        Class<?> mainClass = new DynamicClassLoader().define(classes);
+        PrintStream out = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output));
+        try {
+            mainClass.getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+        } finally {
+            System.setOut(out);
+        }
+        return output.toString();
+    }
+
+    @Test
+    void longChain() throws Exception {
+        int terms = 100_000;
+        String input = "VAR a; BEGIN a := 1; ! a" + " + a".repeat(terms - 1) + " END .";
+        Program program = decoratedAST(input);
+        StatementBlock statements = (StatementBlock) program.block.statement;
+        ExpressionBinary chain = (ExpressionBinary) ((StatementOutput) statements.statements.get(1)).expression;
+        assertEquals(Type.NUMBER, chain.getType());
+        ASTArena arena = ASTArenaAdapter.fromTree(program, TokenBuffer.lex(input));
+        assertEquals(2 * terms - 1 + 8, arena.size());
+
+        // the code of a method is limited to 64KB.
+        int shortTerms = 5_000;
+        String shortInput = "VAR a; BEGIN a := 1; ! a" + " + a".repeat(shortTerms - 1) + " END .";
+        assertEquals(shortTerms + "\n", run(decoratedAST(shortInput)).replace("\r", ""));
+    }
+
+    @Test
+    void nestedParentheses() throws Exception {
+        int depth = 50_000;
+        String input = "! " + "1 + (".repeat(depth) + "1" + ")".repeat(depth) + " .";
+        decoratedAST(input);
+        assertEquals("6\n", run(decoratedAST("! " + "1 + (".repeat(5) + "1" + ")".repeat(5) + " .")));
+
+        String parentheses = "! " + "(".repeat(100_000) + "TRUE" + ")".repeat(100_000) + " .";
+        assertEquals("true\n", run(decoratedAST(parentheses)).replace("\r", ""));
+
+        // a missing parenthesis deep down.
+        SyntaxException e = assertThrows(SyntaxException.class, () -> {
+            decoratedAST("! " + "(".repeat(100_000) + "TRUE" + ")".repeat(99_999) + " .");
+        });
+        assertTrue(e.getMessage().startsWith("1:"), e.getMessage());
+    }
+
+    @Test
+    void nestedStatements() throws Exception {
+        int depth = 20_000;
+        String input = "VAR x; BEGIN x := 0; " + "IF TRUE THEN BEGIN WHILE x < 1 DO ".repeat(depth) + "x := x + 1"
+                + " END".repeat(depth) + "; ! x END .";
+        decoratedAST(input);
+
+        int shortDepth = 2_000;
+        String shortInput = "VAR x; BEGIN x := 0; " + "IF TRUE THEN BEGIN WHILE x < 1 DO ".repeat(shortDepth)
+                + "x := x + 1" + " END".repeat(shortDepth) + "; ! x END .";
+        ASTNode ast = decoratedAST(shortInput);
+        assertEquals("1\n", run(ast).replace("\r", ""));
+        assertTrue(PrettyPrintVisitor.AST2String(ast).contains("END OF WHILE"));
+    }
+
+    @Test
+    void nestedProcedures() throws Exception {
+        int depth = 5_000;
+        String input = "VAR x; " + "PROCEDURE p; ".repeat(depth) + "x := 1" + "; CALL p".repeat(depth - 1)
+                + "; CALL p .";
+        decoratedAST(input);
+
+        // the JVM name of a procedure contains the names of the enclosing ones.
+        int shortDepth = 200;
+        String shortInput = "VAR x; " + "PROCEDURE p; ".repeat(shortDepth) + "x := 1" + "; CALL p".repeat(shortDepth - 1)
+                + "; BEGIN CALL p; ! x END .";
+        assertEquals("1\n", run(decoratedAST(shortInput)).replace("\r", ""));
+    }
+
+    @Test
+    void wideBlockAtTheBudget() throws Exception {
+        // the statements of the block are where the budget of the calling thread runs
+        // out for some depth, so one thread is started for all of them, not one for
+        // each.
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int width = 5_000;
+        for (String statement : new String[] { "x := 1", "IF TRUE THEN x := 1" }) {
+            String block = "BEGIN " + (statement + "; ").repeat(width - 1) + "! x END";
+            for (int depth = StackGuard.CALLER_BUDGET - 4; depth <= StackGuard.CALLER_BUDGET + 4; depth++) {
+                String input = "VAR x; " + "IF TRUE THEN ".repeat(depth) + block + " .";
+                long started = threads.getTotalStartedThreadCount();
+                Program program = decoratedAST(input);
+                PrettyPrintVisitor.AST2String(program);
+                ASTSerializer.write(program, input);
+                String output = run(program);
+                long count = threads.getTotalStartedThreadCount() - started;
+                assertTrue(count < 40, statement + " at depth " + depth + ": " + count + " threads");
+                assertEquals("1\n", output.replace("\r", ""));
+            }
+        }
+    }
+
+    @Test
+    void scopeErrorDeepDown() {
+        int depth = 20_000;
+        String input = "BEGIN ".repeat(depth) + "! y" + " END".repeat(depth) + " .";
+        ScopeException e = assertThrows(ScopeException.class, () -> {
+            decoratedAST(input);
+        });
+        assertTrue(e.getMessage().startsWith("1:" + (6 * depth + 3) + " "), e.getMessage());
+    }
+
+}
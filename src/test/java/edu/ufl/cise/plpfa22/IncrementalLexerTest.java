@@ -0,0 +1,84 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IncrementalLexerTest {
+
+    // apply the edit to the buffer, and check that it's the same as lexing the new
+    // input from scratch.
+    static TokenBuffer checkEdit(TokenBuffer previous, int offset, int removedLength, String insertedText) {
+        TokenBuffer actual = IncrementalLexer.relex(previous, offset, removedLength, insertedText);
+        String input = previous.getInput();
+        String expectedInput = input.substring(0, offset) + insertedText + input.substring(offset + removedLength);
+        assertEquals(expectedInput, actual.getInput());
+        TokenBuffer expected = TokenBuffer.lex(expectedInput);
+        TokenBufferTest.assertSameTokens(expected, actual, false);
+        return actual;
+    }
+
+    static TokenBuffer checkEdit(String input, String before, String insertedText) {
+        int offset = input.indexOf(before);
+        return checkEdit(TokenBuffer.lex(input), offset, 0, insertedText);
+    }
+
+    @Test
+    void editsInsideTokens() {
+        String input = "VAR abc, d;\nBEGIN\n abc := 12 + d;\n ! \"x\"\nEND .\n";
+        checkEdit(input, "c, d", "xyz");
+        checkEdit(input, ", d", "1");
+        checkEdit(input, " + d", "3");
+        checkEdit(input, "= 12", "\n");
+        checkEdit(input, " := 12", "\n\n  ");
+        checkEdit(input, "\"\n", "y\n");
+        checkEdit(TokenBuffer.lex(input), input.indexOf("VAR"), 3, "CONST");
+        checkEdit(TokenBuffer.lex(input), input.indexOf(":="), 1, "");
+        checkEdit(TokenBuffer.lex(input), 0, input.length(), "");
+        checkEdit(TokenBuffer.lex(""), 0, 0, input);
+    }
+
+    // edits changing how the rest of the input is lexed.
+    @Test
+    void editsChangingState() {
+        String input = "a := b; // c := \"d\n e := \"f\" ; g\n";
+        checkEdit(input, "b;", "//");
+        checkEdit(input, "// c", "\"");
+        checkEdit(input, "c := ", "\"");
+        checkEdit(input, "\n e", "\"");
+        checkEdit(TokenBuffer.lex(input), input.indexOf("//"), 1, "");
+        checkEdit(TokenBuffer.lex(input), input.indexOf("// c"), 0, "\"\n");
+    }
+
+    @Test
+    void errors() {
+        String input = "a := 1;\nb := @;\nc := 2;\n";
+        TokenBuffer buffer = TokenBuffer.lex(input);
+        assertNotNull(buffer.getError());
+        checkEdit(buffer, 0, 0, "x ");
+        checkEdit(buffer, input.indexOf("@"), 1, "3");
+        checkEdit(buffer, input.indexOf("c"), 0, "\"");
+        TokenBuffer unterminated = checkEdit(buffer, input.indexOf("a"), 0, "\"");
+        checkEdit(unterminated, 0, 1, "");
+    }
+
+    // a sequence of random edits, each one applied to the result of the last one.
+    @Test
+    void randomEdits() {
+        Random random = new Random(5556);
+        String[] insertions = { "", "x", "1", " ", "\n", "\r\n", ":", "=", "//", "\"", "\\", "BEGIN", "<" };
+        TokenBuffer buffer = TokenBuffer.lex(TokenBufferTest.PROGRAM);
+        for (int i = 0; i < 2000; i++) {
+            int length = buffer.getInput().length();
+            int offset = random.nextInt(length + 1);
+            int removedLength = random.nextInt(Math.min(4, length - offset) + 1);
+            buffer = checkEdit(buffer, offset, removedLength, insertions[random.nextInt(insertions.length)]);
+            if (buffer.getInput().length() < TokenBufferTest.PROGRAM.length() / 2) {
+                buffer = TokenBuffer.lex(TokenBufferTest.PROGRAM);
+            }
+        }
+    }
+
+}
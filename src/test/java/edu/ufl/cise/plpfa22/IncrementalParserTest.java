@@ -0,0 +1,233 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.Block;
+import edu.ufl.cise.plpfa22.ast.ConstDec;
+import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
+import edu.ufl.cise.plpfa22.ast.PrettyPrintVisitor;
+import edu.ufl.cise.plpfa22.ast.ProcDec;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.StatementAssign;
+import edu.ufl.cise.plpfa22.ast.StatementBlock;
+import edu.ufl.cise.plpfa22.ast.StatementCall;
+import edu.ufl.cise.plpfa22.ast.StatementIf;
+import edu.ufl.cise.plpfa22.ast.StatementInput;
+import edu.ufl.cise.plpfa22.ast.StatementOutput;
+import edu.ufl.cise.plpfa22.ast.StatementWhile;
+import edu.ufl.cise.plpfa22.ast.VarDec;
+
+class IncrementalParserTest {
+
+    static final String PROGRAM = """
+            VAR x, y;
+            PROCEDURE p;
+                x := x + 1;
+            PROCEDURE q;
+                VAR z;
+                PROCEDURE r;
+                    z := z * 2;
+                BEGIN
+                    z := x;
+                    CALL r;
+                    y := z
+                END;
+            PROCEDURE s;
+                ! "s";
+            BEGIN
+                x := 1;
+                CALL q;
+                ! y
+            END
+            .
+            """;
+
+    static Program parse(String input) throws PLPException {
+        return (Program) CompilerComponentFactory.getParser(CompilerComponentFactory.getBatchLexer(input)).parse();
+    }
+
+    static String print(ASTNode ast) throws PLPException {
+        return PrettyPrintVisitor.AST2String(DeepNestingTest.decorate(ast));
+    }
+
+    static ProcDec procedure(Block block, int index) {
+        return block.procedureDecs.get(index);
+    }
+
+    @Test
+    void reparseProcedure() throws PLPException {
+        IncrementalParser parser = new IncrementalParser(PROGRAM);
+        Program before = parser.getProgram();
+        ProcDec p = procedure(before.block, 0);
+        ProcDec q = procedure(before.block, 1);
+        ProcDec s = procedure(before.block, 2);
+
+        int offset = PROGRAM.indexOf("x + 1");
+        Program after = parser.edit(offset, 1, "y\n    * 3");
+        String input = parser.getTokens().getInput();
+        assertSame(before, after);
+        assertNotSame(p, procedure(after.block, 0));
+        assertSame(q, procedure(after.block, 1));
+        assertSame(s, procedure(after.block, 2));
+        assertEquals(print(parse(input)), print(after));
+
+        // the reused tokens after the edit are moved.
+        assertEquals(new IToken.SourceLocation(5, 1), q.firstToken.getSourceLocation());
+        assertEquals(input.indexOf("PROCEDURE s"), s.firstToken.getOffset());
+        StatementAssign assign = (StatementAssign) ((StatementBlock) after.block.statement).statements.get(0);
+        assertEquals(input.indexOf("x := 1"), assign.ident.firstToken.getOffset());
+        assertEquals(new IToken.SourceLocation(17, 5), assign.firstToken.getSourceLocation());
+    }
+
+    // the tokens of the tree, with duplicates.
+    static void tokens(ASTNode node, List<IToken> tokens) {
+        tokens.add(node.firstToken);
+        if (node instanceof Program program) {
+            tokens(program.block, tokens);
+        } else if (node instanceof Block block) {
+            block.constDecs.forEach(dec -> tokens(dec, tokens));
+            block.varDecs.forEach(dec -> tokens(dec, tokens));
+            block.procedureDecs.forEach(dec -> tokens(dec, tokens));
+            tokens(block.statement, tokens);
+        } else if (node instanceof ConstDec constDec) {
+            tokens.add(constDec.ident);
+        } else if (node instanceof VarDec varDec) {
+            tokens.add(varDec.ident);
+        } else if (node instanceof ProcDec procDec) {
+            tokens.add(procDec.ident);
+            tokens(procDec.block, tokens);
+        } else if (node instanceof StatementAssign assign) {
+            tokens(assign.ident, tokens);
+            tokens(assign.expression, tokens);
+        } else if (node instanceof StatementCall call) {
+            tokens(call.ident, tokens);
+        } else if (node instanceof StatementInput input) {
+            tokens(input.ident, tokens);
+        } else if (node instanceof StatementOutput output) {
+            tokens(output.expression, tokens);
+        } else if (node instanceof StatementBlock block) {
+            block.statements.forEach(statement -> tokens(statement, tokens));
+        } else if (node instanceof StatementIf statementIf) {
+            tokens(statementIf.expression, tokens);
+            tokens(statementIf.statement, tokens);
+        } else if (node instanceof StatementWhile statementWhile) {
+            tokens(statementWhile.expression, tokens);
+            tokens(statementWhile.statement, tokens);
+        } else if (node instanceof ExpressionBinary binary) {
+            tokens(binary.e0, tokens);
+            tokens.add(binary.op);
+            tokens(binary.e1, tokens);
+        }
+    }
+
+    @Test
+    void noOldInput() throws PLPException {
+        IncrementalParser parser = new IncrementalParser(PROGRAM);
+        Program program = parser.getProgram();
+        String[][] edits = { { "x + 1", "x - 1" }, { "z * 2", "z *\n 3" }, { "! \"s\"", "! \"t\"" } };
+        for (String[] edit : edits) {
+            String before = parser.getTokens().getInput();
+            assertSame(program, parser.edit(before.indexOf(edit[0]), edit[0].length(), edit[1]));
+            // the reused tokens, before and after the edit, are views of the new input.
+            String input = parser.getTokens().getInput();
+            List<IToken> tokens = new ArrayList<>();
+            tokens(program, tokens);
+            for (IToken token : tokens) {
+                assertSame(input, token.getTextView().getSource(), token.toString());
+                assertSame(parser.getTokens().getLineIndex(), ((TokenImp) token).getLineIndex());
+                assertEquals(input.substring(token.getOffset(), token.getOffset() + token.getTextView().length()),
+                        token.getTextView().toString());
+            }
+        }
+        assertEquals(print(parse(parser.getTokens().getInput())), print(program));
+    }
+
+    @Test
+    void reparseNestedProcedure() throws PLPException {
+        IncrementalParser parser = new IncrementalParser(PROGRAM);
+        Program program = parser.getProgram();
+        ProcDec q = procedure(program.block, 1);
+        ProcDec r = procedure(q.block, 0);
+
+        parser.edit(PROGRAM.indexOf("z * 2"), 5, "z + x");
+        assertSame(q, procedure(program.block, 1));
+        assertNotSame(r, procedure(q.block, 0));
+        assertEquals(print(parse(parser.getTokens().getInput())), print(program));
+    }
+
+    @Test
+    void reparseAll() throws PLPException {
+        // the SEMI of p is removed, so p doesn't end at the same token.
+        IncrementalParser parser = new IncrementalParser(PROGRAM);
+        Program before = parser.getProgram();
+        int offset = PROGRAM.indexOf("1;") + 1;
+        assertThrows(SyntaxException.class, () -> {
+            parser.edit(offset, 1, "");
+        });
+        assertNull(parser.getProgram());
+        // and put back.
+        Program after = parser.edit(offset, 0, ";");
+        assertNotSame(before, after);
+        assertEquals(print(parse(PROGRAM)), print(after));
+
+        // an edit in the main statement.
+        parser.edit(PROGRAM.indexOf("! y"), 3, "! x");
+        assertEquals(print(parse(parser.getTokens().getInput())), print(parser.getProgram()));
+    }
+
+    @Test
+    void randomEdits() throws PLPException {
+        String[] insertions = { "", " ", "\n", "1", "x", ";", "+ 2", "BEGIN", "END", "z := 3;" };
+        Random random = new Random(16);
+        IncrementalParser parser = new IncrementalParser(PROGRAM);
+        String input = PROGRAM;
+        for (int i = 0; i < 1000; i++) {
+            int offset = random.nextInt(input.length());
+            int removed = random.nextInt(Math.min(4, input.length() - offset) + 1);
+            String inserted = insertions[random.nextInt(insertions.length)];
+            String edited = input.substring(0, offset) + inserted + input.substring(offset + removed);
+
+            Program expected;
+            try {
+                expected = parse(edited);
+            } catch (PLPException e) {
+                expected = null;
+            }
+            Program actual;
+            try {
+                actual = parser.edit(offset, removed, inserted);
+            } catch (PLPException e) {
+                actual = null;
+            }
+            assertEquals(expected == null, actual == null, edited);
+            if (expected != null) {
+                String expectedString;
+                try {
+                    expectedString = print(expected);
+                } catch (PLPException e) {
+                    // a scope or type error.
+                    expectedString = e.getMessage();
+                }
+                String actualString;
+                try {
+                    actualString = print(actual);
+                } catch (PLPException e) {
+                    actualString = e.getMessage();
+                }
+                assertEquals(expectedString, actualString, edited);
+                input = edited;
+            } else {
+                // go back to a program without errors.
+                parser.edit(offset, inserted.length(), input.substring(offset, offset + removed));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package edu.ufl.cise.plpfa22;
+
+import java.nio.charset.StandardCharsets;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+/**
+ * Throughput of the lexers on a large generated program. This is not a unit
+ * test; run it with
+ *
+ * java -cp target/classes:target/test-classes edu.ufl.cise.plpfa22.LexerBenchmark [MB]
+ */
+public class LexerBenchmark {
+
+    /**
+     * generate a program of about size characters, with the mix of tokens,
+     * comments and strings of a machine-generated source.
+     */
+    static String generateProgram(int size) {
+        StringBuilder sb = new StringBuilder(size + 1024);
+        sb.append("VAR total, count, flag, message;\n");
+        int i = 0;
+        while (sb.length() < size) {
+            sb.append("PROCEDURE proc").append(i).append(";\n");
+            sb.append("  CONST limit").append(i).append(" = ").append(i * 7919 % 100000)
+                    .append(", greeting = \"hello\\tworld ").append(i).append("\";\n");
+            sb.append("  VAR localVariable, other_var$;\n");
+            sb.append("  // compute something for procedure ").append(i).append('\n');
+            sb.append("  BEGIN\n");
+            sb.append("    localVariable := count * 31 + limit").append(i).append(" % 17;\n");
+            sb.append("    WHILE localVariable >= 0 DO BEGIN\n");
+            sb.append("      IF (localVariable # 3) = TRUE THEN total := total - localVariable / 2;\n");
+            sb.append("      localVariable := localVariable - 1\n");
+            sb.append("    END;\n");
+            sb.append("    IF flag <= FALSE THEN message := greeting + \"!\";\n");
+            sb.append("    ! total; ? count\n");
+            sb.append("  END;\n");
+            i++;
+        }
+        sb.append("BEGIN CALL proc0 END\n.\n");
+        return sb.toString();
+    }
+
+    static int lexWithNext(String input) throws LexicalException {
+        ILexer lexer = new LexerImp(input);
+        int count = 0;
+        while (lexer.next().getKind() != Kind.EOF) {
+            count++;
+        }
+        return count;
+    }
+
+    static int lexBytes(byte[] input) throws LexicalException {
+        ILexer lexer = new ByteLexer(input);
+        int count = 0;
+        while (lexer.next().getKind() != Kind.EOF) {
+            count++;
+        }
+        return count;
+    }
+
+    static int lexIntoBuffer(String input) {
+        return TokenBuffer.lex(input).size();
+    }
+
+    static int lexInParallel(String input) {
+        return ParallelLexer.lex(input).size();
+    }
+
+    interface Run {
+        int run(String input) throws Exception;
+    }
+
+    static void measure(String name, String input, Run run) throws Exception {
+        int tokens = 0;
+        // warm up the JIT
+        for (int i = 0; i < 5; i++) {
+            tokens = run.run(input);
+        }
+        int rounds = 10;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            tokens = run.run(input);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9 / rounds;
+        System.out.printf("%-22s %8d tokens %8.1f MB/s %8.2f Mtokens/s%n", name, tokens,
+                input.length() / seconds / 1e6, tokens / seconds / 1e6);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        String input = generateProgram(megabytes << 20);
+        measure("LexerImp.next()", input, LexerBenchmark::lexWithNext);
+        // the input as it's read from a file.
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        measure("decode + next()", input, s -> lexWithNext(new String(bytes, StandardCharsets.UTF_8)));
+        measure("ByteLexer.next()", input, s -> lexBytes(bytes));
+        measure("TokenBuffer.lex()", input, LexerBenchmark::lexIntoBuffer);
+        measure("ParallelLexer.lex()", input, LexerBenchmark::lexInParallel);
+    }
+
+}
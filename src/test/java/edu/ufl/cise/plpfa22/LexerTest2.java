@@ -490,4 +490,78 @@ class LexerTest2 {
         });
     }
 
+    // Test 19
+    // peek k tokens ahead, then get them with next in order
+    @Test
+    void testPeekK() throws LexicalException {
+        String input = """
+                a := b + 12 // comment
+                ; c
+                """;
+        show(input);
+        ILexer lexer = getLexer(input);
+        checkToken(lexer.peek(4), Kind.NUM_LIT, 1, 10);
+        checkIdent(lexer.peek(0), "a", 1, 1);
+        checkToken(lexer.peek(5), Kind.SEMI, 2, 1);
+        // peeking past the end keeps returning EOF
+        checkEOF(lexer.peek(20));
+        checkIdent(lexer.next(), "a", 1, 1);
+        checkToken(lexer.peek(), Kind.ASSIGN, 1, 3);
+        checkToken(lexer.next(), Kind.ASSIGN, 1, 3);
+        checkIdent(lexer.next(), "b", 1, 6);
+        checkToken(lexer.next(), Kind.PLUS, 1, 8);
+        checkInt(lexer.next(), 12, 1, 10);
+        checkToken(lexer.next(), Kind.SEMI, 2, 1);
+        checkIdent(lexer.peek(0), "c", 2, 3);
+        checkIdent(lexer.next(), "c", 2, 3);
+        checkEOF(lexer.next());
+        checkEOF(lexer.next());
+    }
+
+    // Test 20
+    // the tokens before an error can be peeked, the error is thrown when it's reached
+    @Test
+    void testPeekKError() throws LexicalException {
+        String input = "a b @";
+        ILexer lexer = getLexer(input);
+        assertThrows(LexicalException.class, () -> {
+            lexer.peek(2);
+        });
+        checkIdent(lexer.peek(1), "b", 1, 3);
+        checkIdent(lexer.next(), "a", 1, 1);
+        checkIdent(lexer.next(), "b", 1, 3);
+        assertThrows(LexicalException.class, () -> {
+            lexer.next();
+        });
+    }
+
+    // Test 21
+    // reserved words and the identifiers that share their hash
+    @Test
+    void testReservedWords() throws LexicalException {
+        String input = "CONST VAR PROCEDURE CALL BEGIN END IF THEN WHILE DO TRUE FALSE CONSt VAr DOO IFF T Do";
+        ILexer lexer = getLexer(input);
+        Kind[] kinds = { Kind.KW_CONST, Kind.KW_VAR, Kind.KW_PROCEDURE, Kind.KW_CALL, Kind.KW_BEGIN, Kind.KW_END,
+                Kind.KW_IF, Kind.KW_THEN, Kind.KW_WHILE, Kind.KW_DO, Kind.BOOLEAN_LIT, Kind.BOOLEAN_LIT };
+        for (Kind kind : kinds) {
+            checkToken(lexer.next(), kind);
+        }
+        for (String name : new String[] { "CONSt", "VAr", "DOO", "IFF", "T", "Do" }) {
+            checkIdent(lexer.next(), name);
+        }
+        checkEOF(lexer.next());
+    }
+
+    // Test 22
+    // \r\n at the end of a comment doesn't shift the columns of the next line
+    @Test
+    void testCRLFAfterComment() throws LexicalException {
+        String input = "a // comment\r\n  b\r\n//\r\nc";
+        ILexer lexer = getLexer(input);
+        checkIdent(lexer.next(), "a", 1, 1);
+        checkIdent(lexer.next(), "b", 2, 3);
+        checkIdent(lexer.next(), "c", 4, 1);
+        checkEOF(lexer.next());
+    }
+
 }
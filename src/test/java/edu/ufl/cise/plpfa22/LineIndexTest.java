@@ -0,0 +1,77 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.IToken.SourceLocation;
+
+class LineIndexTest {
+
+    @Test
+    void locations() {
+        String source = "ab\n\ncd\r\nef\n";
+        LineIndex lines = new LineIndex(source);
+        assertEquals(new SourceLocation(1, 1), lines.location(0));
+        assertEquals(new SourceLocation(1, 3), lines.location(2));
+        assertEquals(new SourceLocation(2, 1), lines.location(3));
+        assertEquals(new SourceLocation(3, 1), lines.location(4));
+        // the \r is the last character of line 3.
+        assertEquals(new SourceLocation(3, 3), lines.location(6));
+        assertEquals(new SourceLocation(4, 2), lines.location(9));
+        assertEquals(new SourceLocation(5, 1), lines.location(source.length()));
+        assertEquals(8, lines.lineStart(4));
+    }
+
+    // the same line feeds added while reading the source in pieces.
+    @Test
+    void addedLineFeeds() {
+        String source = "ab\n\ncd\r\nef\n";
+        LineIndex expected = new LineIndex(source);
+        LineIndex actual = new LineIndex();
+        char[] chars = source.toCharArray();
+        for (int start = 0; start < chars.length; start += 3) {
+            actual.addLineFeeds(chars, start, Math.min(start + 3, chars.length), 0);
+        }
+        for (int offset = 0; offset <= source.length(); offset++) {
+            assertEquals(expected.location(offset), actual.location(offset));
+        }
+    }
+
+    // the lines passed by a streaming lexer are discarded.
+    @Test
+    void discardBefore() {
+        String source = "ab\n\ncd\r\nef\n";
+        LineIndex expected = new LineIndex(source);
+        LineIndex actual = new LineIndex();
+        char[] chars = source.toCharArray();
+        actual.addLineFeeds(chars, 0, chars.length, 0);
+        actual.discardBefore(2);
+        assertEquals(5, actual.size());
+        actual.discardBefore(7);
+        assertEquals(3, actual.size());
+        for (int offset = 4; offset <= source.length(); offset++) {
+            assertEquals(expected.location(offset), actual.location(offset));
+        }
+        assertEquals(8, actual.lineStart(4));
+    }
+
+    // the tokens only keep their offsets, and share the index of the lexer.
+    @Test
+    void tokenOffsets() throws LexicalException {
+        LexerImp lexer = new LexerImp("VAR a;\n  b := \"x\ny\" + 1");
+        assertEquals(new SourceLocation(1, 1), lexer.next().getSourceLocation());
+        IToken a = lexer.next();
+        assertEquals(4, a.getOffset());
+        assertEquals(new SourceLocation(1, 5), a.getSourceLocation());
+        lexer.next();
+        lexer.next();
+        lexer.next();
+        assertEquals(new SourceLocation(2, 8), lexer.next().getSourceLocation());
+        IToken plus = lexer.next();
+        assertEquals(20, plus.getOffset());
+        assertEquals(new SourceLocation(3, 4), plus.getSourceLocation());
+        assertEquals(-1, new TokenImp(IToken.Kind.PLUS, 1, 1, "+").getOffset());
+    }
+
+}
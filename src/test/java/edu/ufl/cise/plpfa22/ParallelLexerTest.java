@@ -0,0 +1,75 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class ParallelLexerTest {
+
+    // check that the parallel lexer produces the same buffer as TokenBuffer.lex()
+    // for all the chunk sizes up to the length of the input.
+    static void checkSameBuffer(String input) {
+        TokenBuffer expected = TokenBuffer.lex(input);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunkSize = 1; chunkSize <= input.length(); chunkSize++) {
+                TokenBuffer actual = ParallelLexer.lex(input, new SymbolInterner(), pool, chunkSize);
+                checkSameBuffer(expected, actual);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static void checkSameBuffer(TokenBuffer expected, TokenBuffer actual) {
+        TokenBufferTest.assertSameTokens(expected, actual, true);
+        assertEquals(expected.getInterner().size(), actual.getInterner().size());
+    }
+
+    @Test
+    void program() {
+        checkSameBuffer(TokenBufferTest.PROGRAM);
+    }
+
+    // chunks starting inside multi-line strings, which contain what looks like
+    // tokens, comments and unterminated strings.
+    @Test
+    void multiLineStrings() {
+        checkSameBuffer("""
+                a := "first
+                b := c // not a comment
+                \\" d \\" still
+                e\";
+                // "a comment
+                f := "
+                "
+                "
+                g
+                """);
+    }
+
+    @Test
+    void errors() {
+        checkSameBuffer("a := 1;\nb := 2;\n// comment\nc := @ 3;\nd := 4\n");
+        checkSameBuffer("a := 1;\nb := \"2;\nc := 3;\nd := 4\n");
+        checkSameBuffer("a := 1;\nb := 99999999999;\nc := 3\n");
+    }
+
+    @Test
+    void crlf() {
+        checkSameBuffer("a := 1;\r\n// x\r\nb\r\n := \"\r\n\" \r\n");
+    }
+
+    @Test
+    void large() {
+        String input = LexerBenchmark.generateProgram(1 << 16) + "\"unterminated\n string";
+        TokenBuffer expected = TokenBuffer.lex(input);
+        for (int chunkSize : new int[] { 100, 997, 4096 }) {
+            checkSameBuffer(expected,
+                    ParallelLexer.lex(input, new SymbolInterner(), ForkJoinPool.commonPool(), chunkSize));
+        }
+    }
+
+}
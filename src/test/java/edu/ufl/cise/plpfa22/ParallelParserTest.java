@@ -0,0 +1,109 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.PrettyPrintVisitor;
+
+class ParallelParserTest {
+
+    static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutdown() {
+        POOL.shutdown();
+    }
+
+    // a program with count procedures, which have nested procedures, declarations
+    // and statement blocks.
+    static String program(int count) {
+        StringBuilder program = new StringBuilder("CONST n = 3; VAR x, s;\n");
+        for (int i = 0; i < count; i++) {
+            program.append("PROCEDURE p").append(i).append(";\n");
+            switch (i % 4) {
+                case 0 -> program.append("    x := x + ").append(i).append(";\n");
+                case 1 -> program.append("""
+                            CONST c = "c"; VAR y;
+                            PROCEDURE inner;
+                                VAR z;
+                                BEGIN z := n; IF z > 0 THEN BEGIN y := z; ! c END END;
+                            BEGIN CALL inner; WHILE x < n DO x := x + 1 END;
+                        """);
+                case 2 -> program.append("    ;\n");
+                default -> program.append("""
+                            PROCEDURE a; PROCEDURE b; ; CALL b;
+                            BEGIN CALL a; s := "s" END;
+                        """);
+            }
+        }
+        program.append("BEGIN x := 0; CALL p0 END\n.\n");
+        return program.toString();
+    }
+
+    static ASTNode parseSequential(String input) throws PLPException {
+        return CompilerComponentFactory.getParser(CompilerComponentFactory.getBatchLexer(input)).parse();
+    }
+
+    static ASTNode parseParallel(String input) throws PLPException {
+        return new ParserImp(new BufferedLexer(TokenBuffer.lex(input)), POOL).parse();
+    }
+
+    static String print(ASTNode ast) throws PLPException {
+        return PrettyPrintVisitor.AST2String(DeepNestingTest.decorate(ast));
+    }
+
+    // the message of the error of the parser, or null if there isn't one.
+    static String error(String input, boolean parallel) {
+        try {
+            if (parallel) {
+                parseParallel(input);
+            } else {
+                parseSequential(input);
+            }
+            return null;
+        } catch (PLPException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Test
+    void scan() {
+        String input = "PROCEDURE p; VAR x; BEGIN x := 1; ! x END; PROCEDURE q; PROCEDURE r; ; ; ! 1.";
+        TokenBuffer buffer = TokenBuffer.lex(input);
+        List<Integer> ends = ParserImp.scanProcDecs(buffer, 0);
+        assertEquals(2, ends.size());
+        assertEquals(Kind.KW_PROCEDURE, buffer.kind(ends.get(0)));
+        assertEquals(Kind.BANG, buffer.kind(ends.get(1)));
+    }
+
+    @Test
+    void sameAST() throws PLPException {
+        String input = program(200);
+        assertEquals(print(parseSequential(input)), print(parseParallel(input)));
+        assertEquals(print(parseSequential(input)),
+                print(CompilerComponentFactory.getParallelParser(input).parse()));
+    }
+
+    @Test
+    void sameErrors() {
+        String input = program(12);
+        TokenBuffer buffer = TokenBuffer.lex(input);
+        Random random = new Random(17);
+        for (int i = 0; i < 300; i++) {
+            // remove a random token.
+            int token = random.nextInt(buffer.size() - 1);
+            String edited = input.substring(0, buffer.start(token))
+                    + input.substring(buffer.start(token) + buffer.length(token));
+            assertEquals(error(edited, false), error(edited, true), edited);
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.PrettyPrintVisitor;
+
+class PrettyPrintVisitorTest {
+
+    @Test
+    void text() throws PLPException {
+        String expected = """
+
+                  PROGRAM
+                    BLOCK
+                      ConstDecs\s
+                        CONST n=3 at nest level 0 type=NUMBER
+                      VarDecs
+                        VAR x at nest level 0 type=NUMBER
+                      ProcDecs none
+                      STATEMENT
+                        ASSIGNMENT
+                          Ident  x identNest=0 decNest=0 type=NUMBER
+                          binary expr
+                            ExpressionIdent  n identNest=0 decNest=0 type=NUMBER
+                            +
+                            NumLit 1
+                      END OF STATEMENT
+                    END OF BLOCK
+                  END OF PROGRAM\
+                """;
+        ASTNode ast = DeepNestingTest.decoratedAST("CONST n = 3; VAR x; x := n + 1 .");
+        assertEquals(expected, PrettyPrintVisitor.AST2String(ast));
+        // every printer starts at the same depth.
+        assertEquals(expected, PrettyPrintVisitor.AST2String(ast));
+        assertEquals(expected, ast.visit(new PrettyPrintVisitor("  "), null));
+    }
+
+    @Test
+    void stream() throws PLPException, IOException {
+        ASTNode ast = DeepNestingTest.decoratedAST("VAR x; BEGIN x := 0; " + "WHILE x < 1 DO BEGIN ".repeat(100) + "x := x + 1"
+                + " END".repeat(100) + " END .");
+        StringWriter out = new StringWriter();
+        PrettyPrintVisitor.print(ast, out);
+        assertEquals(PrettyPrintVisitor.AST2String(ast), out.toString());
+        // the indentation of the deepest line.
+        assertTrue(out.toString().contains("\n" + "  ".repeat(7 + 2 * 100) + "NumLit 1"));
+
+        // an error of the output.
+        Writer broken = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("broken");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        IOException e = assertThrows(IOException.class, () -> PrettyPrintVisitor.print(ast, broken));
+        assertEquals("broken", e.getMessage());
+    }
+
+    @Test
+    void concurrentPrinters() throws Exception {
+        List<ASTNode> asts = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            ASTNode ast = DeepNestingTest.decoratedAST("VAR x; " + "PROCEDURE p; ".repeat(i + 1) + "x := " + i + "; ".repeat(i + 1)
+                    + "CALL p .");
+            asts.add(ast);
+            expected.add(PrettyPrintVisitor.AST2String(ast));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> printed = new ArrayList<>();
+            for (int round = 0; round < 20; round++) {
+                for (ASTNode ast : asts) {
+                    printed.add(executor.submit(() -> PrettyPrintVisitor.AST2String(ast)));
+                }
+            }
+            for (int k = 0; k < printed.size(); k++) {
+                assertEquals(expected.get(k % asts.size()), printed.get(k).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
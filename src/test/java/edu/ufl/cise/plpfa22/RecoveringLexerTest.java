@@ -0,0 +1,100 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+class RecoveringLexerTest {
+
+    static void checkToken(IToken t, Kind kind, String text, int line, int column) {
+        assertEquals(kind, t.getKind());
+        assertEquals(text, t.getTextView().toString());
+        assertEquals(new IToken.SourceLocation(line, column), t.getSourceLocation());
+    }
+
+    // the diagnostic has the same message as the exception of the throwing lexer.
+    static void checkSameError(String input, Diagnostic diagnostic) {
+        LexicalException e = assertThrows(LexicalException.class, () -> {
+            new LexerImp(input).peek(100);
+        });
+        assertEquals(e.getMessage(), diagnostic.toString());
+    }
+
+    @Test
+    void allErrorsInOnePass() throws LexicalException {
+        String input = """
+                x := @ 1;
+                y :x
+                // comment\rz
+                "a\\qb" + 99999999999 + 'c
+                "unterminated
+                """;
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        ILexer lexer = new LexerImp(input, new SymbolInterner(), diagnostics);
+        checkToken(lexer.next(), Kind.IDENT, "x", 1, 1);
+        checkToken(lexer.next(), Kind.ASSIGN, ":=", 1, 3);
+        checkToken(lexer.next(), Kind.ERROR, "@", 1, 6);
+        checkToken(lexer.next(), Kind.NUM_LIT, "1", 1, 8);
+        checkToken(lexer.next(), Kind.SEMI, ";", 1, 9);
+        checkToken(lexer.next(), Kind.IDENT, "y", 2, 1);
+        checkToken(lexer.next(), Kind.ERROR, ":", 2, 3);
+        checkToken(lexer.next(), Kind.IDENT, "x", 2, 4);
+        checkToken(lexer.next(), Kind.ERROR, "// comment\r", 3, 1);
+        checkToken(lexer.next(), Kind.IDENT, "z", 3, 12);
+        checkToken(lexer.next(), Kind.ERROR, "\"a\\qb\"", 4, 1);
+        checkToken(lexer.next(), Kind.PLUS, "+", 4, 8);
+        checkToken(lexer.next(), Kind.ERROR, "99999999999", 4, 10);
+        checkToken(lexer.next(), Kind.PLUS, "+", 4, 22);
+        checkToken(lexer.next(), Kind.ERROR, "'", 4, 24);
+        checkToken(lexer.next(), Kind.IDENT, "c", 4, 25);
+        checkToken(lexer.next(), Kind.ERROR, "\"unterminated\n", 5, 1);
+        checkToken(lexer.next(), Kind.EOF, "", 6, 1);
+        checkToken(lexer.next(), Kind.EOF, "", 6, 1);
+
+        List<String> messages = diagnostics.stream().map(Diagnostic::toString).toList();
+        assertEquals(List.of(
+                "1:6  Illegal character at start state",
+                "2:3  ':' can't be followed by any character other than '='",
+                "3:1  an \\r should always be followed by a \\n",
+                "4:1  illegal escape sequence",
+                "4:10  integer literal is out of range",
+                "4:24  Illegal character at start state",
+                "5:1  Unterminated String"), messages);
+    }
+
+    @Test
+    void sameDiagnosticsAsExceptions() {
+        for (String input : new String[] { "a\n  b # @", "x :\n", "\"abc", "a // b\r\n// c\rd", "0 2147483648", "\"a\\tb\\x\"" }) {
+            List<Diagnostic> diagnostics = new ArrayList<>();
+            TokenBuffer buffer = TokenBuffer.lex(input, new SymbolInterner(), diagnostics);
+            assertNull(buffer.getError());
+            assertEquals(Kind.EOF, buffer.kind(buffer.size() - 1));
+            assertEquals(1, diagnostics.size());
+            checkSameError(input, diagnostics.get(0));
+        }
+    }
+
+    @Test
+    void escapeAtEndOfInput() throws LexicalException {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        ILexer lexer = CompilerComponentFactory.getRecoveringLexer("\"a\\", diagnostics);
+        checkToken(lexer.next(), Kind.ERROR, "\"a\\", 1, 1);
+        assertEquals(Kind.EOF, lexer.next().getKind());
+        assertEquals(List.of("1:1  illegal escape sequence", "1:1  Unterminated String"),
+                diagnostics.stream().map(Diagnostic::toString).toList());
+    }
+
+    @Test
+    void validInputHasNoDiagnostics() throws LexicalException {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        TokenBufferTest.checkSameTokens(new LexerImp(TokenBufferTest.PROGRAM),
+                new LexerImp(TokenBufferTest.PROGRAM, new SymbolInterner(), diagnostics));
+        assertTrue(diagnostics.isEmpty());
+    }
+
+}
@@ -0,0 +1,127 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.ast.Block;
+import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
+import edu.ufl.cise.plpfa22.ast.ExpressionError;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.StatementAssign;
+import edu.ufl.cise.plpfa22.ast.StatementBlock;
+import edu.ufl.cise.plpfa22.ast.StatementError;
+import edu.ufl.cise.plpfa22.ast.StatementIf;
+import edu.ufl.cise.plpfa22.ast.StatementOutput;
+
+class RecoveringParserTest {
+
+    static Program parse(String input, List<Diagnostic> diagnostics) throws PLPException {
+        return (Program) CompilerComponentFactory.getRecoveringParser(input, diagnostics).parse();
+    }
+
+    static List<String> messages(List<Diagnostic> diagnostics) {
+        return diagnostics.stream().map(Diagnostic::toString).toList();
+    }
+
+    @Test
+    void allErrorsInOnePass() throws PLPException {
+        String input = """
+                VAR a, ;
+                VAR b;
+                PROCEDURE p;
+                  BEGIN a := 1 END
+                BEGIN
+                  a := ;
+                  CALL 3;
+                  ! a + 1 2;
+                  IF THEN ! b;
+                  ! a
+                END
+                .
+                """;
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        Program program = parse(input, diagnostics);
+        assertEquals(List.of(
+                "1:8  The next token is not the correct type",
+                "5:1  The next token is not the correct type",
+                "6:8  unsupported const type",
+                "7:8  The next token is not the correct type",
+                "8:11  The next token is not the correct type",
+                "9:6  unsupported const type"), messages(diagnostics));
+
+        Block block = program.block;
+        assertEquals(2, block.varDecs.size());
+        // the procedure is kept without its SEMI.
+        assertEquals(1, block.procedureDecs.size());
+        List<?> statements = ((StatementBlock) block.statement).statements;
+        assertEquals(5, statements.size());
+        assertInstanceOf(ExpressionError.class, ((StatementAssign) statements.get(0)).expression);
+        assertInstanceOf(StatementError.class, statements.get(1));
+        assertInstanceOf(ExpressionBinary.class, ((StatementOutput) statements.get(2)).expression);
+        StatementIf statementIf = (StatementIf) statements.get(3);
+        assertInstanceOf(ExpressionError.class, statementIf.expression);
+        assertInstanceOf(StatementOutput.class, statementIf.statement);
+        assertInstanceOf(StatementOutput.class, statements.get(4));
+    }
+
+    // the diagnostic of the first error is the exception of the parser that
+    // doesn't recover.
+    @Test
+    void sameFirstErrorAsException() {
+        String[] inputs = { "VAR ;.", "CONST a = b;.", "! .", "BEGIN a := 1 b := 2 END.", "a := 1", ". x",
+                "PROCEDURE ; .", "BEGIN ! (1 + ) END .", "IF 1 2 THEN ." };
+        for (String input : inputs) {
+            PLPException expected = assertThrows(SyntaxException.class, () -> {
+                CompilerComponentFactory.getParser(CompilerComponentFactory.getLexer(input)).parse();
+            });
+            List<Diagnostic> diagnostics = new ArrayList<>();
+            assertDoesNotThrow(() -> parse(input, diagnostics));
+            assertFalse(diagnostics.isEmpty(), input);
+            assertEquals(expected.getMessage(), diagnostics.get(0).toString(), input);
+        }
+    }
+
+    // the errors of the ERROR tokens are only reported by the lexer.
+    @Test
+    void lexicalErrors() throws PLPException {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        Program program = parse("BEGIN a := @; b := 1 : 2; ! \"x END .", diagnostics);
+        assertEquals(List.of(
+                "1:12  Illegal character at start state",
+                "1:22  ':' can't be followed by any character other than '='",
+                "1:29  Unterminated String",
+                // the string is the rest of the input, so END is missing.
+                "1:37  The next token is not the correct type"), messages(diagnostics));
+        assertEquals(3, ((StatementBlock) program.block.statement).statements.size());
+    }
+
+    @Test
+    void validProgram() throws PLPException {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        parse(TokenBufferTest.PROGRAM, diagnostics);
+        assertTrue(diagnostics.isEmpty());
+    }
+
+    // the parser always terminates, whatever the tokens are.
+    @Test
+    void randomTokens() throws PLPException {
+        String[] tokens = { "BEGIN", "END", ";", ".", "x", ":=", "1", "\"s\"", "TRUE", "IF", "THEN", "WHILE", "DO",
+                "VAR", "CONST", "=", "PROCEDURE", "CALL", "!", "?", "(", ")", "+", "*", "<", ",", "@" };
+        Random random = new Random(5556);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder input = new StringBuilder();
+            int length = random.nextInt(30);
+            for (int j = 0; j < length; j++) {
+                input.append(tokens[random.nextInt(tokens.length)]).append(' ');
+            }
+            List<Diagnostic> diagnostics = new ArrayList<>();
+            assertNotNull(parse(input.toString(), diagnostics));
+        }
+    }
+
+}
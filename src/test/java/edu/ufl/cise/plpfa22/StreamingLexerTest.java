@@ -0,0 +1,111 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+class StreamingLexerTest {
+
+    // a Reader that generates the same text count times, so the input is never in
+    // memory as a whole.
+    static class RepeatingReader extends Reader {
+        final String text;
+        int count;
+        int pos = 0;
+
+        RepeatingReader(String text, int count) {
+            this.text = text;
+            this.count = count;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (count == 0) {
+                return -1;
+            }
+            int n = Math.min(len, text.length() - pos);
+            text.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            if (pos == text.length()) {
+                pos = 0;
+                count--;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    void sameTokensAsLexerImp() throws LexicalException {
+        String input = TokenBufferTest.PROGRAM;
+        TokenBufferTest.checkSameTokens(new LexerImp(input),
+                CompilerComponentFactory.getLexer(new StringReader(input)));
+        // a tiny buffer, so that tokens are split between refills and the buffer has to
+        // grow for the long ones.
+        TokenBufferTest.checkSameTokens(new LexerImp(input), new StreamingLexer(new StringReader(input), 3));
+    }
+
+    @Test
+    void channel() throws LexicalException {
+        String input = "! \"café 中文\"\n+ x";
+        ILexer lexer = CompilerComponentFactory
+                .getLexer(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))));
+        IToken t = lexer.next();
+        assertEquals(Kind.BANG, t.getKind());
+        t = lexer.next();
+        assertEquals(Kind.STRING_LIT, t.getKind());
+        assertEquals("café 中文", t.getStringValue());
+        t = lexer.next();
+        assertEquals(Kind.PLUS, t.getKind());
+        assertEquals(new IToken.SourceLocation(2, 1), t.getSourceLocation());
+        assertEquals(Kind.IDENT, lexer.next().getKind());
+        assertEquals(Kind.EOF, lexer.next().getKind());
+    }
+
+    @Test
+    void errorLocation() throws LexicalException {
+        ILexer lexer = new StreamingLexer(new StringReader("abc\n  @"), 2);
+        assertEquals(Kind.IDENT, lexer.next().getKind());
+        LexicalException e = assertThrows(LexicalException.class, () -> {
+            lexer.next();
+        });
+        assertTrue(e.getMessage().startsWith("2:3"));
+    }
+
+    @Test
+    void boundedMemory() throws LexicalException {
+        // about 6M characters, with a comment that is longer than the buffer.
+        String line = "x := x + 12345; // " + "-".repeat(100) + "\n";
+        int lines = 50_000;
+        StreamingLexer lexer = new StreamingLexer(new RepeatingReader(line, lines), 64);
+        int tokens = 0;
+        int maxIndexSize = 0;
+        IToken t;
+        do {
+            t = lexer.next();
+            if (tokens % 6 == 0) {
+                // the first token of a line.
+                assertEquals(new IToken.SourceLocation(tokens / 6 + 1, 1), t.getSourceLocation());
+            }
+            tokens++;
+            maxIndexSize = Math.max(maxIndexSize, lexer.getLineIndex().size());
+        } while (t.getKind() != Kind.EOF);
+        assertEquals(6 * lines + 1, tokens);
+        assertEquals(new IToken.SourceLocation(lines + 1, 1), t.getSourceLocation());
+        assertEquals(64, lexer.bufferCapacity());
+        // the line index only has the lines of the buffer.
+        assertTrue(maxIndexSize <= 3, Integer.toString(maxIndexSize));
+    }
+
+}
@@ -0,0 +1,138 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.ast.Expression;
+import edu.ufl.cise.plpfa22.ast.ExpressionBinary;
+import edu.ufl.cise.plpfa22.ast.PrettyPrintVisitor;
+import edu.ufl.cise.plpfa22.ast.ProcDec;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.StatementAssign;
+import edu.ufl.cise.plpfa22.ast.StatementBlock;
+
+class StructuralHashTest {
+
+    static final String PROGRAM = """
+            VAR x, y;
+            PROCEDURE p;
+                VAR x;
+                BEGIN x := y * 2 + 1; ! y * 2 + 1; ! y * 2 END;
+            PROCEDURE q;
+                VAR x;
+                BEGIN x := y * 2 + 1; ! y * 2 + 1; ! y * 2 END;
+            PROCEDURE r;
+                VAR x;
+                BEGIN x := y * 2 + 1; ! y * 2 + 2; ! y * 2 END;
+            BEGIN
+                y := 20;
+                x := y * 2 + 1;
+                CALL p;
+                ! x * 2 + 1;
+                ! y * 2 + 1
+            END
+            .
+            """;
+
+    static Program parse(String input) throws PLPException {
+        return (Program) CompilerComponentFactory.getParser(CompilerComponentFactory.getBatchLexer(input)).parse();
+    }
+
+    static Program share(String input) throws PLPException {
+        return (Program) CompilerComponentFactory.getHashConsingParser(input).parse();
+    }
+
+    @Test
+    void structure() throws PLPException {
+        Program program = parse(PROGRAM);
+        ProcDec p = program.block.procedureDecs.get(0);
+        ProcDec q = program.block.procedureDecs.get(1);
+        ProcDec r = program.block.procedureDecs.get(2);
+        // p and q differ only by their names.
+        assertEquals(p.block.structuralHash(), q.block.structuralHash());
+        assertTrue(p.block.structurallyEquals(q.block));
+        assertFalse(p.structurallyEquals(q));
+        assertFalse(p.block.structurallyEquals(r.block));
+        assertNotEquals(p.block.structuralHash(), r.block.structuralHash());
+
+        // the locations and the declarations don't count.
+        Expression inP = ((StatementAssign) ((StatementBlock) p.block.statement).statements.get(0)).expression;
+        Expression inProgram = ((StatementAssign) ((StatementBlock) program.block.statement).statements.get(1))
+                .expression;
+        assertEquals(inP.structuralHash(), inProgram.structuralHash());
+        assertTrue(inP.structurallyEquals(inProgram));
+        assertEquals(parse(PROGRAM).structuralHash(), program.structuralHash());
+        assertFalse(program.structurallyEquals(parse(PROGRAM.replace("y := 20", "y := 21"))));
+        assertEquals(parse("! 1 + 2 .").structuralHash(), parse("!  1+2\n.").structuralHash());
+    }
+
+    @Test
+    void deepTree() throws PLPException {
+        int terms = 100_000;
+        String input = "VAR a; ! a" + " + a".repeat(terms - 1) + " .";
+        Program program = parse(input);
+        int hash = program.structuralHash();
+        assertEquals(hash, parse(input).structuralHash());
+        assertTrue(program.structurallyEquals(parse(input)));
+        assertFalse(program.structurallyEquals(parse(input.replace(" .", " + a ."))));
+    }
+
+    @Test
+    void incrementalParser() throws PLPException {
+        IncrementalParser parser = new IncrementalParser(IncrementalParserTest.PROGRAM);
+        int before = parser.getProgram().structuralHash();
+        String edited = IncrementalParserTest.PROGRAM.replace("z := z * 2", "z := z * 3");
+        Program after = parser.edit(IncrementalParserTest.PROGRAM.indexOf("2;"), 1, "3");
+        assertNotEquals(before, after.structuralHash());
+        assertEquals(parse(edited).structuralHash(), after.structuralHash());
+        assertTrue(after.structurallyEquals(parse(edited)));
+    }
+
+    @Test
+    void hashConsing() throws Exception {
+        Program program = share(PROGRAM);
+        StatementBlock statements = (StatementBlock) program.block.statement;
+        Expression assigned = ((StatementAssign) statements.statements.get(1)).expression;
+        Expression output = ConstantFoldingTest.output(program, 4);
+        assertSame(assigned, output);
+        // the same subexpression in a larger expression.
+        ExpressionBinary xTimes2Plus1 = (ExpressionBinary) ConstantFoldingTest.output(program, 3);
+        assertSame(((ExpressionBinary) assigned).e1, xTimes2Plus1.e1);
+        assertNotSame(((ExpressionBinary) assigned).e0, xTimes2Plus1.e0);
+
+        // the expressions of different blocks aren't shared, x is bound to
+        // different declarations there.
+        StatementBlock p = (StatementBlock) program.block.procedureDecs.get(0).block.statement;
+        Expression inP = ((StatementAssign) p.statements.get(0)).expression;
+        assertNotSame(assigned, inP);
+        assertTrue(assigned.structurallyEquals(inP));
+
+        DeepNestingTest.decorate(program);
+        assertEquals(PrettyPrintVisitor.AST2String(DeepNestingTest.decorate(parse(PROGRAM))),
+                PrettyPrintVisitor.AST2String(program));
+        assertEquals(DeepNestingTest.run(DeepNestingTest.decorate(parse(PROGRAM))),
+                DeepNestingTest.run(program));
+    }
+
+    @Test
+    void hashConsingRepetitiveProgram() throws Exception {
+        String input = "VAR a, b; BEGIN a := 1; b := 2; " + "! a * b + (a - b) * (a + b); ".repeat(1000)
+                + "! a END .";
+        Program program = share(input);
+        StatementBlock statements = (StatementBlock) program.block.statement;
+        Expression first = ConstantFoldingTest.output(program, 2);
+        for (int i = 3; i < 1002; i++) {
+            assertSame(first, ConstantFoldingTest.output(program, i));
+        }
+        assertEquals(1003, statements.statements.size());
+        assertEquals(DeepNestingTest.run(DeepNestingTest.decorate(parse(input))),
+                DeepNestingTest.run(DeepNestingTest.decorate(program)));
+
+        // an error is reported where the expression is first used.
+        ScopeException e = assertThrows(ScopeException.class,
+                () -> DeepNestingTest.decorate(share("BEGIN ! c + 1; ! c + 1 END .")));
+        assertTrue(e.getMessage().startsWith("1:9 "), e.getMessage());
+    }
+
+}
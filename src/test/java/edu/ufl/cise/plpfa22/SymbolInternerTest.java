@@ -0,0 +1,70 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+class SymbolInternerTest {
+
+    @Test
+    void denseIds() {
+        SymbolInterner interner = new SymbolInterner();
+        assertEquals(0, interner.intern("abc"));
+        assertEquals(1, interner.intern("x abd y", 2, 3));
+        assertEquals(0, interner.intern("[abc]", 1, 3));
+        assertEquals(2, interner.size());
+        assertEquals("abd", interner.name(1));
+        assertEquals(1, interner.lookup("abd"));
+        assertEquals(-1, interner.lookup("ab"));
+        assertEquals(2, interner.size());
+    }
+
+    @Test
+    void manyNames() {
+        SymbolInterner interner = new SymbolInterner();
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, interner.intern("name" + i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, interner.lookup("name" + i));
+            assertEquals("name" + i, interner.name(i));
+        }
+        // the hash codes of "Aa" and "BB" collide.
+        assertEquals(10000, interner.intern("Aa"));
+        assertEquals(10001, interner.intern("BB"));
+        assertEquals(10000, interner.lookup("Aa"));
+    }
+
+    // the same identifiers get the same IDs from all the lexers sharing an
+    // interner, and the text of an identifier shares the interned name.
+    @Test
+    void idsOnTokens() throws LexicalException {
+        String input = "VAR a, bc; BEGIN bc := a; a := bc END .";
+        SymbolInterner interner = new SymbolInterner();
+        ILexer lexer = new LexerImp(input, interner);
+        TokenBuffer buffer = TokenBuffer.lex(input, interner);
+        ILexer streaming = new StreamingLexer(new StringReader(input), 4, interner);
+        for (int i = 0; i < buffer.size(); i++) {
+            IToken token = lexer.next();
+            IToken streamed = streaming.next();
+            if (token.getKind() == Kind.IDENT) {
+                int id = interner.lookup(token.getTextView());
+                assertEquals(id, token.getSymbolId());
+                assertEquals(id, buffer.symbolId(i));
+                assertEquals(id, buffer.token(i).getSymbolId());
+                assertEquals(id, streamed.getSymbolId());
+                assertSame(interner.name(id), token.getTextView().toString());
+                assertSame(interner.name(id), streamed.getTextView().toString());
+            } else {
+                assertEquals(-1, token.getSymbolId());
+            }
+        }
+        assertEquals(2, interner.size());
+        assertEquals(-1, new TokenImp(Kind.IDENT, 1, 1, "a").getSymbolId());
+    }
+
+}
@@ -0,0 +1,106 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.ast.ExpressionIdent;
+import edu.ufl.cise.plpfa22.ast.ProcDec;
+import edu.ufl.cise.plpfa22.ast.Program;
+import edu.ufl.cise.plpfa22.ast.StatementAssign;
+import edu.ufl.cise.plpfa22.ast.StatementBlock;
+import edu.ufl.cise.plpfa22.ast.StatementCall;
+import edu.ufl.cise.plpfa22.ast.StatementIf;
+
+class SymbolTableTest {
+
+    static Program scoped(String input) throws PLPException {
+        Program program = IncrementalParserTest.parse(input);
+        program.visit(CompilerComponentFactory.getScopeVisitor(), null);
+        return program;
+    }
+
+    @Test
+    void shadowing() throws PLPException {
+        Program program = scoped("""
+                VAR x, y;
+                PROCEDURE p;
+                    VAR x;
+                    PROCEDURE q;
+                        CONST x = 1;
+                        y := x;
+                    x := y;
+                BEGIN
+                    CALL p;
+                    x := y
+                END
+                .
+                """);
+        ProcDec p = program.block.procedureDecs.get(0);
+        ProcDec q = p.block.procedureDecs.get(0);
+        StatementAssign inQ = (StatementAssign) q.block.statement;
+        assertSame(program.block.varDecs.get(1), inQ.ident.getDec());
+        assertSame(q.block.constDecs.get(0), ((ExpressionIdent) inQ.expression).getDec());
+        assertEquals(2, ((ExpressionIdent) inQ.expression).getNest());
+
+        // the declarations shadowed by q are visible again after it.
+        StatementAssign inP = (StatementAssign) p.block.statement;
+        assertSame(p.block.varDecs.get(0), inP.ident.getDec());
+        assertSame(program.block.varDecs.get(1), ((ExpressionIdent) inP.expression).getDec());
+        StatementAssign inProgram = (StatementAssign) ((StatementBlock) program.block.statement).statements.get(1);
+        assertSame(program.block.varDecs.get(0), inProgram.ident.getDec());
+        assertEquals(0, inProgram.ident.getNest());
+    }
+
+    @Test
+    void procedureCalledBeforeItsDeclaration() throws PLPException {
+        Program program = scoped("""
+                VAR n;
+                PROCEDURE even;
+                    IF n > 0 THEN BEGIN n := n - 1; CALL odd END;
+                PROCEDURE odd;
+                    IF n > 0 THEN BEGIN n := n - 1; CALL even END;
+                CALL even
+                .
+                """);
+        ProcDec even = program.block.procedureDecs.get(0);
+        ProcDec odd = program.block.procedureDecs.get(1);
+        StatementCall call = (StatementCall) ((StatementBlock) ((StatementIf) even.block.statement).statement)
+                .statements.get(1);
+        assertSame(odd, call.ident.getDec());
+        assertEquals(1, call.ident.getNest());
+    }
+
+    @Test
+    void errors() {
+        ScopeException e = assertThrows(ScopeException.class,
+                () -> scoped("VAR x; PROCEDURE p; VAR x, y, x; ; ."));
+        assertTrue(e.getMessage().startsWith("1:31 "), e.getMessage());
+        assertTrue(e.getMessage().contains("re-declaration of identifier x"), e.getMessage());
+
+        // a procedure's variables aren't visible after it.
+        e = assertThrows(ScopeException.class, () -> scoped("PROCEDURE p; VAR y; ; ! y ."));
+        assertTrue(e.getMessage().startsWith("1:25 "), e.getMessage());
+        assertTrue(e.getMessage().contains("can't find ident \"y\""), e.getMessage());
+
+        // a name declared in an inner scope and in the enclosing one is fine.
+        assertDoesNotThrow(() -> scoped("VAR x; PROCEDURE p; VAR x; x := 1; x := 2 ."));
+    }
+
+    @Test
+    void deepNesting() throws PLPException {
+        int depth = 5_000;
+        String input = "VAR x; " + "PROCEDURE p; VAR y; ".repeat(depth) + "y := x" + "; CALL p".repeat(depth - 1)
+                + "; CALL p .";
+        Program program = scoped(input);
+        ProcDec innermost = program.block.procedureDecs.get(0);
+        for (int i = 1; i < depth; i++) {
+            innermost = innermost.block.procedureDecs.get(0);
+        }
+        StatementAssign assign = (StatementAssign) innermost.block.statement;
+        assertSame(innermost.block.varDecs.get(0), assign.ident.getDec());
+        assertEquals(depth, assign.ident.getNest());
+        assertSame(program.block.varDecs.get(0), ((ExpressionIdent) assign.expression).getDec());
+    }
+
+}
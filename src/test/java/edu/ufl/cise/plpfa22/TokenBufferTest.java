@@ -0,0 +1,142 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+import edu.ufl.cise.plpfa22.ast.ASTNode;
+import edu.ufl.cise.plpfa22.ast.PrettyPrintVisitor;
+
+class TokenBufferTest {
+
+    static final String PROGRAM = """
+            CONST n = 42, s = "a\\tb", t = TRUE;
+            VAR x, y;
+            // a comment
+            PROCEDURE p;
+                VAR z;
+                BEGIN
+                    z := x + n * 2;
+                    IF z >= 0 THEN ! "z is \\"positive\\""
+                END;
+            BEGIN
+                x := 0;
+                WHILE x < 10 DO BEGIN CALL p; x := x + 1 END;
+                y := s + "
+            multi-line";
+                ! y <= s
+            END
+            .
+            """;
+
+    // check that the tokens returned by both lexers are the same.
+    static void checkSameTokens(ILexer expected, ILexer actual) throws LexicalException {
+        IToken e;
+        do {
+            e = expected.next();
+            assertEquals(e.getKind(), actual.peekKind());
+            IToken a = actual.next();
+            assertEquals(e.getKind(), a.getKind());
+            assertEquals(e.getSourceLocation(), a.getSourceLocation());
+            assertArrayEquals(e.getText(), a.getText());
+        } while (e.getKind() != Kind.EOF);
+    }
+
+    /**
+     * check that two buffers of the same input have the same tokens and error. The
+     * identifiers have the same symbol IDs if sameSymbolIds, the same names
+     * otherwise.
+     */
+    static void assertSameTokens(TokenBuffer expected, TokenBuffer actual, boolean sameSymbolIds) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.kind(i), actual.kind(i));
+            assertEquals(expected.start(i), actual.start(i));
+            assertEquals(expected.length(i), actual.length(i));
+            assertEquals(expected.line(i), actual.line(i));
+            assertEquals(expected.column(i), actual.column(i));
+            if (expected.kind(i) == Kind.IDENT && sameSymbolIds) {
+                assertEquals(expected.symbolId(i), actual.symbolId(i));
+            } else if (expected.kind(i) == Kind.IDENT) {
+                assertEquals(expected.getInterner().name(expected.symbolId(i)),
+                        actual.getInterner().name(actual.symbolId(i)));
+            } else if (expected.kind(i) == Kind.NUM_LIT) {
+                assertEquals(expected.intValue(i), actual.intValue(i));
+            }
+        }
+        if (expected.getError() == null) {
+            assertNull(actual.getError());
+        } else {
+            assertEquals(expected.getError().getMessage(), actual.getError().getMessage());
+        }
+    }
+
+    @Test
+    void sameTokensAsLexerImp() throws LexicalException {
+        checkSameTokens(new LexerImp(PROGRAM), CompilerComponentFactory.getBatchLexer(PROGRAM));
+    }
+
+    @Test
+    void bufferContents() {
+        TokenBuffer buffer = TokenBuffer.lex("x := 12;\n  ! \"ab\"");
+        assertNull(buffer.getError());
+        assertEquals(7, buffer.size());
+        assertEquals(Kind.IDENT, buffer.kind(0));
+        assertEquals(Kind.NUM_LIT, buffer.kind(2));
+        assertEquals(5, buffer.start(2));
+        assertEquals(2, buffer.length(2));
+        assertEquals(Kind.STRING_LIT, buffer.kind(5));
+        assertEquals(2, buffer.line(5));
+        assertEquals(5, buffer.column(5));
+        assertEquals(Kind.EOF, buffer.kind(6));
+    }
+
+    @Test
+    void errorIsThrownWhenReached() throws LexicalException {
+        ILexer lexer = CompilerComponentFactory.getBatchLexer("a b @ c");
+        assertEquals("a", String.valueOf(lexer.next().getText()));
+        assertEquals("b", String.valueOf(lexer.next().getText()));
+        assertThrows(LexicalException.class, () -> {
+            lexer.peekKind();
+        });
+        assertThrows(LexicalException.class, () -> {
+            lexer.next();
+        });
+    }
+
+    @Test
+    void peekK() throws LexicalException {
+        ILexer lexer = CompilerComponentFactory.getBatchLexer("a b c");
+        assertEquals("c", String.valueOf(lexer.peek(2).getText()));
+        assertEquals(Kind.EOF, lexer.peek(3).getKind());
+        assertEquals(Kind.EOF, lexer.peek(10).getKind());
+        lexer.skip();
+        assertEquals("b", String.valueOf(lexer.peek(0).getText()));
+        assertEquals("c", String.valueOf(lexer.peek(1).getText()));
+
+        ILexer error = CompilerComponentFactory.getBatchLexer("a @");
+        assertEquals("a", String.valueOf(error.peek(0).getText()));
+        assertThrows(LexicalException.class, () -> {
+            error.peek(1);
+        });
+    }
+
+    @Test
+    void numberOutOfRange() throws LexicalException {
+        ILexer lexer = CompilerComponentFactory.getBatchLexer("2147483647 2147483648");
+        assertEquals(Integer.MAX_VALUE, lexer.next().getIntValue());
+        assertThrows(LexicalException.class, () -> {
+            lexer.next();
+        });
+    }
+
+    @Test
+    void sameAST() throws PLPException {
+        ASTNode expected = CompilerComponentFactory.getParser(CompilerComponentFactory.getLexer(PROGRAM)).parse();
+        ASTNode actual = CompilerComponentFactory.getParser(CompilerComponentFactory.getBatchLexer(PROGRAM)).parse();
+        assertEquals(PrettyPrintVisitor.AST2String(DeepNestingTest.decorate(expected)),
+                PrettyPrintVisitor.AST2String(DeepNestingTest.decorate(actual)));
+    }
+
+}
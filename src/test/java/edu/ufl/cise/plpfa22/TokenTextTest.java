@@ -0,0 +1,83 @@
+package edu.ufl.cise.plpfa22;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plpfa22.IToken.Kind;
+
+class TokenTextTest {
+
+    @Test
+    void viewOfTheInput() throws LexicalException {
+        String input = "abc := \"x\\ty\"";
+        ILexer lexer = new LexerImp(input);
+        IToken ident = lexer.next();
+        TokenText text = ident.getTextView();
+        assertSame(input, text.getSource());
+        assertEquals(0, text.getOffset());
+        assertEquals(3, text.length());
+        assertEquals("abc", text.toString());
+        assertSame(text.toString(), text.toString());
+        assertArrayEquals("abc".toCharArray(), ident.getText());
+        assertTrue(ident.textEquals("abc"));
+        assertFalse(ident.textEquals("ab"));
+        assertFalse(ident.textEquals("abd"));
+
+        lexer.next();
+        IToken string = lexer.next();
+        assertEquals(7, string.getTextView().getOffset());
+        assertEquals("x\ty", string.getStringValue());
+        assertEquals("\"x\\ty\"", string.getTextView().toString());
+    }
+
+    @Test
+    void equalsAndHashCode() {
+        TokenText a = new TokenText("x name y", 2, 4);
+        TokenText b = new TokenText("name");
+        assertEquals(a, b);
+        assertEquals("name".hashCode(), a.hashCode());
+        assertEquals(b.hashCode(), a.hashCode());
+        assertNotEquals(new TokenText("x name y", 2, 3), b);
+        assertEquals(new TokenText("am"), a.subSequence(1, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> {
+            a.charAt(4);
+        });
+    }
+
+    @Test
+    void batchLexerTokensShareTheInput() throws LexicalException {
+        String input = "VAR abc; BEGIN abc := 1 END .";
+        ILexer lexer = CompilerComponentFactory.getBatchLexer(input);
+        lexer.skip();
+        IToken declared = lexer.next();
+        lexer.skip();
+        lexer.skip();
+        IToken used = lexer.next();
+        assertSame(input, used.getTextView().getSource());
+        assertEquals(declared.getTextView(), used.getTextView());
+        assertTrue(used.textEquals(declared.getTextView()));
+    }
+
+    @Test
+    void literalValues() throws LexicalException {
+        String input = "\"plain\" \"a\\\"b\\\\\" \"\" 0 2147483647";
+        ILexer lexer = new LexerImp(input);
+        IToken plain = lexer.next();
+        assertEquals("plain", plain.getStringValue());
+        assertSame(plain.getStringValue(), plain.getStringValue());
+        assertEquals("a\"b\\", lexer.next().getStringValue());
+        assertEquals("", lexer.next().getStringValue());
+        assertEquals(0, lexer.next().getIntValue());
+        assertEquals(Integer.MAX_VALUE, lexer.next().getIntValue());
+
+        TokenBuffer buffer = TokenBuffer.lex("x := 1234");
+        assertEquals(1234, buffer.intValue(2));
+        assertEquals(1234, buffer.token(2).getIntValue());
+        // a token that isn't created by a lexer parses its text when it's created.
+        assertEquals(56, new TokenImp(Kind.NUM_LIT, 1, 1, "56").getIntValue());
+        assertThrows(LexicalException.class, () -> new TokenImp(Kind.NUM_LIT, 1, 1, "2147483648"));
+        assertThrows(LexicalException.class, () -> new TokenImp(Kind.NUM_LIT, 1, 1, new TokenText("99999999999")));
+    }
+
+}
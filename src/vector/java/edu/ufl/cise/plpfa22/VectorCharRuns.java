@@ -0,0 +1,83 @@
+package edu.ufl.cise.plpfa22;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * CharRuns that compares a whole vector of characters at a time. A run is
+ * extended by full vectors, and the characters after the last full vector are
+ * left to the scalar loops.
+ *
+ * Only compiled by the vector profile, see CharRuns.
+ */
+class VectorCharRuns extends CharRuns {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_128;
+
+    private static final int LENGTH = SPECIES.length();
+
+    @Override
+    int skipBlanks(char[] chars, int from, int end) {
+        int i = from;
+        for (; i + LENGTH <= end; i += LENGTH) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, chars, i);
+            VectorMask<Short> blank = v.eq((short) ' ').or(v.eq((short) '\t')).or(v.eq((short) '\r'));
+            if (!blank.allTrue()) {
+                return i + blank.not().firstTrue();
+            }
+        }
+        return super.skipBlanks(chars, i, end);
+    }
+
+    @Override
+    int skipCommentText(char[] chars, int from, int end) {
+        int i = from;
+        for (; i + LENGTH <= end; i += LENGTH) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, chars, i);
+            VectorMask<Short> stop = v.eq((short) '\n').or(v.eq((short) '\r')).or(v.eq((short) 0));
+            if (stop.anyTrue()) {
+                return i + stop.firstTrue();
+            }
+        }
+        return super.skipCommentText(chars, i, end);
+    }
+
+    @Override
+    int skipIdentChars(char[] chars, int from, int end) {
+        int i = from;
+        for (; i + LENGTH <= end; i += LENGTH) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, chars, i);
+            // setting bit 0x20 maps the upper case letters to the lower case ones, and
+            // no other character to a lower case letter. Characters from 0x8000 are
+            // negative, so they're not in any range.
+            ShortVector lower = v.or((short) 0x20);
+            VectorMask<Short> identChar = lower.compare(VectorOperators.GE, (short) 'a')
+                    .and(lower.compare(VectorOperators.LE, (short) 'z'))
+                    .or(digits(v))
+                    .or(v.eq((short) '_'))
+                    .or(v.eq((short) '$'));
+            if (!identChar.allTrue()) {
+                return i + identChar.not().firstTrue();
+            }
+        }
+        return super.skipIdentChars(chars, i, end);
+    }
+
+    @Override
+    int skipDigits(char[] chars, int from, int end) {
+        int i = from;
+        for (; i + LENGTH <= end; i += LENGTH) {
+            VectorMask<Short> digit = digits(ShortVector.fromCharArray(SPECIES, chars, i));
+            if (!digit.allTrue()) {
+                return i + digit.not().firstTrue();
+            }
+        }
+        return super.skipDigits(chars, i, end);
+    }
+
+    private static VectorMask<Short> digits(ShortVector v) {
+        return v.compare(VectorOperators.GE, (short) '0').and(v.compare(VectorOperators.LE, (short) '9'));
+    }
+
+}